@@ -76,6 +76,99 @@ int deserialize_Stat(struct iarchive *in, const char *tag, struct Stat*v){
 }
 void deallocate_Stat(struct Stat*v){
 }
+int serialize_ChildData(struct oarchive *out, const char *tag, struct ChildData *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "name", &v->name);
+    rc = rc ? : serialize_Stat(out, "stat", &v->stat);
+    rc = rc ? : out->serialize_Buffer(out, "data", &v->data);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_ChildData(struct iarchive *in, const char *tag, struct ChildData*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "name", &v->name);
+    rc = rc ? : deserialize_Stat(in, "stat", &v->stat);
+    rc = rc ? : in->deserialize_Buffer(in, "data", &v->data);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_ChildData(struct ChildData*v){
+    deallocate_String(&v->name);
+    deallocate_Stat(&v->stat);
+    deallocate_Buffer(&v->data);
+}
+int allocate_ACL_vector(struct ACL_vector *v, int32_t len) {
+    if (!len) {
+        v->count = 0;
+        v->data = 0;
+    } else {
+        v->count = len;
+        v->data = calloc(sizeof(*v->data), len);
+    }
+    return 0;
+}
+int deallocate_ACL_vector(struct ACL_vector *v) {
+    if (v->data) {
+        int32_t i;
+        for(i=0;i<v->count; i++) {
+            deallocate_ACL(&v->data[i]);
+        }
+        free(v->data);
+        v->data = 0;
+    }
+    return 0;
+}
+int serialize_ACL_vector(struct oarchive *out, const char *tag, struct ACL_vector *v)
+{
+    int32_t count = v->count;
+    int rc = 0;
+    int32_t i;
+    rc = out->start_vector(out, tag, &count);
+    for(i=0;i<v->count;i++) {
+    rc = rc ? : serialize_ACL(out, "data", &v->data[i]);
+    }
+    rc = rc ? : out->end_vector(out, tag);
+    return rc;
+}
+int deserialize_ACL_vector(struct iarchive *in, const char *tag, struct ACL_vector *v)
+{
+    int rc = 0;
+    int32_t i;
+    rc = in->start_vector(in, tag, &v->count);
+    v->data = calloc(v->count, sizeof(*v->data));
+    for(i=0;i<v->count;i++) {
+    rc = rc ? : deserialize_ACL(in, "value", &v->data[i]);
+    }
+    rc = in->end_vector(in, tag);
+    return rc;
+}
+int serialize_NewNode(struct oarchive *out, const char *tag, struct NewNode *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_Buffer(out, "data", &v->data);
+    rc = rc ? : serialize_ACL_vector(out, "acl", &v->acl);
+    rc = rc ? : out->serialize_Int(out, "flags", &v->flags);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_NewNode(struct iarchive *in, const char *tag, struct NewNode*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_Buffer(in, "data", &v->data);
+    rc = rc ? : deserialize_ACL_vector(in, "acl", &v->acl);
+    rc = rc ? : in->deserialize_Int(in, "flags", &v->flags);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_NewNode(struct NewNode*v){
+    deallocate_String(&v->path);
+    deallocate_Buffer(&v->data);
+    deallocate_ACL_vector(&v->acl);
+}
 int serialize_StatPersisted(struct oarchive *out, const char *tag, struct StatPersisted *v){
     int rc;
     rc = out->start_record(out, tag);
@@ -207,6 +300,24 @@ int deserialize_ConnectResponse(struct iarchive *in, const char *tag, struct Con
 void deallocate_ConnectResponse(struct ConnectResponse*v){
     deallocate_Buffer(&v->passwd);
 }
+int serialize_ServerLoad(struct oarchive *out, const char *tag, struct ServerLoad *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_Int(out, "outstandingRequests", &v->outstandingRequests);
+    rc = rc ? : out->serialize_Int(out, "connections", &v->connections);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_ServerLoad(struct iarchive *in, const char *tag, struct ServerLoad*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_Int(in, "outstandingRequests", &v->outstandingRequests);
+    rc = rc ? : in->deserialize_Int(in, "connections", &v->connections);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_ServerLoad(struct ServerLoad*v){
+}
 int allocate_String_vector(struct String_vector *v, int32_t len) {
     if (!len) {
         v->count = 0;
@@ -277,6 +388,48 @@ void deallocate_SetWatches(struct SetWatches*v){
     deallocate_String_vector(&v->existWatches);
     deallocate_String_vector(&v->childWatches);
 }
+int serialize_SetWatchesCompact(struct oarchive *out, const char *tag, struct SetWatchesCompact *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_Long(out, "relativeZxid", &v->relativeZxid);
+    rc = rc ? : out->serialize_Buffer(out, "dataWatches", &v->dataWatches);
+    rc = rc ? : out->serialize_Buffer(out, "existWatches", &v->existWatches);
+    rc = rc ? : out->serialize_Buffer(out, "childWatches", &v->childWatches);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_SetWatchesCompact(struct iarchive *in, const char *tag, struct SetWatchesCompact*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_Long(in, "relativeZxid", &v->relativeZxid);
+    rc = rc ? : in->deserialize_Buffer(in, "dataWatches", &v->dataWatches);
+    rc = rc ? : in->deserialize_Buffer(in, "existWatches", &v->existWatches);
+    rc = rc ? : in->deserialize_Buffer(in, "childWatches", &v->childWatches);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_SetWatchesCompact(struct SetWatchesCompact*v){
+    deallocate_Buffer(&v->dataWatches);
+    deallocate_Buffer(&v->existWatches);
+    deallocate_Buffer(&v->childWatches);
+}
+int serialize_SetRecursiveWatches(struct oarchive *out, const char *tag, struct SetRecursiveWatches *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : serialize_String_vector(out, "paths", &v->paths);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_SetRecursiveWatches(struct iarchive *in, const char *tag, struct SetRecursiveWatches*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : deserialize_String_vector(in, "paths", &v->paths);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_SetRecursiveWatches(struct SetRecursiveWatches*v){
+    deallocate_String_vector(&v->paths);
+}
 int serialize_RequestHeader(struct oarchive *out, const char *tag, struct RequestHeader *v){
     int rc;
     rc = out->start_record(out, tag);
@@ -395,7 +548,189 @@ int deserialize_SetDataResponse(struct iarchive *in, const char *tag, struct Set
 void deallocate_SetDataResponse(struct SetDataResponse*v){
     deallocate_Stat(&v->stat);
 }
-int allocate_ACL_vector(struct ACL_vector *v, int32_t len) {
+int serialize_CreateRequest(struct oarchive *out, const char *tag, struct CreateRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_Buffer(out, "data", &v->data);
+    rc = rc ? : serialize_ACL_vector(out, "acl", &v->acl);
+    rc = rc ? : out->serialize_Int(out, "flags", &v->flags);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_CreateRequest(struct iarchive *in, const char *tag, struct CreateRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_Buffer(in, "data", &v->data);
+    rc = rc ? : deserialize_ACL_vector(in, "acl", &v->acl);
+    rc = rc ? : in->deserialize_Int(in, "flags", &v->flags);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_CreateRequest(struct CreateRequest*v){
+    deallocate_String(&v->path);
+    deallocate_Buffer(&v->data);
+    deallocate_ACL_vector(&v->acl);
+}
+int serialize_DeleteRequest(struct oarchive *out, const char *tag, struct DeleteRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_Int(out, "version", &v->version);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_DeleteRequest(struct iarchive *in, const char *tag, struct DeleteRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_Int(in, "version", &v->version);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_DeleteRequest(struct DeleteRequest*v){
+    deallocate_String(&v->path);
+}
+int serialize_GetChildrenRequest(struct oarchive *out, const char *tag, struct GetChildrenRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_Bool(out, "watch", &v->watch);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_GetChildrenRequest(struct iarchive *in, const char *tag, struct GetChildrenRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_Bool(in, "watch", &v->watch);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_GetChildrenRequest(struct GetChildrenRequest*v){
+    deallocate_String(&v->path);
+}
+int serialize_GetDataIfChangedRequest(struct oarchive *out, const char *tag, struct GetDataIfChangedRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_Bool(out, "watch", &v->watch);
+    rc = rc ? : out->serialize_Long(out, "mzxid", &v->mzxid);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_GetDataIfChangedRequest(struct iarchive *in, const char *tag, struct GetDataIfChangedRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_Bool(in, "watch", &v->watch);
+    rc = rc ? : in->deserialize_Long(in, "mzxid", &v->mzxid);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_GetDataIfChangedRequest(struct GetDataIfChangedRequest*v){
+    deallocate_String(&v->path);
+}
+int serialize_AwaitZxidRequest(struct oarchive *out, const char *tag, struct AwaitZxidRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_Long(out, "zxid", &v->zxid);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_AwaitZxidRequest(struct iarchive *in, const char *tag, struct AwaitZxidRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_Long(in, "zxid", &v->zxid);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_AwaitZxidRequest(struct AwaitZxidRequest*v){
+}
+int serialize_GetChildrenPageRequest(struct oarchive *out, const char *tag, struct GetChildrenPageRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_Bool(out, "watch", &v->watch);
+    rc = rc ? : out->serialize_String(out, "startAfter", &v->startAfter);
+    rc = rc ? : out->serialize_Int(out, "limit", &v->limit);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_GetChildrenPageRequest(struct iarchive *in, const char *tag, struct GetChildrenPageRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_Bool(in, "watch", &v->watch);
+    rc = rc ? : in->deserialize_String(in, "startAfter", &v->startAfter);
+    rc = rc ? : in->deserialize_Int(in, "limit", &v->limit);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_GetChildrenPageRequest(struct GetChildrenPageRequest*v){
+    deallocate_String(&v->path);
+    deallocate_String(&v->startAfter);
+}
+int serialize_GetPredecessorRequest(struct oarchive *out, const char *tag, struct GetPredecessorRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_String(out, "name", &v->name);
+    rc = rc ? : out->serialize_Bool(out, "watch", &v->watch);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_GetPredecessorRequest(struct iarchive *in, const char *tag, struct GetPredecessorRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_String(in, "name", &v->name);
+    rc = rc ? : in->deserialize_Bool(in, "watch", &v->watch);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_GetPredecessorRequest(struct GetPredecessorRequest*v){
+    deallocate_String(&v->path);
+    deallocate_String(&v->name);
+}
+int serialize_IncrementRequest(struct oarchive *out, const char *tag, struct IncrementRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->serialize_Long(out, "delta", &v->delta);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_IncrementRequest(struct iarchive *in, const char *tag, struct IncrementRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->deserialize_Long(in, "delta", &v->delta);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_IncrementRequest(struct IncrementRequest*v){
+    deallocate_String(&v->path);
+}
+int serialize_DeleteTreeRequest(struct oarchive *out, const char *tag, struct DeleteTreeRequest *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "path", &v->path);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_DeleteTreeRequest(struct iarchive *in, const char *tag, struct DeleteTreeRequest*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "path", &v->path);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_DeleteTreeRequest(struct DeleteTreeRequest*v){
+    deallocate_String(&v->path);
+}
+int allocate_NewNode_vector(struct NewNode_vector *v, int32_t len) {
     if (!len) {
         v->count = 0;
         v->data = 0;
@@ -405,103 +740,100 @@ int allocate_ACL_vector(struct ACL_vector *v, int32_t len) {
     }
     return 0;
 }
-int deallocate_ACL_vector(struct ACL_vector *v) {
+int deallocate_NewNode_vector(struct NewNode_vector *v) {
     if (v->data) {
         int32_t i;
         for(i=0;i<v->count; i++) {
-            deallocate_ACL(&v->data[i]);
+            deallocate_NewNode(&v->data[i]);
         }
         free(v->data);
         v->data = 0;
     }
     return 0;
 }
-int serialize_ACL_vector(struct oarchive *out, const char *tag, struct ACL_vector *v)
+int serialize_NewNode_vector(struct oarchive *out, const char *tag, struct NewNode_vector *v)
 {
     int32_t count = v->count;
     int rc = 0;
     int32_t i;
     rc = out->start_vector(out, tag, &count);
     for(i=0;i<v->count;i++) {
-    rc = rc ? : serialize_ACL(out, "data", &v->data[i]);
+    rc = rc ? : serialize_NewNode(out, "data", &v->data[i]);
     }
     rc = rc ? : out->end_vector(out, tag);
     return rc;
 }
-int deserialize_ACL_vector(struct iarchive *in, const char *tag, struct ACL_vector *v)
+int deserialize_NewNode_vector(struct iarchive *in, const char *tag, struct NewNode_vector *v)
 {
     int rc = 0;
     int32_t i;
     rc = in->start_vector(in, tag, &v->count);
     v->data = calloc(v->count, sizeof(*v->data));
     for(i=0;i<v->count;i++) {
-    rc = rc ? : deserialize_ACL(in, "value", &v->data[i]);
+    rc = rc ? : deserialize_NewNode(in, "value", &v->data[i]);
     }
     rc = in->end_vector(in, tag);
     return rc;
 }
-int serialize_CreateRequest(struct oarchive *out, const char *tag, struct CreateRequest *v){
+int serialize_CreateTreeRequest(struct oarchive *out, const char *tag, struct CreateTreeRequest *v){
     int rc;
     rc = out->start_record(out, tag);
-    rc = rc ? : out->serialize_String(out, "path", &v->path);
-    rc = rc ? : out->serialize_Buffer(out, "data", &v->data);
-    rc = rc ? : serialize_ACL_vector(out, "acl", &v->acl);
-    rc = rc ? : out->serialize_Int(out, "flags", &v->flags);
+    rc = rc ? : serialize_NewNode_vector(out, "nodes", &v->nodes);
     rc = rc ? : out->end_record(out, tag);
     return rc;
 }
-int deserialize_CreateRequest(struct iarchive *in, const char *tag, struct CreateRequest*v){
+int deserialize_CreateTreeRequest(struct iarchive *in, const char *tag, struct CreateTreeRequest*v){
     int rc;
     rc = in->start_record(in, tag);
-    rc = rc ? : in->deserialize_String(in, "path", &v->path);
-    rc = rc ? : in->deserialize_Buffer(in, "data", &v->data);
-    rc = rc ? : deserialize_ACL_vector(in, "acl", &v->acl);
-    rc = rc ? : in->deserialize_Int(in, "flags", &v->flags);
+    rc = rc ? : deserialize_NewNode_vector(in, "nodes", &v->nodes);
     rc = rc ? : in->end_record(in, tag);
     return rc;
 }
-void deallocate_CreateRequest(struct CreateRequest*v){
-    deallocate_String(&v->path);
-    deallocate_Buffer(&v->data);
-    deallocate_ACL_vector(&v->acl);
+void deallocate_CreateTreeRequest(struct CreateTreeRequest*v){
+    deallocate_NewNode_vector(&v->nodes);
 }
-int serialize_DeleteRequest(struct oarchive *out, const char *tag, struct DeleteRequest *v){
+int serialize_RecursiveWatchRequest(struct oarchive *out, const char *tag, struct RecursiveWatchRequest *v){
     int rc;
     rc = out->start_record(out, tag);
     rc = rc ? : out->serialize_String(out, "path", &v->path);
-    rc = rc ? : out->serialize_Int(out, "version", &v->version);
     rc = rc ? : out->end_record(out, tag);
     return rc;
 }
-int deserialize_DeleteRequest(struct iarchive *in, const char *tag, struct DeleteRequest*v){
+int deserialize_RecursiveWatchRequest(struct iarchive *in, const char *tag, struct RecursiveWatchRequest*v){
     int rc;
     rc = in->start_record(in, tag);
     rc = rc ? : in->deserialize_String(in, "path", &v->path);
-    rc = rc ? : in->deserialize_Int(in, "version", &v->version);
     rc = rc ? : in->end_record(in, tag);
     return rc;
 }
-void deallocate_DeleteRequest(struct DeleteRequest*v){
+void deallocate_RecursiveWatchRequest(struct RecursiveWatchRequest*v){
     deallocate_String(&v->path);
 }
-int serialize_GetChildrenRequest(struct oarchive *out, const char *tag, struct GetChildrenRequest *v){
+int serialize_GetChildrenDataRequest(struct oarchive *out, const char *tag, struct GetChildrenDataRequest *v){
     int rc;
     rc = out->start_record(out, tag);
     rc = rc ? : out->serialize_String(out, "path", &v->path);
     rc = rc ? : out->serialize_Bool(out, "watch", &v->watch);
+    rc = rc ? : out->serialize_Bool(out, "withData", &v->withData);
+    rc = rc ? : out->serialize_String(out, "startAfter", &v->startAfter);
+    rc = rc ? : out->serialize_Int(out, "maxBytes", &v->maxBytes);
     rc = rc ? : out->end_record(out, tag);
     return rc;
 }
-int deserialize_GetChildrenRequest(struct iarchive *in, const char *tag, struct GetChildrenRequest*v){
+int deserialize_GetChildrenDataRequest(struct iarchive *in, const char *tag, struct GetChildrenDataRequest*v){
     int rc;
     rc = in->start_record(in, tag);
     rc = rc ? : in->deserialize_String(in, "path", &v->path);
     rc = rc ? : in->deserialize_Bool(in, "watch", &v->watch);
+    rc = rc ? : in->deserialize_Bool(in, "withData", &v->withData);
+    rc = rc ? : in->deserialize_String(in, "startAfter", &v->startAfter);
+    rc = rc ? : in->deserialize_Int(in, "maxBytes", &v->maxBytes);
     rc = rc ? : in->end_record(in, tag);
     return rc;
 }
-void deallocate_GetChildrenRequest(struct GetChildrenRequest*v){
+void deallocate_GetChildrenDataRequest(struct GetChildrenDataRequest*v){
     deallocate_String(&v->path);
+    deallocate_String(&v->startAfter);
 }
 int serialize_GetMaxChildrenRequest(struct oarchive *out, const char *tag, struct GetMaxChildrenRequest *v){
     int rc;
@@ -666,6 +998,42 @@ int deserialize_WatcherEvent(struct iarchive *in, const char *tag, struct Watche
 void deallocate_WatcherEvent(struct WatcherEvent*v){
     deallocate_String(&v->path);
 }
+int serialize_WatcherEventData(struct oarchive *out, const char *tag, struct WatcherEventData *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : serialize_Stat(out, "stat", &v->stat);
+    rc = rc ? : out->serialize_Buffer(out, "data", &v->data);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_WatcherEventData(struct iarchive *in, const char *tag, struct WatcherEventData*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : deserialize_Stat(in, "stat", &v->stat);
+    rc = rc ? : in->deserialize_Buffer(in, "data", &v->data);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_WatcherEventData(struct WatcherEventData*v){
+    deallocate_Stat(&v->stat);
+    deallocate_Buffer(&v->data);
+}
+int serialize_SetNotificationData(struct oarchive *out, const char *tag, struct SetNotificationData *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_Int(out, "maxDataBytes", &v->maxDataBytes);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_SetNotificationData(struct iarchive *in, const char *tag, struct SetNotificationData*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_Int(in, "maxDataBytes", &v->maxDataBytes);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_SetNotificationData(struct SetNotificationData*v){
+}
 int serialize_CreateResponse(struct oarchive *out, const char *tag, struct CreateResponse *v){
     int rc;
     rc = out->start_record(out, tag);
@@ -756,6 +1124,142 @@ int deserialize_GetChildrenResponse(struct iarchive *in, const char *tag, struct
 void deallocate_GetChildrenResponse(struct GetChildrenResponse*v){
     deallocate_String_vector(&v->children);
 }
+int allocate_ChildData_vector(struct ChildData_vector *v, int32_t len) {
+    if (!len) {
+        v->count = 0;
+        v->data = 0;
+    } else {
+        v->count = len;
+        v->data = calloc(sizeof(*v->data), len);
+    }
+    return 0;
+}
+int deallocate_ChildData_vector(struct ChildData_vector *v) {
+    if (v->data) {
+        int32_t i;
+        for(i=0;i<v->count; i++) {
+            deallocate_ChildData(&v->data[i]);
+        }
+        free(v->data);
+        v->data = 0;
+    }
+    return 0;
+}
+int serialize_ChildData_vector(struct oarchive *out, const char *tag, struct ChildData_vector *v)
+{
+    int32_t count = v->count;
+    int rc = 0;
+    int32_t i;
+    rc = out->start_vector(out, tag, &count);
+    for(i=0;i<v->count;i++) {
+    rc = rc ? : serialize_ChildData(out, "data", &v->data[i]);
+    }
+    rc = rc ? : out->end_vector(out, tag);
+    return rc;
+}
+int deserialize_ChildData_vector(struct iarchive *in, const char *tag, struct ChildData_vector *v)
+{
+    int rc = 0;
+    int32_t i;
+    rc = in->start_vector(in, tag, &v->count);
+    v->data = calloc(v->count, sizeof(*v->data));
+    for(i=0;i<v->count;i++) {
+    rc = rc ? : deserialize_ChildData(in, "value", &v->data[i]);
+    }
+    rc = in->end_vector(in, tag);
+    return rc;
+}
+int serialize_GetChildrenDataResponse(struct oarchive *out, const char *tag, struct GetChildrenDataResponse *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : serialize_ChildData_vector(out, "children", &v->children);
+    rc = rc ? : out->serialize_String(out, "next", &v->next);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_GetChildrenDataResponse(struct iarchive *in, const char *tag, struct GetChildrenDataResponse*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : deserialize_ChildData_vector(in, "children", &v->children);
+    rc = rc ? : in->deserialize_String(in, "next", &v->next);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_GetChildrenDataResponse(struct GetChildrenDataResponse*v){
+    deallocate_ChildData_vector(&v->children);
+    deallocate_String(&v->next);
+}
+int serialize_GetPredecessorResponse(struct oarchive *out, const char *tag, struct GetPredecessorResponse *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_String(out, "name", &v->name);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_GetPredecessorResponse(struct iarchive *in, const char *tag, struct GetPredecessorResponse*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_String(in, "name", &v->name);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_GetPredecessorResponse(struct GetPredecessorResponse*v){
+    deallocate_String(&v->name);
+}
+int serialize_IncrementResponse(struct oarchive *out, const char *tag, struct IncrementResponse *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_Long(out, "value", &v->value);
+    rc = rc ? : serialize_Stat(out, "stat", &v->stat);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_IncrementResponse(struct iarchive *in, const char *tag, struct IncrementResponse*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_Long(in, "value", &v->value);
+    rc = rc ? : deserialize_Stat(in, "stat", &v->stat);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_IncrementResponse(struct IncrementResponse*v){
+    deallocate_Stat(&v->stat);
+}
+int serialize_DeleteTreeResponse(struct oarchive *out, const char *tag, struct DeleteTreeResponse *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_Int(out, "deleted", &v->deleted);
+    rc = rc ? : out->serialize_Int(out, "remaining", &v->remaining);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_DeleteTreeResponse(struct iarchive *in, const char *tag, struct DeleteTreeResponse*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_Int(in, "deleted", &v->deleted);
+    rc = rc ? : in->deserialize_Int(in, "remaining", &v->remaining);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_DeleteTreeResponse(struct DeleteTreeResponse*v){
+}
+int serialize_CreateTreeResponse(struct oarchive *out, const char *tag, struct CreateTreeResponse *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : serialize_String_vector(out, "paths", &v->paths);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_CreateTreeResponse(struct iarchive *in, const char *tag, struct CreateTreeResponse*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : deserialize_String_vector(in, "paths", &v->paths);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_CreateTreeResponse(struct CreateTreeResponse*v){
+    deallocate_String_vector(&v->paths);
+}
 int serialize_GetACLResponse(struct oarchive *out, const char *tag, struct GetACLResponse *v){
     int rc;
     rc = out->start_record(out, tag);
@@ -1026,3 +1530,101 @@ int deserialize_ErrorTxn(struct iarchive *in, const char *tag, struct ErrorTxn*v
 }
 void deallocate_ErrorTxn(struct ErrorTxn*v){
 }
+int serialize_CloseSessionsTxn(struct oarchive *out, const char *tag, struct CloseSessionsTxn *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : out->serialize_Buffer(out, "sessions", &v->sessions);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_CloseSessionsTxn(struct iarchive *in, const char *tag, struct CloseSessionsTxn*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : in->deserialize_Buffer(in, "sessions", &v->sessions);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_CloseSessionsTxn(struct CloseSessionsTxn*v){
+    deallocate_Buffer(&v->sessions);
+}
+int serialize_DeleteTreeTxn(struct oarchive *out, const char *tag, struct DeleteTreeTxn *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : serialize_String_vector(out, "paths", &v->paths);
+    rc = rc ? : out->serialize_Int(out, "remaining", &v->remaining);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_DeleteTreeTxn(struct iarchive *in, const char *tag, struct DeleteTreeTxn*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : deserialize_String_vector(in, "paths", &v->paths);
+    rc = rc ? : in->deserialize_Int(in, "remaining", &v->remaining);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_DeleteTreeTxn(struct DeleteTreeTxn*v){
+    deallocate_String_vector(&v->paths);
+}
+int allocate_CreateTxn_vector(struct CreateTxn_vector *v, int32_t len) {
+    if (!len) {
+        v->count = 0;
+        v->data = 0;
+    } else {
+        v->count = len;
+        v->data = calloc(sizeof(*v->data), len);
+    }
+    return 0;
+}
+int deallocate_CreateTxn_vector(struct CreateTxn_vector *v) {
+    if (v->data) {
+        int32_t i;
+        for(i=0;i<v->count; i++) {
+            deallocate_CreateTxn(&v->data[i]);
+        }
+        free(v->data);
+        v->data = 0;
+    }
+    return 0;
+}
+int serialize_CreateTxn_vector(struct oarchive *out, const char *tag, struct CreateTxn_vector *v)
+{
+    int32_t count = v->count;
+    int rc = 0;
+    int32_t i;
+    rc = out->start_vector(out, tag, &count);
+    for(i=0;i<v->count;i++) {
+    rc = rc ? : serialize_CreateTxn(out, "data", &v->data[i]);
+    }
+    rc = rc ? : out->end_vector(out, tag);
+    return rc;
+}
+int deserialize_CreateTxn_vector(struct iarchive *in, const char *tag, struct CreateTxn_vector *v)
+{
+    int rc = 0;
+    int32_t i;
+    rc = in->start_vector(in, tag, &v->count);
+    v->data = calloc(v->count, sizeof(*v->data));
+    for(i=0;i<v->count;i++) {
+    rc = rc ? : deserialize_CreateTxn(in, "value", &v->data[i]);
+    }
+    rc = in->end_vector(in, tag);
+    return rc;
+}
+int serialize_CreateTreeTxn(struct oarchive *out, const char *tag, struct CreateTreeTxn *v){
+    int rc;
+    rc = out->start_record(out, tag);
+    rc = rc ? : serialize_CreateTxn_vector(out, "creates", &v->creates);
+    rc = rc ? : out->end_record(out, tag);
+    return rc;
+}
+int deserialize_CreateTreeTxn(struct iarchive *in, const char *tag, struct CreateTreeTxn*v){
+    int rc;
+    rc = in->start_record(in, tag);
+    rc = rc ? : deserialize_CreateTxn_vector(in, "creates", &v->creates);
+    rc = rc ? : in->end_record(in, tag);
+    return rc;
+}
+void deallocate_CreateTreeTxn(struct CreateTreeTxn*v){
+    deallocate_CreateTxn_vector(&v->creates);
+}
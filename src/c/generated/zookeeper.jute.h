@@ -36,6 +36,32 @@ struct Stat {
 int serialize_Stat(struct oarchive *out, const char *tag, struct Stat *v);
 int deserialize_Stat(struct iarchive *in, const char *tag, struct Stat*v);
 void deallocate_Stat(struct Stat*);
+struct ChildData {
+    char * name;
+    struct Stat stat;
+    struct buffer data;
+};
+int serialize_ChildData(struct oarchive *out, const char *tag, struct ChildData *v);
+int deserialize_ChildData(struct iarchive *in, const char *tag, struct ChildData*v);
+void deallocate_ChildData(struct ChildData*);
+struct ACL_vector {
+    int32_t count;
+    struct ACL *data;
+;
+};
+int serialize_ACL_vector(struct oarchive *out, const char *tag, struct ACL_vector *v);
+int deserialize_ACL_vector(struct iarchive *in, const char *tag, struct ACL_vector *v);
+int allocate_ACL_vector(struct ACL_vector *v, int32_t len);
+int deallocate_ACL_vector(struct ACL_vector *v);
+struct NewNode {
+    char * path;
+    struct buffer data;
+    struct ACL_vector acl;
+    int32_t flags;
+};
+int serialize_NewNode(struct oarchive *out, const char *tag, struct NewNode *v);
+int deserialize_NewNode(struct iarchive *in, const char *tag, struct NewNode*v);
+void deallocate_NewNode(struct NewNode*);
 struct StatPersisted {
     int64_t czxid;
     int64_t mzxid;
@@ -90,6 +116,13 @@ struct ConnectResponse {
 int serialize_ConnectResponse(struct oarchive *out, const char *tag, struct ConnectResponse *v);
 int deserialize_ConnectResponse(struct iarchive *in, const char *tag, struct ConnectResponse*v);
 void deallocate_ConnectResponse(struct ConnectResponse*);
+struct ServerLoad {
+    int32_t outstandingRequests;
+    int32_t connections;
+};
+int serialize_ServerLoad(struct oarchive *out, const char *tag, struct ServerLoad *v);
+int deserialize_ServerLoad(struct iarchive *in, const char *tag, struct ServerLoad*v);
+void deallocate_ServerLoad(struct ServerLoad*);
 struct String_vector {
     int32_t count;
     char * *data;
@@ -108,6 +141,21 @@ struct SetWatches {
 int serialize_SetWatches(struct oarchive *out, const char *tag, struct SetWatches *v);
 int deserialize_SetWatches(struct iarchive *in, const char *tag, struct SetWatches*v);
 void deallocate_SetWatches(struct SetWatches*);
+struct SetWatchesCompact {
+    int64_t relativeZxid;
+    struct buffer dataWatches;
+    struct buffer existWatches;
+    struct buffer childWatches;
+};
+int serialize_SetWatchesCompact(struct oarchive *out, const char *tag, struct SetWatchesCompact *v);
+int deserialize_SetWatchesCompact(struct iarchive *in, const char *tag, struct SetWatchesCompact*v);
+void deallocate_SetWatchesCompact(struct SetWatchesCompact*);
+struct SetRecursiveWatches {
+    struct String_vector paths;
+};
+int serialize_SetRecursiveWatches(struct oarchive *out, const char *tag, struct SetRecursiveWatches *v);
+int deserialize_SetRecursiveWatches(struct iarchive *in, const char *tag, struct SetRecursiveWatches*v);
+void deallocate_SetRecursiveWatches(struct SetRecursiveWatches*);
 struct RequestHeader {
     int32_t xid;
     int32_t type;
@@ -152,15 +200,6 @@ struct SetDataResponse {
 int serialize_SetDataResponse(struct oarchive *out, const char *tag, struct SetDataResponse *v);
 int deserialize_SetDataResponse(struct iarchive *in, const char *tag, struct SetDataResponse*v);
 void deallocate_SetDataResponse(struct SetDataResponse*);
-struct ACL_vector {
-    int32_t count;
-    struct ACL *data;
-;
-};
-int serialize_ACL_vector(struct oarchive *out, const char *tag, struct ACL_vector *v);
-int deserialize_ACL_vector(struct iarchive *in, const char *tag, struct ACL_vector *v);
-int allocate_ACL_vector(struct ACL_vector *v, int32_t len);
-int deallocate_ACL_vector(struct ACL_vector *v);
 struct CreateRequest {
     char * path;
     struct buffer data;
@@ -184,6 +223,81 @@ struct GetChildrenRequest {
 int serialize_GetChildrenRequest(struct oarchive *out, const char *tag, struct GetChildrenRequest *v);
 int deserialize_GetChildrenRequest(struct iarchive *in, const char *tag, struct GetChildrenRequest*v);
 void deallocate_GetChildrenRequest(struct GetChildrenRequest*);
+struct GetDataIfChangedRequest {
+    char * path;
+    int32_t watch;
+    int64_t mzxid;
+};
+int serialize_GetDataIfChangedRequest(struct oarchive *out, const char *tag, struct GetDataIfChangedRequest *v);
+int deserialize_GetDataIfChangedRequest(struct iarchive *in, const char *tag, struct GetDataIfChangedRequest*v);
+void deallocate_GetDataIfChangedRequest(struct GetDataIfChangedRequest*);
+struct AwaitZxidRequest {
+    int64_t zxid;
+};
+int serialize_AwaitZxidRequest(struct oarchive *out, const char *tag, struct AwaitZxidRequest *v);
+int deserialize_AwaitZxidRequest(struct iarchive *in, const char *tag, struct AwaitZxidRequest*v);
+void deallocate_AwaitZxidRequest(struct AwaitZxidRequest*);
+struct GetChildrenPageRequest {
+    char * path;
+    int32_t watch;
+    char * startAfter;
+    int32_t limit;
+};
+int serialize_GetChildrenPageRequest(struct oarchive *out, const char *tag, struct GetChildrenPageRequest *v);
+int deserialize_GetChildrenPageRequest(struct iarchive *in, const char *tag, struct GetChildrenPageRequest*v);
+void deallocate_GetChildrenPageRequest(struct GetChildrenPageRequest*);
+struct GetPredecessorRequest {
+    char * path;
+    char * name;
+    int32_t watch;
+};
+int serialize_GetPredecessorRequest(struct oarchive *out, const char *tag, struct GetPredecessorRequest *v);
+int deserialize_GetPredecessorRequest(struct iarchive *in, const char *tag, struct GetPredecessorRequest*v);
+void deallocate_GetPredecessorRequest(struct GetPredecessorRequest*);
+struct IncrementRequest {
+    char * path;
+    int64_t delta;
+};
+int serialize_IncrementRequest(struct oarchive *out, const char *tag, struct IncrementRequest *v);
+int deserialize_IncrementRequest(struct iarchive *in, const char *tag, struct IncrementRequest*v);
+void deallocate_IncrementRequest(struct IncrementRequest*);
+struct DeleteTreeRequest {
+    char * path;
+};
+int serialize_DeleteTreeRequest(struct oarchive *out, const char *tag, struct DeleteTreeRequest *v);
+int deserialize_DeleteTreeRequest(struct iarchive *in, const char *tag, struct DeleteTreeRequest*v);
+void deallocate_DeleteTreeRequest(struct DeleteTreeRequest*);
+struct NewNode_vector {
+    int32_t count;
+    struct NewNode *data;
+;
+};
+int serialize_NewNode_vector(struct oarchive *out, const char *tag, struct NewNode_vector *v);
+int deserialize_NewNode_vector(struct iarchive *in, const char *tag, struct NewNode_vector *v);
+int allocate_NewNode_vector(struct NewNode_vector *v, int32_t len);
+int deallocate_NewNode_vector(struct NewNode_vector *v);
+struct CreateTreeRequest {
+    struct NewNode_vector nodes;
+};
+int serialize_CreateTreeRequest(struct oarchive *out, const char *tag, struct CreateTreeRequest *v);
+int deserialize_CreateTreeRequest(struct iarchive *in, const char *tag, struct CreateTreeRequest*v);
+void deallocate_CreateTreeRequest(struct CreateTreeRequest*);
+struct RecursiveWatchRequest {
+    char * path;
+};
+int serialize_RecursiveWatchRequest(struct oarchive *out, const char *tag, struct RecursiveWatchRequest *v);
+int deserialize_RecursiveWatchRequest(struct iarchive *in, const char *tag, struct RecursiveWatchRequest*v);
+void deallocate_RecursiveWatchRequest(struct RecursiveWatchRequest*);
+struct GetChildrenDataRequest {
+    char * path;
+    int32_t watch;
+    int32_t withData;
+    char * startAfter;
+    int32_t maxBytes;
+};
+int serialize_GetChildrenDataRequest(struct oarchive *out, const char *tag, struct GetChildrenDataRequest *v);
+int deserialize_GetChildrenDataRequest(struct iarchive *in, const char *tag, struct GetChildrenDataRequest*v);
+void deallocate_GetChildrenDataRequest(struct GetChildrenDataRequest*);
 struct GetMaxChildrenRequest {
     char * path;
 };
@@ -243,6 +357,19 @@ struct WatcherEvent {
 int serialize_WatcherEvent(struct oarchive *out, const char *tag, struct WatcherEvent *v);
 int deserialize_WatcherEvent(struct iarchive *in, const char *tag, struct WatcherEvent*v);
 void deallocate_WatcherEvent(struct WatcherEvent*);
+struct WatcherEventData {
+    struct Stat stat;
+    struct buffer data;
+};
+int serialize_WatcherEventData(struct oarchive *out, const char *tag, struct WatcherEventData *v);
+int deserialize_WatcherEventData(struct iarchive *in, const char *tag, struct WatcherEventData*v);
+void deallocate_WatcherEventData(struct WatcherEventData*);
+struct SetNotificationData {
+    int32_t maxDataBytes;
+};
+int serialize_SetNotificationData(struct oarchive *out, const char *tag, struct SetNotificationData *v);
+int deserialize_SetNotificationData(struct iarchive *in, const char *tag, struct SetNotificationData*v);
+void deallocate_SetNotificationData(struct SetNotificationData*);
 struct CreateResponse {
     char * path;
 };
@@ -275,6 +402,48 @@ struct GetChildrenResponse {
 int serialize_GetChildrenResponse(struct oarchive *out, const char *tag, struct GetChildrenResponse *v);
 int deserialize_GetChildrenResponse(struct iarchive *in, const char *tag, struct GetChildrenResponse*v);
 void deallocate_GetChildrenResponse(struct GetChildrenResponse*);
+struct ChildData_vector {
+    int32_t count;
+    struct ChildData *data;
+;
+};
+int serialize_ChildData_vector(struct oarchive *out, const char *tag, struct ChildData_vector *v);
+int deserialize_ChildData_vector(struct iarchive *in, const char *tag, struct ChildData_vector *v);
+int allocate_ChildData_vector(struct ChildData_vector *v, int32_t len);
+int deallocate_ChildData_vector(struct ChildData_vector *v);
+struct GetChildrenDataResponse {
+    struct ChildData_vector children;
+    char * next;
+};
+int serialize_GetChildrenDataResponse(struct oarchive *out, const char *tag, struct GetChildrenDataResponse *v);
+int deserialize_GetChildrenDataResponse(struct iarchive *in, const char *tag, struct GetChildrenDataResponse*v);
+void deallocate_GetChildrenDataResponse(struct GetChildrenDataResponse*);
+struct GetPredecessorResponse {
+    char * name;
+};
+int serialize_GetPredecessorResponse(struct oarchive *out, const char *tag, struct GetPredecessorResponse *v);
+int deserialize_GetPredecessorResponse(struct iarchive *in, const char *tag, struct GetPredecessorResponse*v);
+void deallocate_GetPredecessorResponse(struct GetPredecessorResponse*);
+struct IncrementResponse {
+    int64_t value;
+    struct Stat stat;
+};
+int serialize_IncrementResponse(struct oarchive *out, const char *tag, struct IncrementResponse *v);
+int deserialize_IncrementResponse(struct iarchive *in, const char *tag, struct IncrementResponse*v);
+void deallocate_IncrementResponse(struct IncrementResponse*);
+struct DeleteTreeResponse {
+    int32_t deleted;
+    int32_t remaining;
+};
+int serialize_DeleteTreeResponse(struct oarchive *out, const char *tag, struct DeleteTreeResponse *v);
+int deserialize_DeleteTreeResponse(struct iarchive *in, const char *tag, struct DeleteTreeResponse*v);
+void deallocate_DeleteTreeResponse(struct DeleteTreeResponse*);
+struct CreateTreeResponse {
+    struct String_vector paths;
+};
+int serialize_CreateTreeResponse(struct oarchive *out, const char *tag, struct CreateTreeResponse *v);
+int deserialize_CreateTreeResponse(struct iarchive *in, const char *tag, struct CreateTreeResponse*v);
+void deallocate_CreateTreeResponse(struct CreateTreeResponse*);
 struct GetACLResponse {
     struct ACL_vector acl;
     struct Stat stat;
@@ -368,6 +537,34 @@ struct ErrorTxn {
 int serialize_ErrorTxn(struct oarchive *out, const char *tag, struct ErrorTxn *v);
 int deserialize_ErrorTxn(struct iarchive *in, const char *tag, struct ErrorTxn*v);
 void deallocate_ErrorTxn(struct ErrorTxn*);
+struct CloseSessionsTxn {
+    struct buffer sessions;
+};
+int serialize_CloseSessionsTxn(struct oarchive *out, const char *tag, struct CloseSessionsTxn *v);
+int deserialize_CloseSessionsTxn(struct iarchive *in, const char *tag, struct CloseSessionsTxn*v);
+void deallocate_CloseSessionsTxn(struct CloseSessionsTxn*);
+struct DeleteTreeTxn {
+    struct String_vector paths;
+    int32_t remaining;
+};
+int serialize_DeleteTreeTxn(struct oarchive *out, const char *tag, struct DeleteTreeTxn *v);
+int deserialize_DeleteTreeTxn(struct iarchive *in, const char *tag, struct DeleteTreeTxn*v);
+void deallocate_DeleteTreeTxn(struct DeleteTreeTxn*);
+struct CreateTxn_vector {
+    int32_t count;
+    struct CreateTxn *data;
+;
+};
+int serialize_CreateTxn_vector(struct oarchive *out, const char *tag, struct CreateTxn_vector *v);
+int deserialize_CreateTxn_vector(struct iarchive *in, const char *tag, struct CreateTxn_vector *v);
+int allocate_CreateTxn_vector(struct CreateTxn_vector *v, int32_t len);
+int deallocate_CreateTxn_vector(struct CreateTxn_vector *v);
+struct CreateTreeTxn {
+    struct CreateTxn_vector creates;
+};
+int serialize_CreateTreeTxn(struct oarchive *out, const char *tag, struct CreateTreeTxn *v);
+int deserialize_CreateTreeTxn(struct iarchive *in, const char *tag, struct CreateTreeTxn*v);
+void deallocate_CreateTreeTxn(struct CreateTreeTxn*);
 
 #ifdef __cplusplus
 }
@@ -0,0 +1,113 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class CreateTreeRequest implements Record {
+  private java.util.List<org.apache.zookeeper.data.NewNode> nodes;
+  public CreateTreeRequest() {
+  }
+  public CreateTreeRequest(
+        java.util.List<org.apache.zookeeper.data.NewNode> nodes) {
+    this.nodes=nodes;
+  }
+  public java.util.List<org.apache.zookeeper.data.NewNode> getNodes() {
+    return nodes;
+  }
+  public void setNodes(java.util.List<org.apache.zookeeper.data.NewNode> m_) {
+    nodes=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    {
+      a_.startVector(nodes,"nodes");
+      if (nodes!= null) {          int len1 = nodes.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            org.apache.zookeeper.data.NewNode e1 = (org.apache.zookeeper.data.NewNode) nodes.get(vidx1);
+    a_.writeRecord(e1,"e1");
+          }
+      }
+      a_.endVector(nodes,"nodes");
+    }
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    {
+      Index vidx1 = a_.startVector("nodes");
+      if (vidx1!= null) {          nodes=new java.util.ArrayList<org.apache.zookeeper.data.NewNode>();
+          for (; !vidx1.done(); vidx1.incr()) {
+    org.apache.zookeeper.data.NewNode e1;
+    e1= new org.apache.zookeeper.data.NewNode();
+    a_.readRecord(e1,"e1");
+            nodes.add(e1);
+          }
+      }
+    a_.endVector("nodes");
+    }
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    {
+      a_.startVector(nodes,"nodes");
+      if (nodes!= null) {          int len1 = nodes.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            org.apache.zookeeper.data.NewNode e1 = (org.apache.zookeeper.data.NewNode) nodes.get(vidx1);
+    a_.writeRecord(e1,"e1");
+          }
+      }
+      a_.endVector(nodes,"nodes");
+    }
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof CreateTreeRequest)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    CreateTreeRequest peer = (CreateTreeRequest) peer_;
+    int ret = 0;
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof CreateTreeRequest)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    CreateTreeRequest peer = (CreateTreeRequest) peer_;
+    boolean ret = false;
+    ret = nodes.equals(peer.nodes);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = nodes.hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LCreateTreeRequest([LNewNode(sB[LACL(iLId(ss))]i)])";
+  }
+}
@@ -0,0 +1,103 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class DeleteTreeResponse implements Record {
+  private int deleted;
+  private int remaining;
+  public DeleteTreeResponse() {
+  }
+  public DeleteTreeResponse(
+        int deleted,
+        int remaining) {
+    this.deleted=deleted;
+    this.remaining=remaining;
+  }
+  public int getDeleted() {
+    return deleted;
+  }
+  public void setDeleted(int m_) {
+    deleted=m_;
+  }
+  public int getRemaining() {
+    return remaining;
+  }
+  public void setRemaining(int m_) {
+    remaining=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeInt(deleted,"deleted");
+    a_.writeInt(remaining,"remaining");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    deleted=a_.readInt("deleted");
+    remaining=a_.readInt("remaining");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeInt(deleted,"deleted");
+    a_.writeInt(remaining,"remaining");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof DeleteTreeResponse)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    DeleteTreeResponse peer = (DeleteTreeResponse) peer_;
+    int ret = 0;
+    ret = (deleted == peer.deleted)? 0 :((deleted<peer.deleted)?-1:1);
+    if (ret != 0) return ret;
+    ret = (remaining == peer.remaining)? 0 :((remaining<peer.remaining)?-1:1);
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof DeleteTreeResponse)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    DeleteTreeResponse peer = (DeleteTreeResponse) peer_;
+    boolean ret = false;
+    ret = (deleted==peer.deleted);
+    if (!ret) return ret;
+    ret = (remaining==peer.remaining);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = (int)deleted;
+    result = 37*result + ret;
+    ret = (int)remaining;
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LDeleteTreeResponse(ii)";
+  }
+}
@@ -0,0 +1,157 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class GetChildrenDataRequest implements Record {
+  private String path;
+  private boolean watch;
+  private boolean withData;
+  private String startAfter;
+  private int maxBytes;
+  public GetChildrenDataRequest() {
+  }
+  public GetChildrenDataRequest(
+        String path,
+        boolean watch,
+        boolean withData,
+        String startAfter,
+        int maxBytes) {
+    this.path=path;
+    this.watch=watch;
+    this.withData=withData;
+    this.startAfter=startAfter;
+    this.maxBytes=maxBytes;
+  }
+  public String getPath() {
+    return path;
+  }
+  public void setPath(String m_) {
+    path=m_;
+  }
+  public boolean getWatch() {
+    return watch;
+  }
+  public void setWatch(boolean m_) {
+    watch=m_;
+  }
+  public boolean getWithData() {
+    return withData;
+  }
+  public void setWithData(boolean m_) {
+    withData=m_;
+  }
+  public String getStartAfter() {
+    return startAfter;
+  }
+  public void setStartAfter(String m_) {
+    startAfter=m_;
+  }
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+  public void setMaxBytes(int m_) {
+    maxBytes=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeString(path,"path");
+    a_.writeBool(watch,"watch");
+    a_.writeBool(withData,"withData");
+    a_.writeString(startAfter,"startAfter");
+    a_.writeInt(maxBytes,"maxBytes");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    path=a_.readString("path");
+    watch=a_.readBool("watch");
+    withData=a_.readBool("withData");
+    startAfter=a_.readString("startAfter");
+    maxBytes=a_.readInt("maxBytes");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeString(path,"path");
+    a_.writeBool(watch,"watch");
+    a_.writeBool(withData,"withData");
+    a_.writeString(startAfter,"startAfter");
+    a_.writeInt(maxBytes,"maxBytes");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof GetChildrenDataRequest)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    GetChildrenDataRequest peer = (GetChildrenDataRequest) peer_;
+    int ret = 0;
+    ret = path.compareTo(peer.path);
+    if (ret != 0) return ret;
+    ret = (watch == peer.watch)? 0 : (watch?1:-1);
+    if (ret != 0) return ret;
+    ret = (withData == peer.withData)? 0 : (withData?1:-1);
+    if (ret != 0) return ret;
+    ret = startAfter.compareTo(peer.startAfter);
+    if (ret != 0) return ret;
+    ret = (maxBytes == peer.maxBytes)? 0 :((maxBytes<peer.maxBytes)?-1:1);
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof GetChildrenDataRequest)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    GetChildrenDataRequest peer = (GetChildrenDataRequest) peer_;
+    boolean ret = false;
+    ret = path.equals(peer.path);
+    if (!ret) return ret;
+    ret = (watch==peer.watch);
+    if (!ret) return ret;
+    ret = (withData==peer.withData);
+    if (!ret) return ret;
+    ret = startAfter.equals(peer.startAfter);
+    if (!ret) return ret;
+    ret = (maxBytes==peer.maxBytes);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = path.hashCode();
+    result = 37*result + ret;
+     ret = (watch)?0:1;
+    result = 37*result + ret;
+     ret = (withData)?0:1;
+    result = 37*result + ret;
+    ret = startAfter.hashCode();
+    result = 37*result + ret;
+    ret = (int)maxBytes;
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LGetChildrenDataRequest(szzsi)";
+  }
+}
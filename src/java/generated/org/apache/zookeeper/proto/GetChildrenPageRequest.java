@@ -0,0 +1,139 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class GetChildrenPageRequest implements Record {
+  private String path;
+  private boolean watch;
+  private String startAfter;
+  private int limit;
+  public GetChildrenPageRequest() {
+  }
+  public GetChildrenPageRequest(
+        String path,
+        boolean watch,
+        String startAfter,
+        int limit) {
+    this.path=path;
+    this.watch=watch;
+    this.startAfter=startAfter;
+    this.limit=limit;
+  }
+  public String getPath() {
+    return path;
+  }
+  public void setPath(String m_) {
+    path=m_;
+  }
+  public boolean getWatch() {
+    return watch;
+  }
+  public void setWatch(boolean m_) {
+    watch=m_;
+  }
+  public String getStartAfter() {
+    return startAfter;
+  }
+  public void setStartAfter(String m_) {
+    startAfter=m_;
+  }
+  public int getLimit() {
+    return limit;
+  }
+  public void setLimit(int m_) {
+    limit=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeString(path,"path");
+    a_.writeBool(watch,"watch");
+    a_.writeString(startAfter,"startAfter");
+    a_.writeInt(limit,"limit");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    path=a_.readString("path");
+    watch=a_.readBool("watch");
+    startAfter=a_.readString("startAfter");
+    limit=a_.readInt("limit");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeString(path,"path");
+    a_.writeBool(watch,"watch");
+    a_.writeString(startAfter,"startAfter");
+    a_.writeInt(limit,"limit");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof GetChildrenPageRequest)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    GetChildrenPageRequest peer = (GetChildrenPageRequest) peer_;
+    int ret = 0;
+    ret = path.compareTo(peer.path);
+    if (ret != 0) return ret;
+    ret = (watch == peer.watch)? 0 : (watch?1:-1);
+    if (ret != 0) return ret;
+    ret = startAfter.compareTo(peer.startAfter);
+    if (ret != 0) return ret;
+    ret = (limit == peer.limit)? 0 :((limit<peer.limit)?-1:1);
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof GetChildrenPageRequest)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    GetChildrenPageRequest peer = (GetChildrenPageRequest) peer_;
+    boolean ret = false;
+    ret = path.equals(peer.path);
+    if (!ret) return ret;
+    ret = (watch==peer.watch);
+    if (!ret) return ret;
+    ret = startAfter.equals(peer.startAfter);
+    if (!ret) return ret;
+    ret = (limit==peer.limit);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = path.hashCode();
+    result = 37*result + ret;
+     ret = (watch)?0:1;
+    result = 37*result + ret;
+    ret = startAfter.hashCode();
+    result = 37*result + ret;
+    ret = (int)limit;
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LGetChildrenPageRequest(szsi)";
+  }
+}
@@ -0,0 +1,85 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class GetPredecessorResponse implements Record {
+  private String name;
+  public GetPredecessorResponse() {
+  }
+  public GetPredecessorResponse(
+        String name) {
+    this.name=name;
+  }
+  public String getName() {
+    return name;
+  }
+  public void setName(String m_) {
+    name=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeString(name,"name");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    name=a_.readString("name");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeString(name,"name");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof GetPredecessorResponse)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    GetPredecessorResponse peer = (GetPredecessorResponse) peer_;
+    int ret = 0;
+    ret = name.compareTo(peer.name);
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof GetPredecessorResponse)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    GetPredecessorResponse peer = (GetPredecessorResponse) peer_;
+    boolean ret = false;
+    ret = name.equals(peer.name);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = name.hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LGetPredecessorResponse(s)";
+  }
+}
@@ -0,0 +1,103 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class ServerLoad implements Record {
+  private int outstandingRequests;
+  private int connections;
+  public ServerLoad() {
+  }
+  public ServerLoad(
+        int outstandingRequests,
+        int connections) {
+    this.outstandingRequests=outstandingRequests;
+    this.connections=connections;
+  }
+  public int getOutstandingRequests() {
+    return outstandingRequests;
+  }
+  public void setOutstandingRequests(int m_) {
+    outstandingRequests=m_;
+  }
+  public int getConnections() {
+    return connections;
+  }
+  public void setConnections(int m_) {
+    connections=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeInt(outstandingRequests,"outstandingRequests");
+    a_.writeInt(connections,"connections");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    outstandingRequests=a_.readInt("outstandingRequests");
+    connections=a_.readInt("connections");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeInt(outstandingRequests,"outstandingRequests");
+    a_.writeInt(connections,"connections");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof ServerLoad)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    ServerLoad peer = (ServerLoad) peer_;
+    int ret = 0;
+    ret = (outstandingRequests == peer.outstandingRequests)? 0 :((outstandingRequests<peer.outstandingRequests)?-1:1);
+    if (ret != 0) return ret;
+    ret = (connections == peer.connections)? 0 :((connections<peer.connections)?-1:1);
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof ServerLoad)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    ServerLoad peer = (ServerLoad) peer_;
+    boolean ret = false;
+    ret = (outstandingRequests==peer.outstandingRequests);
+    if (!ret) return ret;
+    ret = (connections==peer.connections);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = (int)outstandingRequests;
+    result = 37*result + ret;
+    ret = (int)connections;
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LServerLoad(ii)";
+  }
+}
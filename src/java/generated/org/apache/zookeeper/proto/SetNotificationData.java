@@ -0,0 +1,85 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class SetNotificationData implements Record {
+  private int maxDataBytes;
+  public SetNotificationData() {
+  }
+  public SetNotificationData(
+        int maxDataBytes) {
+    this.maxDataBytes=maxDataBytes;
+  }
+  public int getMaxDataBytes() {
+    return maxDataBytes;
+  }
+  public void setMaxDataBytes(int m_) {
+    maxDataBytes=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeInt(maxDataBytes,"maxDataBytes");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    maxDataBytes=a_.readInt("maxDataBytes");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeInt(maxDataBytes,"maxDataBytes");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof SetNotificationData)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    SetNotificationData peer = (SetNotificationData) peer_;
+    int ret = 0;
+    ret = (maxDataBytes == peer.maxDataBytes)? 0 :((maxDataBytes<peer.maxDataBytes)?-1:1);
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof SetNotificationData)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    SetNotificationData peer = (SetNotificationData) peer_;
+    boolean ret = false;
+    ret = (maxDataBytes==peer.maxDataBytes);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = (int)maxDataBytes;
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LSetNotificationData(i)";
+  }
+}
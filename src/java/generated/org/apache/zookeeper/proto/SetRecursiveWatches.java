@@ -0,0 +1,112 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class SetRecursiveWatches implements Record {
+  private java.util.List<String> paths;
+  public SetRecursiveWatches() {
+  }
+  public SetRecursiveWatches(
+        java.util.List<String> paths) {
+    this.paths=paths;
+  }
+  public java.util.List<String> getPaths() {
+    return paths;
+  }
+  public void setPaths(java.util.List<String> m_) {
+    paths=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    {
+      a_.startVector(paths,"paths");
+      if (paths!= null) {          int len1 = paths.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            String e1 = (String) paths.get(vidx1);
+        a_.writeString(e1,"e1");
+          }
+      }
+      a_.endVector(paths,"paths");
+    }
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    {
+      Index vidx1 = a_.startVector("paths");
+      if (vidx1!= null) {          paths=new java.util.ArrayList<String>();
+          for (; !vidx1.done(); vidx1.incr()) {
+    String e1;
+        e1=a_.readString("e1");
+            paths.add(e1);
+          }
+      }
+    a_.endVector("paths");
+    }
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    {
+      a_.startVector(paths,"paths");
+      if (paths!= null) {          int len1 = paths.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            String e1 = (String) paths.get(vidx1);
+        a_.writeString(e1,"e1");
+          }
+      }
+      a_.endVector(paths,"paths");
+    }
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof SetRecursiveWatches)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    SetRecursiveWatches peer = (SetRecursiveWatches) peer_;
+    int ret = 0;
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof SetRecursiveWatches)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    SetRecursiveWatches peer = (SetRecursiveWatches) peer_;
+    boolean ret = false;
+    ret = paths.equals(peer.paths);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = paths.hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LSetRecursiveWatches([s])";
+  }
+}
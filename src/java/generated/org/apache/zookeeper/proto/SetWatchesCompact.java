@@ -0,0 +1,151 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.proto;
+
+import org.apache.jute.*;
+public class SetWatchesCompact implements Record {
+  private long relativeZxid;
+  private byte[] dataWatches;
+  private byte[] existWatches;
+  private byte[] childWatches;
+  public SetWatchesCompact() {
+  }
+  public SetWatchesCompact(
+        long relativeZxid,
+        byte[] dataWatches,
+        byte[] existWatches,
+        byte[] childWatches) {
+    this.relativeZxid=relativeZxid;
+    this.dataWatches=dataWatches;
+    this.existWatches=existWatches;
+    this.childWatches=childWatches;
+  }
+  public long getRelativeZxid() {
+    return relativeZxid;
+  }
+  public void setRelativeZxid(long m_) {
+    relativeZxid=m_;
+  }
+  public byte[] getDataWatches() {
+    return dataWatches;
+  }
+  public void setDataWatches(byte[] m_) {
+    dataWatches=m_;
+  }
+  public byte[] getExistWatches() {
+    return existWatches;
+  }
+  public void setExistWatches(byte[] m_) {
+    existWatches=m_;
+  }
+  public byte[] getChildWatches() {
+    return childWatches;
+  }
+  public void setChildWatches(byte[] m_) {
+    childWatches=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeLong(relativeZxid,"relativeZxid");
+    a_.writeBuffer(dataWatches,"dataWatches");
+    a_.writeBuffer(existWatches,"existWatches");
+    a_.writeBuffer(childWatches,"childWatches");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    relativeZxid=a_.readLong("relativeZxid");
+    dataWatches=a_.readBuffer("dataWatches");
+    existWatches=a_.readBuffer("existWatches");
+    childWatches=a_.readBuffer("childWatches");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeLong(relativeZxid,"relativeZxid");
+    a_.writeBuffer(dataWatches,"dataWatches");
+    a_.writeBuffer(existWatches,"existWatches");
+    a_.writeBuffer(childWatches,"childWatches");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof SetWatchesCompact)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    SetWatchesCompact peer = (SetWatchesCompact) peer_;
+    int ret = 0;
+    ret = (relativeZxid == peer.relativeZxid)? 0 :((relativeZxid<peer.relativeZxid)?-1:1);
+    if (ret != 0) return ret;
+    {
+      byte[] my = dataWatches;
+      byte[] ur = peer.dataWatches;
+      ret = org.apache.jute.Utils.compareBytes(my,0,my.length,ur,0,ur.length);
+    }
+    if (ret != 0) return ret;
+    {
+      byte[] my = existWatches;
+      byte[] ur = peer.existWatches;
+      ret = org.apache.jute.Utils.compareBytes(my,0,my.length,ur,0,ur.length);
+    }
+    if (ret != 0) return ret;
+    {
+      byte[] my = childWatches;
+      byte[] ur = peer.childWatches;
+      ret = org.apache.jute.Utils.compareBytes(my,0,my.length,ur,0,ur.length);
+    }
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof SetWatchesCompact)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    SetWatchesCompact peer = (SetWatchesCompact) peer_;
+    boolean ret = false;
+    ret = (relativeZxid==peer.relativeZxid);
+    if (!ret) return ret;
+    ret = org.apache.jute.Utils.bufEquals(dataWatches,peer.dataWatches);
+    if (!ret) return ret;
+    ret = org.apache.jute.Utils.bufEquals(existWatches,peer.existWatches);
+    if (!ret) return ret;
+    ret = org.apache.jute.Utils.bufEquals(childWatches,peer.childWatches);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = (int) (relativeZxid^(relativeZxid>>>32));
+    result = 37*result + ret;
+    ret = dataWatches.toString().hashCode();
+    result = 37*result + ret;
+    ret = existWatches.toString().hashCode();
+    result = 37*result + ret;
+    ret = childWatches.toString().hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LSetWatchesCompact(lBBB)";
+  }
+}
@@ -0,0 +1,89 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.txn;
+
+import org.apache.jute.*;
+public class CloseSessionsTxn implements Record {
+  private byte[] sessions;
+  public CloseSessionsTxn() {
+  }
+  public CloseSessionsTxn(
+        byte[] sessions) {
+    this.sessions=sessions;
+  }
+  public byte[] getSessions() {
+    return sessions;
+  }
+  public void setSessions(byte[] m_) {
+    sessions=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    a_.writeBuffer(sessions,"sessions");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    sessions=a_.readBuffer("sessions");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    a_.writeBuffer(sessions,"sessions");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof CloseSessionsTxn)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    CloseSessionsTxn peer = (CloseSessionsTxn) peer_;
+    int ret = 0;
+    {
+      byte[] my = sessions;
+      byte[] ur = peer.sessions;
+      ret = org.apache.jute.Utils.compareBytes(my,0,my.length,ur,0,ur.length);
+    }
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof CloseSessionsTxn)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    CloseSessionsTxn peer = (CloseSessionsTxn) peer_;
+    boolean ret = false;
+    ret = org.apache.jute.Utils.bufEquals(sessions,peer.sessions);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = sessions.toString().hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LCloseSessionsTxn(B)";
+  }
+}
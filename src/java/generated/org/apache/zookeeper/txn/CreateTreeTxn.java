@@ -0,0 +1,113 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.txn;
+
+import org.apache.jute.*;
+public class CreateTreeTxn implements Record {
+  private java.util.List<org.apache.zookeeper.txn.CreateTxn> creates;
+  public CreateTreeTxn() {
+  }
+  public CreateTreeTxn(
+        java.util.List<org.apache.zookeeper.txn.CreateTxn> creates) {
+    this.creates=creates;
+  }
+  public java.util.List<org.apache.zookeeper.txn.CreateTxn> getCreates() {
+    return creates;
+  }
+  public void setCreates(java.util.List<org.apache.zookeeper.txn.CreateTxn> m_) {
+    creates=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    {
+      a_.startVector(creates,"creates");
+      if (creates!= null) {          int len1 = creates.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            org.apache.zookeeper.txn.CreateTxn e1 = (org.apache.zookeeper.txn.CreateTxn) creates.get(vidx1);
+    a_.writeRecord(e1,"e1");
+          }
+      }
+      a_.endVector(creates,"creates");
+    }
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    {
+      Index vidx1 = a_.startVector("creates");
+      if (vidx1!= null) {          creates=new java.util.ArrayList<org.apache.zookeeper.txn.CreateTxn>();
+          for (; !vidx1.done(); vidx1.incr()) {
+    org.apache.zookeeper.txn.CreateTxn e1;
+    e1= new org.apache.zookeeper.txn.CreateTxn();
+    a_.readRecord(e1,"e1");
+            creates.add(e1);
+          }
+      }
+    a_.endVector("creates");
+    }
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    {
+      a_.startVector(creates,"creates");
+      if (creates!= null) {          int len1 = creates.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            org.apache.zookeeper.txn.CreateTxn e1 = (org.apache.zookeeper.txn.CreateTxn) creates.get(vidx1);
+    a_.writeRecord(e1,"e1");
+          }
+      }
+      a_.endVector(creates,"creates");
+    }
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof CreateTreeTxn)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    CreateTreeTxn peer = (CreateTreeTxn) peer_;
+    int ret = 0;
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof CreateTreeTxn)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    CreateTreeTxn peer = (CreateTreeTxn) peer_;
+    boolean ret = false;
+    ret = creates.equals(peer.creates);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = creates.hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LCreateTreeTxn([LCreateTxn(sB[LACL(iLId(ss))]z)])";
+  }
+}
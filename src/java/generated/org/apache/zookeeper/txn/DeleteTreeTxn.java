@@ -0,0 +1,130 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.zookeeper.txn;
+
+import org.apache.jute.*;
+public class DeleteTreeTxn implements Record {
+  private java.util.List<String> paths;
+  private int remaining;
+  public DeleteTreeTxn() {
+  }
+  public DeleteTreeTxn(
+        java.util.List<String> paths,
+        int remaining) {
+    this.paths=paths;
+    this.remaining=remaining;
+  }
+  public java.util.List<String> getPaths() {
+    return paths;
+  }
+  public void setPaths(java.util.List<String> m_) {
+    paths=m_;
+  }
+  public int getRemaining() {
+    return remaining;
+  }
+  public void setRemaining(int m_) {
+    remaining=m_;
+  }
+  public void serialize(OutputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(this,tag);
+    {
+      a_.startVector(paths,"paths");
+      if (paths!= null) {          int len1 = paths.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            String e1 = (String) paths.get(vidx1);
+        a_.writeString(e1,"e1");
+          }
+      }
+      a_.endVector(paths,"paths");
+    }
+    a_.writeInt(remaining,"remaining");
+    a_.endRecord(this,tag);
+  }
+  public void deserialize(InputArchive a_, String tag) throws java.io.IOException {
+    a_.startRecord(tag);
+    {
+      Index vidx1 = a_.startVector("paths");
+      if (vidx1!= null) {          paths=new java.util.ArrayList<String>();
+          for (; !vidx1.done(); vidx1.incr()) {
+    String e1;
+        e1=a_.readString("e1");
+            paths.add(e1);
+          }
+      }
+    a_.endVector("paths");
+    }
+    remaining=a_.readInt("remaining");
+    a_.endRecord(tag);
+}
+  public String toString() {
+    try {
+      java.io.ByteArrayOutputStream s =
+        new java.io.ByteArrayOutputStream();
+      CsvOutputArchive a_ = 
+        new CsvOutputArchive(s);
+      a_.startRecord(this,"");
+    {
+      a_.startVector(paths,"paths");
+      if (paths!= null) {          int len1 = paths.size();
+          for(int vidx1 = 0; vidx1<len1; vidx1++) {
+            String e1 = (String) paths.get(vidx1);
+        a_.writeString(e1,"e1");
+          }
+      }
+      a_.endVector(paths,"paths");
+    }
+    a_.writeInt(remaining,"remaining");
+      a_.endRecord(this,"");
+      return new String(s.toByteArray(), "UTF-8");
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    }
+    return "ERROR";
+  }
+  public void write(java.io.DataOutput out) throws java.io.IOException {
+    BinaryOutputArchive archive = new BinaryOutputArchive(out);
+    serialize(archive, "");
+  }
+  public void readFields(java.io.DataInput in) throws java.io.IOException {
+    BinaryInputArchive archive = new BinaryInputArchive(in);
+    deserialize(archive, "");
+  }
+  public int compareTo (Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof DeleteTreeTxn)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    DeleteTreeTxn peer = (DeleteTreeTxn) peer_;
+    int ret = 0;
+    if (ret != 0) return ret;
+    ret = (remaining == peer.remaining)? 0 :((remaining<peer.remaining)?-1:1);
+    if (ret != 0) return ret;
+     return ret;
+  }
+  public boolean equals(Object peer_) {
+    if (!(peer_ instanceof DeleteTreeTxn)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    DeleteTreeTxn peer = (DeleteTreeTxn) peer_;
+    boolean ret = false;
+    ret = paths.equals(peer.paths);
+    if (!ret) return ret;
+    ret = (remaining==peer.remaining);
+    if (!ret) return ret;
+     return ret;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = paths.hashCode();
+    result = 37*result + ret;
+    ret = (int)remaining;
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LDeleteTreeTxn([s]i)";
+  }
+}
@@ -70,6 +70,25 @@ public class BinaryOutputArchive implements OutputArchive {
         out.writeDouble(d);
     }
     
+    /**
+     * @return the number of bytes of the utf8 sequence writeString writes
+     * for the string
+     */
+    public static int utf8Length(CharSequence s) {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                len++;
+            } else if (c < 0x800) {
+                len += 2;
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
     /**
      * create our own char encoder to utf8. This is faster 
      * then string.getbytes(UTF8).
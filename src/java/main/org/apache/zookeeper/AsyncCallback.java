@@ -20,6 +20,7 @@ package org.apache.zookeeper;
 import java.util.List;
 
 import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.ChildData;
 import org.apache.zookeeper.data.Stat;
 
 public interface AsyncCallback {
@@ -42,6 +43,25 @@ public interface AsyncCallback {
                 List<String> children);
     }
 
+    interface ChildrenDataCallback extends AsyncCallback {
+        /**
+         * @param next
+         *                the name to pass as startAfter to get the following
+         *                children, null if there are no more children
+         */
+        public void processResult(int rc, String path, Object ctx,
+                List<ChildData> children, String next);
+    }
+
+    interface CounterCallback extends AsyncCallback {
+        /**
+         * @param value
+         *                the value of the counter after the increment
+         */
+        public void processResult(int rc, String path, Object ctx,
+                long value, Stat stat);
+    }
+
     interface StringCallback extends AsyncCallback {
         public void processResult(int rc, String path, Object ctx, String name);
     }
@@ -49,4 +69,21 @@ public interface AsyncCallback {
     interface VoidCallback extends AsyncCallback {
         public void processResult(int rc, String path, Object ctx);
     }
+
+    /**
+     * Told how far deleteTree and createTree got after each of their
+     * requests.
+     */
+    interface ProgressCallback extends AsyncCallback {
+        /**
+         * @param path
+         *                the path of the tree deleted, or the last path
+         *                created
+         * @param done
+         *                the number of nodes deleted or created so far
+         * @param remaining
+         *                the number of nodes left
+         */
+        public void processProgress(String path, int done, int remaining);
+    }
 }
@@ -0,0 +1,281 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.zookeeper.AsyncCallback.ACLCallback;
+import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
+import org.apache.zookeeper.AsyncCallback.StringCallback;
+import org.apache.zookeeper.AsyncCallback.VoidCallback;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * A view of a ZooKeeper handle whose operations return a
+ * {@link ZooKeeperFuture} instead of taking a callback. Requests are
+ * pipelined on the connection of the handle exactly like the callback
+ * versions; issuing many requests and collecting the futures afterwards is
+ * the cheapest way to fan out.
+ * <p>
+ * Listeners of the returned futures run on the executor given here, not on
+ * the event thread of the handle. Any number of views may share a handle.
+ */
+public class AsyncZooKeeper {
+    private final ZooKeeper zk;
+
+    private final Executor executor;
+
+    public AsyncZooKeeper(ZooKeeper zk, Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.zk = zk;
+        this.executor = executor;
+    }
+
+    public ZooKeeper getZooKeeper() {
+        return zk;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @see ZooKeeper#create(String, byte[], List, CreateMode)
+     */
+    public ZooKeeperFuture<String> create(String path, byte data[],
+            List<ACL> acl, CreateMode createMode) {
+        ZooKeeperFuture<String> f = new ZooKeeperFuture<String>(path, executor);
+        zk.create(path, data, acl, createMode, STRING_CB, f);
+        return f;
+    }
+
+    /**
+     * @see ZooKeeper#delete(String, int)
+     */
+    public ZooKeeperFuture<Void> delete(String path, int version) {
+        ZooKeeperFuture<Void> f = new ZooKeeperFuture<Void>(path, executor);
+        zk.delete(path, version, VOID_CB, f);
+        return f;
+    }
+
+    /**
+     * The future completes with null if the node does not exist.
+     *
+     * @see ZooKeeper#exists(String, Watcher)
+     */
+    public ZooKeeperFuture<Stat> exists(String path, Watcher watcher) {
+        ZooKeeperFuture<Stat> f = new ZooKeeperFuture<Stat>(path, executor);
+        zk.exists(path, watcher, EXISTS_CB, f);
+        return f;
+    }
+
+    /**
+     * The future completes with null if the node does not exist.
+     *
+     * @see ZooKeeper#exists(String, boolean)
+     */
+    public ZooKeeperFuture<Stat> exists(String path, boolean watch) {
+        ZooKeeperFuture<Stat> f = new ZooKeeperFuture<Stat>(path, executor);
+        zk.exists(path, watch, EXISTS_CB, f);
+        return f;
+    }
+
+    /**
+     * The stat of the node is available from {@link ZooKeeperFuture#getStat()}.
+     *
+     * @see ZooKeeper#getData(String, Watcher, Stat)
+     */
+    public ZooKeeperFuture<byte[]> getData(String path, Watcher watcher) {
+        ZooKeeperFuture<byte[]> f = new ZooKeeperFuture<byte[]>(path, executor);
+        zk.getData(path, watcher, DATA_CB, f);
+        return f;
+    }
+
+    /**
+     * The stat of the node is available from {@link ZooKeeperFuture#getStat()}.
+     *
+     * @see ZooKeeper#getData(String, boolean, Stat)
+     */
+    public ZooKeeperFuture<byte[]> getData(String path, boolean watch) {
+        ZooKeeperFuture<byte[]> f = new ZooKeeperFuture<byte[]>(path, executor);
+        zk.getData(path, watch, DATA_CB, f);
+        return f;
+    }
+
+    /**
+     * @see ZooKeeper#setData(String, byte[], int)
+     */
+    public ZooKeeperFuture<Stat> setData(String path, byte data[], int version) {
+        ZooKeeperFuture<Stat> f = new ZooKeeperFuture<Stat>(path, executor);
+        zk.setData(path, data, version, STAT_CB, f);
+        return f;
+    }
+
+    /**
+     * The stat of the node is available from {@link ZooKeeperFuture#getStat()}.
+     *
+     * @see ZooKeeper#getACL(String, Stat)
+     */
+    public ZooKeeperFuture<List<ACL>> getACL(String path) {
+        ZooKeeperFuture<List<ACL>> f =
+            new ZooKeeperFuture<List<ACL>>(path, executor);
+        zk.getACL(path, null, ACL_CB, f);
+        return f;
+    }
+
+    /**
+     * @see ZooKeeper#setACL(String, List, int)
+     */
+    public ZooKeeperFuture<Stat> setACL(String path, List<ACL> acl,
+            int version) {
+        ZooKeeperFuture<Stat> f = new ZooKeeperFuture<Stat>(path, executor);
+        zk.setACL(path, acl, version, STAT_CB, f);
+        return f;
+    }
+
+    /**
+     * @see ZooKeeper#getChildren(String, Watcher)
+     */
+    public ZooKeeperFuture<List<String>> getChildren(String path,
+            Watcher watcher) {
+        ZooKeeperFuture<List<String>> f =
+            new ZooKeeperFuture<List<String>>(path, executor);
+        zk.getChildren(path, watcher, CHILDREN_CB, f);
+        return f;
+    }
+
+    /**
+     * @see ZooKeeper#getChildren(String, boolean)
+     */
+    public ZooKeeperFuture<List<String>> getChildren(String path,
+            boolean watch) {
+        ZooKeeperFuture<List<String>> f =
+            new ZooKeeperFuture<List<String>>(path, executor);
+        zk.getChildren(path, watch, CHILDREN_CB, f);
+        return f;
+    }
+
+    /**
+     * @see ZooKeeper#sync(String, VoidCallback, Object)
+     */
+    public ZooKeeperFuture<Void> sync(String path) {
+        ZooKeeperFuture<Void> f = new ZooKeeperFuture<Void>(path, executor);
+        zk.sync(path, VOID_CB, f);
+        return f;
+    }
+
+    /*
+     * The callbacks are stateless, the future travels as the context of the
+     * request. They run on the event thread and only complete the future.
+     */
+
+    @SuppressWarnings("unchecked")
+    private static <T> ZooKeeperFuture<T> future(Object ctx) {
+        return (ZooKeeperFuture<T>) ctx;
+    }
+
+    private static final StringCallback STRING_CB = new StringCallback() {
+        public void processResult(int rc, String path, Object ctx,
+                String name) {
+            ZooKeeperFuture<String> f = future(ctx);
+            if (rc == 0) {
+                f.set(name, null);
+            } else {
+                f.setException(KeeperException.create(rc, path));
+            }
+        }
+    };
+
+    private static final VoidCallback VOID_CB = new VoidCallback() {
+        public void processResult(int rc, String path, Object ctx) {
+            ZooKeeperFuture<Void> f = future(ctx);
+            if (rc == 0) {
+                f.set(null, null);
+            } else {
+                f.setException(KeeperException.create(rc, path));
+            }
+        }
+    };
+
+    private static final StatCallback STAT_CB = new StatCallback() {
+        public void processResult(int rc, String path, Object ctx, Stat stat) {
+            ZooKeeperFuture<Stat> f = future(ctx);
+            if (rc == 0) {
+                f.set(stat, stat);
+            } else {
+                f.setException(KeeperException.create(rc, path));
+            }
+        }
+    };
+
+    private static final StatCallback EXISTS_CB = new StatCallback() {
+        public void processResult(int rc, String path, Object ctx, Stat stat) {
+            ZooKeeperFuture<Stat> f = future(ctx);
+            if (rc == 0) {
+                f.set(stat, stat);
+            } else if (rc == KeeperException.Code.NoNode) {
+                f.set(null, null);
+            } else {
+                f.setException(KeeperException.create(rc, path));
+            }
+        }
+    };
+
+    private static final DataCallback DATA_CB = new DataCallback() {
+        public void processResult(int rc, String path, Object ctx,
+                byte data[], Stat stat) {
+            ZooKeeperFuture<byte[]> f = future(ctx);
+            if (rc == 0) {
+                f.set(data, stat);
+            } else {
+                f.setException(KeeperException.create(rc, path));
+            }
+        }
+    };
+
+    private static final ACLCallback ACL_CB = new ACLCallback() {
+        public void processResult(int rc, String path, Object ctx,
+                List<ACL> acl, Stat stat) {
+            ZooKeeperFuture<List<ACL>> f = future(ctx);
+            if (rc == 0) {
+                f.set(acl, stat);
+            } else {
+                f.setException(KeeperException.create(rc, path));
+            }
+        }
+    };
+
+    private static final ChildrenCallback CHILDREN_CB = new ChildrenCallback() {
+        public void processResult(int rc, String path, Object ctx,
+                List<String> children) {
+            ZooKeeperFuture<List<String>> f = future(ctx);
+            if (rc == 0) {
+                f.set(children, null);
+            } else {
+                f.setException(KeeperException.create(rc, path));
+            }
+        }
+    };
+}
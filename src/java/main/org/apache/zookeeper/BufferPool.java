@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * A pool of direct buffers used to encode the packets of a client. Buffers
+ * are kept in power of two size classes from MIN_SIZE to MAX_POOLED_SIZE.
+ * Larger buffers are allocated on the heap and are not pooled.
+ */
+class BufferPool {
+    static final int MIN_SIZE = 256;
+
+    static final int MAX_POOLED_SIZE = 64 * 1024;
+
+    /**
+     * The maximum number of free buffers kept for each size class
+     */
+    static final int MAX_FREE = 128;
+
+    private final ArrayList<ArrayList<ByteBuffer>> free =
+        new ArrayList<ArrayList<ByteBuffer>>();
+
+    BufferPool() {
+        for (int size = MIN_SIZE; size <= MAX_POOLED_SIZE; size <<= 1) {
+            free.add(new ArrayList<ByteBuffer>());
+        }
+    }
+
+    private static int sizeClass(int capacity) {
+        int c = 0;
+        for (int size = MIN_SIZE; size < capacity; size <<= 1) {
+            c++;
+        }
+        return c;
+    }
+
+    /**
+     * @return a cleared buffer of at least the given capacity
+     */
+    synchronized ByteBuffer acquire(int capacity) {
+        if (capacity > MAX_POOLED_SIZE) {
+            return ByteBuffer.allocate(capacity);
+        }
+        int c = sizeClass(capacity);
+        ArrayList<ByteBuffer> buffers = free.get(c);
+        if (buffers.isEmpty()) {
+            return ByteBuffer.allocateDirect(MIN_SIZE << c);
+        }
+        ByteBuffer bb = buffers.remove(buffers.size() - 1);
+        bb.clear();
+        return bb;
+    }
+
+    /**
+     * Give back a buffer obtained from acquire. The buffer must not be used
+     * anymore by the caller.
+     */
+    synchronized void release(ByteBuffer bb) {
+        if (!bb.isDirect()) {
+            return;
+        }
+        ArrayList<ByteBuffer> buffers = free.get(sizeClass(bb.capacity()));
+        if (buffers.size() < MAX_FREE) {
+            buffers.add(bb);
+        }
+    }
+
+    /**
+     * An output stream writing into buffers of the pool. The buffer is
+     * replaced by a larger one when it fills up.
+     */
+    static class Output extends OutputStream {
+        private final BufferPool pool;
+
+        private ByteBuffer bb;
+
+        Output(BufferPool pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * Start writing into a new buffer.
+         */
+        void start() {
+            bb = pool.acquire(MIN_SIZE);
+        }
+
+        /**
+         * @return the buffer holding what was written since start, ready to
+         * be read
+         */
+        ByteBuffer finish() {
+            ByteBuffer written = bb;
+            bb = null;
+            written.flip();
+            return written;
+        }
+
+        private void ensureRemaining(int len) {
+            if (bb.remaining() >= len) {
+                return;
+            }
+            ByteBuffer larger = pool.acquire(Math.max(bb.capacity() * 2,
+                    bb.position() + len));
+            bb.flip();
+            larger.put(bb);
+            pool.release(bb);
+            bb = larger;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureRemaining(1);
+            bb.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureRemaining(len);
+            bb.put(b, off, len);
+        }
+    }
+}
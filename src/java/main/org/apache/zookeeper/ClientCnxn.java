@@ -30,9 +30,13 @@ import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jute.BinaryInputArchive;
 import org.apache.jute.BinaryOutputArchive;
@@ -40,6 +44,8 @@ import org.apache.jute.Record;
 import org.apache.log4j.Logger;
 import org.apache.zookeeper.AsyncCallback.ACLCallback;
 import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.ChildrenDataCallback;
+import org.apache.zookeeper.AsyncCallback.CounterCallback;
 import org.apache.zookeeper.AsyncCallback.DataCallback;
 import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
@@ -48,20 +54,29 @@ import org.apache.zookeeper.Watcher.Event;
 import org.apache.zookeeper.ZooDefs.OpCode;
 import org.apache.zookeeper.ZooKeeper.States;
 import org.apache.zookeeper.ZooKeeper.WatchRegistration;
+import org.apache.zookeeper.common.PathPrefixCodec;
 import org.apache.zookeeper.proto.AuthPacket;
 import org.apache.zookeeper.proto.ConnectRequest;
 import org.apache.zookeeper.proto.ConnectResponse;
 import org.apache.zookeeper.proto.CreateResponse;
 import org.apache.zookeeper.proto.ExistsResponse;
 import org.apache.zookeeper.proto.GetACLResponse;
+import org.apache.zookeeper.proto.GetChildrenDataResponse;
 import org.apache.zookeeper.proto.GetChildrenResponse;
 import org.apache.zookeeper.proto.GetDataResponse;
+import org.apache.zookeeper.proto.GetPredecessorResponse;
+import org.apache.zookeeper.proto.IncrementResponse;
 import org.apache.zookeeper.proto.ReplyHeader;
 import org.apache.zookeeper.proto.RequestHeader;
+import org.apache.zookeeper.proto.ServerLoad;
 import org.apache.zookeeper.proto.SetACLResponse;
 import org.apache.zookeeper.proto.SetDataResponse;
+import org.apache.zookeeper.proto.SetNotificationData;
+import org.apache.zookeeper.proto.SetRecursiveWatches;
 import org.apache.zookeeper.proto.SetWatches;
+import org.apache.zookeeper.proto.SetWatchesCompact;
 import org.apache.zookeeper.proto.WatcherEvent;
+import org.apache.zookeeper.proto.WatcherEventData;
 import org.apache.zookeeper.server.ByteBufferInputStream;
 import org.apache.zookeeper.server.ZooTrace;
 
@@ -73,6 +88,30 @@ import org.apache.zookeeper.server.ZooTrace;
  */
 public class ClientCnxn {
     private static final Logger LOG = Logger.getLogger(ClientCnxn.class);
+
+    /**
+     * The maximum number of bytes of queued packets written to the socket by
+     * a single gathering write. A larger packet is still written on its own.
+     */
+    static final int MAX_GATHER_BYTES = 64 * 1024;
+
+    /**
+     * The maximum number of queued packets written by a single gathering
+     * write.
+     */
+    static final int MAX_GATHER_PACKETS = 256;
+
+    /**
+     * Responses up to this size are read into a buffer reused for every
+     * response.
+     */
+    static final int RECEIVE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The size of the reused response buffer of a connection driven by a
+     * reactor, kept small since a reactor may drive thousands of them.
+     */
+    static final int REACTOR_RECEIVE_BUFFER_SIZE = 4 * 1024;
     
     /** This controls whether automatic watch resetting is enabled.
      * Clients automatically reset watches during session reconnect, this
@@ -87,8 +126,115 @@ public class ClientCnxn {
         LOG.info("zookeeper.disableAutoWatchReset is " + disableAutoWatchReset);
     }
 
+    /**
+     * Whether the watches are re-registered with the prefix compressed
+     * SetWatchesCompact request, set with the "zookeeper.compactSetWatches"
+     * system property. Only servers that know the request can be used.
+     */
+    private final boolean compactSetWatches =
+        Boolean.getBoolean("zookeeper.compactSetWatches");
+
+    private final int setWatchesChunkSize = getSetWatchesChunkSize();
+
+    /**
+     * The notifications carry the stat of the node, and its data up to this
+     * size; negative for plain notifications.
+     */
+    private volatile int notificationDataLimit = -1;
+
+    /**
+     * The number of threads delivering watch events and callbacks, set with
+     * the "zookeeper.eventThreads" system property. The default is a single
+     * thread, which delivers everything in order.
+     */
+    static int getEventThreadCount() {
+        String s = System.getProperty("zookeeper.eventThreads", "1");
+        try {
+            return Math.max(1, Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid zookeeper.eventThreads " + s);
+            return 1;
+        }
+    }
+
+    /**
+     * How often, in milliseconds, a connected client checks whether another
+     * server would serve it much better and moves to it, set with the
+     * "zookeeper.rebalanceInterval" system property. The default of 0 never
+     * moves a connected client.
+     */
+    static int getRebalanceInterval() {
+        String s = System.getProperty("zookeeper.rebalanceInterval", "0");
+        try {
+            return Math.max(0, Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid zookeeper.rebalanceInterval " + s);
+            return 0;
+        }
+    }
+
+    /**
+     * The most bytes of paths sent in a single SetWatches request when the
+     * watches are re-registered after a reconnect, set with the
+     * "zookeeper.setWatchesChunkSize" system property.
+     */
+    static int getSetWatchesChunkSize() {
+        String s = System.getProperty("zookeeper.setWatchesChunkSize",
+                "131072");
+        try {
+            return Math.max(1, Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid zookeeper.setWatchesChunkSize " + s);
+            return 128 * 1024;
+        }
+    }
+
+    /**
+     * Split the watches into SetWatches requests of at most maxBytes bytes
+     * of paths each, a path longer than that gets a request of its own.
+     */
+    static List<SetWatches> chunkSetWatches(long relativeZxid,
+            List<String> dataWatches, List<String> existWatches,
+            List<String> childWatches, int maxBytes) {
+        List<SetWatches> chunks = new ArrayList<SetWatches>();
+        SetWatches chunk = null;
+        int bytes = 0;
+        for (int kind = 0; kind < 3; kind++) {
+            List<String> paths = kind == 0 ? dataWatches
+                    : kind == 1 ? existWatches : childWatches;
+            for (String path : paths) {
+                // length prefix and UTF-8, as jute writes it
+                int len = 4 + BinaryOutputArchive.utf8Length(path);
+                if (chunk == null || (bytes > 0 && bytes + len > maxBytes)) {
+                    chunk = new SetWatches(relativeZxid,
+                            new ArrayList<String>(), new ArrayList<String>(),
+                            new ArrayList<String>());
+                    chunks.add(chunk);
+                    bytes = 0;
+                }
+                if (kind == 0) {
+                    chunk.getDataWatches().add(path);
+                } else if (kind == 1) {
+                    chunk.getExistWatches().add(path);
+                } else {
+                    chunk.getChildWatches().add(path);
+                }
+                bytes += len;
+            }
+        }
+        return chunks;
+    }
+
     private ArrayList<InetSocketAddress> serverAddrs = new ArrayList<InetSocketAddress>();
 
+    /**
+     * Picks the server to connect to. The servers close to the client are
+     * listed in the "zookeeper.localServers" system property.
+     */
+    private final ServerSelector serverSelector;
+
+    private final int rebalanceInterval;
+
     static class AuthData {
         AuthData(String scheme, byte data[]) {
             this.scheme = scheme;
@@ -112,7 +258,42 @@ public class ClientCnxn {
      */
     private LinkedList<Packet> outgoingQueue = new LinkedList<Packet>();
 
-    private int nextAddrToTry = 0;
+    /**
+     * The buffers of the outgoing packets, they are given back once the
+     * packet has been written.
+     */
+    final BufferPool bufferPool = new BufferPool();
+
+    /**
+     * Encodes the outgoing packets into buffers of the pool. Only used with
+     * the outgoingQueue lock held.
+     */
+    private final BufferPool.Output encoderOutput =
+        new BufferPool.Output(bufferPool);
+
+    private final BinaryOutputArchive encoder =
+        BinaryOutputArchive.getArchive(encoderOutput);
+
+    /**
+     * Guards the outstanding request slots and the queueing statistics.
+     */
+    private final Object slots = new Object();
+
+    private int maxOutstanding;
+
+    private boolean blockWhenFull;
+
+    private int outstanding;
+
+    private long throttledCount;
+
+    private long sentCount;
+
+    private long totalQueueDelay;
+
+    private long maxQueueDelay;
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
 
     private int connectTimeout;
 
@@ -130,9 +311,17 @@ public class ClientCnxn {
 
     final SendThread sendThread;
 
-    final EventThread eventThread;
+    final EventThread eventThreads[];
+
+    /**
+     * The reactor driving the connection, null if the connection has a send
+     * thread of its own.
+     */
+    private final ClientReactor reactor;
 
-    final Selector selector = Selector.open();
+    private final ClientReactor.SelectorThread selectorThread;
+
+    final Selector selector;
     
     /**
      * Set to true when close is called. Latches the connection such that we
@@ -157,9 +346,7 @@ public class ClientCnxn {
           .append("\n");
         sb.append("lastZxid: ").append(lastZxid).append("\n");
         sb.append("xid: ").append(xid).append("\n");
-        sb.append("nextAddrToTry: ").append(nextAddrToTry).append("\n");
-        sb.append("serverAddrs: ").append(serverAddrs.get(nextAddrToTry))
-                .append("\n");
+        sb.append("server: ").append(sendThread.server).append("\n");
         return sb.toString();
     }
 
@@ -187,33 +374,33 @@ public class ClientCnxn {
 
         WatchRegistration watchRegistration;
 
+        /** when the packet was queued for the event thread */
+        long queueTime;
+
+        /** when the caller submitted the request */
+        long submitTime;
+
+        /** whether the packet holds one of the outstanding request slots */
+        boolean limited;
+
+        /** decompresses the response in the event thread, null if none */
+        DataCompression compression;
+
+        /**
+         * @param bb
+         *                the encoded packet, with its length in front
+         */
         Packet(RequestHeader header, ReplyHeader replyHeader, Record record,
                 Record response, ByteBuffer bb,
                 WatchRegistration watchRegistration) {
+            if (bb == null) {
+                throw new IllegalArgumentException("Packet not encoded");
+            }
             this.header = header;
             this.replyHeader = replyHeader;
             this.request = record;
             this.response = response;
-            if (bb != null) {
-                this.bb = bb;
-            } else {
-                try {
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    BinaryOutputArchive boa = BinaryOutputArchive
-                            .getArchive(baos);
-                    boa.writeInt(-1, "len"); // We'll fill this in later
-                    header.serialize(boa, "header");
-                    if (record != null) {
-                        record.serialize(boa, "request");
-                    }
-                    baos.close();
-                    this.bb = ByteBuffer.wrap(baos.toByteArray());
-                    this.bb.putInt(this.bb.capacity() - 4);
-                    this.bb.rewind();
-                } catch (IOException e) {
-                    LOG.warn("Unexpected exception",e);
-                }
-            }
+            this.bb = bb;
             this.watchRegistration = watchRegistration;
         }
 
@@ -258,6 +445,27 @@ public class ClientCnxn {
     public ClientCnxn(String hosts, int sessionTimeout, ZooKeeper zooKeeper,
             ClientWatchManager watcher, long sessionId, byte[] sessionPasswd)
         throws IOException {
+        this(hosts, sessionTimeout, zooKeeper, watcher, sessionId,
+                sessionPasswd, null);
+    }
+
+    /**
+     * Creates a connection object. If a reactor is given, the connection is
+     * driven by one of its selector threads and the events are delivered by
+     * one of its event threads, otherwise the connection starts threads of
+     * its own.
+     */
+    public ClientCnxn(String hosts, int sessionTimeout, ZooKeeper zooKeeper,
+            ClientWatchManager watcher, long sessionId, byte[] sessionPasswd,
+            ClientReactor reactor) throws IOException {
+        this.reactor = reactor;
+        if (reactor == null) {
+            selectorThread = null;
+            selector = Selector.open();
+        } else {
+            selectorThread = reactor.nextSelectorThread();
+            selector = selectorThread.selector;
+        }
         this.zooKeeper = zooKeeper;
         this.watcher = watcher;
         this.sessionId = sessionId;
@@ -279,13 +487,28 @@ public class ClientCnxn {
         connectTimeout = sessionTimeout / hostsList.length;
         readTimeout = sessionTimeout * 2 / 3;
         Collections.shuffle(serverAddrs);
+        serverSelector = new ServerSelector(serverAddrs, System
+                .getProperty("zookeeper.localServers"), new Random(System
+                .nanoTime()));
+        rebalanceInterval = getRebalanceInterval();
         sendThread = new SendThread();
-        eventThread = new EventThread();
+        if (reactor != null) {
+            eventThreads = new EventThread[] { reactor.nextEventThread() };
+            selectorThread.add(sendThread);
+            return;
+        }
+        eventThreads = new EventThread[getEventThreadCount()];
+        String name = Thread.currentThread().getName() + "-EventThread";
+        for (int i = 0; i < eventThreads.length; i++) {
+            eventThreads[i] = new EventThread(i == 0 ? name : name + "-" + i);
+        }
         sendThread.start();
-        eventThread.start();
+        for (EventThread t : eventThreads) {
+            t.start();
+        }
     }
     
-    Object eventOfDeath = new Object();
+    static final Object eventOfDeath = new Object();
 
     final static UncaughtExceptionHandler uncaughtExceptionHandler = new UncaughtExceptionHandler() {
         public void uncaughtException(Thread t, Throwable e) {
@@ -296,39 +519,156 @@ public class ClientCnxn {
     private class WatcherSetEventPair {
         private final Set<Watcher> watchers;
         private final WatchedEvent event;
+        private long queueTime;
+        private DataCompression compression;
         
         public WatcherSetEventPair(Set<Watcher> watchers, WatchedEvent event) {
             this.watchers = watchers;
             this.event = event;
         }
     }
-    
-    class EventThread extends Thread {
+
+    /**
+     * A session state change queued on every event thread. The last thread
+     * to reach it delivers the event while the others wait, so the change is
+     * seen after everything queued before it and before anything queued
+     * after it.
+     */
+    private static class StateBarrier {
+        private final WatcherSetEventPair pair;
+        private final AtomicInteger remaining;
+        private final CountDownLatch delivered = new CountDownLatch(1);
+
+        StateBarrier(WatcherSetEventPair pair, int threads) {
+            this.pair = pair;
+            this.remaining = new AtomicInteger(threads);
+        }
+    }
+
+    /**
+     * Hands watch events and callbacks to the event threads. There is one
+     * event thread unless the "zookeeper.eventThreads" system property asks
+     * for more. With several threads, events and callbacks are assigned to
+     * a thread by the hash of their path: the ones for a path are delivered
+     * in order, but the ones for different paths may be delivered
+     * concurrently. Session state changes are still delivered in order with
+     * respect to everything else.
+     */
+    void queueEvent(WatchedEvent event) {
+        // materialize the watchers based on the event
+        WatcherSetEventPair pair = new WatcherSetEventPair(
+                watcher.materialize(event.getState(), event.getType(),
+                        event.getPath()),
+                        event);
+        pair.queueTime = System.nanoTime();
+        pair.compression = zooKeeper.getDataCompression();
+        // queue the pair (watch set & event) for later processing
+        if (event.getPath() != null || eventThreads.length == 1) {
+            eventThreadFor(event.getPath()).queue(pair);
+        } else {
+            StateBarrier barrier = new StateBarrier(pair, eventThreads.length);
+            for (EventThread t : eventThreads) {
+                t.queue(barrier);
+            }
+        }
+    }
+
+    /**
+     * Queue a finished packet for its callback on the event thread of its
+     * path.
+     */
+    void queueCallback(Packet packet) {
+        packet.queueTime = System.nanoTime();
+        eventThreadFor(packet.path).queue(packet);
+    }
+
+    void queueEventOfDeath() {
+        if (reactor != null) {
+            // the event threads are shared
+            return;
+        }
+        for (EventThread t : eventThreads) {
+            t.queue(eventOfDeath);
+        }
+    }
+
+    private EventThread eventThreadFor(String path) {
+        if (eventThreads.length == 1 || path == null) {
+            return eventThreads[0];
+        }
+        int h = path.hashCode();
+        h ^= (h >>> 16);
+        return eventThreads[(h & 0x7fffffff) % eventThreads.length];
+    }
+
+    /**
+     * @return the number of events and callbacks waiting to be delivered
+     */
+    public int getEventQueueDepth() {
+        int depth = 0;
+        for (EventThread t : eventThreads) {
+            depth += t.waitingEvents.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the average time in milliseconds from queueing an event or
+     * callback until its delivery started
+     */
+    public long getAvgEventDispatchLatency() {
+        long count = 0;
+        long total = 0;
+        for (EventThread t : eventThreads) {
+            synchronized (t) {
+                count += t.dispatchCount;
+                total += t.totalDispatchLatency;
+            }
+        }
+        return count == 0 ? 0 : total / count / 1000000;
+    }
+
+    /**
+     * @return the longest time in milliseconds from queueing an event or
+     * callback until its delivery started
+     */
+    public long getMaxEventDispatchLatency() {
+        long max = 0;
+        for (EventThread t : eventThreads) {
+            synchronized (t) {
+                max = Math.max(max, t.maxDispatchLatency);
+            }
+        }
+        return max / 1000000;
+    }
+
+    static class EventThread extends Thread {
         private final LinkedBlockingQueue<Object> waitingEvents = 
             new LinkedBlockingQueue<Object>();
 
-        EventThread() {
-            super(currentThread().getName() + "-EventThread");
+        private long dispatchCount;
+
+        private long totalDispatchLatency;
+
+        private long maxDispatchLatency;
+
+        EventThread(String name) {
+            super(name);
             setUncaughtExceptionHandler(uncaughtExceptionHandler);
             setDaemon(true);
         }
-        
-        public void queueEvent(WatchedEvent event) {
-            // materialize the watchers based on the event
-            WatcherSetEventPair pair = new WatcherSetEventPair(
-                    watcher.materialize(event.getState(), event.getType(),
-                            event.getPath()),
-                            event);
-            // queue the pair (watch set & event) for later processing
-            waitingEvents.add(pair);
-        }
-        
-        public void queuePacket(Packet packet) {
-            waitingEvents.add(packet);
+
+        void queue(Object event) {
+            waitingEvents.add(event);
         }
 
-        public void queueEventOfDeath() {
-            waitingEvents.add(eventOfDeath);
+        private synchronized void dispatched(long queueTime) {
+            long latency = System.nanoTime() - queueTime;
+            dispatchCount++;
+            totalDispatchLatency += latency;
+            if (latency > maxDispatchLatency) {
+                maxDispatchLatency = latency;
+            }
         }
 
         @Override
@@ -340,82 +680,26 @@ public class ClientCnxn {
                         break;
                     }
 
-                    if (event instanceof WatcherSetEventPair) {
-                        // each watcher will process the event
-                        WatcherSetEventPair pair = (WatcherSetEventPair)event;
-                        for (Watcher watcher: pair.watchers) {
-                            watcher.process(pair.event);
+                    if (event instanceof StateBarrier) {
+                        StateBarrier barrier = (StateBarrier) event;
+                        if (barrier.remaining.decrementAndGet() == 0) {
+                            try {
+                                processEvent(barrier.pair);
+                            } finally {
+                                barrier.delivered.countDown();
+                            }
+                        } else {
+                            barrier.delivered.await();
                         }
+                    } else if (event instanceof WatcherSetEventPair) {
+                        processEvent((WatcherSetEventPair) event);
                     } else {
-                        Packet p = (Packet) event;
-                        int rc = 0;
-                        String path = p.path;
-                        if (p.replyHeader.getErr() != 0) {
-                            rc = p.replyHeader.getErr();
-                        }
-                        if (p.cb == null) {
-                            LOG.warn("Somehow a null cb got to EventThread!");
-                        } else if (p.response instanceof ExistsResponse
-                                || p.response instanceof SetDataResponse
-                                || p.response instanceof SetACLResponse) {
-                            StatCallback cb = (StatCallback) p.cb;
-                            if (rc == 0) {
-                                if (p.response instanceof ExistsResponse) {
-                                    cb.processResult(rc, path, p.ctx,
-                                            ((ExistsResponse) p.response)
-                                                    .getStat());
-                                } else if (p.response instanceof SetDataResponse) {
-                                    cb.processResult(rc, path, p.ctx,
-                                            ((SetDataResponse) p.response)
-                                                    .getStat());
-                                } else if (p.response instanceof SetACLResponse) {
-                                    cb.processResult(rc, path, p.ctx,
-                                            ((SetACLResponse) p.response)
-                                                    .getStat());
-                                }
-                            } else {
-                                cb.processResult(rc, path, p.ctx, null);
-                            }
-                        } else if (p.response instanceof GetDataResponse) {
-                            DataCallback cb = (DataCallback) p.cb;
-                            GetDataResponse rsp = (GetDataResponse) p.response;
-                            if (rc == 0) {
-                                cb.processResult(rc, path, p.ctx,
-                                        rsp.getData(), rsp.getStat());
-                            } else {
-                                cb.processResult(rc, path, p.ctx, null, null);
-                            }
-                        } else if (p.response instanceof GetACLResponse) {
-                            ACLCallback cb = (ACLCallback) p.cb;
-                            GetACLResponse rsp = (GetACLResponse) p.response;
-                            if (rc == 0) {
-                                cb.processResult(rc, path, p.ctx, rsp.getAcl(),
-                                        rsp.getStat());
-                            } else {
-                                cb.processResult(rc, path, p.ctx, null, null);
-                            }
-                        } else if (p.response instanceof GetChildrenResponse) {
-                            ChildrenCallback cb = (ChildrenCallback) p.cb;
-                            GetChildrenResponse rsp = (GetChildrenResponse) p.response;
-                            if (rc == 0) {
-                                cb.processResult(rc, path, p.ctx, rsp
-                                        .getChildren());
-                            } else {
-                                cb.processResult(rc, path, p.ctx, null);
-                            }
-                        } else if (p.response instanceof CreateResponse) {
-                            StringCallback cb = (StringCallback) p.cb;
-                            CreateResponse rsp = (CreateResponse) p.response;
-                            if (rc == 0) {
-                                cb
-                                        .processResult(rc, path, p.ctx, rsp
-                                                .getPath());
-                            } else {
-                                cb.processResult(rc, path, p.ctx, null);
-                            }
-                        } else if (p.cb instanceof VoidCallback) {
-                            VoidCallback cb = (VoidCallback) p.cb;
-                            cb.processResult(rc, path, p.ctx);
+                        // the thread may be shared by other handles, so a
+                        // failing callback must not end it
+                        try {
+                            processPacket((Packet) event);
+                        } catch (Throwable t) {
+                            LOG.error("Error while calling callback", t);
                         }
                     }
                 }
@@ -425,9 +709,133 @@ public class ClientCnxn {
             
             LOG.info("EventThread shut down");
         }
+
+        private void processEvent(WatcherSetEventPair pair) {
+            dispatched(pair.queueTime);
+            WatchedEvent event = pair.event;
+            if (pair.compression != null && event.getData() != null) {
+                event = new WatchedEvent(event.getWrapper(), event.getStat(),
+                        pair.compression.decompress(event.getData(),
+                                event.getStat()));
+            }
+            // each watcher will process the event
+            for (Watcher watcher: pair.watchers) {
+                try {
+                    watcher.process(event);
+                } catch (Throwable t) {
+                    LOG.error("Error while calling watcher", t);
+                }
+            }
+        }
+
+        private void processPacket(Packet p) {
+            dispatched(p.queueTime);
+            int rc = 0;
+            String path = p.path;
+            if (p.replyHeader.getErr() != 0) {
+                rc = p.replyHeader.getErr();
+            } else if (p.compression != null && p.response != null) {
+                p.compression.decompressRecord(p.response);
+            }
+            if (p.cb == null) {
+                LOG.warn("Somehow a null cb got to EventThread!");
+            } else if (p.response instanceof ExistsResponse
+                    || p.response instanceof SetDataResponse
+                    || p.response instanceof SetACLResponse) {
+                StatCallback cb = (StatCallback) p.cb;
+                if (rc == 0) {
+                    if (p.response instanceof ExistsResponse) {
+                        cb.processResult(rc, path, p.ctx,
+                                ((ExistsResponse) p.response)
+                                        .getStat());
+                    } else if (p.response instanceof SetDataResponse) {
+                        cb.processResult(rc, path, p.ctx,
+                                ((SetDataResponse) p.response)
+                                        .getStat());
+                    } else if (p.response instanceof SetACLResponse) {
+                        cb.processResult(rc, path, p.ctx,
+                                ((SetACLResponse) p.response)
+                                        .getStat());
+                    }
+                } else {
+                    cb.processResult(rc, path, p.ctx, null);
+                }
+            } else if (p.response instanceof GetDataResponse) {
+                DataCallback cb = (DataCallback) p.cb;
+                GetDataResponse rsp = (GetDataResponse) p.response;
+                if (rc == 0) {
+                    cb.processResult(rc, path, p.ctx,
+                            rsp.getData(), rsp.getStat());
+                } else {
+                    cb.processResult(rc, path, p.ctx, null, null);
+                }
+            } else if (p.response instanceof GetACLResponse) {
+                ACLCallback cb = (ACLCallback) p.cb;
+                GetACLResponse rsp = (GetACLResponse) p.response;
+                if (rc == 0) {
+                    cb.processResult(rc, path, p.ctx, rsp.getAcl(),
+                            rsp.getStat());
+                } else {
+                    cb.processResult(rc, path, p.ctx, null, null);
+                }
+            } else if (p.response instanceof GetChildrenResponse) {
+                ChildrenCallback cb = (ChildrenCallback) p.cb;
+                GetChildrenResponse rsp = (GetChildrenResponse) p.response;
+                if (rc == 0) {
+                    cb.processResult(rc, path, p.ctx, rsp
+                            .getChildren());
+                } else {
+                    cb.processResult(rc, path, p.ctx, null);
+                }
+            } else if (p.response instanceof GetChildrenDataResponse) {
+                ChildrenDataCallback cb = (ChildrenDataCallback) p.cb;
+                GetChildrenDataResponse rsp =
+                    (GetChildrenDataResponse) p.response;
+                if (rc == 0) {
+                    cb.processResult(rc, path, p.ctx, rsp.getChildren(),
+                            rsp.getNext());
+                } else {
+                    cb.processResult(rc, path, p.ctx, null, null);
+                }
+            } else if (p.response instanceof GetPredecessorResponse) {
+                StringCallback cb = (StringCallback) p.cb;
+                GetPredecessorResponse rsp =
+                    (GetPredecessorResponse) p.response;
+                if (rc == 0) {
+                    cb.processResult(rc, path, p.ctx, rsp.getName());
+                } else {
+                    cb.processResult(rc, path, p.ctx, null);
+                }
+            } else if (p.response instanceof IncrementResponse) {
+                CounterCallback cb = (CounterCallback) p.cb;
+                IncrementResponse rsp = (IncrementResponse) p.response;
+                if (rc == 0) {
+                    cb.processResult(rc, path, p.ctx, rsp.getValue(),
+                            rsp.getStat());
+                } else {
+                    cb.processResult(rc, path, p.ctx, 0, null);
+                }
+            } else if (p.response instanceof CreateResponse) {
+                StringCallback cb = (StringCallback) p.cb;
+                CreateResponse rsp = (CreateResponse) p.response;
+                if (rc == 0) {
+                    cb
+                            .processResult(rc, path, p.ctx, rsp
+                                    .getPath());
+                } else {
+                    cb.processResult(rc, path, p.ctx, null);
+                }
+            } else if (p.cb instanceof VoidCallback) {
+                VoidCallback cb = (VoidCallback) p.cb;
+                cb.processResult(rc, path, p.ctx);
+            }
+        }
     }
 
     private void finishPacket(Packet p) {
+        if (p.limited) {
+            releaseSlot();
+        }
         if (p.watchRegistration != null) {
             p.watchRegistration.register(p.replyHeader.getErr());
         }
@@ -439,7 +847,8 @@ public class ClientCnxn {
             }
         } else {
             p.finished = true;
-            eventThread.queuePacket(p);
+            p.compression = zooKeeper.getDataCompression();
+            queueCallback(p);
         }
     }
 
@@ -465,6 +874,10 @@ public class ClientCnxn {
     /**
      * This class services the outgoing request queue and generates the heart
      * beats. It also spawns the ReadThread.
+     * <p>
+     * When the connection uses a {@link ClientReactor} the thread is never
+     * started, a selector thread of the reactor drives the connection through
+     * the same methods as {@link #run()} instead.
      */
     class SendThread extends Thread {
         SelectionKey sockKey;
@@ -473,6 +886,22 @@ public class ClientCnxn {
 
         ByteBuffer incomingBuffer = lenBuffer;
 
+        /**
+         * The buffers of the packets being written by a gathering write.
+         */
+        final ByteBuffer gatherBuffers[] = new ByteBuffer[MAX_GATHER_PACKETS];
+
+        /**
+         * Holds the responses that fit, so that they don't need a buffer of
+         * their own.
+         */
+        final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(
+                reactor == null ? RECEIVE_BUFFER_SIZE
+                        : REACTOR_RECEIVE_BUFFER_SIZE);
+
+        final BinaryInputArchive receiveArchive = BinaryInputArchive
+                .getArchive(new ByteBufferInputStream(receiveBuffer));
+
         boolean initialized;
 
         void readLength() throws IOException {
@@ -480,45 +909,120 @@ public class ClientCnxn {
             if (len < 0 || len >= 4096 * 1024) {
                 throw new IOException("Packet len" + len + " is out of range!");
             }
-            incomingBuffer = ByteBuffer.allocate(len);
+            if (len <= receiveBuffer.capacity()) {
+                receiveBuffer.clear();
+                receiveBuffer.limit(len);
+                incomingBuffer = receiveBuffer;
+            } else {
+                incomingBuffer = ByteBuffer.allocate(len);
+            }
+        }
+
+        /**
+         * @return an archive reading the message in the incoming buffer
+         */
+        private BinaryInputArchive incomingArchive() {
+            if (incomingBuffer == receiveBuffer) {
+                return receiveArchive;
+            }
+            return BinaryInputArchive.getArchive(new ByteBufferInputStream(
+                    incomingBuffer));
         }
 
         void readConnectResult() throws IOException {
-            ByteBufferInputStream bbis = new ByteBufferInputStream(
-                    incomingBuffer);
-            BinaryInputArchive bbia = BinaryInputArchive.getArchive(bbis);
+            BinaryInputArchive bbia = incomingArchive();
             ConnectResponse conRsp = new ConnectResponse();
             conRsp.deserialize(bbia, "connect");
             int sessionTimeout = conRsp.getTimeOut();
             if (sessionTimeout <= 0) {
                 zooKeeper.state = States.CLOSED;
 
-                eventThread.queueEvent(new WatchedEvent(
+                queueEvent(new WatchedEvent(
                         Watcher.Event.EventType.None,
                         Watcher.Event.KeeperState.Expired, null));
                 throw new IOException("Session Expired");
             }
             readTimeout = sessionTimeout * 2 / 3;
             connectTimeout = sessionTimeout / serverAddrs.size();
+            readServerLoad(bbia);
+            if (rebalanceInterval > 0) {
+                nextRebalance = System.currentTimeMillis()
+                        + rebalanceInterval / 2 + r.nextInt(rebalanceInterval);
+            }
             sessionId = conRsp.getSessionId();
             sessionPasswd = conRsp.getPasswd();
-            eventThread.queueEvent(new WatchedEvent(Watcher.Event.EventType.None,
+            queueEvent(new WatchedEvent(Watcher.Event.EventType.None,
                     Watcher.Event.KeeperState.SyncConnected, null));
+            if (notificationDataLimit >= 0) {
+                // before the watches, their notifications carry data too
+                queueSetNotificationData(notificationDataLimit);
+            }
             if (!disableAutoWatchReset) {
-                SetWatches sw = new SetWatches(lastZxid,
-                        zooKeeper.getDataWatches(),
-                        zooKeeper.getExistWatches(),
-                        zooKeeper.getChildWatches());
+                queueSetWatches();
+            }
+        }
+
+        /**
+         * Re-register the watches on the server, in chunks so that no packet
+         * gets too large and the server handles the chunks one at a time
+         * between other requests.
+         */
+        private void queueSetWatches() {
+            List<String> dataWatches = zooKeeper.getDataWatches();
+            List<String> existWatches = zooKeeper.getExistWatches();
+            List<String> childWatches = zooKeeper.getChildWatches();
+            // sorted, neighbours share the most with each other
+            Collections.sort(dataWatches);
+            Collections.sort(existWatches);
+            Collections.sort(childWatches);
+            List<SetWatches> chunks = chunkSetWatches(lastZxid, dataWatches,
+                    existWatches, childWatches, setWatchesChunkSize);
+            if (chunks.size() > 1) {
+                LOG.info("Re-registering "
+                        + (dataWatches.size() + existWatches.size()
+                                + childWatches.size()) + " watches with "
+                        + chunks.size() + " requests");
+            }
+            for (SetWatches sw : chunks) {
+                RequestHeader h = new RequestHeader();
+                Record request = sw;
+                if (compactSetWatches) {
+                    h.setType(ZooDefs.OpCode.setWatchesCompact);
+                    request = new SetWatchesCompact(sw.getRelativeZxid(),
+                            PathPrefixCodec.encode(sw.getDataWatches()),
+                            PathPrefixCodec.encode(sw.getExistWatches()),
+                            PathPrefixCodec.encode(sw.getChildWatches()));
+                } else {
+                    h.setType(ZooDefs.OpCode.setWatches);
+                }
+                queuePacket(h, new ReplyHeader(), request, null, null, null,
+                        null, null);
+            }
+            List<String> recursiveWatches = zooKeeper.getRecursiveWatches();
+            if (!recursiveWatches.isEmpty()) {
                 RequestHeader h = new RequestHeader();
-                h.setType(ZooDefs.OpCode.setWatches);
-                queuePacket(h, new ReplyHeader(), sw, null, null, null, null, null);
+                h.setType(ZooDefs.OpCode.setRecursiveWatches);
+                queuePacket(h, new ReplyHeader(), new SetRecursiveWatches(
+                        recursiveWatches), null, null, null, null, null);
+            }
+        }
+
+        /**
+         * Read the load the server appends to the connect response and to
+         * ping replies. Older servers don't send it.
+         */
+        private void readServerLoad(BinaryInputArchive bbia)
+                throws IOException {
+            if (incomingBuffer.remaining() > 0) {
+                ServerLoad load = new ServerLoad();
+                load.deserialize(bbia, "load");
+                serverSelector.loadReported(server, load, System
+                        .currentTimeMillis());
             }
         }
 
         void readResponse() throws IOException {
-            ByteBufferInputStream bbis = new ByteBufferInputStream(
-                    incomingBuffer);
-            BinaryInputArchive bbia = BinaryInputArchive.getArchive(bbis);
+            BinaryInputArchive bbia = incomingArchive();
             ReplyHeader replyHdr = new ReplyHeader();
 
             replyHdr.deserialize(bbia, "header");
@@ -527,6 +1031,13 @@ public class ClientCnxn {
                 LOG
                     .debug("Got ping sessionid:0x"
                     + Long.toHexString(sessionId));
+                if (pingSent != 0) {
+                    serverSelector.rttMeasured(server,
+                            (System.nanoTime() - pingSent) / 1000000.0,
+                            System.currentTimeMillis());
+                    pingSent = 0;
+                }
+                readServerLoad(bbia);
                 return;
             }
             if (replyHdr.getXid() == -4) {
@@ -543,13 +1054,22 @@ public class ClientCnxn {
                     + Long.toHexString(sessionId));
                 WatcherEvent event = new WatcherEvent();
                 event.deserialize(bbia, "response");
-                WatchedEvent we = new WatchedEvent(event);
+                WatchedEvent we;
+                if (incomingBuffer.remaining() > 0) {
+                    WatcherEventData data = new WatcherEventData();
+                    data.deserialize(bbia, "trailer");
+                    // decompressed by the event thread
+                    we = new WatchedEvent(event, data.getStat(),
+                            data.getData());
+                } else {
+                    we = new WatchedEvent(event);
+                }
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Got " + we + " for sessionid 0x"
                             + Long.toHexString(sessionId));
                 }
                 
-                eventThread.queueEvent( we );
+                queueEvent( we );
                 return;
             }
             if (pendingQueue.size() == 0) {
@@ -580,6 +1100,8 @@ public class ClientCnxn {
                 }
                 if (packet.response != null && replyHdr.getErr() == 0) {
                     packet.response.deserialize(bbia, "response");
+                    // decompressed by the event thread or the caller, this
+                    // thread may read for other handles too
                 }
 
                 if (LOG.isDebugEnabled()) {
@@ -633,15 +1155,7 @@ public class ClientCnxn {
             if (sockKey.isWritable()) {
                 synchronized (outgoingQueue) {
                     if (outgoingQueue.size() > 0) {
-                        sock.write(outgoingQueue.getFirst().bb);
-                        if (outgoingQueue.getFirst().bb.remaining() == 0) {
-                            Packet p = outgoingQueue.removeFirst();
-                            if (p.header != null
-                                    && p.header.getType() != OpCode.ping
-                                    && p.header.getType() != OpCode.auth) {
-                                pendingQueue.add(p);
-                            }
-                        }
+                        writeOutgoing(sock);
                     }
                 }
             }
@@ -653,6 +1167,56 @@ public class ClientCnxn {
             return packetReceived;
         }
 
+        /**
+         * Write as many of the queued packets as possible with a single
+         * gathering write, and move the packets that were completely written
+         * to the pending queue. Must be called with the outgoingQueue lock
+         * held.
+         */
+        private void writeOutgoing(SocketChannel sock) throws IOException {
+            int count = 0;
+            int bytes = 0;
+            for (Packet p : outgoingQueue) {
+                int remaining = p.bb.remaining();
+                if (count > 0 && bytes + remaining > MAX_GATHER_BYTES) {
+                    break;
+                }
+                gatherBuffers[count++] = p.bb;
+                bytes += remaining;
+                if (count == MAX_GATHER_PACKETS) {
+                    break;
+                }
+            }
+            sock.write(gatherBuffers, 0, count);
+            synchronized (pendingQueue) {
+                for (int i = 0; i < count; i++) {
+                    Packet p = outgoingQueue.getFirst();
+                    if (p.bb.remaining() != 0) {
+                        // the socket buffer is full
+                        break;
+                    }
+                    outgoingQueue.removeFirst();
+                    bufferPool.release(p.bb);
+                    p.bb = null;
+                    if (p.header != null
+                            && p.header.getType() != OpCode.ping
+                            && p.header.getType() != OpCode.auth) {
+                        pendingQueue.add(p);
+                    }
+                    if (p.limited) {
+                        sent(p);
+                    } else if (p.header != null
+                            && p.header.getType() == OpCode.ping) {
+                        pingSent = System.nanoTime();
+                    }
+                }
+            }
+            // don't keep the written buffers from being collected
+            for (int i = 0; i < count; i++) {
+                gatherBuffers[i] = null;
+            }
+        }
+
         synchronized private void enableWrite() {
             int i = sockKey.interestOps();
             if ((i & SelectionKey.OP_WRITE) == 0) {
@@ -690,7 +1254,10 @@ public class ClientCnxn {
 
         private void primeConnection(SelectionKey k) throws IOException {
             LOG.info("Priming connection to " + sockKey.channel());
-            lastConnectIndex = currentConnectIndex;
+            serverSelector.connected(server);
+            serverSelector.rttMeasured(server,
+                    (System.nanoTime() - connectStart) / 1000000.0, System
+                            .currentTimeMillis());
             ConnectRequest conReq = new ConnectRequest(0, lastZxid,
                     sessionTimeout, sessionId, sessionPasswd);
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -703,9 +1270,11 @@ public class ClientCnxn {
             bb.rewind();
             synchronized (outgoingQueue) {
                 for (AuthData id : authInfo) {
-                    outgoingQueue.addFirst(new Packet(new RequestHeader(-4,
-                            OpCode.auth), null, new AuthPacket(0, id.scheme,
-                            id.data), null, null, null));
+                    RequestHeader h = new RequestHeader(-4, OpCode.auth);
+                    AuthPacket authPacket = new AuthPacket(0, id.scheme,
+                            id.data);
+                    outgoingQueue.addFirst(new Packet(h, null, authPacket,
+                            null, encodePacket(h, authPacket), null));
                 }
                 outgoingQueue.addFirst((new Packet(null, null, null, null, bb,
                         null)));
@@ -721,46 +1290,76 @@ public class ClientCnxn {
             queuePacket(h, null, null, null, null, null, null, null);
         }
 
-        int lastConnectIndex = -1;
+        /**
+         * The server of the current connection or connection attempt.
+         */
+        volatile ServerSelector.Server server;
 
-        int currentConnectIndex;
+        /**
+         * The server to connect to next instead of the one the selector
+         * picks, set when the client moves to a better server.
+         */
+        ServerSelector.Server nextServer;
+
+        /**
+         * When the connection attempt started and when the outstanding ping
+         * was written, in nanoseconds, to measure the round trip time.
+         */
+        long connectStart;
+
+        long pingSent;
+
+        /**
+         * When the client checks again whether to move to another server.
+         */
+        long nextRebalance;
 
         Random r = new Random(System.nanoTime());
 
-        private void startConnect() throws IOException {
-            if (lastConnectIndex == -1) {
-                // We don't want to delay the first try at a connect, so we
-                // start with -1 the first time around
-                lastConnectIndex = 0;
-            } else {
-                try {
-                    Thread.sleep(r.nextInt(1000));
-                } catch (InterruptedException e1) {
-                    LOG.warn("Unexpected exception", e1);
-                }
-                if (nextAddrToTry == lastConnectIndex) {
-                    try {
-                        // Try not to spin too fast!
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        LOG.warn("Unexpected exception", e);
-                    }
-                }
-            }
+        /**
+         * The time of the last packet received and of the last packet queued
+         * for sending.
+         */
+        long lastHeard;
+
+        long lastSend;
+
+        /**
+         * No new connection is attempted before this time, it spaces out the
+         * attempts after a failure.
+         */
+        long nextConnectTime;
+
+        /**
+         * Set while the connection is queued for its selector thread to look
+         * at. Only used with a reactor.
+         */
+        final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+        /**
+         * Whether the selector thread of the reactor knows the connection.
+         * Only used by that thread.
+         */
+        boolean added;
+
+        private void startConnect(long now) throws IOException {
             zooKeeper.state = States.CONNECTING;
-            currentConnectIndex = nextAddrToTry;
-            InetSocketAddress addr = serverAddrs.get(nextAddrToTry);
-            nextAddrToTry++;
-            if (nextAddrToTry == serverAddrs.size()) {
-                nextAddrToTry = 0;
+            if (nextServer != null) {
+                server = nextServer;
+                nextServer = null;
+            } else {
+                server = serverSelector.next(now);
             }
+            InetSocketAddress addr = server.addr;
+            pingSent = 0;
+            connectStart = System.nanoTime();
             SocketChannel sock;
             sock = SocketChannel.open();
             sock.configureBlocking(false);
             sock.socket().setSoLinger(false, -1);
             sock.socket().setTcpNoDelay(true);
             LOG.info("Attempting connection to server " + addr);
-            sockKey = sock.register(selector, SelectionKey.OP_CONNECT);
+            sockKey = sock.register(selector, SelectionKey.OP_CONNECT, this);
             if (sock.connect(addr)) {
                 primeConnection(sockKey);
             }
@@ -773,43 +1372,172 @@ public class ClientCnxn {
             incomingBuffer = lenBuffer;
         }
 
+        /**
+         * @return whether the connection is closed, or closing and no longer
+         *         connected
+         */
+        boolean isDone() {
+            return !zooKeeper.state.isAlive() || (closing && sockKey == null);
+        }
+
+        /**
+         * Do the work that is due at the given time: connect if there is no
+         * connection, give up a connection that timed out and send pings.
+         *
+         * @return the time in milliseconds until there is work due again
+         * @throws IOException if the connection timed out
+         */
+        int doTimedWork(long now) throws IOException {
+            if (rebalanceInterval > 0 && initialized && sockKey != null
+                    && now >= nextRebalance) {
+                nextRebalance = now + rebalanceInterval / 2
+                        + r.nextInt(rebalanceInterval);
+                rebalance(now);
+            }
+            if (sockKey == null) {
+                if (now < nextConnectTime) {
+                    return (int) (nextConnectTime - now);
+                }
+                startConnect(now);
+                lastSend = now;
+                lastHeard = now;
+            }
+            int idleRecv = (int) (now - lastHeard);
+            int idleSend = (int) (now - lastSend);
+            int to = readTimeout - idleRecv;
+            if (zooKeeper.state != States.CONNECTED) {
+                to = connectTimeout - idleRecv;
+            }
+            if (to <= 0) {
+                throw new IOException("TIMED OUT");
+            }
+            if (zooKeeper.state == States.CONNECTED) {
+                int timeToNextPing = readTimeout/2 - idleSend;
+                if (timeToNextPing <= 0) {
+                    sendPing();
+                    lastSend = now;
+                    enableWrite();
+                } else {
+                    if (timeToNextPing < to) {
+                        to = timeToNextPing;
+                    }
+                }
+            }
+            return to;
+        }
+
+        /**
+         * Move to a server that would serve the client much better, if there
+         * is one. The client only moves when it has no requests outstanding,
+         * and sees a disconnect followed by a reconnect when it does.
+         */
+        private void rebalance(long now) {
+            synchronized (outgoingQueue) {
+                if (outgoingQueue.size() > 0 || pendingQueue.size() > 0) {
+                    return;
+                }
+            }
+            ServerSelector.Server to = serverSelector.rebalance(server, now);
+            if (to == null) {
+                return;
+            }
+            LOG.info("Moving session 0x" + Long.toHexString(getSessionId())
+                    + " from " + server + " to " + to);
+            cleanup();
+            queueEvent(new WatchedEvent(Event.EventType.None,
+                    Event.KeeperState.Disconnected, null));
+            nextServer = to;
+            nextConnectTime = now;
+        }
+
+        /**
+         * Handle a selected key of the connection.
+         */
+        void doSelected(SelectionKey k, long now) throws IOException,
+                InterruptedException {
+            SocketChannel sc = ((SocketChannel) k.channel());
+            if ((k.readyOps() & SelectionKey.OP_CONNECT) != 0) {
+                if (sc.finishConnect()) {
+                    lastHeard = now;
+                    lastSend = now;
+                    primeConnection(k);
+                    LOG.info("Server connection successful");
+                }
+            } else if ((k.readyOps() & (SelectionKey.OP_READ | SelectionKey.OP_WRITE)) != 0) {
+                if (outgoingQueue.size() > 0) {
+                    // We have something to send so it's the same
+                    // as if we do the send now.
+                    lastSend = now;
+                }
+                if (doIO()) {
+                    lastHeard = now;
+                }
+            }
+        }
+
+        /**
+         * Select writes when there is something to send.
+         */
+        void updateInterest() {
+            if (sockKey != null && zooKeeper.state == States.CONNECTED) {
+                if (outgoingQueue.size() > 0) {
+                    enableWrite();
+                } else {
+                    disableWrite();
+                }
+            }
+        }
+
+        /**
+         * Drop the connection after an error, it is re-established later.
+         *
+         * @return false if the session is closing and the connection should
+         *         not be re-established
+         */
+        boolean connectionFailed(Exception e) {
+            if (closing) {
+                // closing so this is expected
+                LOG
+                   .info("Exception while closing send thread for session 0x"
+                        + Long.toHexString(getSessionId())
+                        + " : " + e.getMessage());
+                return false;
+            }
+            LOG.warn("Exception closing session 0x" 
+                    + Long.toHexString(getSessionId()) + " to "
+                    + sockKey, e);
+            cleanup();
+            if (zooKeeper.state.isAlive()) {
+                queueEvent(new WatchedEvent(
+                        Event.EventType.None,
+                        Event.KeeperState.Disconnected,
+                        null));
+            }
+
+            long now = System.currentTimeMillis();
+            lastHeard = now;
+            lastSend = now;
+            if (server != null) {
+                serverSelector.failed(server, now);
+            }
+            // don't spin if no server can be reached
+            nextConnectTime = Math.max(now + 100 + r.nextInt(1000),
+                    serverSelector.nextAvailable(now));
+            return true;
+        }
+
         @Override
         public void run() {
             long now = System.currentTimeMillis();
-            long lastHeard = now;
-            long lastSend = now;
+            lastHeard = now;
+            lastSend = now;
             while (zooKeeper.state.isAlive()) {
                 try {
-                    if (sockKey == null) {
+                    if (isDone()) {
                         // don't re-establish connection if we are closing
-                        if (closing) {
-                            break;
-                        }
-                        startConnect();
-                        lastSend = now;
-                        lastHeard = now;
-                    }
-                    int idleRecv = (int) (now - lastHeard);
-                    int idleSend = (int) (now - lastSend);
-                    int to = readTimeout - idleRecv;
-                    if (zooKeeper.state != States.CONNECTED) {
-                        to = connectTimeout - idleRecv;
-                    }
-                    if (to <= 0) {
-                        throw new IOException("TIMED OUT");
-                    }
-                    if (zooKeeper.state == States.CONNECTED) {
-                        int timeToNextPing = readTimeout/2 - idleSend;
-                        if (timeToNextPing <= 0) {
-                            sendPing();
-                            lastSend = now;
-                            enableWrite();
-                        } else {
-                            if (timeToNextPing < to) {
-                                to = timeToNextPing;
-                            }
-                        }
+                        break;
                     }
+                    int to = doTimedWork(now);
 
                     selector.select(to);
                     Set<SelectionKey> selected;
@@ -821,57 +1549,15 @@ public class ClientCnxn {
                     // Why we just have to do this once, here
                     now = System.currentTimeMillis();
                     for (SelectionKey k : selected) {
-                        SocketChannel sc = ((SocketChannel) k.channel());
-                        if ((k.readyOps() & SelectionKey.OP_CONNECT) != 0) {
-                            if (sc.finishConnect()) {
-                                lastHeard = now;
-                                lastSend = now;
-                                primeConnection(k);
-                                LOG.info("Server connection successful");
-                            }
-                        } else if ((k.readyOps() & (SelectionKey.OP_READ | SelectionKey.OP_WRITE)) != 0) {
-                            if (outgoingQueue.size() > 0) {
-                                // We have something to send so it's the same
-                                // as if we do the send now.
-                                lastSend = now;
-                            }
-                            if (doIO()) {
-                                lastHeard = now;
-                            }
-                        }
-                    }
-                    if (zooKeeper.state == States.CONNECTED) {
-                        if (outgoingQueue.size() > 0) {
-                            enableWrite();
-                        } else {
-                            disableWrite();
-                        }
+                        doSelected(k, now);
                     }
+                    updateInterest();
                     selected.clear();
                 } catch (Exception e) {
-                    if (closing) {
-                        // closing so this is expected
-                        LOG
-                           .info("Exception while closing send thread for session 0x"
-                                + Long.toHexString(getSessionId())
-                                + " : " + e.getMessage());
+                    if (!connectionFailed(e)) {
                         break;
-                    } else {
-                        LOG.warn("Exception closing session 0x" 
-                                + Long.toHexString(getSessionId()) + " to "
-                                + sockKey, e);
-                        cleanup();
-                        if (zooKeeper.state.isAlive()) {
-                            eventThread.queueEvent(new WatchedEvent(
-                                    Event.EventType.None,
-                                    Event.KeeperState.Disconnected,
-                                    null));
-                        }
-    
-                        now = System.currentTimeMillis();
-                        lastHeard = now;
-                        lastSend = now;
                     }
+                    now = System.currentTimeMillis();
                 }
             }
             cleanup();
@@ -884,7 +1570,7 @@ public class ClientCnxn {
                                      "SendThread exitedloop.");
         }
 
-        private void cleanup() {
+        void cleanup() {
             if (sockKey != null) {
                 SocketChannel sock = (SocketChannel) sockKey.channel();
                 sockKey.cancel();
@@ -909,11 +1595,6 @@ public class ClientCnxn {
                     LOG.warn("Ignoring exception during channel close", e);
                 }
             }
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                LOG.warn("SendThread interrupted during sleep, ignoring");
-            }
             sockKey = null;
             synchronized (pendingQueue) {
                 for (Packet p : pendingQueue) {
@@ -931,9 +1612,7 @@ public class ClientCnxn {
 
         public void close() {
             zooKeeper.state = States.CLOSED;
-            synchronized (this) {
-                selector.wakeup();
-            }
+            wakeupSendThread();
         }
     }
 
@@ -948,7 +1627,7 @@ public class ClientCnxn {
                 + Long.toHexString(getSessionId()));
 
         sendThread.close();
-        eventThread.queueEventOfDeath();
+        queueEventOfDeath();
     }
 
     /**
@@ -987,39 +1666,240 @@ public class ClientCnxn {
         ReplyHeader r = new ReplyHeader();
         Packet packet = queuePacket(h, r, request, response, null, null, null,
                     watchRegistration);
+        if (r.getErr() == KeeperException.Code.Throttled
+                && Thread.interrupted()) {
+            // interrupted while waiting for a slot
+            throw new InterruptedException();
+        }
         synchronized (packet) {
             while (!packet.finished) {
                 packet.wait();
             }
         }
+        DataCompression compression = zooKeeper.getDataCompression();
+        if (compression != null && response != null && r.getErr() == 0) {
+            compression.decompressRecord(response);
+        }
         return r;
     }
 
+    /**
+     * Requests of the caller take a slot until they are finished, internal
+     * requests and the closing of the session don't.
+     */
+    private boolean isLimited(RequestHeader h) {
+        switch (h.getType()) {
+        case OpCode.ping:
+        case OpCode.auth:
+        case OpCode.setWatches:
+        case OpCode.setWatchesCompact:
+        case OpCode.setRecursiveWatches:
+        case OpCode.setNotificationData:
+        case OpCode.closeSession:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Have the notifications carry the stat and data of the node, for this
+     * connection and the next ones.
+     *
+     * @param maxDataBytes the largest data to carry, negative to stop
+     */
+    public void setNotificationData(int maxDataBytes) {
+        notificationDataLimit = maxDataBytes;
+        queueSetNotificationData(maxDataBytes);
+    }
+
+    private void queueSetNotificationData(int maxDataBytes) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.setNotificationData);
+        queuePacket(h, new ReplyHeader(), new SetNotificationData(
+                maxDataBytes), null, null, null, null, null);
+    }
+
+    /**
+     * Set the limit on the requests of the caller that are waiting to be
+     * sent or for their response.
+     *
+     * @param max the limit, 0 for no limit
+     * @param block whether a caller waits for a slot when the limit is
+     *                reached, rather than failing the request
+     */
+    public void setMaxOutstandingRequests(int max, boolean block) {
+        synchronized (slots) {
+            maxOutstanding = max;
+            blockWhenFull = block;
+            slots.notifyAll();
+        }
+    }
+
+    /**
+     * @return false if the limit is reached and the caller doesn't wait, or
+     *         the caller was interrupted while waiting
+     */
+    private boolean acquireSlot() {
+        synchronized (slots) {
+            while (maxOutstanding > 0 && outstanding >= maxOutstanding) {
+                if (!blockWhenFull) {
+                    throttledCount++;
+                    return false;
+                }
+                try {
+                    slots.wait();
+                } catch (InterruptedException e) {
+                    // pass the wakeup on, the slot may be free
+                    slots.notify();
+                    Thread.currentThread().interrupt();
+                    throttledCount++;
+                    return false;
+                }
+            }
+            outstanding++;
+            return true;
+        }
+    }
+
+    private void releaseSlot() {
+        synchronized (slots) {
+            outstanding--;
+            slots.notify();
+        }
+    }
+
+    private void sent(Packet p) {
+        long delay = System.nanoTime() - p.submitTime;
+        synchronized (slots) {
+            sentCount++;
+            totalQueueDelay += delay;
+            if (delay > maxQueueDelay) {
+                maxQueueDelay = delay;
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests of the caller waiting to be sent or for
+     *         their response
+     */
+    public int getOutstandingRequests() {
+        synchronized (slots) {
+            return outstanding;
+        }
+    }
+
+    /**
+     * @return the number of requests failed because the limit on outstanding
+     *         requests was reached
+     */
+    public long getThrottledRequests() {
+        synchronized (slots) {
+            return throttledCount;
+        }
+    }
+
+    /**
+     * @return the average time in milliseconds from the submission of a
+     *         request until it was written to the server, including the
+     *         time waited for a slot
+     */
+    public long getAvgQueueDelay() {
+        synchronized (slots) {
+            return sentCount == 0 ? 0 : totalQueueDelay / sentCount / 1000000;
+        }
+    }
+
+    /**
+     * @return the longest time in milliseconds from the submission of a
+     *         request until it was written to the server
+     */
+    public long getMaxQueueDelay() {
+        synchronized (slots) {
+            return maxQueueDelay / 1000000;
+        }
+    }
+
+    /**
+     * Serialize a request, with its length, into a buffer of the pool. Must
+     * be called with the outgoingQueue lock held.
+     */
+    ByteBuffer encodePacket(RequestHeader h, Record request) {
+        encoderOutput.start();
+        try {
+            encoder.writeInt(-1, "len"); // We'll fill this in later
+            h.serialize(encoder, "header");
+            if (request != null) {
+                request.serialize(encoder, "request");
+            }
+        } catch (IOException e) {
+            // the pool doesn't throw
+            LOG.warn("Unexpected exception", e);
+        }
+        ByteBuffer bb = encoderOutput.finish();
+        bb.putInt(0, bb.remaining() - 4);
+        return bb;
+    }
+
     Packet queuePacket(RequestHeader h, ReplyHeader r, Record request,
             Record response, AsyncCallback cb, String path, Object ctx,
             WatchRegistration watchRegistration) {
         Packet packet = null;
+        boolean limited = isLimited(h);
+        long submitTime = 0;
+        if (limited) {
+            submitTime = System.nanoTime();
+            if (!acquireSlot()) {
+                // never serialized, nothing to release
+                packet = new Packet(h, r, request, response, EMPTY_BUFFER,
+                        watchRegistration);
+                packet.bb = null;
+                packet.cb = cb;
+                packet.ctx = ctx;
+                packet.path = path;
+                r.setErr(KeeperException.Code.Throttled);
+                finishPacket(packet);
+                return packet;
+            }
+        }
         synchronized (outgoingQueue) {
             if (h.getType() != OpCode.ping && h.getType() != OpCode.auth) {
                 h.setXid(getXid());
             }
-            packet = new Packet(h, r, request, response, null,
-                    watchRegistration);
+            packet = new Packet(h, r, request, response,
+                    encodePacket(h, request), watchRegistration);
+            packet.limited = limited;
+            packet.submitTime = submitTime;
             packet.cb = cb;
             packet.ctx = ctx;
             packet.path = path;
             if (!zooKeeper.state.isAlive()) {
+                bufferPool.release(packet.bb);
+                packet.bb = null;
                 conLossPacket(packet);
             } else {
                 outgoingQueue.add(packet);
             }
         }
-        synchronized (sendThread) {
-            selector.wakeup();
-        }
+        wakeupSendThread();
         return packet;
     }
 
+    /**
+     * Make the send thread, or the selector thread of the reactor, look at
+     * the connection.
+     */
+    void wakeupSendThread() {
+        if (reactor != null) {
+            selectorThread.wakeup(sendThread);
+        } else {
+            synchronized (sendThread) {
+                selector.wakeup();
+            }
+        }
+    }
+
     public void addAuthInfo(String scheme, byte auth[]) {
         authInfo.add(new AuthData(scheme, auth));
         if (zooKeeper.state == States.CONNECTED) {
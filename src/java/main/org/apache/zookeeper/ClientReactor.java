@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.ClientCnxn.EventThread;
+import org.apache.zookeeper.ClientCnxn.SendThread;
+
+/**
+ * A fixed set of threads shared by many ZooKeeper handles. Without a
+ * reactor every handle starts a send thread and an event thread; handles
+ * created with a reactor are instead driven by one of its selector threads
+ * and have their events delivered by one of its event threads, so the
+ * number of threads doesn't grow with the number of handles.
+ * <p>
+ * The events of a handle are all delivered by the same event thread, in
+ * order, but a slow watcher or callback delays the events of the other
+ * handles sharing the thread. The reactor should be shut down only after
+ * its handles have been closed.
+ */
+public class ClientReactor {
+    private static final Logger LOG = Logger.getLogger(ClientReactor.class);
+
+    private final SelectorThread selectorThreads[];
+
+    private final EventThread eventThreads[];
+
+    private final AtomicInteger nextSelectorThread = new AtomicInteger();
+
+    private final AtomicInteger nextEventThread = new AtomicInteger();
+
+    /**
+     * @param selectorThreads
+     *                the number of threads doing the network i/o of the
+     *                handles
+     * @param eventThreads
+     *                the number of threads delivering the watch events and
+     *                callbacks of the handles
+     */
+    public ClientReactor(int selectorThreads, int eventThreads)
+            throws IOException {
+        if (selectorThreads < 1 || eventThreads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        this.selectorThreads = new SelectorThread[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) {
+            this.selectorThreads[i] =
+                new SelectorThread("ClientReactor-SelectorThread-" + i);
+        }
+        this.eventThreads = new EventThread[eventThreads];
+        for (int i = 0; i < eventThreads; i++) {
+            this.eventThreads[i] =
+                new EventThread("ClientReactor-EventThread-" + i);
+        }
+        for (SelectorThread t : this.selectorThreads) {
+            t.start();
+        }
+        for (EventThread t : this.eventThreads) {
+            t.start();
+        }
+    }
+
+    SelectorThread nextSelectorThread() {
+        return selectorThreads[next(nextSelectorThread, selectorThreads.length)];
+    }
+
+    EventThread nextEventThread() {
+        return eventThreads[next(nextEventThread, eventThreads.length)];
+    }
+
+    private static int next(AtomicInteger counter, int n) {
+        return (counter.getAndIncrement() & 0x7fffffff) % n;
+    }
+
+    /**
+     * @return the number of connections driven by the reactor
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (SelectorThread t : selectorThreads) {
+            count += t.connectionCount;
+        }
+        return count;
+    }
+
+    /**
+     * Stop the threads of the reactor. The connections of handles that are
+     * still open are dropped without closing their sessions.
+     */
+    public void shutdown() throws InterruptedException {
+        for (SelectorThread t : selectorThreads) {
+            t.shutdown();
+        }
+        for (EventThread t : eventThreads) {
+            t.queue(ClientCnxn.eventOfDeath);
+        }
+        for (SelectorThread t : selectorThreads) {
+            t.join();
+        }
+        for (EventThread t : eventThreads) {
+            t.join();
+        }
+    }
+
+    /**
+     * Drives the connections assigned to it, with a single selector. The
+     * timed work of all the connections, connecting and sending pings, is
+     * only looked at when the earliest of them is due, or when the
+     * connection had i/o or was woken up.
+     */
+    static class SelectorThread extends Thread {
+        final Selector selector;
+
+        /**
+         * The connections that were added or have new packets to send.
+         */
+        private final ConcurrentLinkedQueue<SendThread> woken =
+            new ConcurrentLinkedQueue<SendThread>();
+
+        /**
+         * Only used by this thread.
+         */
+        private final ArrayList<SendThread> connections =
+            new ArrayList<SendThread>();
+
+        private volatile int connectionCount;
+
+        private volatile boolean running = true;
+
+        SelectorThread(String name) throws IOException {
+            super(name);
+            selector = Selector.open();
+            setUncaughtExceptionHandler(ClientCnxn.uncaughtExceptionHandler);
+            setDaemon(true);
+        }
+
+        void add(SendThread connection) {
+            wakeup(connection);
+        }
+
+        void wakeup(SendThread connection) {
+            if (connection.wakeupPending.compareAndSet(false, true)) {
+                woken.add(connection);
+                selector.wakeup();
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long nextScan = 0;
+            while (running) {
+                try {
+                    long now = System.currentTimeMillis();
+                    if (now >= nextScan) {
+                        nextScan = Long.MAX_VALUE;
+                        // backwards, finished connections are removed
+                        for (int i = connections.size() - 1; i >= 0; i--) {
+                            nextScan = Math.min(nextScan,
+                                    service(connections.get(i), now));
+                        }
+                    }
+                    SendThread c;
+                    while ((c = woken.poll()) != null) {
+                        c.wakeupPending.set(false);
+                        if (!c.added) {
+                            c.added = true;
+                            c.lastHeard = now;
+                            c.lastSend = now;
+                            connections.add(c);
+                            connectionCount = connections.size();
+                        }
+                        nextScan = Math.min(nextScan, service(c, now));
+                    }
+
+                    long to = nextScan - now;
+                    if (to <= 0) {
+                        selector.selectNow();
+                    } else {
+                        selector.select(to);
+                    }
+                    now = System.currentTimeMillis();
+                    Set<SelectionKey> selected = selector.selectedKeys();
+                    for (SelectionKey k : selected) {
+                        c = (SendThread) k.attachment();
+                        if (!k.isValid()) {
+                            continue;
+                        }
+                        try {
+                            c.doSelected(k, now);
+                        } catch (Exception e) {
+                            if (!c.connectionFailed(e)) {
+                                finish(c);
+                                continue;
+                            }
+                        }
+                        nextScan = Math.min(nextScan, service(c, now));
+                    }
+                    selected.clear();
+                } catch (Exception e) {
+                    LOG.warn("Unexpected exception in " + getName(), e);
+                }
+            }
+            for (SendThread c : connections) {
+                c.cleanup();
+            }
+            connections.clear();
+            connectionCount = 0;
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOG.warn("Ignoring exception during selector close", e);
+            }
+            LOG.info(getName() + " exited");
+        }
+
+        /**
+         * Do the timed work of the connection and select its writes.
+         *
+         * @return when the connection has timed work due again
+         */
+        private long service(SendThread c, long now) {
+            try {
+                if (c.isDone()) {
+                    finish(c);
+                    return Long.MAX_VALUE;
+                }
+                long due = now + c.doTimedWork(now);
+                c.updateInterest();
+                return due;
+            } catch (Exception e) {
+                if (!c.connectionFailed(e)) {
+                    finish(c);
+                    return Long.MAX_VALUE;
+                }
+                return c.nextConnectTime;
+            }
+        }
+
+        private void finish(SendThread c) {
+            c.cleanup();
+            if (connections.remove(c)) {
+                connectionCount = connections.size();
+            }
+        }
+    }
+}
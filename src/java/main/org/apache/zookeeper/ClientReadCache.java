@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.server.DataTree;
+
+/**
+ * Caches the results of getData and getChildren calls that left a watch on
+ * a node. An entry is only kept while the watch is active: it is removed
+ * when the watch is triggered or when the connection to the server is lost,
+ * so the cache never returns data older than what the server would have
+ * notified. The least recently used entries are evicted once the cache
+ * holds more than the maximum number of entries.
+ * <p>
+ * The data entries are guarded by the data watches of the client and the
+ * children entries by the child watches, see {@link ZooKeeper}.
+ */
+public class ClientReadCache {
+    static class CachedData {
+        final byte data[];
+
+        final Stat stat;
+
+        CachedData(byte data[], Stat stat) {
+            this.data = data;
+            this.stat = stat;
+        }
+    }
+
+    private static class LRUMap<V> extends LinkedHashMap<String, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LRUMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private final LRUMap<CachedData> data;
+
+    private final LRUMap<List<String>> children;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries the maximum number of data entries and of children
+     * entries
+     */
+    ClientReadCache(int maxEntries) {
+        data = new LRUMap<CachedData>(maxEntries);
+        children = new LRUMap<List<String>>(maxEntries);
+    }
+
+    /**
+     * @return the cached data of the node, with the stat copied in stat if
+     * not null, or null if the node is not cached
+     */
+    CachedData getData(String path, Stat stat) {
+        CachedData cached = data.get(path);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        if (stat != null) {
+            DataTree.copyStat(cached.stat, stat);
+        }
+        return cached;
+    }
+
+    void putData(String path, byte nodeData[], Stat stat) {
+        Stat copy = new Stat();
+        DataTree.copyStat(stat, copy);
+        data.put(path, new CachedData(nodeData == null ? null
+                : nodeData.clone(), copy));
+    }
+
+    void removeData(String path) {
+        data.remove(path);
+    }
+
+    /**
+     * @return a copy of the cached children of the node, or null if they are
+     * not cached
+     */
+    List<String> getChildren(String path) {
+        List<String> cached = children.get(path);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new ArrayList<String>(cached);
+    }
+
+    void putChildren(String path, List<String> nodeChildren) {
+        children.put(path, new ArrayList<String>(nodeChildren));
+    }
+
+    void removeChildren(String path) {
+        children.remove(path);
+    }
+
+    void clearData() {
+        data.clear();
+    }
+
+    void clearChildren() {
+        children.clear();
+    }
+
+    /**
+     * @return the number of reads served from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of reads that went to the server
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of data entries
+     */
+    public int getDataSize() {
+        return data.size();
+    }
+
+    /**
+     * @return the number of children entries
+     */
+    public int getChildrenSize() {
+        return children.size();
+    }
+
+    @Override
+    public String toString() {
+        return "hits: " + getHits() + " misses: " + getMisses();
+    }
+}
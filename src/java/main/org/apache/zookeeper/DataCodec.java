@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.io.IOException;
+
+/**
+ * Compresses the data of nodes for {@link DataCompression}. A codec is
+ * used by several threads at once.
+ */
+public interface DataCodec {
+    /**
+     * @return the id stored with the data the codec encoded, between 1 and
+     *         255 and the same in all the clients
+     */
+    public int getId();
+
+    public byte[] encode(byte data[]) throws IOException;
+
+    /**
+     * @param decodedLength
+     *                the length of the data before it was encoded
+     * @throws IOException
+     *                 if the data is corrupt
+     */
+    public byte[] decode(byte data[], int offset, int length,
+            int decodedLength) throws IOException;
+}
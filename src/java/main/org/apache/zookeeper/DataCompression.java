@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jute.Record;
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.data.ChildData;
+import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.proto.GetChildrenDataResponse;
+import org.apache.zookeeper.proto.GetDataResponse;
+
+/**
+ * Compresses the data a client writes to nodes and decompresses the data it
+ * reads, so that large data takes less room on the wire and in the memory
+ * and snapshots of the servers, which store it as is.
+ * <p>
+ * Data at least as long as the threshold is encoded with the codec given
+ * to the constructor and stored behind a header: the magic bytes 0xff 'Z'
+ * 'C', the id of the codec and the length of the original data. A 0xff
+ * byte never starts UTF-8 text, so plain data is hardly ever mistaken for
+ * encoded data; data that does start with the magic bytes is stored behind
+ * a header with codec id 0, meaning not encoded. Data that doesn't shrink
+ * is stored as it is.
+ * <p>
+ * Reading data encoded with a codec that was not registered, or that is
+ * corrupt, returns it as it is stored. Clients without compression read
+ * the stored bytes, so all the clients writing or reading compressed nodes
+ * should use it.
+ * <p>
+ * The data length of the stat that comes with the data read, by getData,
+ * getChildrenData or a notification, is the length of the decompressed
+ * data. The other stats, such as those returned by exists and setData, give
+ * the length of the data as it is stored.
+ */
+public class DataCompression {
+    private static final Logger LOG = Logger.getLogger(DataCompression.class);
+
+    static final byte MAGIC[] = { (byte) 0xff, 'Z', 'C' };
+
+    public static final int HEADER_SIZE = MAGIC.length + 1 + 4;
+
+    /**
+     * The longest data decoded, to guard against corrupt headers.
+     */
+    static final int MAX_DECODED_LENGTH = 64 * 1024 * 1024;
+
+    private static final int STORED = 0;
+
+    private final DataCodec codec;
+
+    private final int threshold;
+
+    private final ConcurrentHashMap<Integer, DataCodec> codecs =
+        new ConcurrentHashMap<Integer, DataCodec>();
+
+    /**
+     * @param codec
+     *                encodes the data that is written
+     * @param threshold
+     *                the length of the shortest data encoded
+     */
+    public DataCompression(DataCodec codec, int threshold) {
+        if (codec.getId() <= STORED || codec.getId() > 255) {
+            throw new IllegalArgumentException("Invalid codec id "
+                    + codec.getId());
+        }
+        this.codec = codec;
+        this.threshold = Math.max(threshold, HEADER_SIZE + 1);
+        register(codec);
+    }
+
+    /**
+     * Deflate the data of at least threshold bytes.
+     */
+    public DataCompression(int threshold) {
+        this(new DeflateCodec(), threshold);
+    }
+
+    /**
+     * Decode the data encoded by the codec, in addition to the data encoded
+     * by the codec given to the constructor.
+     */
+    public void register(DataCodec codec) {
+        codecs.put(codec.getId(), codec);
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    private static boolean hasHeader(byte data[]) {
+        if (data == null || data.length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] frame(int id, int length, byte encoded[]) {
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + encoded.length);
+        bb.put(MAGIC);
+        bb.put((byte) id);
+        bb.putInt(length);
+        bb.put(encoded);
+        return bb.array();
+    }
+
+    /**
+     * @return the data to store for the given data
+     */
+    public byte[] compress(byte data[]) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length >= threshold) {
+            try {
+                byte encoded[] = codec.encode(data);
+                if (HEADER_SIZE + encoded.length < data.length) {
+                    return frame(codec.getId(), data.length, encoded);
+                }
+            } catch (IOException e) {
+                LOG.warn("Storing data that could not be encoded", e);
+            }
+        }
+        if (hasHeader(data)) {
+            return frame(STORED, data.length, data);
+        }
+        return data;
+    }
+
+    /**
+     * @return the data that was given to compress for the stored data
+     */
+    public byte[] decompress(byte data[]) {
+        if (!hasHeader(data)) {
+            return data;
+        }
+        ByteBuffer bb = ByteBuffer.wrap(data, MAGIC.length, HEADER_SIZE
+                - MAGIC.length);
+        int id = bb.get() & 0xff;
+        int length = bb.getInt();
+        int encodedLength = data.length - HEADER_SIZE;
+        if (id == STORED) {
+            if (length != encodedLength) {
+                return data;
+            }
+            byte decoded[] = new byte[length];
+            System.arraycopy(data, HEADER_SIZE, decoded, 0, length);
+            return decoded;
+        }
+        DataCodec decoder = codecs.get(id);
+        if (decoder == null || length < 0 || length > MAX_DECODED_LENGTH) {
+            return data;
+        }
+        try {
+            return decoder.decode(data, HEADER_SIZE, encodedLength, length);
+        } catch (IOException e) {
+            LOG.warn("Returning data that could not be decoded: "
+                    + e.getMessage());
+            return data;
+        } catch (RuntimeException e) {
+            // decoded by the thread of the caller or of its callbacks
+            LOG.warn("Returning data that could not be decoded", e);
+            return data;
+        }
+    }
+
+    /**
+     * Decompress the data read along with its stat, setting the data length
+     * of the stat to the length of the decompressed data.
+     *
+     * @param stat
+     *                the stat of the node, may be null
+     */
+    byte[] decompress(byte data[], Stat stat) {
+        byte decompressed[] = decompress(data);
+        if (stat != null && decompressed != data) {
+            stat.setDataLength(decompressed.length);
+        }
+        return decompressed;
+    }
+
+    /**
+     * Decompress the data carried by a response.
+     */
+    void decompressRecord(Record record) {
+        if (record instanceof GetDataResponse) {
+            GetDataResponse rsp = (GetDataResponse) record;
+            rsp.setData(decompress(rsp.getData(), rsp.getStat()));
+        } else if (record instanceof GetChildrenDataResponse) {
+            for (ChildData child : ((GetChildrenDataResponse) record)
+                    .getChildren()) {
+                child.setData(decompress(child.getData(), child.getStat()));
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The deflate compression of java.util.zip.
+ */
+public class DeflateCodec implements DataCodec {
+    public static final int ID = 1;
+
+    private final int level;
+
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level
+     *                the compression level, from 0 to 9
+     */
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    public int getId() {
+        return ID;
+    }
+
+    public byte[] encode(byte data[]) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    data.length / 4 + 16);
+            byte buf[] = new byte[Math.min(data.length + 16, 8192)];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public byte[] decode(byte data[], int offset, int length,
+            int decodedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte decoded[] = new byte[decodedLength];
+            int done = 0;
+            while (done < decodedLength) {
+                int n = inflater.inflate(decoded, done, decodedLength - done);
+                if (n == 0 && (inflater.finished() || inflater.needsInput()
+                        || inflater.needsDictionary())) {
+                    break;
+                }
+                done += n;
+            }
+            if (done != decodedLength || !inflater.finished()) {
+                throw new IOException("Deflated data of the wrong length");
+            }
+            return decoded;
+        } catch (DataFormatException e) {
+            IOException ioe = new IOException("Corrupt deflated data");
+            ioe.initCause(e);
+            throw ioe;
+        } finally {
+            inflater.end();
+        }
+    }
+}
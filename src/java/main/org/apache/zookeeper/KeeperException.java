@@ -65,6 +65,8 @@ public abstract class KeeperException extends Exception {
                 return new OperationTimeoutException();
             case Code.BadArguments:
                 return new BadArgumentsException();
+            case Code.Throttled:
+                return new ThrottledException();
             case Code.APIError:
                 return new APIErrorException();
             case Code.NoNode:
@@ -118,6 +120,11 @@ public abstract class KeeperException extends Exception {
 
         int BadArguments = SystemError - 7;
 
+        // SystemError - 8 is the invalid state error of the C client
+
+        // the client limit on outstanding requests was reached
+        int Throttled = SystemError - 9;
+
         // API errors
         int APIError = -100; // Catch all, shouldn't be used other
         // than range start
@@ -164,6 +171,8 @@ public abstract class KeeperException extends Exception {
                 return "OperationTimeout";
             case Code.BadArguments:
                 return "BadArguments";
+            case Code.Throttled:
+                return "Throttled";
             case Code.APIError:
                 return "APIError";
             case Code.NoNode:
@@ -328,6 +337,12 @@ public abstract class KeeperException extends Exception {
         }
     }
 
+    public static class ThrottledException extends KeeperException {
+        public ThrottledException() {
+            super(Code.Throttled);
+        }
+    }
+
     public static class UnimplementedException extends KeeperException {
         public UnimplementedException() {
             super(Code.Unimplemented);
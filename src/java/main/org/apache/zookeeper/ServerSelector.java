@@ -0,0 +1,332 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.proto.ServerLoad;
+
+/**
+ * Picks the server a client connects to. Each server is scored by the round
+ * trip time measured on the connections to it and by the load it reported
+ * the last time the client was connected to it; servers listed as local are
+ * preferred. Servers that could not be reached are left alone for a while.
+ * <p>
+ * Servers the client knows nothing about are scored like the average known
+ * server, so a client spreads out over them before it has measured them.
+ * What is known about a server gets stale and is forgotten after
+ * {@link #STATS_MAX_AGE} milliseconds.
+ * <p>
+ * Only used by the thread driving the connection.
+ */
+class ServerSelector {
+    private static final Logger LOG = Logger.getLogger(ServerSelector.class);
+
+    /**
+     * The cost, in milliseconds of round trip time, of a request waiting at
+     * the server.
+     */
+    static final double OUTSTANDING_COST = 1.0;
+
+    /**
+     * The cost, in milliseconds of round trip time, of a client connected
+     * to the server.
+     */
+    static final double CONNECTION_COST = 0.01;
+
+    /**
+     * The cost of a local server is multiplied by this factor.
+     */
+    static final double LOCAL_FACTOR = 0.5;
+
+    /**
+     * Weight of a new round trip time sample in the moving average.
+     */
+    static final double RTT_ALPHA = 0.25;
+
+    static final long STATS_MAX_AGE = 10 * 60 * 1000;
+
+    /**
+     * How long a server that could not be reached is avoided.
+     */
+    static final int FAILURE_DELAY = 1000;
+
+    /**
+     * A connected client only moves to a server that costs less than this
+     * fraction of the cost of its current server.
+     */
+    static final double REBALANCE_RATIO = 0.5;
+
+    static class Server {
+        final InetSocketAddress addr;
+
+        final boolean local;
+
+        /**
+         * Moving average of the round trip time in milliseconds, negative if
+         * unknown.
+         */
+        double rtt = -1;
+
+        /**
+         * The last reported load, null if unknown.
+         */
+        ServerLoad load;
+
+        /**
+         * When rtt or load was last updated.
+         */
+        long updated;
+
+        /**
+         * The server is not tried again before this time.
+         */
+        long failedUntil;
+
+        Server(InetSocketAddress addr, boolean local) {
+            this.addr = addr;
+            this.local = local;
+        }
+
+        @Override
+        public String toString() {
+            return addr + (local ? " (local)" : "") + " rtt=" + rtt
+                    + " load=" + load;
+        }
+    }
+
+    private final ArrayList<Server> servers = new ArrayList<Server>();
+
+    private final Random r;
+
+    /**
+     * Round robin among servers of the same cost.
+     */
+    private int next;
+
+    /**
+     * @param addrs
+     *                the servers, ties are broken in this order
+     * @param localServers
+     *                the comma separated host[:port] list of the servers
+     *                that are close to the client, may be null
+     */
+    ServerSelector(List<InetSocketAddress> addrs, String localServers,
+            Random r) {
+        this.r = r;
+        Set<InetSocketAddress> local = parseLocalServers(localServers);
+        for (InetSocketAddress addr : addrs) {
+            servers.add(new Server(addr, local.contains(addr)
+                    || local.contains(new InetSocketAddress(addr.getAddress(),
+                            0))));
+        }
+    }
+
+    private static Set<InetSocketAddress> parseLocalServers(String hosts) {
+        Set<InetSocketAddress> local = new HashSet<InetSocketAddress>();
+        if (hosts == null) {
+            return local;
+        }
+        for (String host : hosts.split(",")) {
+            host = host.trim();
+            if (host.length() == 0) {
+                continue;
+            }
+            // a missing port matches any port of the host
+            int port = 0;
+            String parts[] = host.split(":");
+            try {
+                if (parts.length > 1) {
+                    port = Integer.parseInt(parts[1]);
+                    host = parts[0];
+                }
+                for (InetAddress addr : InetAddress.getAllByName(host)) {
+                    local.add(new InetSocketAddress(addr, port));
+                }
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid local server " + host);
+            } catch (UnknownHostException e) {
+                LOG.warn("Ignoring unknown local server " + host);
+            }
+        }
+        return local;
+    }
+
+    List<Server> getServers() {
+        return servers;
+    }
+
+    /**
+     * Forget what is too old to be trusted.
+     */
+    private void expire(long now) {
+        for (Server s : servers) {
+            if (s.updated != 0 && now - s.updated > STATS_MAX_AGE) {
+                s.rtt = -1;
+                s.load = null;
+                s.updated = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the cost of connecting to the server, lower is better
+     */
+    double cost(Server s) {
+        double rtt = s.rtt >= 0 ? s.rtt : averageRtt();
+        double outstanding = 0;
+        double connections = 0;
+        if (s.load != null) {
+            outstanding = s.load.getOutstandingRequests();
+            connections = s.load.getConnections();
+        } else {
+            int loads = 0;
+            for (Server o : servers) {
+                if (o.load != null) {
+                    outstanding += o.load.getOutstandingRequests();
+                    connections += o.load.getConnections();
+                    loads++;
+                }
+            }
+            if (loads > 0) {
+                outstanding /= loads;
+                connections /= loads;
+            }
+        }
+        // at least a millisecond, so that a local server wins ties
+        double cost = 1 + rtt + OUTSTANDING_COST * outstanding
+                + CONNECTION_COST * connections;
+        return s.local ? cost * LOCAL_FACTOR : cost;
+    }
+
+    private double averageRtt() {
+        double sum = 0;
+        int count = 0;
+        for (Server s : servers) {
+            if (s.rtt >= 0) {
+                sum += s.rtt;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return the server to connect to, preferring the cheapest of the
+     *         servers that have not failed recently
+     */
+    Server next(long now) {
+        expire(now);
+        Server best = null;
+        double bestCost = 0;
+        int n = servers.size();
+        for (int i = 0; i < n; i++) {
+            Server s = servers.get((next + i) % n);
+            if (s.failedUntil > now) {
+                continue;
+            }
+            double cost = cost(s);
+            if (best == null || cost < bestCost) {
+                best = s;
+                bestCost = cost;
+            }
+        }
+        if (best == null) {
+            // all of them failed, try the one that failed first
+            for (Server s : servers) {
+                if (best == null || s.failedUntil < best.failedUntil) {
+                    best = s;
+                }
+            }
+        }
+        next = (servers.indexOf(best) + 1) % n;
+        return best;
+    }
+
+    /**
+     * @return when a server that has not failed recently is available
+     */
+    long nextAvailable(long now) {
+        long earliest = Long.MAX_VALUE;
+        for (Server s : servers) {
+            if (s.failedUntil <= now) {
+                return now;
+            }
+            earliest = Math.min(earliest, s.failedUntil);
+        }
+        return earliest;
+    }
+
+    void rttMeasured(Server s, double rtt, long now) {
+        s.rtt = s.rtt < 0 ? rtt : s.rtt + RTT_ALPHA * (rtt - s.rtt);
+        s.updated = now;
+    }
+
+    void loadReported(Server s, ServerLoad load, long now) {
+        s.load = load;
+        s.updated = now;
+    }
+
+    void connected(Server s) {
+        s.failedUntil = 0;
+    }
+
+    void failed(Server s, long now) {
+        s.failedUntil = now + FAILURE_DELAY + r.nextInt(FAILURE_DELAY);
+    }
+
+    /**
+     * Decide whether a connected client should move to another server. A
+     * client only moves when a server costs much less than its current one,
+     * and then only with a probability that grows with the difference, so
+     * that the clients of a loaded server leave it a few at a time.
+     *
+     * @return the server to move to, null to stay
+     */
+    Server rebalance(Server current, long now) {
+        expire(now);
+        double currentCost = cost(current);
+        Server best = null;
+        double bestCost = currentCost * REBALANCE_RATIO;
+        for (Server s : servers) {
+            if (s == current || s.failedUntil > now
+                    || (s.rtt < 0 && s.load == null)) {
+                continue;
+            }
+            double cost = cost(s);
+            if (cost < bestCost) {
+                best = s;
+                bestCost = cost;
+            }
+        }
+        if (best == null
+                || r.nextDouble() >= 1 - bestCost / currentCost) {
+            return null;
+        }
+        return best;
+    }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.zookeeper;
 
+import org.apache.zookeeper.data.Stat;
 import org.apache.zookeeper.proto.WatcherEvent;
 import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
@@ -31,6 +32,8 @@ public class WatchedEvent {
     final private KeeperState keeperState;
     final private EventType eventType;
     private String path;
+    final private Stat stat;
+    final private byte data[];
     
     /**
      * Create a WatchedEvent with specified type, state and path
@@ -39,15 +42,27 @@ public class WatchedEvent {
         this.keeperState = keeperState;
         this.eventType = eventType;
         this.path = path;
+        this.stat = null;
+        this.data = null;
     }
     
     /**
      * Convert a WatcherEvent sent over the wire into a full-fledged WatcherEvent
      */
     public WatchedEvent(WatcherEvent eventMessage) {
+        this(eventMessage, null, null);
+    }
+
+    /**
+     * Convert a WatcherEvent sent over the wire along with the stat and data
+     * of the node into a full-fledged WatcherEvent
+     */
+    public WatchedEvent(WatcherEvent eventMessage, Stat stat, byte data[]) {
         keeperState = KeeperState.fromInt(eventMessage.getState());
         eventType = EventType.fromInt(eventMessage.getType());
         path = eventMessage.getPath();
+        this.stat = stat;
+        this.data = data;
     }
     
     public KeeperState getState() {
@@ -62,6 +77,27 @@ public class WatchedEvent {
         return path;
     }
 
+    /**
+     * @return the stat of the node right after the change, null unless the
+     *         client asked for it with ZooKeeper.setNotificationData and
+     *         the node still exists
+     * @see ZooKeeper#setNotificationData(int)
+     */
+    public Stat getStat() {
+        return stat;
+    }
+
+    /**
+     * @return the data of the node right after it was created or changed,
+     *         null unless the client asked for it with
+     *         ZooKeeper.setNotificationData and it is no larger than the
+     *         client wanted
+     * @see ZooKeeper#setNotificationData(int)
+     */
+    public byte[] getData() {
+        return data;
+    }
+
     @Override
     public String toString() {
         if(path == null)  // then is a state change 
@@ -48,14 +48,42 @@ public class ZooDefs {
 
         public final int ping = 11;
 
+        public final int getChildrenData = 12;
+
+        public final int getChildrenPage = 13;
+
+        public final int addRecursiveWatch = 14;
+
+        public final int removeRecursiveWatch = 15;
+
+        public final int getDataIfChanged = 16;
+
+        public final int awaitZxid = 17;
+
+        public final int deleteTree = 18;
+
+        public final int createTree = 19;
+
+        public final int increment = 20;
+
+        public final int getPredecessor = 21;
+
         public final int auth = 100;
         
         public final int setWatches = 101;
 
+        public final int setWatchesCompact = 102;
+
+        public final int setRecursiveWatches = 103;
+
+        public final int setNotificationData = 104;
+
         public final int createSession = -10;
 
         public final int closeSession = -11;
 
+        public final int closeSessions = -12;
+
         public final int error = -1;
     }
 
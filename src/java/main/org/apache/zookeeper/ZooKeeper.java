@@ -18,6 +18,7 @@
 
 package org.apache.zookeeper;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,25 +27,47 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.jute.BinaryInputArchive;
+import org.apache.jute.BinaryOutputArchive;
+import org.apache.jute.Record;
 import org.apache.log4j.Logger;
 import org.apache.zookeeper.AsyncCallback.ACLCallback;
 import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.ChildrenDataCallback;
+import org.apache.zookeeper.AsyncCallback.CounterCallback;
 import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.AsyncCallback.ProgressCallback;
 import org.apache.zookeeper.AsyncCallback.StatCallback;
 import org.apache.zookeeper.AsyncCallback.StringCallback;
 import org.apache.zookeeper.AsyncCallback.VoidCallback;
 import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.ChildData;
+import org.apache.zookeeper.data.NewNode;
 import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.proto.AwaitZxidRequest;
 import org.apache.zookeeper.proto.CreateRequest;
 import org.apache.zookeeper.proto.CreateResponse;
+import org.apache.zookeeper.proto.CreateTreeRequest;
+import org.apache.zookeeper.proto.CreateTreeResponse;
 import org.apache.zookeeper.proto.DeleteRequest;
+import org.apache.zookeeper.proto.DeleteTreeRequest;
+import org.apache.zookeeper.proto.DeleteTreeResponse;
 import org.apache.zookeeper.proto.ExistsRequest;
 import org.apache.zookeeper.proto.GetACLRequest;
 import org.apache.zookeeper.proto.GetACLResponse;
+import org.apache.zookeeper.proto.GetChildrenDataRequest;
+import org.apache.zookeeper.proto.GetChildrenDataResponse;
+import org.apache.zookeeper.proto.GetChildrenPageRequest;
 import org.apache.zookeeper.proto.GetChildrenRequest;
 import org.apache.zookeeper.proto.GetChildrenResponse;
+import org.apache.zookeeper.proto.GetDataIfChangedRequest;
 import org.apache.zookeeper.proto.GetDataRequest;
 import org.apache.zookeeper.proto.GetDataResponse;
+import org.apache.zookeeper.proto.GetPredecessorRequest;
+import org.apache.zookeeper.proto.GetPredecessorResponse;
+import org.apache.zookeeper.proto.IncrementRequest;
+import org.apache.zookeeper.proto.IncrementResponse;
+import org.apache.zookeeper.proto.RecursiveWatchRequest;
 import org.apache.zookeeper.proto.ReplyHeader;
 import org.apache.zookeeper.proto.RequestHeader;
 import org.apache.zookeeper.proto.SetACLRequest;
@@ -112,6 +135,12 @@ public class ZooKeeper {
         List<String> rc = new ArrayList<String>(watchManager.childWatches.keySet());
         return rc;
     }
+    List<String> getRecursiveWatches() {
+        synchronized (watchManager.recursiveWatches) {
+            return new ArrayList<String>(
+                    watchManager.recursiveWatches.keySet());
+        }
+    }
 
 /**
      * Manage watchers & handle events generated by the ClientCnxn object.
@@ -127,6 +156,12 @@ public class ZooKeeper {
             new HashMap<String, Set<Watcher>>();
         private final Map<String, Set<Watcher>> childWatches =
             new HashMap<String, Set<Watcher>>();
+        /**
+         * The watches on subtrees, keyed by the root of the subtree. They
+         * stay until they are removed.
+         */
+        private final Map<String, Set<Watcher>> recursiveWatches =
+            new HashMap<String, Set<Watcher>>();
         
         private volatile Watcher defaultWatcher;
 
@@ -135,6 +170,27 @@ public class ZooKeeper {
                 to.addAll(from);
             }
         }
+
+        /**
+         * Add the recursive watchers of the path and of every node above it.
+         */
+        private void addRecursiveTo(String path, Set<Watcher> to) {
+            synchronized (recursiveWatches) {
+                if (recursiveWatches.isEmpty()) {
+                    return;
+                }
+                String prefix = path;
+                while (true) {
+                    addTo(recursiveWatches.get(prefix), to);
+                    if (prefix.equals("/")) {
+                        break;
+                    }
+                    int lastSlash = prefix.lastIndexOf('/');
+                    prefix = lastSlash <= 0 ? "/"
+                            : prefix.substring(0, lastSlash);
+                }
+            }
+        }
         
         /* (non-Javadoc)
          * @see org.apache.zookeeper.ClientWatchManager#materialize(Event.KeeperState, Event.EventType, java.lang.String)
@@ -155,6 +211,23 @@ public class ZooKeeper {
                 for(Set<Watcher> ws: childWatches.values()) {
                     result.addAll(ws);
                 }
+                synchronized (recursiveWatches) {
+                    for (Set<Watcher> ws : recursiveWatches.values()) {
+                        result.addAll(ws);
+                    }
+                }
+
+                // the cache can't be trusted once notifications may have
+                // been missed
+                if (readCache != null
+                        && state != Watcher.Event.KeeperState.SyncConnected) {
+                    synchronized (dataWatches) {
+                        readCache.clearData();
+                    }
+                    synchronized (childWatches) {
+                        readCache.clearChildren();
+                    }
+                }
 
                 // clear the watches if auto watch reset is not enabled
                 if (ClientCnxn.disableAutoWatchReset &&
@@ -169,6 +242,9 @@ public class ZooKeeper {
                     synchronized(childWatches) {
                         childWatches.clear();
                     }
+                    synchronized (recursiveWatches) {
+                        recursiveWatches.clear();
+                    }
                 }
 
                 return result;
@@ -176,19 +252,29 @@ public class ZooKeeper {
             case NodeCreated:
                 synchronized (dataWatches) {
                     addTo(dataWatches.remove(path), result);
+                    if (readCache != null) {
+                        readCache.removeData(path);
+                    }
                 }
                 synchronized (existWatches) {
                     addTo(existWatches.remove(path), result);
                 }
+                addRecursiveTo(path, result);
                 break;
             case NodeChildrenChanged:
                 synchronized (childWatches) {
                     addTo(childWatches.remove(path), result);
+                    if (readCache != null) {
+                        readCache.removeChildren(path);
+                    }
                 }
                 break;
             case NodeDeleted:
                 synchronized (dataWatches) {
                     addTo(dataWatches.remove(path), result);
+                    if (readCache != null) {
+                        readCache.removeData(path);
+                    }
                 }
                 // XXX This shouldn't be needed, but just in case
                 synchronized (existWatches) {
@@ -197,7 +283,11 @@ public class ZooKeeper {
                 }
                 synchronized (childWatches) {
                     addTo(childWatches.remove(path), result);
+                    if (readCache != null) {
+                        readCache.removeChildren(path);
+                    }
                 }
+                addRecursiveTo(path, result);
                 break;
             default:
                 String msg = "Unhandled watch event type " + type
@@ -294,6 +384,96 @@ public class ZooKeeper {
         }
     }
 
+    class RecursiveWatchRegistration extends WatchRegistration {
+        public RecursiveWatchRegistration(Watcher watcher, String path) {
+            super(watcher, path);
+        }
+
+        @Override
+        protected Map<String, Set<Watcher>> getWatches(int rc) {
+            return watchManager.recursiveWatches;
+        }
+    }
+
+    /**
+     * Adds the result of a getData to the read cache along with the watch,
+     * so that the entry is removed by the notification of the watch.
+     */
+    class CachingDataWatchRegistration extends DataWatchRegistration {
+        private final String path;
+        private final GetDataResponse response;
+
+        public CachingDataWatchRegistration(Watcher watcher, String path,
+                GetDataResponse response) {
+            super(watcher, path);
+            this.path = path;
+            this.response = response;
+        }
+
+        @Override
+        public void register(int rc) {
+            synchronized (watchManager.dataWatches) {
+                super.register(rc);
+                if (shouldAddWatch(rc)) {
+                    readCache.putData(path, response.getData(),
+                            response.getStat());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the result of a getChildren to the read cache along with the
+     * watch.
+     */
+    class CachingChildWatchRegistration extends ChildWatchRegistration {
+        private final String path;
+        private final GetChildrenResponse response;
+
+        public CachingChildWatchRegistration(Watcher watcher, String path,
+                GetChildrenResponse response) {
+            super(watcher, path);
+            this.path = path;
+            this.response = response;
+        }
+
+        @Override
+        public void register(int rc) {
+            synchronized (watchManager.childWatches) {
+                super.register(rc);
+                if (shouldAddWatch(rc)) {
+                    readCache.putChildren(path, response.getChildren());
+                }
+            }
+        }
+    }
+
+    /**
+     * Leaves the watch of a getPredecessor on the predecessor it found.
+     */
+    class PredecessorWatchRegistration extends DataWatchRegistration {
+        private final Watcher watcher;
+        private final String path;
+        private final GetPredecessorResponse response;
+
+        public PredecessorWatchRegistration(Watcher watcher, String path,
+                GetPredecessorResponse response) {
+            super(watcher, path);
+            this.watcher = watcher;
+            this.path = path;
+            this.response = response;
+        }
+
+        @Override
+        public void register(int rc) {
+            if (shouldAddWatch(rc) && response.getName() != null) {
+                String predecessor = path.equals("/") ? "/"
+                        + response.getName() : path + "/" + response.getName();
+                new DataWatchRegistration(watcher, predecessor).register(rc);
+            }
+        }
+    }
+
     public enum States {
         CONNECTING, ASSOCIATING, CONNECTED, CLOSED, AUTH_FAILED;
 
@@ -306,6 +486,13 @@ public class ZooKeeper {
 
     protected ClientCnxn cnxn;
 
+    /**
+     * Serves the reads of watched nodes, null unless enabled.
+     */
+    private volatile ClientReadCache readCache;
+
+    private volatile DataCompression dataCompression;
+
     /**
      * @see ZooKeeper(String, int, Watcher, long, byte[])
      */
@@ -322,7 +509,12 @@ public class ZooKeeper {
      * <p>
      * The client object will pick an arbitrary server and try to connect to it.
      * If failed, it will try the next one in the list, until a connection is
-     * established, or all the servers have been tried.
+     * established, or all the servers have been tried. Once it has been
+     * connected to some of the servers, it prefers the ones with the lowest
+     * round trip time and load, and those listed in the
+     * "zookeeper.localServers" system property. With the
+     * "zookeeper.rebalanceInterval" system property set, a connected client
+     * also moves to a server that would serve it much better.
      * <p>
      * Use {@link #getSessionId} and {@link #getSessionPasswd} on an established
      * client connection, these values must be passed as sessionId and
@@ -353,6 +545,33 @@ public class ZooKeeper {
                 sessionId, sessionPasswd);
     }
 
+    /**
+     * Create a client whose connection is driven by the threads of a shared
+     * reactor, instead of threads of its own.
+     *
+     * @see ZooKeeper(String, int, Watcher, long, byte[])
+     * @see ClientReactor
+     */
+    public ZooKeeper(String host, int sessionTimeout, Watcher watcher,
+            ClientReactor reactor) throws IOException {
+        this(host, sessionTimeout, watcher, 0, new byte[16], reactor);
+    }
+
+    /**
+     * Create a client for an existing session whose connection is driven by
+     * the threads of a shared reactor, instead of threads of its own.
+     *
+     * @see ZooKeeper(String, int, Watcher, long, byte[])
+     * @see ClientReactor
+     */
+    public ZooKeeper(String host, int sessionTimeout, Watcher watcher,
+            long sessionId, byte[] sessionPasswd, ClientReactor reactor)
+            throws IOException {
+        watchManager.defaultWatcher = watcher;
+        cnxn = new ClientCnxn(host, sessionTimeout, this, watchManager,
+                sessionId, sessionPasswd, reactor);
+    }
+
     /**
      * The session id for this ZooKeeper client instance. The value returned is
      * not valid until the client connects to a server and may change after a
@@ -364,6 +583,19 @@ public class ZooKeeper {
         return cnxn.getSessionId();
     }
 
+    /**
+     * The zxid of the last change this client knows of: the change made by
+     * its last write, or the state of the server at its last awaitZxid.
+     * Another client that gets this value can wait for the change with
+     * awaitZxid before it reads.
+     *
+     * @return the last zxid seen by this client, 0 if none
+     * @see #awaitZxid(long)
+     */
+    public long getLastZxid() {
+        return cnxn.lastZxid;
+    }
+
     /**
      * The session password for this ZooKeeper client instance. The value
      * returned is not valid until the client connects to a server and may
@@ -383,6 +615,150 @@ public class ZooKeeper {
         watchManager.defaultWatcher = watcher;
     }
 
+    /**
+     * Cache the results of the synchronous getData and getChildren calls
+     * that leave a watch. Until the watch is triggered or the connection to
+     * the server is lost, the same reads are served from the cache without
+     * going to the server. Only the reads done after this call are cached.
+     *
+     * @param maxEntries
+     *                the maximum number of cached data and of cached
+     *                children, the least recently used entries are evicted
+     * @return the cache, it keeps the hit and miss counts
+     */
+    public synchronized ClientReadCache enableReadCache(int maxEntries) {
+        if (readCache == null) {
+            readCache = new ClientReadCache(maxEntries);
+        }
+        return readCache;
+    }
+
+    /**
+     * @return the read cache, or null if it was not enabled
+     */
+    public ClientReadCache getReadCache() {
+        return readCache;
+    }
+
+    /**
+     * Compress the data written by create, createTree and setData and
+     * decompress the data read, as described by {@link DataCompression}.
+     *
+     * @param compression
+     *                null to stop compressing the data written and
+     *                decompressing the data read
+     */
+    public void setDataCompression(DataCompression compression) {
+        dataCompression = compression;
+    }
+
+    /**
+     * @return the compression of the data, null if there is none
+     */
+    public DataCompression getDataCompression() {
+        return dataCompression;
+    }
+
+    private byte[] compress(byte data[]) {
+        DataCompression compression = dataCompression;
+        return compression == null ? data : compression.compress(data);
+    }
+
+    /**
+     * Limit the number of requests of this handle that are waiting to be
+     * sent or for their response. When the limit is reached a new request
+     * either waits for an earlier one to finish, or fails with a
+     * KeeperException.Code.Throttled error. Closing the handle is never
+     * limited.
+     *
+     * @param max
+     *                the maximum number of outstanding requests, 0 for no
+     *                limit
+     * @param block
+     *                whether a request waits rather than failing when the
+     *                limit is reached
+     */
+    public void setMaxOutstandingRequests(int max, boolean block) {
+        cnxn.setMaxOutstandingRequests(max, block);
+    }
+
+    /**
+     * Have the notifications of the watches carry the new stat of the node
+     * and, if it is no larger than maxDataBytes, its new data, so that the
+     * watcher doesn't have to read the node again. They are available from
+     * WatchedEvent.getStat and WatchedEvent.getData. The data is carried by
+     * the notifications of NodeCreated and NodeDataChanged events, the stat
+     * by all the notifications of nodes that still exist and that the
+     * client may read.
+     * <p>
+     * The setting lasts for the session and is sent again when the client
+     * reconnects; notifications sent before the server got it are plain.
+     *
+     * @param maxDataBytes
+     *                the largest data a notification carries, 0 for the
+     *                stat only, negative for plain notifications
+     */
+    public void setNotificationData(int maxDataBytes) {
+        cnxn.setNotificationData(maxDataBytes);
+    }
+
+    /**
+     * @return the number of requests waiting to be sent or for their
+     *         response
+     */
+    public int getOutstandingRequests() {
+        return cnxn.getOutstandingRequests();
+    }
+
+    /**
+     * @return the number of requests that failed because the limit on
+     *         outstanding requests was reached
+     */
+    public long getThrottledRequests() {
+        return cnxn.getThrottledRequests();
+    }
+
+    /**
+     * @return the average time in milliseconds from issuing a request until
+     *         it was written to the server, including any time waited
+     *         because of the limit on outstanding requests
+     */
+    public long getAvgQueueDelay() {
+        return cnxn.getAvgQueueDelay();
+    }
+
+    /**
+     * @return the longest time in milliseconds from issuing a request until
+     *         it was written to the server
+     */
+    public long getMaxQueueDelay() {
+        return cnxn.getMaxQueueDelay();
+    }
+
+    /**
+     * @return the number of watch events and callbacks waiting to be
+     *         delivered by the event threads
+     */
+    public int getEventQueueDepth() {
+        return cnxn.getEventQueueDepth();
+    }
+
+    /**
+     * @return the average time in milliseconds a watch event or callback
+     *         waited before its delivery started
+     */
+    public long getAvgEventDispatchLatency() {
+        return cnxn.getAvgEventDispatchLatency();
+    }
+
+    /**
+     * @return the longest time in milliseconds a watch event or callback
+     *         waited before its delivery started
+     */
+    public long getMaxEventDispatchLatency() {
+        return cnxn.getMaxEventDispatchLatency();
+    }
+
     /**
      * Close this client object. Once the client is closed, its session becomes
      * invalid. All the ephemeral nodes in the ZooKeeper server associated with
@@ -467,7 +843,7 @@ public class ZooKeeper {
         h.setType(ZooDefs.OpCode.create);
         CreateRequest request = new CreateRequest();
         CreateResponse response = new CreateResponse();
-        request.setData(data);
+        request.setData(compress(data));
         request.setFlags(createMode.toFlag());
         request.setPath(path);
         if (acl != null && acl.size() == 0) {
@@ -496,7 +872,7 @@ public class ZooKeeper {
         CreateRequest request = new CreateRequest();
         CreateResponse response = new CreateResponse();
         ReplyHeader r = new ReplyHeader();
-        request.setData(data);
+        request.setData(compress(data));
         request.setFlags(createMode.toFlag());
         request.setPath(path);
         request.setAcl(acl);
@@ -556,6 +932,129 @@ public class ZooKeeper {
         cnxn.queuePacket(h, new ReplyHeader(), request, null, cb, path, ctx, null);
     }
 
+    /**
+     * The bytes of nodes createTree sends in one request at most.
+     */
+    static final int TREE_REQUEST_BYTES = BinaryInputArchive.maxBuffer / 2;
+
+    /**
+     * Delete the node of the given path and all the nodes under it. The
+     * server deletes as many nodes as fit in a transaction per request,
+     * children before their parents, so a large tree takes a few requests
+     * instead of one per node.
+     * <p>
+     * This is not atomic: the nodes of the requests that went through stay
+     * deleted if a later one fails, and nodes created under the path
+     * meanwhile are deleted as well. Each deleted node triggers the watches
+     * a delete would.
+     *
+     * @param path
+     *                the path of the tree
+     * @param cb
+     *                told about the progress after each request, may be null
+     * @return the number of nodes deleted
+     * @throws KeeperException.NoNodeException if there is no such node
+     * @throws KeeperException.NoAuthException if a node may not be deleted
+     * @throws KeeperException if the server returns another non-zero error code
+     * @throws InterruptedException if the transaction is interrupted
+     */
+    public int deleteTree(String path, ProgressCallback cb)
+            throws KeeperException, InterruptedException {
+        int deleted = 0;
+        while (true) {
+            RequestHeader h = new RequestHeader();
+            h.setType(ZooDefs.OpCode.deleteTree);
+            DeleteTreeRequest request = new DeleteTreeRequest(path);
+            DeleteTreeResponse response = new DeleteTreeResponse();
+            ReplyHeader r = cnxn.submitRequest(h, request, response, null);
+            if (r.getErr() == KeeperException.Code.NoNode && deleted > 0) {
+                // somebody else deleted the rest
+                return deleted;
+            }
+            if (r.getErr() != 0) {
+                throw KeeperException.create(r.getErr());
+            }
+            deleted += response.getDeleted();
+            if (cb != null) {
+                cb.processProgress(path, deleted, response.getRemaining());
+            }
+            if (response.getRemaining() == 0) {
+                return deleted;
+            }
+        }
+    }
+
+    private static int serializedSize(Record record) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            record.serialize(BinaryOutputArchive.getArchive(baos), "node");
+        } catch (IOException e) {
+            // a ByteArrayOutputStream doesn't throw
+            throw new RuntimeException(e);
+        }
+        return baos.size();
+    }
+
+    /**
+     * Create the given nodes, parents before their children. The nodes are
+     * sent in as few requests as jute.maxbuffer allows, and the server
+     * creates the nodes of each request in a single transaction: either all
+     * of them or, on an error, none of them.
+     * <p>
+     * The nodes can not be ephemeral, they would outlive a session that
+     * created them in several requests.
+     *
+     * @param nodes
+     *                the nodes to create, in order
+     * @param cb
+     *                told about the progress after each request, may be null
+     * @return the actual paths of the created nodes
+     * @throws KeeperException if the server returns a non-zero error code, the
+     *                 nodes of the earlier requests are created then
+     * @throws InterruptedException if the transaction is interrupted
+     */
+    public List<String> createTree(List<NewNode> nodes, ProgressCallback cb)
+            throws KeeperException, InterruptedException {
+        if (dataCompression != null) {
+            List<NewNode> compressed = new ArrayList<NewNode>(nodes.size());
+            for (NewNode node : nodes) {
+                compressed.add(new NewNode(node.getPath(), compress(node
+                        .getData()), node.getAcl(), node.getFlags()));
+            }
+            nodes = compressed;
+        }
+        List<String> created = new ArrayList<String>(nodes.size());
+        int start = 0;
+        while (start < nodes.size()) {
+            int end = start;
+            int bytes = 4;
+            while (end < nodes.size()) {
+                int size = serializedSize(nodes.get(end));
+                if (end > start && bytes + size > TREE_REQUEST_BYTES) {
+                    break;
+                }
+                bytes += size;
+                end++;
+            }
+            RequestHeader h = new RequestHeader();
+            h.setType(ZooDefs.OpCode.createTree);
+            CreateTreeRequest request = new CreateTreeRequest(
+                    new ArrayList<NewNode>(nodes.subList(start, end)));
+            CreateTreeResponse response = new CreateTreeResponse();
+            ReplyHeader r = cnxn.submitRequest(h, request, response, null);
+            if (r.getErr() != 0) {
+                throw KeeperException.create(r.getErr());
+            }
+            created.addAll(response.getPaths());
+            start = end;
+            if (cb != null) {
+                cb.processProgress(created.get(created.size() - 1), created
+                        .size(), nodes.size() - start);
+            }
+        }
+        return created;
+    }
+
     /**
      * Return the stat of the node of the given path. Return null if no such a
      * node exists.
@@ -673,6 +1172,29 @@ public class ZooKeeper {
      */
     public byte[] getData(String path, Watcher watcher, Stat stat)
             throws KeeperException, InterruptedException {
+        ClientReadCache cache = readCache;
+        if (cache != null) {
+            ClientReadCache.CachedData cached;
+            synchronized (watchManager.dataWatches) {
+                cached = cache.getData(path, stat);
+                if (cached != null && watcher != null) {
+                    // the server already has a watch on the node
+                    new DataWatchRegistration(watcher, path).register(0);
+                }
+            }
+            if (cached != null) {
+                // the cache holds the data as it is stored
+                byte data[] = cached.data;
+                DataCompression compression = dataCompression;
+                if (compression != null) {
+                    data = compression.decompress(data, stat);
+                }
+                if (data != null && data == cached.data) {
+                    data = data.clone();
+                }
+                return data;
+            }
+        }
         RequestHeader h = new RequestHeader();
         h.setType(ZooDefs.OpCode.getData);
         GetDataRequest request = new GetDataRequest();
@@ -681,7 +1203,12 @@ public class ZooKeeper {
         GetDataResponse response = new GetDataResponse();
         WatchRegistration wcb = null;
         if (watcher != null) {
-            wcb = new DataWatchRegistration(watcher, path);
+            if (cache != null) {
+                wcb = new CachingDataWatchRegistration(watcher, path,
+                        response);
+            } else {
+                wcb = new DataWatchRegistration(watcher, path);
+            }
         }
         ReplyHeader r = cnxn.submitRequest(h, request, response, wcb);
         if (r.getErr() != 0) {
@@ -747,6 +1274,98 @@ public class ZooKeeper {
         getData(path, watch ? watchManager.defaultWatcher : null, cb, ctx);
     }
 
+    /**
+     * Return the data and the stat of the node of the given path, unless
+     * the data has not changed since it was read. Pass the mzxid of the
+     * stat of that read: if the node has not been changed since, only its
+     * stat is returned and the return value is null. The mzxid identifies
+     * the change, so a node that was deleted and created again since reads
+     * as changed.
+     * <p>
+     * This saves sending the data again to clients that poll a node rather
+     * than watch it. To tell a node whose data is null from an unchanged
+     * one, compare the mzxid of the returned stat.
+     * <p>
+     * If the watch is non-null and the call is successful (no exception is
+     * thrown), a watch will be left on the node with the given path, as
+     * with getData.
+     * <p>
+     * A KeeperException with error code KeeperException.NoNode will be thrown
+     * if no node with the given path exists.
+     *
+     * @param path the given path
+     * @param watcher explicit watcher
+     * @param mzxid the mzxid of the data the client has, -1 for none
+     * @param stat the stat of the node
+     * @return the data of the node, null if it has not changed
+     * @throws KeeperException If the server signals an error with a non-zero error code
+     * @throws InterruptedException If the server transaction is interrupted.
+     */
+    public byte[] getDataIfChanged(String path, Watcher watcher, long mzxid,
+            Stat stat) throws KeeperException, InterruptedException {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.getDataIfChanged);
+        GetDataIfChangedRequest request = new GetDataIfChangedRequest(path,
+                watcher != null, mzxid);
+        GetDataResponse response = new GetDataResponse();
+        WatchRegistration wcb = null;
+        if (watcher != null) {
+            wcb = new DataWatchRegistration(watcher, path);
+        }
+        ReplyHeader r = cnxn.submitRequest(h, request, response, wcb);
+        if (r.getErr() != 0) {
+            throw KeeperException.create(r.getErr());
+        }
+        if (stat != null) {
+            DataTree.copyStat(response.getStat(), stat);
+        }
+        return response.getData();
+    }
+
+    /**
+     * Return the data and the stat of the node of the given path, unless
+     * the data has not changed since it was read.
+     *
+     * @see #getDataIfChanged(String, Watcher, long, Stat)
+     */
+    public byte[] getDataIfChanged(String path, boolean watch, long mzxid,
+            Stat stat) throws KeeperException, InterruptedException {
+        return getDataIfChanged(path, watch ? watchManager.defaultWatcher
+                : null, mzxid, stat);
+    }
+
+    /**
+     * The Asynchronous version of getDataIfChanged. The callback gets null
+     * data if the data has not changed.
+     *
+     * @see #getDataIfChanged(String, Watcher, long, Stat)
+     */
+    public void getDataIfChanged(String path, Watcher watcher, long mzxid,
+            DataCallback cb, Object ctx) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.getDataIfChanged);
+        GetDataIfChangedRequest request = new GetDataIfChangedRequest(path,
+                watcher != null, mzxid);
+        GetDataResponse response = new GetDataResponse();
+        WatchRegistration wcb = null;
+        if (watcher != null) {
+            wcb = new DataWatchRegistration(watcher, path);
+        }
+        cnxn.queuePacket(h, new ReplyHeader(), request, response, cb, path,
+                ctx, wcb);
+    }
+
+    /**
+     * The Asynchronous version of getDataIfChanged.
+     *
+     * @see #getDataIfChanged(String, boolean, long, Stat)
+     */
+    public void getDataIfChanged(String path, boolean watch, long mzxid,
+            DataCallback cb, Object ctx) {
+        getDataIfChanged(path, watch ? watchManager.defaultWatcher : null,
+                mzxid, cb, ctx);
+    }
+
     /**
      * Set the data for the node of the given path if such a node exists and the
      * given version matches the version of the node (if the given version is
@@ -780,7 +1399,7 @@ public class ZooKeeper {
         h.setType(ZooDefs.OpCode.setData);
         SetDataRequest request = new SetDataRequest();
         request.setPath(path);
-        request.setData(data);
+        request.setData(compress(data));
         request.setVersion(version);
         SetDataResponse response = new SetDataResponse();
         ReplyHeader r = cnxn.submitRequest(h, request, response, null);
@@ -802,7 +1421,7 @@ public class ZooKeeper {
         h.setType(ZooDefs.OpCode.setData);
         SetDataRequest request = new SetDataRequest();
         request.setPath(path);
-        request.setData(data);
+        request.setData(compress(data));
         request.setVersion(version);
         SetDataResponse response = new SetDataResponse();
         cnxn
@@ -810,6 +1429,58 @@ public class ZooKeeper {
                         ctx, null);
     }
 
+    /**
+     * Atomically add delta to the counter held by the node of the given path
+     * and return the new value. The server orders the increments of a
+     * counter itself, so concurrent increments never conflict the way
+     * getData and a versioned setData do.
+     * <p>
+     * The counter is the data of the node as a 64 bit big endian number; a
+     * node without data holds 0. The version of the node is incremented and
+     * the watches left by getData calls are triggered as for setData.
+     * <p>
+     * A KeeperException with error code KeeperException.NoNode will be thrown
+     * if no node with the given path exists.
+     * <p>
+     * A KeeperException with error code KeeperException.BadArguments will be
+     * thrown if the data of the node is not a counter.
+     *
+     * @param path
+     *                the path of the node
+     * @param delta
+     *                the amount to add, may be negative
+     * @return the value of the counter after the increment
+     * @throws InterruptedException If the server transaction is interrupted.
+     * @throws KeeperException If the server signals an error with a non-zero error code.
+     */
+    public long increment(String path, long delta) throws KeeperException,
+            InterruptedException {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.increment);
+        IncrementRequest request = new IncrementRequest(path, delta);
+        IncrementResponse response = new IncrementResponse();
+        ReplyHeader r = cnxn.submitRequest(h, request, response, null);
+        if (r.getErr() != 0) {
+            throw KeeperException.create(r.getErr());
+        }
+        return response.getValue();
+    }
+
+    /**
+     * The Asynchronous version of increment.
+     *
+     * @see #increment(String, long)
+     */
+    public void increment(String path, long delta, CounterCallback cb,
+            Object ctx) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.increment);
+        IncrementRequest request = new IncrementRequest(path, delta);
+        IncrementResponse response = new IncrementResponse();
+        cnxn.queuePacket(h, new ReplyHeader(), request, response, cb, path,
+                ctx, null);
+    }
+
     /**
      * Return the ACL and stat of the node of the given path.
      * <p>
@@ -936,6 +1607,19 @@ public class ZooKeeper {
      */
     public List<String> getChildren(String path, Watcher watcher)
             throws KeeperException, InterruptedException {
+        ClientReadCache cache = readCache;
+        if (cache != null) {
+            synchronized (watchManager.childWatches) {
+                List<String> cached = cache.getChildren(path);
+                if (cached != null) {
+                    if (watcher != null) {
+                        // the server already has a watch on the node
+                        new ChildWatchRegistration(watcher, path).register(0);
+                    }
+                    return cached;
+                }
+            }
+        }
         RequestHeader h = new RequestHeader();
         h.setType(ZooDefs.OpCode.getChildren);
         GetChildrenRequest request = new GetChildrenRequest();
@@ -944,7 +1628,12 @@ public class ZooKeeper {
         GetChildrenResponse response = new GetChildrenResponse();
         WatchRegistration wcb = null;
         if (watcher != null) {
-            wcb = new ChildWatchRegistration(watcher, path);
+            if (cache != null) {
+                wcb = new CachingChildWatchRegistration(watcher, path,
+                        response);
+            } else {
+                wcb = new ChildWatchRegistration(watcher, path);
+            }
         }
         ReplyHeader r = cnxn.submitRequest(h, request, response, wcb);
         if (r.getErr() != 0) {
@@ -1011,6 +1700,400 @@ public class ZooKeeper {
         getChildren(path, watch ? watchManager.defaultWatcher : null, cb, ctx);
     }
 
+    /**
+     * Return a page of the children of the node of the given path: the
+     * children whose name sorts after startAfter, in order, at most limit of
+     * them. Large directories can be read in bounded pieces by passing the
+     * last child of a page as startAfter of the next call; a page with fewer
+     * than limit children is the last one.
+     * <p>
+     * If the watcher is non-null and the call is successful (no exception is
+     * thrown), a watch will be left on the node with the given path, as with
+     * {@link #getChildren(String, Watcher)}.
+     * <p>
+     * A KeeperException with error code KeeperException.NoNode will be thrown
+     * if no node with the given path exists.
+     *
+     * @param path
+     * @param watcher explicit watcher
+     * @param startAfter the name the page starts after, null for the first
+     *                page
+     * @param limit the most children returned, must be positive
+     * @return the children in the page, sorted by name
+     * @throws InterruptedException If the server transaction is interrupted.
+     * @throws KeeperException If the server signals an error with a non-zero error code.
+     */
+    public List<String> getChildren(String path, Watcher watcher,
+            String startAfter, int limit) throws KeeperException,
+            InterruptedException {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.getChildrenPage);
+        GetChildrenPageRequest request = new GetChildrenPageRequest(path,
+                watcher != null, startAfter, limit);
+        GetChildrenResponse response = new GetChildrenResponse();
+        WatchRegistration wcb = null;
+        if (watcher != null) {
+            wcb = new ChildWatchRegistration(watcher, path);
+        }
+        ReplyHeader r = cnxn.submitRequest(h, request, response, wcb);
+        if (r.getErr() != 0) {
+            throw KeeperException.create(r.getErr());
+        }
+        return response.getChildren();
+    }
+
+    /**
+     * Return a page of the children of the node of the given path.
+     *
+     * @see #getChildren(String, Watcher, String, int)
+     */
+    public List<String> getChildren(String path, boolean watch,
+            String startAfter, int limit) throws KeeperException,
+            InterruptedException {
+        return getChildren(path, watch ? watchManager.defaultWatcher : null,
+                startAfter, limit);
+    }
+
+    /**
+     * The Asynchronous version of the paged getChildren.
+     *
+     * @see #getChildren(String, Watcher, String, int)
+     */
+    public void getChildren(String path, Watcher watcher, String startAfter,
+            int limit, ChildrenCallback cb, Object ctx) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.getChildrenPage);
+        GetChildrenPageRequest request = new GetChildrenPageRequest(path,
+                watcher != null, startAfter, limit);
+        GetChildrenResponse response = new GetChildrenResponse();
+        WatchRegistration wcb = null;
+        if (watcher != null) {
+            wcb = new ChildWatchRegistration(watcher, path);
+        }
+        cnxn.queuePacket(h, new ReplyHeader(), request, response, cb, path,
+                ctx, wcb);
+    }
+
+    /**
+     * The Asynchronous version of the paged getChildren.
+     *
+     * @see #getChildren(String, boolean, String, int)
+     */
+    public void getChildren(String path, boolean watch, String startAfter,
+            int limit, ChildrenCallback cb, Object ctx) {
+        getChildren(path, watch ? watchManager.defaultWatcher : null,
+                startAfter, limit, cb, ctx);
+    }
+
+    /**
+     * Return the name of the sequential node that precedes the given one:
+     * the child of the node of the given path that sorts just before name
+     * among the children sharing its prefix, which is name without its
+     * trailing sequence number. This is what lock and election recipes wait
+     * for; unlike a getChildren of the whole directory it costs the same
+     * however many nodes are waiting. The node called name does not have to
+     * exist.
+     * <p>
+     * If the watcher is non-null and a predecessor is found, a watch is left
+     * on the predecessor as by {@link #getData(String, Watcher, Stat)}. The
+     * watch is set by the request that finds the predecessor, so its deletion
+     * cannot be missed.
+     * <p>
+     * A KeeperException with error code KeeperException.NoNode will be thrown
+     * if no node with the given path exists.
+     *
+     * @param path
+     *                the path of the parent of the sequential nodes
+     * @param name
+     *                the name of a child, as returned by a sequential create
+     * @param watcher explicit watcher
+     * @return the name of the predecessor, null if name is the first
+     * @throws InterruptedException If the server transaction is interrupted.
+     * @throws KeeperException If the server signals an error with a non-zero error code.
+     */
+    public String getPredecessor(String path, String name, Watcher watcher)
+            throws KeeperException, InterruptedException {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.getPredecessor);
+        GetPredecessorRequest request = new GetPredecessorRequest(path, name,
+                watcher != null);
+        GetPredecessorResponse response = new GetPredecessorResponse();
+        WatchRegistration wcb = null;
+        if (watcher != null) {
+            wcb = new PredecessorWatchRegistration(watcher, path, response);
+        }
+        ReplyHeader r = cnxn.submitRequest(h, request, response, wcb);
+        if (r.getErr() != 0) {
+            throw KeeperException.create(r.getErr());
+        }
+        return response.getName();
+    }
+
+    /**
+     * Return the name of the sequential node that precedes the given one.
+     *
+     * @see #getPredecessor(String, String, Watcher)
+     */
+    public String getPredecessor(String path, String name, boolean watch)
+            throws KeeperException, InterruptedException {
+        return getPredecessor(path, name, watch ? watchManager.defaultWatcher
+                : null);
+    }
+
+    /**
+     * The Asynchronous version of getPredecessor. The name passed to the
+     * callback is null if there is no predecessor.
+     *
+     * @see #getPredecessor(String, String, Watcher)
+     */
+    public void getPredecessor(String path, String name, Watcher watcher,
+            StringCallback cb, Object ctx) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.getPredecessor);
+        GetPredecessorRequest request = new GetPredecessorRequest(path, name,
+                watcher != null);
+        GetPredecessorResponse response = new GetPredecessorResponse();
+        WatchRegistration wcb = null;
+        if (watcher != null) {
+            wcb = new PredecessorWatchRegistration(watcher, path, response);
+        }
+        cnxn.queuePacket(h, new ReplyHeader(), request, response, cb, path,
+                ctx, wcb);
+    }
+
+    /**
+     * Return the children of the node of the given path along with their
+     * stat and, if withData is true, their data, with as few round trips as
+     * possible instead of a getData call per child.
+     * <p>
+     * The children are sorted by name. They are returned a page at a time by
+     * the server, each child is read consistently but the list as a whole is
+     * not a snapshot of a single point in time. The data of the children the
+     * client may not read is null.
+     * <p>
+     * If the watcher is non-null and the call is successful (no exception is
+     * thrown), a watch will be left on the node with the given path, as with
+     * {@link #getChildren(String, Watcher)}.
+     * <p>
+     * A KeeperException with error code KeeperException.NoNode will be thrown
+     * if no node with the given path exists.
+     *
+     * @param path
+     * @param watcher explicit watcher
+     * @param withData whether the data of the children is returned
+     * @return the children of the node, sorted by name
+     * @throws InterruptedException If the server transaction is interrupted.
+     * @throws KeeperException If the server signals an error with a non-zero error code.
+     */
+    public List<ChildData> getChildrenData(String path, Watcher watcher,
+            boolean withData) throws KeeperException, InterruptedException {
+        List<ChildData> children = new ArrayList<ChildData>();
+        String startAfter = null;
+        do {
+            RequestHeader h = new RequestHeader();
+            h.setType(ZooDefs.OpCode.getChildrenData);
+            GetChildrenDataRequest request = new GetChildrenDataRequest(path,
+                    watcher != null, withData, startAfter, 0);
+            GetChildrenDataResponse response = new GetChildrenDataResponse();
+            WatchRegistration wcb = null;
+            if (watcher != null) {
+                wcb = new ChildWatchRegistration(watcher, path);
+                // the first page sets the watch
+                watcher = null;
+            }
+            ReplyHeader r = cnxn.submitRequest(h, request, response, wcb);
+            if (r.getErr() != 0) {
+                throw KeeperException.create(r.getErr());
+            }
+            children.addAll(response.getChildren());
+            startAfter = response.getNext();
+        } while (startAfter != null);
+        return children;
+    }
+
+    /**
+     * Return the children of the node of the given path along with their
+     * stat and, if withData is true, their data.
+     *
+     * @see #getChildrenData(String, Watcher, boolean)
+     */
+    public List<ChildData> getChildrenData(String path, boolean watch,
+            boolean withData) throws KeeperException, InterruptedException {
+        return getChildrenData(path, watch ? watchManager.defaultWatcher
+                : null, withData);
+    }
+
+    /**
+     * The Asynchronous version of getChildrenData, it returns a single page
+     * of the children. The callback gets the name to pass as startAfter to
+     * get the next page, null after the last page.
+     *
+     * @param startAfter
+     *                only return the children whose name sorts after this
+     *                one, null to start at the first child
+     * @param maxBytes
+     *                the rough size of the page, 0 for the largest the
+     *                server allows
+     * @see #getChildrenData(String, Watcher, boolean)
+     */
+    public void getChildrenData(String path, Watcher watcher,
+            boolean withData, String startAfter, int maxBytes,
+            ChildrenDataCallback cb, Object ctx) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.getChildrenData);
+        GetChildrenDataRequest request = new GetChildrenDataRequest(path,
+                watcher != null, withData, startAfter, maxBytes);
+        GetChildrenDataResponse response = new GetChildrenDataResponse();
+        WatchRegistration wcb = null;
+        if (watcher != null) {
+            wcb = new ChildWatchRegistration(watcher, path);
+        }
+        cnxn.queuePacket(h, new ReplyHeader(), request, response, cb, path,
+                ctx, wcb);
+    }
+
+    /**
+     * The Asynchronous version of getChildrenData, it returns a single page
+     * of the children.
+     *
+     * @see #getChildrenData(String, Watcher, boolean, String, int,
+     *      ChildrenDataCallback, Object)
+     */
+    public void getChildrenData(String path, boolean watch, boolean withData,
+            String startAfter, int maxBytes, ChildrenDataCallback cb,
+            Object ctx) {
+        getChildrenData(path, watch ? watchManager.defaultWatcher : null,
+                withData, startAfter, maxBytes, cb, ctx);
+    }
+
+    /**
+     * Leave a watch on the node of the given path and on every node below
+     * it. Unlike the watches left by exists, getData and getChildren it is
+     * not removed when it triggers: the watcher is notified of each node
+     * created, deleted or whose data is set in the subtree until the watch
+     * is removed by removeRecursiveWatch. The node doesn't have to exist.
+     * <p>
+     * Changes to the children of a node are not reported as such, the
+     * watcher is notified of the creation or deletion of each child
+     * instead. The watch is registered again when the client reconnects to
+     * a server, but the changes made while the client was disconnected are
+     * not reported; the watcher gets the Disconnected and SyncConnected
+     * events and should read the subtree again.
+     * <p>
+     * A KeeperException with error code KeeperException.NoAuth will be
+     * thrown if the node exists and the client may not read it.
+     *
+     * @param path the root of the subtree to watch
+     * @param watcher the watcher to notify
+     * @throws InterruptedException If the server transaction is interrupted.
+     * @throws KeeperException If the server signals an error with a non-zero
+     *                 error code.
+     */
+    public void addRecursiveWatch(String path, Watcher watcher)
+            throws KeeperException, InterruptedException {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.addRecursiveWatch);
+        RecursiveWatchRequest request = new RecursiveWatchRequest(path);
+        ReplyHeader r = cnxn.submitRequest(h, request, null,
+                new RecursiveWatchRegistration(watcher, path));
+        if (r.getErr() != 0) {
+            throw KeeperException.create(r.getErr());
+        }
+    }
+
+    /**
+     * The Asynchronous version of addRecursiveWatch.
+     *
+     * @see #addRecursiveWatch(String, Watcher)
+     */
+    public void addRecursiveWatch(String path, Watcher watcher,
+            VoidCallback cb, Object ctx) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.addRecursiveWatch);
+        RecursiveWatchRequest request = new RecursiveWatchRequest(path);
+        cnxn.queuePacket(h, new ReplyHeader(), request, null, cb, path, ctx,
+                new RecursiveWatchRegistration(watcher, path));
+    }
+
+    /**
+     * Remove a watch left by addRecursiveWatch. Nothing happens if the
+     * watcher doesn't watch the subtree of the path. The watch is removed
+     * from the server when no watcher of this client watches the subtree
+     * any more.
+     *
+     * @param path the root of the watched subtree
+     * @param watcher the watcher that was passed to addRecursiveWatch
+     * @throws InterruptedException If the server transaction is interrupted.
+     * @throws KeeperException If the server signals an error with a non-zero
+     *                 error code.
+     */
+    public void removeRecursiveWatch(String path, Watcher watcher)
+            throws KeeperException, InterruptedException {
+        synchronized (watchManager.recursiveWatches) {
+            Set<Watcher> watchers = watchManager.recursiveWatches.get(path);
+            if (watchers == null || !watchers.remove(watcher)) {
+                return;
+            }
+            if (!watchers.isEmpty()) {
+                return;
+            }
+            watchManager.recursiveWatches.remove(path);
+        }
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.removeRecursiveWatch);
+        RecursiveWatchRequest request = new RecursiveWatchRequest(path);
+        ReplyHeader r = cnxn.submitRequest(h, request, null, null);
+        if (r.getErr() != 0) {
+            throw KeeperException.create(r.getErr());
+        }
+    }
+
+    /**
+     * Wait until the server the client is connected to has applied the
+     * change of the given zxid. The requests of a client are handled in
+     * order, so the reads that follow see that change and all the changes
+     * before it. Unlike sync the server doesn't ask the leader, it waits
+     * for the change to come in; this gives a client the writes of another
+     * client, or its own writes after it moved to another server, without
+     * a round trip to the leader.
+     * <p>
+     * The later requests of this client wait along with this one, those of
+     * other clients don't. It is meant for zxids that were committed, as
+     * given by getLastZxid or the mzxid of a stat. A KeeperException with
+     * error code KeeperException.OperationTimeout is thrown if the server
+     * doesn't reach the zxid in time, and one with error code
+     * KeeperException.BadArguments if the zxid was never proposed, as far
+     * as the server can tell.
+     *
+     * @param zxid the zxid of the change to wait for
+     * @throws InterruptedException If the server transaction is interrupted.
+     * @throws KeeperException If the server signals an error with a non-zero
+     *                 error code.
+     */
+    public void awaitZxid(long zxid) throws KeeperException,
+            InterruptedException {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.awaitZxid);
+        ReplyHeader r = cnxn.submitRequest(h, new AwaitZxidRequest(zxid),
+                null, null);
+        if (r.getErr() != 0) {
+            throw KeeperException.create(r.getErr());
+        }
+    }
+
+    /**
+     * The Asynchronous version of awaitZxid. The reads queued after it
+     * wait along with it, so it costs no round trip of its own.
+     *
+     * @see #awaitZxid(long)
+     */
+    public void awaitZxid(long zxid, VoidCallback cb, Object ctx) {
+        RequestHeader h = new RequestHeader();
+        h.setType(ZooDefs.OpCode.awaitZxid);
+        cnxn.queuePacket(h, new ReplyHeader(), new AwaitZxidRequest(zxid),
+                null, cb, null, ctx, null);
+    }
+
     /**
      * Asynchronous sync. Flushes channel between process and leader.
      */
@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * The pending result of a request issued through {@link AsyncZooKeeper}.
+ * <p>
+ * The future is completed by the event thread of the ZooKeeper handle, but
+ * listeners added with {@link #addListener(Runnable)} always run on the
+ * executor the AsyncZooKeeper was created with, so a slow listener never
+ * holds up the delivery of other results or watch events.
+ * <p>
+ * If the server returns an error, {@link #get()} throws an
+ * ExecutionException whose cause is the KeeperException for the error.
+ * Requests that have been sent can not be cancelled.
+ */
+public class ZooKeeperFuture<T> implements Future<T> {
+    private static final Logger LOG = Logger.getLogger(ZooKeeperFuture.class);
+
+    private final String path;
+
+    private final Executor executor;
+
+    private boolean done;
+
+    private T value;
+
+    private Stat stat;
+
+    private KeeperException exception;
+
+    private List<Runnable> listeners = new ArrayList<Runnable>();
+
+    ZooKeeperFuture(String path, Executor executor) {
+        this.path = path;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the path the request was issued for
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Run the listener on the executor of this future once it is done. If it
+     * is done already the listener is handed to the executor immediately.
+     */
+    public void addListener(Runnable listener) {
+        synchronized (this) {
+            if (!done) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        execute(listener);
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return false;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public synchronized T get() throws InterruptedException,
+            ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return getValue();
+    }
+
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long left = end - System.nanoTime();
+            if (left <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return getValue();
+    }
+
+    /**
+     * The stat of the node returned along with the result by getData and
+     * getACL. Only valid once the future completed without an error.
+     */
+    public synchronized Stat getStat() {
+        return stat;
+    }
+
+    /**
+     * @return the error of the request, or null if it has not failed (yet)
+     */
+    public synchronized KeeperException getException() {
+        return exception;
+    }
+
+    private T getValue() throws ExecutionException {
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return value;
+    }
+
+    void set(T value, Stat stat) {
+        complete(value, stat, null);
+    }
+
+    void setException(KeeperException exception) {
+        complete(null, null, exception);
+    }
+
+    private void complete(T value, Stat stat, KeeperException exception) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            this.value = value;
+            this.stat = stat;
+            this.exception = exception;
+            done = true;
+            toRun = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        for (Runnable listener : toRun) {
+            execute(listener);
+        }
+    }
+
+    private void execute(Runnable listener) {
+        try {
+            executor.execute(listener);
+        } catch (RuntimeException e) {
+            // a rejected listener must not take down the event thread
+            LOG.warn("Failed to run listener for " + path, e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a list of paths compactly by only storing what differs from the
+ * previous path. Each path is written as the number of leading characters
+ * it shares with the previous one, the length of the rest in bytes and the
+ * rest in UTF-8; the numbers are variable length, seven bits per byte. The
+ * lists of sibling nodes that are typical of watches shrink to a fraction
+ * of their size, sorted lists the most.
+ */
+public class PathPrefixCodec {
+    public static byte[] encode(List<String> paths) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String prev = "";
+        try {
+            for (String path : paths) {
+                int shared = 0;
+                int max = Math.min(prev.length(), path.length());
+                while (shared < max
+                        && prev.charAt(shared) == path.charAt(shared)) {
+                    shared++;
+                }
+                // don't split a surrogate pair
+                if (shared > 0
+                        && Character.isHighSurrogate(path.charAt(shared - 1))) {
+                    shared--;
+                }
+                byte rest[] = path.substring(shared).getBytes("UTF-8");
+                writeVarInt(out, shared);
+                writeVarInt(out, rest.length);
+                out.write(rest);
+                prev = path;
+            }
+        } catch (IOException e) {
+            // a ByteArrayOutputStream doesn't throw
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IOException if the paths are not properly encoded
+     */
+    public static List<String> decode(byte data[]) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        if (data == null) {
+            return paths;
+        }
+        String prev = "";
+        int pos[] = { 0 };
+        while (pos[0] < data.length) {
+            int shared = readVarInt(data, pos);
+            int len = readVarInt(data, pos);
+            if (shared < 0 || shared > prev.length() || len < 0
+                    || len > data.length - pos[0]) {
+                throw new IOException("Corrupt path list at " + pos[0]);
+            }
+            String path = prev.substring(0, shared)
+                    + new String(data, pos[0], len, "UTF-8");
+            pos[0] += len;
+            paths.add(path);
+            prev = path;
+        }
+        return paths;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int i) {
+        while ((i & ~0x7f) != 0) {
+            out.write((i & 0x7f) | 0x80);
+            i >>>= 7;
+        }
+        out.write(i);
+    }
+
+    private static int readVarInt(byte data[], int pos[]) throws IOException {
+        int i = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new IOException("Truncated path list");
+            }
+            int b = data[pos[0]++];
+            i |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return i;
+            }
+        }
+        throw new IOException("Corrupt path list at " + pos[0]);
+    }
+}
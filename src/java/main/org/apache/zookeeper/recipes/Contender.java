@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.recipes;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.StringCallback;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.ChildData;
+
+/**
+ * An ephemeral sequential node that waits for the nodes created before it
+ * to go away. A contender only watches its predecessor, found by the
+ * server with getPredecessor, so the deletion of a node wakes up the next
+ * contender alone and nobody lists the directory.
+ * <p>
+ * The nodes of all the contenders share the same prefix, so that the
+ * server orders them by their sequence number. The data of a node is a
+ * token of its contender, which finds its node by it after a connection
+ * loss: the other contenders of the same handle own nodes in the directory
+ * too.
+ */
+class Contender implements Watcher, StringCallback {
+    private static final Logger LOG = Logger.getLogger(Contender.class);
+
+    private final ZooKeeper zk;
+
+    private final String dir;
+
+    private final String prefix;
+
+    private final List<ACL> acl;
+
+    private final byte[] token = UUID.randomUUID().toString().getBytes();
+
+    /**
+     * The name of our node, null if there is none.
+     */
+    private String name;
+
+    private boolean first;
+
+    /**
+     * The error that stopped us from waiting, 0 if none.
+     */
+    private int failure;
+
+    Contender(ZooKeeper zk, String dir, String prefix, List<ACL> acl) {
+        this.zk = zk;
+        this.dir = dir;
+        this.prefix = prefix;
+        this.acl = acl;
+    }
+
+    /**
+     * Create our node and start waiting for the nodes before it.
+     */
+    void enter() throws KeeperException, InterruptedException {
+        synchronized (this) {
+            if (name != null) {
+                return;
+            }
+        }
+        String created = create();
+        synchronized (this) {
+            name = created;
+            first = false;
+            failure = 0;
+            check();
+        }
+    }
+
+    private String create() throws KeeperException, InterruptedException {
+        while (true) {
+            try {
+                String path = zk.create(dir + "/" + prefix, token, acl,
+                        CreateMode.EPHEMERAL_SEQUENTIAL);
+                return path.substring(dir.length() + 1);
+            } catch (KeeperException.ConnectionLossException e) {
+                // the node may have been created, it would block the others
+                // for as long as our session lives
+                String orphan = findOwnNode();
+                if (orphan != null) {
+                    return orphan;
+                }
+            }
+        }
+    }
+
+    private String findOwnNode() throws KeeperException, InterruptedException {
+        while (true) {
+            try {
+                for (ChildData child : zk.getChildrenData(dir, false, true)) {
+                    if (child.getName().startsWith(prefix)
+                            && child.getStat().getEphemeralOwner() == zk
+                                    .getSessionId()
+                            && Arrays.equals(child.getData(), token)) {
+                        return child.getName();
+                    }
+                }
+                return null;
+            } catch (KeeperException.ConnectionLossException e) {
+                LOG.warn("Lost the connection while looking for "
+                        + dir + "/" + prefix + " nodes");
+            }
+        }
+    }
+
+    /**
+     * Must be called holding the lock.
+     */
+    private void check() {
+        zk.getPredecessor(dir, name, this, this, name);
+    }
+
+    public void processResult(int rc, String path, Object ctx,
+            String predecessor) {
+        synchronized (this) {
+            if (name == null || !name.equals(ctx)) {
+                // a reply for a node we left
+                return;
+            }
+            if (rc == Code.Ok) {
+                if (predecessor == null) {
+                    first = true;
+                    notifyAll();
+                }
+            } else if (rc == Code.ConnectionLoss) {
+                check();
+            } else {
+                LOG.warn("Can't find the predecessor of " + dir + "/" + name
+                        + ": " + KeeperException.create(rc).getMessage());
+                failure = rc;
+                notifyAll();
+            }
+        }
+    }
+
+    public void process(WatchedEvent event) {
+        synchronized (this) {
+            if (name == null || first) {
+                return;
+            }
+            if (event.getType() != Event.EventType.None) {
+                // the predecessor is gone or changed, see who is before us
+                check();
+            } else if (event.getState() == Event.KeeperState.Expired) {
+                failure = Code.SessionExpired;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until there are no nodes before ours.
+     *
+     * @param timeout
+     *                in milliseconds, 0 to wait forever
+     * @return whether our node is the first
+     */
+    synchronized boolean await(long timeout) throws KeeperException,
+            InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (!first && failure == 0 && name != null) {
+            long wait = timeout == 0 ? 0 : end - System.currentTimeMillis();
+            if (timeout != 0 && wait <= 0) {
+                return false;
+            }
+            wait(wait);
+        }
+        if (failure != 0) {
+            throw KeeperException.create(failure);
+        }
+        return first;
+    }
+
+    synchronized boolean isFirst() {
+        return first;
+    }
+
+    /**
+     * Delete our node.
+     */
+    void leave() throws KeeperException, InterruptedException {
+        String left;
+        synchronized (this) {
+            left = name;
+            name = null;
+            first = false;
+            notifyAll();
+        }
+        if (left == null) {
+            return;
+        }
+        try {
+            zk.delete(dir + "/" + left, -1);
+        } catch (KeeperException.NoNodeException e) {
+            // gone with our session
+        }
+    }
+}
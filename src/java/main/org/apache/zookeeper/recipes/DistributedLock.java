@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.recipes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.ACL;
+
+/**
+ * An exclusive lock held by the client whose node in the lock directory is
+ * first. Clients wait in line, each watching only the node just before its
+ * own, so releasing the lock wakes up a single waiter.
+ * <p>
+ * The lock is not reentrant and belongs to the session of the ZooKeeper
+ * handle: if the session expires the lock is lost.
+ */
+public class DistributedLock {
+    static final String PREFIX = "lock-";
+
+    private final Contender contender;
+
+    /**
+     * @param dir
+     *                the existing node under which the lock nodes are
+     *                created
+     */
+    public DistributedLock(ZooKeeper zk, String dir, List<ACL> acl) {
+        contender = new Contender(zk, dir, PREFIX, acl);
+    }
+
+    /**
+     * Wait until the lock is ours.
+     */
+    public void lock() throws KeeperException, InterruptedException {
+        contender.enter();
+        contender.await(0);
+    }
+
+    /**
+     * Wait for the lock for at most the given time.
+     *
+     * @return whether the lock is ours; if not we are no longer waiting
+     */
+    public boolean tryLock(long timeout, TimeUnit unit)
+            throws KeeperException, InterruptedException {
+        contender.enter();
+        if (contender.await(Math.max(1, unit.toMillis(timeout)))) {
+            return true;
+        }
+        contender.leave();
+        return false;
+    }
+
+    /**
+     * Release the lock, or stop waiting for it.
+     */
+    public void unlock() throws KeeperException, InterruptedException {
+        contender.leave();
+    }
+
+    public boolean isOwner() {
+        return contender.isFirst();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.recipes;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.ACL;
+
+/**
+ * A first in first out queue of byte arrays. Each element is a persistent
+ * sequential node of the queue directory; the head is found by reading the
+ * first page of the sorted children rather than all of them.
+ */
+public class DistributedQueue {
+    static final String PREFIX = "qn-";
+
+    /**
+     * The children read at a time while looking for an element to take.
+     */
+    static final int BATCH = 16;
+
+    private final ZooKeeper zk;
+
+    private final String dir;
+
+    private final List<ACL> acl;
+
+    /**
+     * @param dir
+     *                the existing node under which the elements are created
+     */
+    public DistributedQueue(ZooKeeper zk, String dir, List<ACL> acl) {
+        this.zk = zk;
+        this.dir = dir;
+        this.acl = acl;
+    }
+
+    /**
+     * Add an element at the tail of the queue.
+     *
+     * @return the path of the node of the element
+     */
+    public String offer(byte data[]) throws KeeperException,
+            InterruptedException {
+        return zk.create(dir + "/" + PREFIX, data, acl,
+                CreateMode.PERSISTENT_SEQUENTIAL);
+    }
+
+    /**
+     * Remove the element at the head of the queue.
+     *
+     * @return the element, null if the queue is empty
+     */
+    public byte[] poll() throws KeeperException, InterruptedException {
+        return remove(null);
+    }
+
+    /**
+     * Remove the element at the head of the queue, waiting for one if the
+     * queue is empty.
+     */
+    public byte[] take() throws KeeperException, InterruptedException {
+        while (true) {
+            final CountDownLatch changed = new CountDownLatch(1);
+            byte data[] = remove(new Watcher() {
+                public void process(WatchedEvent event) {
+                    changed.countDown();
+                }
+            });
+            if (data != null) {
+                return data;
+            }
+            changed.await();
+        }
+    }
+
+    /**
+     * @param watcher
+     *                if not null, left on the directory by the first read
+     *                of its children
+     */
+    private byte[] remove(Watcher watcher) throws KeeperException,
+            InterruptedException {
+        String startAfter = null;
+        while (true) {
+            List<String> children = zk.getChildren(dir, watcher, startAfter,
+                    BATCH);
+            watcher = null;
+            for (String child : children) {
+                if (!child.startsWith(PREFIX)) {
+                    continue;
+                }
+                String path = dir + "/" + child;
+                try {
+                    byte data[] = zk.getData(path, false, null);
+                    zk.delete(path, -1);
+                    return data;
+                } catch (KeeperException.NoNodeException e) {
+                    // taken by another client, try the next one
+                }
+            }
+            if (children.size() < BATCH) {
+                return null;
+            }
+            startAfter = children.get(children.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.recipes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.ACL;
+
+/**
+ * Elects a leader among the clients that started a latch on the same
+ * directory: the client whose node was created first leads until it closes
+ * its latch or its session ends, then the next one takes over.
+ */
+public class LeaderLatch {
+    static final String PREFIX = "latch-";
+
+    private final Contender contender;
+
+    /**
+     * @param dir
+     *                the existing node under which the latch nodes are
+     *                created
+     */
+    public LeaderLatch(ZooKeeper zk, String dir, List<ACL> acl) {
+        contender = new Contender(zk, dir, PREFIX, acl);
+    }
+
+    /**
+     * Join the election.
+     */
+    public void start() throws KeeperException, InterruptedException {
+        contender.enter();
+    }
+
+    /**
+     * Wait until we lead.
+     */
+    public void await() throws KeeperException, InterruptedException {
+        contender.await(0);
+    }
+
+    /**
+     * Wait at most the given time until we lead.
+     *
+     * @return whether we lead
+     */
+    public boolean await(long timeout, TimeUnit unit) throws KeeperException,
+            InterruptedException {
+        return contender.await(Math.max(1, unit.toMillis(timeout)));
+    }
+
+    public boolean hasLeadership() {
+        return contender.isFirst();
+    }
+
+    /**
+     * Leave the election, giving up the leadership if we have it.
+     */
+    public void close() throws KeeperException, InterruptedException {
+        contender.leave();
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.proto.AwaitZxidRequest;
+
+/**
+ * Takes the requests of the first request processor from its queue, holding
+ * back an awaitZxid request until the data tree has applied its zxid. The
+ * requests of the same session that come after it are held along with it,
+ * so that they see the change; the requests of other sessions go on. The
+ * requests of a session are held before any of them is sent to the leader
+ * or proposed, so the commits of its writes still come back in order.
+ * <p>
+ * Only the thread of the processor calls take. The
+ * FinalRequestProcessor calls zxidApplied.
+ */
+public class AwaitZxidQueue {
+    /**
+     * Queued by zxidApplied to wake the processor thread.
+     */
+    private static final Request wakeup = new Request(null, 0, 0, 0, null,
+            null);
+
+    /**
+     * The requests of a session, the first of which waits for zxid.
+     */
+    private static class HeldRequests {
+        long zxid;
+
+        long deadline;
+
+        LinkedList<Request> requests = new LinkedList<Request>();
+    }
+
+    private final ZooKeeperServer zks;
+
+    private final LinkedBlockingQueue<Request> queue;
+
+    private final HashMap<Long, HeldRequests> held =
+        new HashMap<Long, HeldRequests>();
+
+    private final LinkedList<Request> released = new LinkedList<Request>();
+
+    /**
+     * The lowest zxid waited for, so that applying a txn only wakes the
+     * processor thread when it has something to release.
+     */
+    private volatile long lowestZxid = Long.MAX_VALUE;
+
+    private final AtomicBoolean wakeupQueued = new AtomicBoolean();
+
+    private long nextDeadline = Long.MAX_VALUE;
+
+    /**
+     * @param queue
+     *                the queue of the processor
+     */
+    public AwaitZxidQueue(ZooKeeperServer zks,
+            LinkedBlockingQueue<Request> queue) {
+        this.zks = zks;
+        this.queue = queue;
+    }
+
+    /**
+     * @return the next request to process, in the order of its session
+     */
+    public Request take() throws InterruptedException {
+        while (true) {
+            if (!released.isEmpty()) {
+                return released.remove();
+            }
+            Request request;
+            if (held.isEmpty()) {
+                request = queue.take();
+            } else {
+                request = queue.poll(Math.max(nextDeadline
+                        - System.currentTimeMillis(), 0),
+                        TimeUnit.MILLISECONDS);
+            }
+            if (request == wakeup) {
+                wakeupQueued.set(false);
+                release();
+                continue;
+            }
+            if (!held.isEmpty()
+                    && (request == null
+                            || System.currentTimeMillis() >= nextDeadline)) {
+                release();
+            }
+            if (request != null && !hold(request)) {
+                if (released.isEmpty()) {
+                    return request;
+                }
+                released.add(request);
+            }
+        }
+    }
+
+    /**
+     * Called once the data tree has applied the txn of the zxid.
+     */
+    public void zxidApplied(long zxid) {
+        if (zxid >= lowestZxid && wakeupQueued.compareAndSet(false, true)) {
+            queue.add(wakeup);
+        }
+    }
+
+    /**
+     * @return true if the request is held back
+     */
+    private boolean hold(Request request) {
+        if (request == Request.requestOfDeath) {
+            return false;
+        }
+        HeldRequests h = held.get(request.sessionId);
+        if (h != null) {
+            h.requests.add(request);
+            return true;
+        }
+        if (request.type != OpCode.awaitZxid) {
+            return false;
+        }
+        h = new HeldRequests();
+        if (!mustWait(request, h)) {
+            return false;
+        }
+        h.requests.add(request);
+        held.put(request.sessionId, h);
+        nextDeadline = Math.min(nextDeadline, h.deadline);
+        return true;
+    }
+
+    /**
+     * Whether the awaitZxid request has to wait, filling in what it waits
+     * for if it does.
+     */
+    private boolean mustWait(Request request, HeldRequests h) {
+        AwaitZxidRequest awaitZxidRequest = new AwaitZxidRequest();
+        ByteBuffer bb = request.request.duplicate();
+        bb.rewind();
+        try {
+            ZooKeeperServer.byteBuffer2Record(bb, awaitZxidRequest);
+        } catch (IOException e) {
+            // the FinalRequestProcessor reports the error
+            return false;
+        }
+        h.zxid = awaitZxidRequest.getZxid();
+        h.deadline = request.createTime
+                + ZooKeeperServer.getAwaitZxidTimeout();
+        if (zks.dataTree.lastProcessedZxid >= h.zxid
+                || System.currentTimeMillis() >= h.deadline
+                || !zks.isCommittable(h.zxid)) {
+            return false;
+        }
+        if (h.zxid < lowestZxid) {
+            lowestZxid = h.zxid;
+        }
+        // a txn applied before lowestZxid was lowered did not wake us
+        return zks.dataTree.lastProcessedZxid < h.zxid;
+    }
+
+    /**
+     * Move the requests that no longer wait to the released ones.
+     */
+    private void release() {
+        do {
+            long now = System.currentTimeMillis();
+            long lowest = Long.MAX_VALUE;
+            nextDeadline = Long.MAX_VALUE;
+            for (Iterator<HeldRequests> it = held.values().iterator(); it
+                    .hasNext();) {
+                HeldRequests h = it.next();
+                while (!h.requests.isEmpty()
+                        && (zks.dataTree.lastProcessedZxid >= h.zxid
+                                || now >= h.deadline)) {
+                    released.add(h.requests.remove());
+                    while (!h.requests.isEmpty()) {
+                        Request request = h.requests.getFirst();
+                        if (request.type == OpCode.awaitZxid
+                                && mustWait(request, h)) {
+                            break;
+                        }
+                        released.add(h.requests.remove());
+                    }
+                }
+                if (h.requests.isEmpty()) {
+                    it.remove();
+                } else {
+                    lowest = Math.min(lowest, h.zxid);
+                    nextDeadline = Math.min(nextDeadline, h.deadline);
+                }
+            }
+            lowestZxid = lowest;
+        } while (lowestZxid <= zks.dataTree.lastProcessedZxid);
+    }
+}
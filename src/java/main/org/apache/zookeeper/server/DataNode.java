@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.apache.jute.Index;
 import org.apache.jute.InputArchive;
@@ -35,7 +36,8 @@ import org.apache.zookeeper.data.StatPersisted;
  * This class contains the data for a node in the data tree.
  * <p>
  * A data node contains a reference to its parent, a byte array as its data, an
- * array of ACLs, a stat object, and a set of its children's paths.
+ * array of ACLs, a stat object, and a set of its children's paths. The
+ * children are kept sorted so that they can be read a page at a time.
  * 
  */
 public class DataNode implements Record {
@@ -56,24 +58,24 @@ public class DataNode implements Record {
         this.data = data;
         this.acl = acl;
         this.stat = stat;
-        this.children = new HashSet<String>();
+        this.children = new TreeSet<String>();
     }
 
     /**
      * convenience method for creating DataNode
      * fully
-     * @param children
+     * @param children copied into the sorted children of the node
      */
     public void setChildren(HashSet<String> children) {
-        this.children = children;
+        this.children = new TreeSet<String>(children);
     }
     
     /**
      * convenience methods to get the children
-     * @return the children of this datanode
+     * @return a copy of the children of this datanode
      */
     public HashSet<String> getChildren() {
-        return this.children;
+        return new HashSet<String>(this.children);
     }
     
     DataNode parent;
@@ -84,7 +86,7 @@ public class DataNode implements Record {
 
     public StatPersisted stat;
 
-    HashSet<String> children = new HashSet<String>();
+    TreeSet<String> children = new TreeSet<String>();
 
     public void copyStat(Stat to) {
         to.setAversion(stat.getAversion());
@@ -19,6 +19,8 @@
 package org.apache.zookeeper.server;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -26,8 +28,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.jute.BinaryOutputArchive;
 import org.apache.jute.Index;
 import org.apache.jute.InputArchive;
 import org.apache.jute.OutputArchive;
@@ -40,12 +44,18 @@ import org.apache.zookeeper.KeeperException.Code;
 import org.apache.zookeeper.Watcher.Event;
 import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.ZooDefs.OpCode;
 import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.ChildData;
+import org.apache.zookeeper.data.Id;
 import org.apache.zookeeper.data.Stat;
 import org.apache.zookeeper.data.StatPersisted;
 import org.apache.zookeeper.proto.WatcherEvent;
+import org.apache.zookeeper.txn.CloseSessionsTxn;
+import org.apache.zookeeper.txn.CreateTreeTxn;
 import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.DeleteTreeTxn;
 import org.apache.zookeeper.txn.DeleteTxn;
 import org.apache.zookeeper.txn.ErrorTxn;
 import org.apache.zookeeper.txn.SetACLTxn;
@@ -74,6 +84,11 @@ public class DataTree {
 
     private WatchManager childWatches = new WatchManager();
 
+    /**
+     * Watches on whole subtrees, they stay until they are removed.
+     */
+    private WatchManager recursiveWatches = new WatchManager();
+
     /**
      * This hashtable lists the paths of the ephemeral nodes of a session.
      */
@@ -209,7 +224,7 @@ public class DataTree {
     }
 
     public int getWatchCount(){
-        return dataWatches.size()+childWatches.size();
+        return dataWatches.size()+childWatches.size()+recursiveWatches.size();
     }
 
     /**
@@ -321,7 +336,11 @@ public class DataTree {
                 }
             }
         }
+        Set<Watcher> processed =
         dataWatches.triggerWatch(path, Event.EventType.NodeCreated);
+        recursiveWatches.triggerRecursiveWatch(path,
+                Event.EventType.NodeCreated, processed,
+                convertLong(parent.acl));
         childWatches.triggerWatch(parentName.equals("")?"/":parentName, Event.EventType.NodeChildrenChanged);
         return path;
     }
@@ -370,7 +389,16 @@ public class DataTree {
                                  "childWatches.triggerWatch " + parentName);
         Set<Watcher> processed =
         dataWatches.triggerWatch(path, EventType.NodeDeleted);
+        Set<Watcher> childProcessed =
         childWatches.triggerWatch(path, EventType.NodeDeleted, processed);
+        // a connection gets the event once, whatever its watches
+        if (processed == null) {
+            processed = childProcessed;
+        } else if (childProcessed != null) {
+            processed.addAll(childProcessed);
+        }
+        recursiveWatches.triggerRecursiveWatch(path, EventType.NodeDeleted,
+                processed, convertLong(parent.acl));
         childWatches.triggerWatch(parentName.equals("")?"/":parentName, EventType.NodeChildrenChanged);
     }
 
@@ -388,7 +416,10 @@ public class DataTree {
             n.stat.setVersion(version);
             n.copyStat(s);
         }
+        Set<Watcher> processed =
         dataWatches.triggerWatch(path, EventType.NodeDataChanged);
+        recursiveWatches.triggerRecursiveWatch(path,
+                EventType.NodeDataChanged, processed, convertLong(n.acl));
         return s;
     }
 
@@ -437,6 +468,162 @@ public class DataTree {
         }
     }
 
+    /**
+     * Return a page of the children of a node, in order. Only the page is
+     * copied, so the node is locked for a short time however many children
+     * it has.
+     *
+     * @param path the parent node
+     * @param startAfter only return the children whose name comes after
+     *                this one, null to start with the first child
+     * @param limit the most children returned
+     * @param watcher set as a child watch on the node, may be null
+     * @return the children, fewer than limit only when there are no more
+     */
+    public List<String> getChildren(String path, String startAfter,
+            int limit, Watcher watcher) throws KeeperException.NoNodeException {
+        DataNode n = nodes.get(path);
+        if (n == null) {
+            throw new KeeperException.NoNodeException();
+        }
+        synchronized (n) {
+            // the smallest string that sorts after startAfter
+            SortedSet<String> tail = startAfter == null ? n.children
+                    : n.children.tailSet(startAfter + "\0");
+            ArrayList<String> children = new ArrayList<String>(Math.min(
+                    limit, n.children.size()));
+            for (String child : tail) {
+                if (children.size() == limit) {
+                    break;
+                }
+                children.add(child);
+            }
+            if (watcher != null) {
+                childWatches.addWatch(path, watcher);
+            }
+            return children;
+        }
+    }
+
+    /**
+     * @return the name of a sequential node without its sequence number
+     */
+    private static String sequencePrefix(String name) {
+        int end = name.length();
+        while (end > 0 && Character.isDigit(name.charAt(end - 1))) {
+            end--;
+        }
+        return name.substring(0, end);
+    }
+
+    /**
+     * Find the sibling that precedes a sequential node: the child of path
+     * that sorts just before name among the children sharing its prefix,
+     * the name without its sequence number. The lookup uses the sorted
+     * children instead of a listing of them.
+     *
+     * @param watcher
+     *                if not null, left as a data watch on the predecessor,
+     *                so that its deletion is not missed
+     * @return the name of the predecessor, null if there is none
+     */
+    public String getPredecessor(String path, String name, Watcher watcher)
+            throws KeeperException.NoNodeException {
+        DataNode n = nodes.get(path);
+        if (n == null) {
+            throw new KeeperException.NoNodeException();
+        }
+        String prefix = sequencePrefix(name);
+        String predecessor;
+        synchronized (n) {
+            predecessor = n.children.lower(name);
+            // the names starting with the prefix sort together, skip those
+            // of longer prefixes, such as lock-x- for lock-
+            while (predecessor != null && predecessor.startsWith(prefix)
+                    && !sequencePrefix(predecessor).equals(prefix)) {
+                predecessor = n.children.lower(predecessor);
+            }
+        }
+        if (predecessor == null || !predecessor.startsWith(prefix)) {
+            return null;
+        }
+        if (watcher != null) {
+            dataWatches.addWatch(path.equals("/") ? "/" + predecessor
+                    : path + "/" + predecessor, watcher);
+        }
+        return predecessor;
+    }
+
+    /**
+     * The number of child names copied at a time by getChildrenData.
+     */
+    private static final int CHILDREN_BATCH = 1000;
+
+    /**
+     * Return the children of a node, in order, with their stat and
+     * optionally their data. Each child is read under its own lock so its
+     * stat and data match, but the children are not read at a single point
+     * in time.
+     *
+     * @param path the parent node
+     * @param startAfter only return the children whose name comes after
+     *                this one, null to start with the first child
+     * @param maxBytes stop once the children returned take about this many
+     *                bytes, at least one child is returned
+     * @param authInfo the identity of the client, the data of the children
+     *                it may read is returned; null to return no data
+     * @param children the children are added to this list
+     * @param watcher set as a child watch on the node, may be null
+     * @return the name of the last child returned if more children follow,
+     *         null otherwise
+     */
+    public String getChildrenData(String path, String startAfter,
+            int maxBytes, List<Id> authInfo, List<ChildData> children,
+            Watcher watcher) throws KeeperException.NoNodeException {
+        String prefix = path.equals("/") ? path : path + "/";
+        int bytes = 0;
+        List<String> names;
+        do {
+            names = getChildren(path, startAfter, CHILDREN_BATCH, watcher);
+            watcher = null;
+            for (String name : names) {
+                startAfter = name;
+                DataNode child = nodes.get(prefix + name);
+                if (child == null) {
+                    // deleted since the names were copied
+                    continue;
+                }
+                Stat stat = new Stat();
+                byte data[] = null;
+                Long acl;
+                synchronized (child) {
+                    child.copyStat(stat);
+                    data = child.data;
+                    acl = child.acl;
+                }
+                if (authInfo != null) {
+                    try {
+                        PrepRequestProcessor.checkACL(null, convertLong(acl),
+                                ZooDefs.Perms.READ, authInfo);
+                    } catch (KeeperException.NoAuthException e) {
+                        data = null;
+                    }
+                } else {
+                    data = null;
+                }
+                // name, stat and data as they are serialized
+                int size = 4 + BinaryOutputArchive.utf8Length(name) + 68 + 4
+                        + (data == null ? 0 : data.length);
+                if (bytes > 0 && bytes + size > maxBytes) {
+                    return children.get(children.size() - 1).getName();
+                }
+                children.add(new ChildData(name, stat, data));
+                bytes += size;
+            }
+        } while (names.size() == CHILDREN_BATCH);
+        return null;
+    }
+
     public Stat setACL(String path, List<ACL> acl, int version) throws KeeperException.NoNodeException {
         Stat stat = new Stat();
         DataNode n = nodes.get(path);
@@ -536,6 +723,36 @@ public class DataTree {
                 debug = "Delete transaction for " + deleteTxn.getPath();
                 deleteNode(deleteTxn.getPath(), header.getZxid());
                 break;
+            case OpCode.deleteTree:
+                DeleteTreeTxn deleteTreeTxn = (DeleteTreeTxn) txn;
+                for (String path : deleteTreeTxn.getPaths()) {
+                    try {
+                        deleteNode(path, header.getZxid());
+                    } catch (KeeperException e) {
+                        // the rest of the tree still goes
+                        if (initialized) {
+                            LOG.warn("Delete tree transaction for " + path
+                                    + " failed: " + e.getMessage());
+                        }
+                    }
+                }
+                break;
+            case OpCode.createTree:
+                CreateTreeTxn createTreeTxn = (CreateTreeTxn) txn;
+                for (CreateTxn create : createTreeTxn.getCreates()) {
+                    try {
+                        createNode(create.getPath(), create.getData(), create
+                                .getAcl(), 0, header.getZxid(), header
+                                .getTime());
+                    } catch (KeeperException e) {
+                        if (initialized) {
+                            LOG.warn("Create tree transaction for "
+                                    + create.getPath() + " failed: "
+                                    + e.getMessage());
+                        }
+                    }
+                }
+                break;
             case OpCode.setData:
                 SetDataTxn setDataTxn = (SetDataTxn) txn;
                 debug = "Set data for  transaction for " + setDataTxn.getPath();
@@ -551,6 +768,13 @@ public class DataTree {
             case OpCode.closeSession:
                 killSession(header.getClientId(), header.getZxid());
                 break;
+            case OpCode.closeSessions:
+                LongBuffer sessions = ByteBuffer.wrap(
+                        ((CloseSessionsTxn) txn).getSessions()).asLongBuffer();
+                while (sessions.hasRemaining()) {
+                    killSession(sessions.get(), header.getZxid());
+                }
+                break;
             case OpCode.error:
                 ErrorTxn errTxn = (ErrorTxn) txn;
                 rc.err = errTxn.getErr();
@@ -730,6 +954,20 @@ public class DataTree {
     public void removeCnxn(Watcher watcher) {
         dataWatches.removeWatcher(watcher);
         childWatches.removeWatcher(watcher);
+        recursiveWatches.removeWatcher(watcher);
+    }
+
+    /**
+     * Watch the node of the path, which doesn't have to exist, and all the
+     * nodes below it for creation, deletion and changes of their data until
+     * the watch is removed.
+     */
+    public void addRecursiveWatch(String path, Watcher watcher) {
+        recursiveWatches.addWatch(path, watcher);
+    }
+
+    public boolean removeRecursiveWatch(String path, Watcher watcher) {
+        return recursiveWatches.removeWatch(path, watcher);
     }
 
     public void clear() {
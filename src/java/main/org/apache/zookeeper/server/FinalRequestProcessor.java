@@ -20,36 +20,61 @@ package org.apache.zookeeper.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 
+import org.apache.jute.BinaryInputArchive;
 import org.apache.jute.Record;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.KeeperException.Code;
 import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.common.PathPrefixCodec;
 import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.ChildData;
+import org.apache.zookeeper.data.Id;
 import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.proto.AwaitZxidRequest;
 import org.apache.zookeeper.proto.CreateResponse;
+import org.apache.zookeeper.proto.CreateTreeResponse;
+import org.apache.zookeeper.proto.DeleteTreeResponse;
 import org.apache.zookeeper.proto.ExistsRequest;
 import org.apache.zookeeper.proto.ExistsResponse;
 import org.apache.zookeeper.proto.GetACLRequest;
 import org.apache.zookeeper.proto.GetACLResponse;
+import org.apache.zookeeper.proto.GetChildrenDataRequest;
+import org.apache.zookeeper.proto.GetChildrenDataResponse;
+import org.apache.zookeeper.proto.GetChildrenPageRequest;
 import org.apache.zookeeper.proto.GetChildrenRequest;
 import org.apache.zookeeper.proto.GetChildrenResponse;
+import org.apache.zookeeper.proto.GetDataIfChangedRequest;
 import org.apache.zookeeper.proto.GetDataRequest;
 import org.apache.zookeeper.proto.GetDataResponse;
+import org.apache.zookeeper.proto.GetPredecessorRequest;
+import org.apache.zookeeper.proto.GetPredecessorResponse;
+import org.apache.zookeeper.proto.IncrementResponse;
+import org.apache.zookeeper.proto.RecursiveWatchRequest;
 import org.apache.zookeeper.proto.ReplyHeader;
 import org.apache.zookeeper.proto.SetACLResponse;
 import org.apache.zookeeper.proto.SetDataResponse;
+import org.apache.zookeeper.proto.SetNotificationData;
+import org.apache.zookeeper.proto.SetRecursiveWatches;
 import org.apache.zookeeper.proto.SetWatches;
+import org.apache.zookeeper.proto.SetWatchesCompact;
 import org.apache.zookeeper.proto.SyncRequest;
 import org.apache.zookeeper.proto.SyncResponse;
 import org.apache.zookeeper.server.DataTree.ProcessTxnResult;
 import org.apache.zookeeper.server.NIOServerCnxn.Factory;
+import org.apache.zookeeper.txn.CloseSessionsTxn;
 import org.apache.zookeeper.txn.CreateSessionTxn;
+import org.apache.zookeeper.txn.CreateTreeTxn;
+import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.DeleteTreeTxn;
 import org.apache.zookeeper.txn.ErrorTxn;
+import org.apache.zookeeper.txn.SetDataTxn;
 
 /**
  * This Request processor actually applies any transaction associated with a
@@ -92,6 +117,7 @@ public class FinalRequestProcessor implements RequestProcessor {
             }
             if (request.hdr != null) {
                 rc = zks.dataTree.processTxn(request.hdr, request.txn);
+                zks.zxidApplied(rc.zxid);
                 if (request.type == OpCode.createSession) {
                     if (request.txn instanceof CreateSessionTxn) {
                         CreateSessionTxn cst = (CreateSessionTxn) request.txn;
@@ -104,21 +130,43 @@ public class FinalRequestProcessor implements RequestProcessor {
                     }
                 } else if (request.type == OpCode.closeSession) {
                     zks.sessionTracker.removeSession(request.sessionId);
+                } else if (request.hdr.getType() == OpCode.closeSessions) {
+                    LongBuffer sessions = ByteBuffer.wrap(
+                            ((CloseSessionsTxn) request.txn).getSessions())
+                            .asLongBuffer();
+                    while (sessions.hasRemaining()) {
+                        zks.sessionTracker.removeSession(sessions.get());
+                    }
                 }
+            } else if (request.localSession
+                    && request.type == OpCode.closeSession) {
+                zks.sessionTracker.removeSession(request.sessionId);
             }
             // do not add non quorum packets to the queue.
-            if (Request.isQuorum(request.type)) {
+            if (Request.isQuorum(request.type) && !request.localSession) {
                 zks.addCommittedProposal(request);
             }
         }
 
-        if (request.hdr != null && request.hdr.getType() == OpCode.closeSession) {
+        if ((request.hdr != null && request.hdr.getType() == OpCode.closeSession)
+                || (request.localSession && request.type == OpCode.closeSession)) {
             Factory scxn = zks.getServerCnxnFactory();
             // this might be possible since
             // we might just be playing diffs from the leader
             if (scxn != null) {
                 scxn.closeSession(request.sessionId);
             }
+        } else if (request.hdr != null
+                && request.hdr.getType() == OpCode.closeSessions) {
+            Factory scxn = zks.getServerCnxnFactory();
+            if (scxn != null) {
+                LongBuffer sessions = ByteBuffer.wrap(
+                        ((CloseSessionsTxn) request.txn).getSessions())
+                        .asLongBuffer();
+                while (sessions.hasRemaining()) {
+                    scxn.closeSession(sessions.get());
+                }
+            }
         }
 
         if (request.cnxn == null) {
@@ -150,16 +198,39 @@ public class FinalRequestProcessor implements RequestProcessor {
             case OpCode.delete:
                 err = rc.err;
                 break;
+            case OpCode.deleteTree:
+                DeleteTreeTxn deleteTreeTxn = (DeleteTreeTxn) request.txn;
+                rsp = new DeleteTreeResponse(deleteTreeTxn.getPaths().size(),
+                        deleteTreeTxn.getRemaining());
+                err = rc.err;
+                break;
+            case OpCode.createTree:
+                List<String> paths = new ArrayList<String>();
+                for (CreateTxn create : ((CreateTreeTxn) request.txn)
+                        .getCreates()) {
+                    paths.add(create.getPath());
+                }
+                rsp = new CreateTreeResponse(paths);
+                err = rc.err;
+                break;
             case OpCode.setData:
                 rsp = new SetDataResponse(rc.stat);
                 err = rc.err;
                 break;
+            case OpCode.increment:
+                rsp = new IncrementResponse(ByteBuffer.wrap(
+                        ((SetDataTxn) request.txn).getData()).getLong(),
+                        rc.stat);
+                err = rc.err;
+                break;
             case OpCode.setACL:
                 rsp = new SetACLResponse(rc.stat);
                 err = rc.err;
                 break;
             case OpCode.closeSession:
-                err = rc.err;
+                if (rc != null) {
+                    err = rc.err;
+                }
                 break;
             case OpCode.sync:
                 SyncRequest syncRequest = new SyncRequest();
@@ -167,6 +238,20 @@ public class FinalRequestProcessor implements RequestProcessor {
                         syncRequest);
                 rsp = new SyncResponse(syncRequest.getPath());
                 break;
+            case OpCode.awaitZxid:
+                AwaitZxidRequest awaitZxidRequest = new AwaitZxidRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        awaitZxidRequest);
+                // held back until the tree caught up or it waited too long
+                if (zks.dataTree.lastProcessedZxid < awaitZxidRequest
+                        .getZxid()) {
+                    if (!zks.isCommittable(awaitZxidRequest.getZxid())) {
+                        throw new KeeperException.BadArgumentsException();
+                    }
+                    throw new KeeperException.OperationTimeoutException();
+                }
+                request.zxid = zks.dataTree.lastProcessedZxid;
+                break;
             case OpCode.exists:
                 // TODO we need to figure out the security requirement for this!
                 ExistsRequest existsRequest = new ExistsRequest();
@@ -196,6 +281,28 @@ public class FinalRequestProcessor implements RequestProcessor {
                         getDataRequest.getWatch() ? request.cnxn : null);
                 rsp = new GetDataResponse(b, stat);
                 break;
+            case OpCode.getDataIfChanged:
+                GetDataIfChangedRequest getDataIfChangedRequest =
+                    new GetDataIfChangedRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        getDataIfChangedRequest);
+                n = zks.dataTree.getNode(getDataIfChangedRequest.getPath());
+                if (n == null) {
+                    throw new KeeperException.NoNodeException();
+                }
+                PrepRequestProcessor.checkACL(zks, zks.dataTree.convertLong(n.acl),
+                        ZooDefs.Perms.READ,
+                        request.authInfo);
+                stat = new Stat();
+                b = zks.dataTree.getData(getDataIfChangedRequest.getPath(),
+                        stat, getDataIfChangedRequest.getWatch() ? request.cnxn
+                                : null);
+                // the client already has the data, the stat tells it so
+                if (stat.getMzxid() == getDataIfChangedRequest.getMzxid()) {
+                    b = null;
+                }
+                rsp = new GetDataResponse(b, stat);
+                break;
             case OpCode.setWatches:
                 SetWatches setWatches = new SetWatches();
                 // XXX We really should NOT need this!!!!
@@ -207,6 +314,59 @@ public class FinalRequestProcessor implements RequestProcessor {
                         setWatches.getExistWatches(),
                         setWatches.getChildWatches(), request.cnxn);
                 break;
+            case OpCode.setWatchesCompact:
+                SetWatchesCompact compact = new SetWatchesCompact();
+                request.request.rewind();
+                ZooKeeperServer.byteBuffer2Record(request.request, compact);
+                zks.dataTree.setWatches(compact.getRelativeZxid(),
+                        PathPrefixCodec.decode(compact.getDataWatches()),
+                        PathPrefixCodec.decode(compact.getExistWatches()),
+                        PathPrefixCodec.decode(compact.getChildWatches()),
+                        request.cnxn);
+                break;
+            case OpCode.setRecursiveWatches:
+                SetRecursiveWatches setRecursiveWatches =
+                    new SetRecursiveWatches();
+                request.request.rewind();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        setRecursiveWatches);
+                for (String p : setRecursiveWatches.getPaths()) {
+                    try {
+                        checkRecursiveWatch(p, request.authInfo);
+                    } catch (KeeperException e) {
+                        LOG.warn("Not restoring the recursive watch on " + p
+                                + ": " + e.getMessage());
+                        continue;
+                    }
+                    zks.dataTree.addRecursiveWatch(p, request.cnxn);
+                }
+                break;
+            case OpCode.addRecursiveWatch:
+                RecursiveWatchRequest addWatchRequest =
+                    new RecursiveWatchRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        addWatchRequest);
+                path = addWatchRequest.getPath();
+                checkRecursiveWatch(path, request.authInfo);
+                zks.dataTree.addRecursiveWatch(path, request.cnxn);
+                break;
+            case OpCode.removeRecursiveWatch:
+                RecursiveWatchRequest removeWatchRequest =
+                    new RecursiveWatchRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        removeWatchRequest);
+                zks.dataTree.removeRecursiveWatch(removeWatchRequest
+                        .getPath(), request.cnxn);
+                break;
+            case OpCode.setNotificationData:
+                SetNotificationData setNotificationData =
+                    new SetNotificationData();
+                request.request.rewind();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        setNotificationData);
+                request.cnxn.setNotificationDataLimit(setNotificationData
+                        .getMaxDataBytes());
+                break;
             case OpCode.getACL:
                 GetACLRequest getACLRequest = new GetACLRequest();
                 ZooKeeperServer.byteBuffer2Record(request.request,
@@ -233,6 +393,71 @@ public class FinalRequestProcessor implements RequestProcessor {
                                 .getWatch() ? request.cnxn : null);
                 rsp = new GetChildrenResponse(children);
                 break;
+            case OpCode.getChildrenPage:
+                GetChildrenPageRequest getChildrenPageRequest =
+                    new GetChildrenPageRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        getChildrenPageRequest);
+                if (getChildrenPageRequest.getLimit() <= 0) {
+                    throw new KeeperException.BadArgumentsException();
+                }
+                n = zks.dataTree.getNode(getChildrenPageRequest.getPath());
+                if (n == null) {
+                    throw new KeeperException.NoNodeException();
+                }
+                PrepRequestProcessor.checkACL(zks, zks.dataTree.convertLong(n.acl),
+                        ZooDefs.Perms.READ,
+                        request.authInfo);
+                children = zks.dataTree.getChildren(
+                        getChildrenPageRequest.getPath(),
+                        getChildrenPageRequest.getStartAfter(),
+                        getChildrenPageRequest.getLimit(),
+                        getChildrenPageRequest.getWatch() ? request.cnxn : null);
+                rsp = new GetChildrenResponse(children);
+                break;
+            case OpCode.getPredecessor:
+                GetPredecessorRequest getPredecessorRequest =
+                    new GetPredecessorRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        getPredecessorRequest);
+                n = zks.dataTree.getNode(getPredecessorRequest.getPath());
+                if (n == null) {
+                    throw new KeeperException.NoNodeException();
+                }
+                PrepRequestProcessor.checkACL(zks, zks.dataTree.convertLong(n.acl),
+                        ZooDefs.Perms.READ,
+                        request.authInfo);
+                rsp = new GetPredecessorResponse(zks.dataTree.getPredecessor(
+                        getPredecessorRequest.getPath(),
+                        getPredecessorRequest.getName(),
+                        getPredecessorRequest.getWatch() ? request.cnxn : null));
+                break;
+            case OpCode.getChildrenData:
+                GetChildrenDataRequest getChildrenDataRequest =
+                    new GetChildrenDataRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        getChildrenDataRequest);
+                n = zks.dataTree.getNode(getChildrenDataRequest.getPath());
+                if (n == null) {
+                    throw new KeeperException.NoNodeException();
+                }
+                PrepRequestProcessor.checkACL(zks, zks.dataTree.convertLong(n.acl),
+                        ZooDefs.Perms.READ,
+                        request.authInfo);
+                // the response has to fit in the buffer of the client
+                int maxBytes = getChildrenDataRequest.getMaxBytes();
+                if (maxBytes <= 0 || maxBytes > BinaryInputArchive.maxBuffer) {
+                    maxBytes = BinaryInputArchive.maxBuffer;
+                }
+                List<ChildData> childData = new ArrayList<ChildData>();
+                String next = zks.dataTree.getChildrenData(
+                        getChildrenDataRequest.getPath(),
+                        getChildrenDataRequest.getStartAfter(), maxBytes,
+                        getChildrenDataRequest.getWithData() ? request.authInfo
+                                : null, childData,
+                        getChildrenDataRequest.getWatch() ? request.cnxn : null);
+                rsp = new GetChildrenDataResponse(childData, next);
+                break;
             }
         } catch (KeeperException e) {
             err = e.getCode();
@@ -249,7 +474,11 @@ public class FinalRequestProcessor implements RequestProcessor {
             err = Code.MarshallingError;
         }
         ReplyHeader hdr = new ReplyHeader(request.cxid, request.zxid, err);
-        ServerStats.getInstance().updateLatency(request.createTime);
+        // the stats are gone once a server that is shutting down drains
+        ServerStats serverStats = ServerStats.getInstance();
+        if (serverStats != null) {
+            serverStats.updateLatency(request.createTime);
+        }
         try {
             request.cnxn.sendResponse(hdr, rsp, "response");
         } catch (IOException e) {
@@ -257,6 +486,34 @@ public class FinalRequestProcessor implements RequestProcessor {
         }
     }
 
+    /**
+     * A recursive watch needs a valid path and, if its root exists, the
+     * READ permission on it. The events below it are checked as they are
+     * delivered.
+     */
+    private void checkRecursiveWatch(String path, List<Id> authInfo)
+            throws KeeperException {
+        if (!isValidWatchPath(path)) {
+            throw new KeeperException.BadArgumentsException();
+        }
+        // the node doesn't have to exist yet
+        DataNode n = zks.dataTree.getNode(path);
+        if (n != null) {
+            PrepRequestProcessor.checkACL(zks, zks.dataTree.convertLong(n.acl),
+                    ZooDefs.Perms.READ, authInfo);
+        }
+    }
+
+    /**
+     * A recursive watch is matched against the ancestors of the changed
+     * nodes, so its path has to be absolute without a trailing slash.
+     */
+    private static boolean isValidWatchPath(String path) {
+        return path != null && path.startsWith("/")
+                && (path.length() == 1 || !path.endsWith("/"))
+                && path.indexOf('\0') == -1;
+    }
+
     public void shutdown() {
         // we are the final link in the chain
         LOG.info("shutdown of request processor complete");
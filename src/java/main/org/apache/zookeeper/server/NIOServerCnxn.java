@@ -47,14 +47,19 @@ import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.Version;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.ZooDefs.OpCode;
 import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.data.Stat;
 import org.apache.zookeeper.proto.AuthPacket;
 import org.apache.zookeeper.proto.ConnectRequest;
 import org.apache.zookeeper.proto.ConnectResponse;
 import org.apache.zookeeper.proto.ReplyHeader;
 import org.apache.zookeeper.proto.RequestHeader;
+import org.apache.zookeeper.proto.ServerLoad;
 import org.apache.zookeeper.proto.WatcherEvent;
+import org.apache.zookeeper.proto.WatcherEventData;
 import org.apache.zookeeper.server.auth.AuthenticationProvider;
 import org.apache.zookeeper.server.auth.ProviderRegistry;
 
@@ -253,6 +258,13 @@ public class NIOServerCnxn implements Watcher, ServerCnxn {
 
     ArrayList<Id> authInfo = new ArrayList<Id>();
 
+    /**
+     * The notifications of the watches carry the stat of the node, and its
+     * data if it is no larger than this; negative if the client didn't ask
+     * for them.
+     */
+    volatile int notificationDataLimit = -1;
+
     LinkedList<Request> outstanding = new LinkedList<Request>();
 
     void sendBuffer(ByteBuffer bb) {
@@ -416,6 +428,11 @@ public class NIOServerCnxn implements Watcher, ServerCnxn {
         // pointing
         // to the start of the txn
         incomingBuffer = incomingBuffer.slice();
+        if (h.getType() == OpCode.ping) {
+            // pings only touch the session, there's no need to queue them
+            zk.processPing(this);
+            return;
+        }
         if (h.getType() == OpCode.auth) {
             AuthPacket authPacket = new AuthPacket();
             ZooKeeperServer.byteBuffer2Record(incomingBuffer, authPacket);
@@ -728,6 +745,15 @@ public class NIOServerCnxn implements Watcher, ServerCnxn {
      *      org.apache.jute.Record, java.lang.String)
      */
     synchronized public void sendResponse(ReplyHeader h, Record r, String tag) {
+        sendResponse(h, r, null, tag);
+    }
+
+    /**
+     * @param trailer
+     *                a record sent after the response, may be null
+     */
+    synchronized void sendResponse(ReplyHeader h, Record r, Record trailer,
+            String tag) {
         if (closed) {
             return;
         }
@@ -740,6 +766,9 @@ public class NIOServerCnxn implements Watcher, ServerCnxn {
             if (r != null) {
                 bos.writeRecord(r, tag);
             }
+            if (trailer != null) {
+                bos.writeRecord(trailer, "trailer");
+            }
             baos.close();
         } catch (IOException e) {
             LOG.error("Error serializing response");
@@ -776,7 +805,49 @@ public class NIOServerCnxn implements Watcher, ServerCnxn {
         // Convert WatchedEvent to a type that can be sent over the wire
         WatcherEvent e = event.getWrapper();
         
-        sendResponse(h, e, "notification");
+        sendResponse(h, e, getEventData(event), "notification");
+    }
+
+    public void setNotificationDataLimit(int maxDataBytes) {
+        notificationDataLimit = maxDataBytes;
+    }
+
+    /**
+     * Watches fire right after the change is applied by the thread that
+     * applies it, so the node still is as the change left it.
+     *
+     * @return the stat, and the data if it is small enough, of the node of
+     *         the event; null if the client didn't ask for them, the node
+     *         is gone or the client may not read it
+     */
+    private WatcherEventData getEventData(WatchedEvent event) {
+        int limit = notificationDataLimit;
+        if (limit < 0 || event.getPath() == null
+                || event.getType() == EventType.None
+                || event.getType() == EventType.NodeDeleted) {
+            return null;
+        }
+        DataNode n = zk.dataTree.getNode(event.getPath());
+        if (n == null) {
+            return null;
+        }
+        try {
+            PrepRequestProcessor.checkACL(zk, zk.dataTree.convertLong(n.acl),
+                    ZooDefs.Perms.READ, authInfo);
+        } catch (KeeperException.NoAuthException e) {
+            return null;
+        }
+        boolean withData = event.getType() == EventType.NodeCreated
+                || event.getType() == EventType.NodeDataChanged;
+        Stat stat = new Stat();
+        byte data[] = null;
+        synchronized (n) {
+            n.copyStat(stat);
+            if (withData && n.data != null && n.data.length <= limit) {
+                data = n.data;
+            }
+        }
+        return new WatcherEventData(stat, data);
     }
 
     public void finishSessionInit(boolean valid) {
@@ -789,6 +860,10 @@ public class NIOServerCnxn implements Watcher, ServerCnxn {
             BinaryOutputArchive bos = BinaryOutputArchive.getArchive(baos);
             bos.writeInt(-1, "len");
             rsp.serialize(bos, "connect");
+            if (valid) {
+                // older clients ignore the bytes after the response
+                getServerLoad().serialize(bos, "load");
+            }
             baos.close();
             ByteBuffer bb = ByteBuffer.wrap(baos.toByteArray());
             bb.putInt(bb.remaining() - 4).rewind();
@@ -809,6 +884,14 @@ public class NIOServerCnxn implements Watcher, ServerCnxn {
         }
     }
 
+    public ServerLoad getServerLoad() {
+        int connections;
+        synchronized (factory.cnxns) {
+            connections = factory.cnxns.size();
+        }
+        return new ServerLoad((int) zk.getOutstandingRequests(), connections);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -19,12 +19,20 @@
 package org.apache.zookeeper.server;
 
 import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import org.apache.jute.BinaryInputArchive;
 import org.apache.jute.Record;
 import org.apache.log4j.Logger;
 import org.apache.zookeeper.KeeperException;
@@ -34,17 +42,24 @@ import org.apache.zookeeper.KeeperException.Code;
 import org.apache.zookeeper.ZooDefs.OpCode;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.data.NewNode;
 import org.apache.zookeeper.data.Stat;
 import org.apache.zookeeper.data.StatPersisted;
 import org.apache.zookeeper.proto.CreateRequest;
+import org.apache.zookeeper.proto.CreateTreeRequest;
 import org.apache.zookeeper.proto.DeleteRequest;
+import org.apache.zookeeper.proto.DeleteTreeRequest;
+import org.apache.zookeeper.proto.IncrementRequest;
 import org.apache.zookeeper.proto.SetACLRequest;
 import org.apache.zookeeper.proto.SetDataRequest;
 import org.apache.zookeeper.server.ZooKeeperServer.ChangeRecord;
 import org.apache.zookeeper.server.auth.AuthenticationProvider;
 import org.apache.zookeeper.server.auth.ProviderRegistry;
+import org.apache.zookeeper.txn.CloseSessionsTxn;
 import org.apache.zookeeper.txn.CreateSessionTxn;
+import org.apache.zookeeper.txn.CreateTreeTxn;
 import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.DeleteTreeTxn;
 import org.apache.zookeeper.txn.DeleteTxn;
 import org.apache.zookeeper.txn.ErrorTxn;
 import org.apache.zookeeper.txn.SetACLTxn;
@@ -69,8 +84,16 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
         }
     }
 
+    /**
+     * The most bytes of paths or nodes a deleteTree or createTree txn holds,
+     * so that it stays well below jute.maxbuffer.
+     */
+    public static final int TREE_TXN_BYTES = BinaryInputArchive.maxBuffer / 2;
+
     LinkedBlockingQueue<Request> submittedRequests = new LinkedBlockingQueue<Request>();
 
+    AwaitZxidQueue awaitZxids;
+
     RequestProcessor nextProcessor;
 
     ZooKeeperServer zks;
@@ -80,6 +103,8 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
         super("ProcessThread:" + zks.getClientPort());
         this.nextProcessor = nextProcessor;
         this.zks = zks;
+        awaitZxids = new AwaitZxidQueue(zks, submittedRequests);
+        zks.setAwaitZxidQueue(awaitZxids);
 
         start();
     }
@@ -88,7 +113,7 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
     public void run() {
         try {
             while (true) {
-                Request request = submittedRequests.take();
+                Request request = awaitZxids.take();
                 long traceMask = ZooTrace.CLIENT_REQUEST_TRACE_MASK;
                 if (request.type == OpCode.ping) {
                     traceMask = ZooTrace.CLIENT_PING_TRACE_MASK;
@@ -106,6 +131,45 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
                 "PrepRequestProcessor exited loop!");
     }
 
+    /**
+     * Adds the deletes of the ephemeral nodes of a session, including the
+     * ones of outstanding changes, to the outstanding changes.
+     */
+    private void deleteEphemerals(long sessionId, long zxid) {
+        HashSet<String> es = zks.dataTree.getEphemerals(sessionId);
+        synchronized (zks.outstandingChanges) {
+            for (ChangeRecord c : zks.outstandingChanges) {
+                if (c.stat == null) {
+                    // Doing a delete
+                    es.remove(c.path);
+                } else if (c.stat.getEphemeralOwner() == sessionId) {
+                    es.add(c.path);
+                }
+            }
+            for (String path2Delete : es) {
+                addChangeRecord(new ChangeRecord(zxid, path2Delete, null, 0,
+                        null));
+            }
+        }
+    }
+
+    /**
+     * @return the counter held by the data of a node, a node without data
+     *         holds 0
+     * @throws KeeperException.BadArgumentsException
+     *                 if the data is not an 8 byte big endian counter
+     */
+    static long getCounter(byte data[])
+            throws KeeperException.BadArgumentsException {
+        if (data == null || data.length == 0) {
+            return 0;
+        }
+        if (data.length != 8) {
+            throw new KeeperException.BadArgumentsException();
+        }
+        return ByteBuffer.wrap(data).getLong();
+    }
+
     ChangeRecord getRecordForPath(String path) throws KeeperException.NoNodeException {
         ChangeRecord lastChange = null;
         synchronized (zks.outstandingChanges) {
@@ -120,6 +184,7 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
                 if (n != null) {
                     lastChange = new ChangeRecord(-1, path, n.stat, n.children
                             .size(), zks.dataTree.convertLong(n.acl));
+                    lastChange.data = n.data;
                 }
             }
         }
@@ -129,6 +194,111 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
         return lastChange;
     }
 
+    /**
+     * Collects the paths of a tree to delete, children before their parents,
+     * until they fill a deleteTree txn, then counts the nodes that are left.
+     * The outstanding changes under the tree are taken into account.
+     */
+    private class TreeCollector {
+        final List<Id> authInfo;
+
+        /**
+         * The last outstanding change of the paths in the tree.
+         */
+        final Map<String, ChangeRecord> pending = new HashMap<String, ChangeRecord>();
+
+        /**
+         * The children of outstanding creates, by parent.
+         */
+        final Map<String, Set<String>> pendingChildren = new HashMap<String, Set<String>>();
+
+        final List<String> paths = new ArrayList<String>();
+
+        int bytes;
+
+        /**
+         * Set once the txn is full, the nodes visited after are counted.
+         */
+        boolean full;
+
+        /**
+         * The nodes of the tree that don't fit in the txn.
+         */
+        int remaining;
+
+        TreeCollector(String root, List<Id> authInfo) {
+            this.authInfo = authInfo;
+            String prefix = root + "/";
+            synchronized (zks.outstandingChanges) {
+                for (ChangeRecord c : zks.outstandingChanges) {
+                    if (c.path.equals(root)) {
+                        pending.put(c.path, c);
+                    } else if (c.path.startsWith(prefix)) {
+                        pending.put(c.path, c);
+                        if (c.stat != null) {
+                            int lastSlash = c.path.lastIndexOf('/');
+                            String parent = c.path.substring(0, lastSlash);
+                            Set<String> children = pendingChildren.get(parent);
+                            if (children == null) {
+                                children = new HashSet<String>();
+                                pendingChildren.put(parent, children);
+                            }
+                            children.add(c.path.substring(lastSlash + 1));
+                        }
+                    }
+                }
+            }
+        }
+
+        void collect(String path) throws KeeperException.NoAuthException {
+            List<ACL> acl = null;
+            TreeSet<String> children = new TreeSet<String>();
+            ChangeRecord record = pending.get(path);
+            DataNode n = zks.dataTree.getNode(path);
+            if (record != null) {
+                acl = record.acl;
+            }
+            if (n != null) {
+                synchronized (n) {
+                    if (record == null) {
+                        acl = zks.dataTree.convertLong(n.acl);
+                    }
+                    children.addAll(n.children);
+                }
+            }
+            if (pendingChildren.containsKey(path)) {
+                children.addAll(pendingChildren.get(path));
+            }
+            boolean checked = false;
+            for (String child : children) {
+                String childPath = path + "/" + child;
+                ChangeRecord c = pending.get(childPath);
+                if (c != null && c.stat == null) {
+                    // already being deleted
+                    continue;
+                }
+                if (!checked && !full) {
+                    checkACL(zks, acl, ZooDefs.Perms.DELETE, authInfo);
+                    checked = true;
+                }
+                collect(childPath);
+            }
+            if (full) {
+                remaining++;
+                return;
+            }
+            // a string is its length and at most three bytes a char
+            int size = 4 + 3 * path.length();
+            if (bytes + size > TREE_TXN_BYTES && !paths.isEmpty()) {
+                full = true;
+                remaining++;
+                return;
+            }
+            bytes += size;
+            paths.add(path);
+        }
+    }
+
     void addChangeRecord(ChangeRecord c) {
         synchronized (zks.outstandingChanges) {
             zks.outstandingChanges.add(c);
@@ -230,8 +400,10 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
                 parentRecord.stat
                         .setCversion(parentRecord.stat.getCversion() + 1);
                 addChangeRecord(parentRecord);
-                addChangeRecord(new ChangeRecord(txnHeader.getZxid(), path, s,
-                        0, createRequest.getAcl()));
+                ChangeRecord newRecord = new ChangeRecord(txnHeader.getZxid(),
+                        path, s, 0, createRequest.getAcl());
+                newRecord.data = createRequest.getData();
+                addChangeRecord(newRecord);
 
                 break;
             case OpCode.delete:
@@ -268,6 +440,123 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
                 addChangeRecord(new ChangeRecord(txnHeader.getZxid(), path,
                         null, -1, null));
                 break;
+            case OpCode.deleteTree:
+                txnHeader = new TxnHeader(request.sessionId, request.cxid, zks
+                        .getNextZxid(), zks.getTime(), OpCode.deleteTree);
+                zks.sessionTracker.checkSession(request.sessionId);
+                DeleteTreeRequest deleteTreeRequest = new DeleteTreeRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        deleteTreeRequest);
+                path = deleteTreeRequest.getPath();
+                lastSlash = path.lastIndexOf('/');
+                if (lastSlash == -1 || path.indexOf('\0') != -1
+                        || path.equals("/")) {
+                    throw new KeeperException.BadArgumentsException();
+                }
+                parentPath = path.substring(0, lastSlash);
+                parentRecord = getRecordForPath(parentPath);
+                getRecordForPath(path);
+                checkACL(zks, parentRecord.acl, ZooDefs.Perms.DELETE,
+                        request.authInfo);
+                TreeCollector tree = new TreeCollector(path, request.authInfo);
+                tree.collect(path);
+                txn = new DeleteTreeTxn(tree.paths, tree.remaining);
+                // the nodes that are left with fewer children
+                Set<String> deleted = new HashSet<String>(tree.paths);
+                Map<String, Integer> deletedChildren = new HashMap<String, Integer>();
+                for (String p : tree.paths) {
+                    String parent = p.substring(0, p.lastIndexOf('/'));
+                    if (!deleted.contains(parent)) {
+                        Integer count = deletedChildren.get(parent);
+                        deletedChildren.put(parent, count == null ? 1
+                                : count + 1);
+                    }
+                }
+                for (Map.Entry<String, Integer> e : deletedChildren.entrySet()) {
+                    parentRecord = getRecordForPath(e.getKey()).duplicate(
+                            txnHeader.getZxid());
+                    parentRecord.childCount -= e.getValue();
+                    parentRecord.stat.setCversion(parentRecord.stat
+                            .getCversion()
+                            + e.getValue());
+                    addChangeRecord(parentRecord);
+                }
+                for (String p : tree.paths) {
+                    addChangeRecord(new ChangeRecord(txnHeader.getZxid(), p,
+                            null, -1, null));
+                }
+                break;
+            case OpCode.createTree:
+                txnHeader = new TxnHeader(request.sessionId, request.cxid, zks
+                        .getNextZxid(), zks.getTime(), OpCode.createTree);
+                zks.sessionTracker.checkSession(request.sessionId);
+                CreateTreeRequest createTreeRequest = new CreateTreeRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        createTreeRequest);
+                List<NewNode> nodes = createTreeRequest.getNodes();
+                if (nodes == null || nodes.isEmpty()
+                        || (nodes.size() > 1 && request.request.limit() > TREE_TXN_BYTES)) {
+                    throw new KeeperException.BadArgumentsException();
+                }
+                // the changes of the nodes created so far, only added to the
+                // outstanding changes once all of them are fine
+                Map<String, ChangeRecord> changes = new LinkedHashMap<String, ChangeRecord>();
+                List<CreateTxn> creates = new ArrayList<CreateTxn>();
+                for (NewNode node : nodes) {
+                    path = node.getPath();
+                    lastSlash = path.lastIndexOf('/');
+                    if (lastSlash == -1 || path.indexOf('\0') != -1) {
+                        throw new KeeperException.BadArgumentsException();
+                    }
+                    createMode = CreateMode.fromFlag(node.getFlags());
+                    if (createMode.isEphemeral()) {
+                        // a bulk load is not tied to a session
+                        throw new KeeperException.BadArgumentsException();
+                    }
+                    if (!fixupACL(request.authInfo, node.getAcl())) {
+                        throw new KeeperException.InvalidACLException();
+                    }
+                    parentPath = path.substring(0, lastSlash);
+                    parentRecord = changes.get(parentPath);
+                    if (parentRecord == null) {
+                        parentRecord = getRecordForPath(parentPath);
+                    }
+                    checkACL(zks, parentRecord.acl, ZooDefs.Perms.CREATE,
+                            request.authInfo);
+                    if (createMode.isSequential()) {
+                        path = path + String.format("%010d",
+                                parentRecord.stat.getCversion());
+                    }
+                    if (changes.containsKey(path)) {
+                        throw new KeeperException.NodeExistsException();
+                    }
+                    try {
+                        if (getRecordForPath(path) != null) {
+                            throw new KeeperException.NodeExistsException();
+                        }
+                    } catch (KeeperException.NoNodeException e) {
+                        // ignore this one
+                    }
+                    if (parentRecord.stat.getEphemeralOwner() != 0) {
+                        throw new KeeperException.NoChildrenForEphemeralsException();
+                    }
+                    creates.add(new CreateTxn(path, node.getData(), node
+                            .getAcl(), false));
+                    parentRecord = parentRecord.duplicate(txnHeader.getZxid());
+                    parentRecord.childCount++;
+                    parentRecord.stat.setCversion(parentRecord.stat
+                            .getCversion() + 1);
+                    changes.put(parentPath, parentRecord);
+                    newRecord = new ChangeRecord(txnHeader.getZxid(), path,
+                            new StatPersisted(), 0, node.getAcl());
+                    newRecord.data = node.getData();
+                    changes.put(path, newRecord);
+                }
+                txn = new CreateTreeTxn(creates);
+                for (ChangeRecord c : changes.values()) {
+                    addChangeRecord(c);
+                }
+                break;
             case OpCode.setData:
                 txnHeader = new TxnHeader(request.sessionId, request.cxid, zks
                         .getNextZxid(), zks.getTime(), OpCode.setData);
@@ -288,6 +577,32 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
                 txn = new SetDataTxn(path, setDataRequest.getData(), version);
                 nodeRecord = nodeRecord.duplicate(txnHeader.getZxid());
                 nodeRecord.stat.setVersion(version);
+                nodeRecord.data = setDataRequest.getData();
+                addChangeRecord(nodeRecord);
+                break;
+            case OpCode.increment:
+                // logged and replayed as the setData it amounts to
+                txnHeader = new TxnHeader(request.sessionId, request.cxid, zks
+                        .getNextZxid(), zks.getTime(), OpCode.setData);
+                zks.sessionTracker.checkSession(request.sessionId);
+                IncrementRequest incrementRequest = new IncrementRequest();
+                ZooKeeperServer.byteBuffer2Record(request.request,
+                        incrementRequest);
+                path = incrementRequest.getPath();
+                nodeRecord = getRecordForPath(path);
+                checkACL(zks, nodeRecord.acl, ZooDefs.Perms.READ,
+                        request.authInfo);
+                checkACL(zks, nodeRecord.acl, ZooDefs.Perms.WRITE,
+                        request.authInfo);
+                long value = getCounter(nodeRecord.data)
+                        + incrementRequest.getDelta();
+                byte counter[] = ByteBuffer.allocate(8).putLong(value)
+                        .array();
+                version = nodeRecord.stat.getVersion() + 1;
+                txn = new SetDataTxn(path, counter, version);
+                nodeRecord = nodeRecord.duplicate(txnHeader.getZxid());
+                nodeRecord.stat.setVersion(version);
+                nodeRecord.data = counter;
                 addChangeRecord(nodeRecord);
                 break;
             case OpCode.setACL:
@@ -325,34 +640,52 @@ public class PrepRequestProcessor extends Thread implements RequestProcessor {
                 zks.sessionTracker.addSession(request.sessionId, to);
                 break;
             case OpCode.closeSession:
+                if (request.localSession) {
+                    // nothing to replicate, the session only exists here
+                    break;
+                }
                 txnHeader = new TxnHeader(request.sessionId, request.cxid, zks
                         .getNextZxid(), zks.getTime(), OpCode.closeSession);
-                HashSet<String> es = zks.dataTree
-                        .getEphemerals(request.sessionId);
-                synchronized (zks.outstandingChanges) {
-                    for (ChangeRecord c : zks.outstandingChanges) {
-                        if (c.stat == null) {
-                            // Doing a delete
-                            es.remove(c.path);
-                        } else if (c.stat.getEphemeralOwner() == request.sessionId) {
-                            es.add(c.path);
-                        }
-                    }
-                    for (String path2Delete : es) {
-                        addChangeRecord(new ChangeRecord(txnHeader.getZxid(),
-                                path2Delete, null, 0, null));
-                    }
-                }
+                deleteEphemerals(request.sessionId, txnHeader.getZxid());
                 LOG.info("Processed session termination request for id: 0x"
                         + Long.toHexString(request.sessionId));
                 break;
+            case OpCode.closeSessions:
+                txnHeader = new TxnHeader(request.sessionId, request.cxid, zks
+                        .getNextZxid(), zks.getTime(), OpCode.closeSessions);
+                if (request.cnxn != null) {
+                    // only the server closes sessions in batches
+                    throw new KeeperException.BadArgumentsException();
+                }
+                request.request.rewind();
+                byte sessions[] = new byte[request.request.remaining()];
+                request.request.get(sessions);
+                request.request.rewind();
+                LongBuffer ids = ByteBuffer.wrap(sessions).asLongBuffer();
+                LOG.info("Processed termination request for "
+                        + ids.remaining() + " sessions");
+                while (ids.hasRemaining()) {
+                    deleteEphemerals(ids.get(), txnHeader.getZxid());
+                }
+                txn = new CloseSessionsTxn(sessions);
+                break;
             case OpCode.sync:
             case OpCode.exists:
             case OpCode.getData:
             case OpCode.getACL:
             case OpCode.getChildren:
+            case OpCode.getChildrenData:
+            case OpCode.getChildrenPage:
+            case OpCode.getPredecessor:
+            case OpCode.getDataIfChanged:
+            case OpCode.awaitZxid:
+            case OpCode.addRecursiveWatch:
+            case OpCode.removeRecursiveWatch:
             case OpCode.ping:
             case OpCode.setWatches:
+            case OpCode.setWatchesCompact:
+            case OpCode.setRecursiveWatches:
+            case OpCode.setNotificationData:
                 break;
             }
         } catch (KeeperException e) {
@@ -75,6 +75,12 @@ public class Request {
 
     public long createTime = System.currentTimeMillis();
 
+    /**
+     * true if the request belongs to a session that only exists on this
+     * server. Such requests never go through the quorum.
+     */
+    public boolean localSession;
+
     /**
      * is the packet type a valid packet in zookeeper
      * 
@@ -89,6 +95,9 @@ public class Request {
             return false;
         case OpCode.create:
         case OpCode.delete:
+        case OpCode.deleteTree:
+        case OpCode.createTree:
+        case OpCode.increment:
         case OpCode.createSession:
         case OpCode.exists:
         case OpCode.getData:
@@ -97,9 +106,20 @@ public class Request {
         case OpCode.getACL:
         case OpCode.setACL:
         case OpCode.getChildren:
+        case OpCode.getChildrenData:
+        case OpCode.getChildrenPage:
+        case OpCode.getPredecessor:
+        case OpCode.getDataIfChanged:
+        case OpCode.awaitZxid:
+        case OpCode.addRecursiveWatch:
+        case OpCode.removeRecursiveWatch:
         case OpCode.ping:
         case OpCode.closeSession:
+        case OpCode.closeSessions:
         case OpCode.setWatches:
+        case OpCode.setWatchesCompact:
+        case OpCode.setRecursiveWatches:
+        case OpCode.setNotificationData:
             return true;
         default:
             return false;
@@ -111,13 +131,24 @@ public class Request {
         case OpCode.exists:
         case OpCode.getACL:
         case OpCode.getChildren:
+        case OpCode.getChildrenData:
+        case OpCode.getChildrenPage:
+        case OpCode.getPredecessor:
         case OpCode.getData:
+        case OpCode.getDataIfChanged:
+        case OpCode.awaitZxid:
+        case OpCode.addRecursiveWatch:
+        case OpCode.removeRecursiveWatch:
             return false;
         case OpCode.error:
         case OpCode.closeSession:
+        case OpCode.closeSessions:
         case OpCode.create:
         case OpCode.createSession:
         case OpCode.delete:
+        case OpCode.deleteTree:
+        case OpCode.createTree:
+        case OpCode.increment:
         case OpCode.setACL:
         case OpCode.setData:
             return true;
@@ -134,14 +165,30 @@ public class Request {
             return "create";
         case OpCode.setWatches:
             return "setWatches";
+        case OpCode.setWatchesCompact:
+            return "setWatchesCompact";
+        case OpCode.setRecursiveWatches:
+            return "setRecursiveWatches";
+        case OpCode.setNotificationData:
+            return "setNotificationData";
         case OpCode.delete:
             return "delete";
+        case OpCode.deleteTree:
+            return "deleteTree";
+        case OpCode.createTree:
+            return "createTree";
         case OpCode.exists:
             return "exists";
         case OpCode.getData:
             return "getDate";
+        case OpCode.getDataIfChanged:
+            return "getDataIfChanged";
+        case OpCode.awaitZxid:
+            return "awaitZxid";
         case OpCode.setData:
             return "setData";
+        case OpCode.increment:
+            return "increment";
         case OpCode.sync:
               return "sync:";
         case OpCode.getACL:
@@ -150,12 +197,24 @@ public class Request {
             return "setACL";
         case OpCode.getChildren:
             return "getChildren";
+        case OpCode.getChildrenData:
+            return "getChildrenData";
+        case OpCode.getChildrenPage:
+            return "getChildrenPage";
+        case OpCode.getPredecessor:
+            return "getPredecessor";
+        case OpCode.addRecursiveWatch:
+            return "addRecursiveWatch";
+        case OpCode.removeRecursiveWatch:
+            return "removeRecursiveWatch";
         case OpCode.ping:
             return "ping";
         case OpCode.createSession:
             return "createSession";
         case OpCode.closeSession:
             return "closeSession";
+        case OpCode.closeSessions:
+            return "closeSessions";
         case OpCode.error:
             return "error";
         default:
@@ -182,9 +241,12 @@ public class Request {
             try {
                 request.clear();
                 int pathLen = request.getInt();
-                byte b[] = new byte[pathLen];
-                request.get(b);
-                path = new String(b);
+                // requests like awaitZxid don't start with a path
+                if (pathLen >= 0 && pathLen <= request.remaining()) {
+                    byte b[] = new byte[pathLen];
+                    request.get(b);
+                    path = new String(b);
+                }
                 request.clear();
             } catch (Exception e) {
                 LOG.warn("Ignoring exception during toString", e);
@@ -28,6 +28,7 @@ import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.data.Id;
 import org.apache.zookeeper.proto.ReplyHeader;
+import org.apache.zookeeper.proto.ServerLoad;
 import org.apache.zookeeper.proto.WatcherEvent;
 
 public interface ServerCnxn extends Watcher {
@@ -67,6 +68,22 @@ public interface ServerCnxn extends Watcher {
     public abstract ArrayList<Id> getAuthInfo();
 
     public InetSocketAddress getRemoteAddress();
+
+    /**
+     * @return the load of the server, reported to the client so that it can
+     *         pick a less loaded server
+     */
+    public ServerLoad getServerLoad();
+
+    /**
+     * Have the notifications of the watches carry the stat of the node and,
+     * if it is no larger than the limit, its data.
+     *
+     * @param maxDataBytes
+     *                the limit on the data, negative for notifications
+     *                without stat and data
+     */
+    public void setNotificationDataLimit(int maxDataBytes);
     
     public interface Stats{
         public long getOutstandingRequests();
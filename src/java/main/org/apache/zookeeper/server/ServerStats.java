@@ -31,6 +31,7 @@ public class ServerStats {
     public interface Provider{
         public long getOutstandingRequests();
         public long getLastProcessedZxid();
+        public long getExpiryQueueDepth();
     }
     private Provider provider=null;
     private Object mutex=new Object();
@@ -72,6 +73,11 @@ public class ServerStats {
             return (provider!=null)?provider.getOutstandingRequests():-1;
         }
     }
+    public long getExpiryQueueDepth(){
+        synchronized(mutex){
+            return (provider!=null)?provider.getExpiryQueueDepth():-1;
+        }
+    }
     public long getLastProcessedZxid(){
         synchronized(mutex){
             return (provider!=null)?provider.getLastProcessedZxid():-1;
@@ -99,6 +105,7 @@ public class ServerStats {
         if (provider != null) {
             sb.append("Outstanding: " + getOutstandingRequests() + "\n");
             sb.append("Zxid: 0x"+ Long.toHexString(getLastProcessedZxid())+ "\n");
+            sb.append("Expiry queue: " + getExpiryQueueDepth() + "\n");
         }
         sb.append("Mode: "+getServerState()+"\n");
         return sb.toString();
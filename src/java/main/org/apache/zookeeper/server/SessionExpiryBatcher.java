@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Closes expired sessions in batches. All the sessions of a batch are closed
+ * by a single closeSessions transaction, and batches are paced so that no
+ * more than a given number of sessions are closed per second. This keeps
+ * the expiration of a large number of sessions at once from turning into a
+ * burst of proposals that delays the requests of the other clients.
+ */
+public class SessionExpiryBatcher extends Thread {
+    private static final Logger LOG = Logger.getLogger(SessionExpiryBatcher.class);
+
+    LinkedBlockingQueue<Long> expiredSessions = new LinkedBlockingQueue<Long>();
+
+    ZooKeeperServer zks;
+
+    final int batchSize;
+
+    /**
+     * Sessions closed per second, 0 for no limit
+     */
+    final int rate;
+
+    volatile boolean running = true;
+
+    public SessionExpiryBatcher(ZooKeeperServer zks, int batchSize, int rate) {
+        super("SessionExpiryBatcher:" + zks.getClientPort());
+        this.zks = zks;
+        this.batchSize = Math.max(1, rate > 0 ? Math.min(batchSize, rate)
+                : batchSize);
+        this.rate = rate;
+        start();
+    }
+
+    /**
+     * Queue an expired session to be closed.
+     */
+    public void expire(long sessionId) {
+        expiredSessions.add(sessionId);
+    }
+
+    /**
+     * @return the number of expired sessions waiting to be closed
+     */
+    public int getQueueDepth() {
+        return expiredSessions.size();
+    }
+
+    @Override
+    public void run() {
+        long nextBatchTime = System.currentTimeMillis();
+        ArrayList<Long> batch = new ArrayList<Long>(batchSize);
+        try {
+            while (running) {
+                batch.add(expiredSessions.take());
+                expiredSessions.drainTo(batch, batchSize - 1);
+                long sessions[] = new long[batch.size()];
+                for (int i = 0; i < sessions.length; i++) {
+                    sessions[i] = batch.get(i);
+                }
+                batch.clear();
+                if (rate > 0) {
+                    long now = System.currentTimeMillis();
+                    if (nextBatchTime > now) {
+                        Thread.sleep(nextBatchTime - now);
+                    } else {
+                        nextBatchTime = now;
+                    }
+                    nextBatchTime += sessions.length * 1000L / rate;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Closing " + sessions.length
+                            + " expired sessions, " + expiredSessions.size()
+                            + " still queued");
+                }
+                zks.closeSessions(sessions);
+            }
+        } catch (InterruptedException e) {
+            if (running) {
+                LOG.error("Unexpected interruption", e);
+            }
+        }
+        ZooTrace.logTraceMessage(LOG, ZooTrace.getTextTraceLevel(),
+                "SessionExpiryBatcher exited loop!");
+    }
+
+    public void shutdown() {
+        running = false;
+        interrupt();
+    }
+}
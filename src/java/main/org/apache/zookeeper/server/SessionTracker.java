@@ -35,6 +35,30 @@ public interface SessionTracker {
 
     long createSession(int sessionTimeout);
 
+    /**
+     * Create a session that is only tracked by this server. Creating and
+     * closing it does not generate a transaction.
+     *
+     * @param sessionTimeout
+     * @return the id of the new session
+     */
+    long createLocalSession(int sessionTimeout);
+
+    /**
+     * @param sessionId
+     * @return true if the session is a local session of this server
+     */
+    boolean isLocalSession(long sessionId);
+
+    /**
+     * Stop tracking a local session as local so that it can be created as a
+     * global session with the same id.
+     *
+     * @param sessionId
+     * @return false if the session was not a local session
+     */
+    boolean upgradeSession(long sessionId);
+
     void addSession(long id, int to);
 
     /**
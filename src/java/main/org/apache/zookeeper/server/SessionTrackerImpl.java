@@ -19,33 +19,48 @@
 package org.apache.zookeeper.server;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.server.util.ConcurrentLongHashMap;
 
 /**
  * This is a full featured SessionTracker. It tracks session in grouped by tick
  * interval. It always rounds up the tick interval to provide a sort of grace
  * period. Sessions are thus expired in batches made up of sessions that expire
  * in a given interval.
+ *
+ * The groups are kept in a hashed timing wheel: the SessionSet for an
+ * expiration time is found by hashing the time onto a fixed array of
+ * buckets, and a bucket is shared by the expiration times that are a whole
+ * turn of the wheel apart. There is no lock for the whole tracker. Moving a
+ * session between buckets only locks the session, so touches of different
+ * sessions don't contend with each other or with the expiration thread.
  */
 public class SessionTrackerImpl extends Thread implements SessionTracker {
     private static final Logger LOG = Logger.getLogger(SessionTrackerImpl.class);
 
-    HashMap<Long, Session> sessionsById = new HashMap<Long, Session>();
+    /**
+     * Number of buckets in the timing wheel. Session timeouts are at most 20
+     * ticks, so a session is normally found in the bucket for its first turn.
+     */
+    static final int WHEEL_SIZE = 64;
+
+    ConcurrentLongHashMap<Session> sessionsById = new ConcurrentLongHashMap<Session>();
 
-    HashMap<Long, SessionSet> sessionSets = new HashMap<Long, SessionSet>();
+    final SessionSet wheel[] = new SessionSet[WHEEL_SIZE];
 
     ConcurrentHashMap<Long, Integer> sessionsWithTimeout;
-    long nextSessionId = 0;
+    final AtomicLong nextSessionId = new AtomicLong();
     long serverId;
-    long nextExpirationTime;
+    volatile long nextExpirationTime;
 
     int expirationInterval;
 
@@ -55,22 +70,37 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
             this.tickTime = expireTime;
         }
 
-        long tickTime;
+        /**
+         * The expiration time, only changed while holding the lock of the
+         * session
+         */
+        volatile long tickTime;
+
+        final long sessionId;
 
-        long sessionId;
+        /**
+         * Set once the session has expired or has been removed, it can no
+         * longer be touched.
+         */
+        volatile boolean isClosing;
+
+        /**
+         * Set for sessions only known to this server
+         */
+        volatile boolean isLocal;
     }
 
     public static long initializeNextSession(long id) {
         long nextSid = 0;
-        nextSid = (System.currentTimeMillis() << 24) >> 8;
+        // unsigned shift so that the top byte is left for the server id
+        nextSid = (System.currentTimeMillis() << 24) >>> 8;
         nextSid =  nextSid | (id <<56);
         return nextSid;
     }
 
     static class SessionSet {
-        long expireTime;
-
-        HashSet<Session> sessions = new HashSet<Session>();
+        ConcurrentHashMap<Session, Session> sessions =
+            new ConcurrentHashMap<Session, Session>();
     }
 
     SessionExpirer expirer;
@@ -80,15 +110,22 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
         return (time / expirationInterval + 1) * expirationInterval;
     }
 
+    private SessionSet bucket(long expireTime) {
+        return wheel[(int) ((expireTime / expirationInterval) % WHEEL_SIZE)];
+    }
+
     public SessionTrackerImpl(SessionExpirer expirer,
             ConcurrentHashMap<Long, Integer> sessionsWithTimeout, int tickTime, long sid) {
         super("SessionTracker");
         this.expirer = expirer;
         this.expirationInterval = tickTime;
         this.sessionsWithTimeout = sessionsWithTimeout;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new SessionSet();
+        }
         nextExpirationTime = roundToInterval(System.currentTimeMillis());
         this.serverId = sid;
-        this.nextSessionId = initializeNextSession(sid);
+        this.nextSessionId.set(initializeNextSession(sid));
         for (long id : sessionsWithTimeout.keySet()) {
             addSession(id, sessionsWithTimeout.get(id));
         }
@@ -100,15 +137,26 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
     volatile long currentTime;
 
     @Override
-    synchronized public String toString() {
+    public String toString() {
+        TreeMap<Long, List<Session>> sessionSets =
+            new TreeMap<Long, List<Session>>();
+        for (Session s : sessionsById.values()) {
+            if (s.isClosing) {
+                continue;
+            }
+            List<Session> set = sessionSets.get(s.tickTime);
+            if (set == null) {
+                set = new ArrayList<Session>();
+                sessionSets.put(s.tickTime, set);
+            }
+            set.add(s);
+        }
         StringBuffer sb = new StringBuffer("Session Sets ("
                 + sessionSets.size() + "):\n");
-        ArrayList<Long> keys = new ArrayList<Long>(sessionSets.keySet());
-        Collections.sort(keys);
-        for (long time : keys) {
-            sb.append(sessionSets.get(time).sessions.size() + " expire at "
-                    + new Date(time) + ":\n");
-            for (Session s : sessionSets.get(time).sessions) {
+        for (Map.Entry<Long, List<Session>> e : sessionSets.entrySet()) {
+            sb.append(e.getValue().size() + " expire at "
+                    + new Date(e.getKey()) + ":\n");
+            for (Session s : e.getValue()) {
                 sb.append("\t" + s.sessionId + "\n");
             }
         }
@@ -116,23 +164,30 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
     }
 
     @Override
-    synchronized public void run() {
+    public void run() {
         try {
             while (running) {
                 currentTime = System.currentTimeMillis();
                 if (nextExpirationTime > currentTime) {
-                    this.wait(nextExpirationTime - currentTime);
+                    synchronized (this) {
+                        this.wait(nextExpirationTime - currentTime);
+                    }
                     continue;
                 }
-                SessionSet set;
-                set = sessionSets.remove(nextExpirationTime);
-                if (set != null) {
-                    for (Session s : set.sessions) {
-                        sessionsById.remove(s.sessionId);
-                        LOG.warn("Expiring session 0x"
-                                + Long.toHexString(s.sessionId));
-                        expirer.expire(s.sessionId);
+                SessionSet set = bucket(nextExpirationTime);
+                for (Session s : set.sessions.keySet()) {
+                    synchronized (s) {
+                        // the bucket also holds sessions expiring on a
+                        // later turn of the wheel
+                        if (s.tickTime != nextExpirationTime) {
+                            continue;
+                        }
+                        set.sessions.remove(s);
+                        s.isClosing = true;
                     }
+                    LOG.warn("Expiring session 0x"
+                            + Long.toHexString(s.sessionId));
+                    expirer.expire(s.sessionId);
                 }
                 nextExpirationTime += expirationInterval;
             }
@@ -143,13 +198,15 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
                                  "SessionTrackerImpl exited loop!");
     }
 
-    synchronized public boolean touchSession(long sessionId, int timeout) {
-        ZooTrace.logTraceMessage(LOG,
-                                 ZooTrace.CLIENT_PING_TRACE_MASK,
-                                 "SessionTrackerImpl --- Touch session: 0x"
-                + Long.toHexString(sessionId) + " with timeout " + timeout);
+    public boolean touchSession(long sessionId, int timeout) {
+        if (ZooTrace.isTraceEnabled(LOG, ZooTrace.CLIENT_PING_TRACE_MASK)) {
+            ZooTrace.logTraceMessage(LOG,
+                                     ZooTrace.CLIENT_PING_TRACE_MASK,
+                                     "SessionTrackerImpl --- Touch session: 0x"
+                    + Long.toHexString(sessionId) + " with timeout " + timeout);
+        }
         Session s = sessionsById.get(sessionId);
-        if (s == null) {
+        if (s == null || s.isClosing) {
             return false;
         }
         long expireTime = roundToInterval(System.currentTimeMillis() + timeout);
@@ -157,29 +214,31 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
             // Nothing needs to be done
             return true;
         }
-        SessionSet set = sessionSets.get(s.tickTime);
-        if (set != null) {
-            set.sessions.remove(s);
-        }
-        s.tickTime = expireTime;
-        set = sessionSets.get(s.tickTime);
-        if (set == null) {
-            set = new SessionSet();
-            set.expireTime = expireTime;
-            sessionSets.put(expireTime, set);
+        synchronized (s) {
+            if (s.isClosing) {
+                return false;
+            }
+            if (s.tickTime >= expireTime) {
+                return true;
+            }
+            bucket(s.tickTime).sessions.remove(s);
+            s.tickTime = expireTime;
+            bucket(expireTime).sessions.put(s, s);
         }
-        set.sessions.add(s);
         return true;
     }
 
-    synchronized public void removeSession(long sessionId) {
+    public void removeSession(long sessionId) {
         Session s = sessionsById.remove(sessionId);
         sessionsWithTimeout.remove(sessionId);
         ZooTrace.logTraceMessage(LOG, ZooTrace.SESSION_TRACE_MASK,
                 "SessionTrackerImpl --- Removing session 0x"
                 + Long.toHexString(sessionId));
         if (s != null) {
-            sessionSets.get(s.tickTime).sessions.remove(s);
+            synchronized (s) {
+                s.isClosing = true;
+                bucket(s.tickTime).sessions.remove(s);
+            }
         }
     }
 
@@ -190,16 +249,54 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
     }
 
    
-    synchronized public long createSession(int sessionTimeout) {
-        addSession(nextSessionId, sessionTimeout);
-        return nextSessionId++;
+    public long createSession(int sessionTimeout) {
+        long sessionId = nextSessionId.getAndIncrement();
+        addSession(sessionId, sessionTimeout);
+        return sessionId;
     }
 
-    synchronized public void addSession(long id, int sessionTimeout) {
+    public long createLocalSession(int sessionTimeout) {
+        long sessionId = nextSessionId.getAndIncrement();
+        addLocalSession(sessionId, sessionTimeout);
+        return sessionId;
+    }
+
+    /**
+     * Track a session that will not be added to the sessions of the database,
+     * it is expired by this tracker like any other session.
+     */
+    public void addLocalSession(long id, int sessionTimeout) {
+        trackSession(id, sessionTimeout, true);
+    }
+
+    public boolean isLocalSession(long sessionId) {
+        Session s = sessionsById.get(sessionId);
+        return s != null && s.isLocal;
+    }
+
+    public boolean upgradeSession(long sessionId) {
+        Session s = sessionsById.get(sessionId);
+        if (s == null) {
+            return false;
+        }
+        synchronized (s) {
+            if (!s.isLocal) {
+                return false;
+            }
+            s.isLocal = false;
+        }
+        return true;
+    }
+
+    public void addSession(long id, int sessionTimeout) {
         sessionsWithTimeout.put(id, sessionTimeout);
-        if (sessionsById.get(id) == null) {
-            Session s = new Session(id, 0);
-            sessionsById.put(id, s);
+        trackSession(id, sessionTimeout, false);
+    }
+
+    private void trackSession(long id, int sessionTimeout, boolean local) {
+        Session s = new Session(id, 0);
+        s.isLocal = local;
+        if (sessionsById.putIfAbsent(id, s) == null) {
             ZooTrace.logTraceMessage(LOG, ZooTrace.SESSION_TRACE_MASK,
                     "SessionTrackerImpl --- Adding session 0x" 
                     + Long.toHexString(id) + " " + sessionTimeout);
@@ -212,7 +309,8 @@ public class SessionTrackerImpl extends Thread implements SessionTracker {
     }
 
     public void checkSession(long sessionId) throws KeeperException.SessionExpiredException {
-        if (sessionsById.get(sessionId) == null) {
+        Session s = sessionsById.get(sessionId);
+        if (s == null || s.isClosing) {
             throw new KeeperException.SessionExpiredException();
         }
     }
@@ -37,12 +37,18 @@ public class TraceFormatter {
             return "create";
         case OpCode.delete:
             return "delete";
+        case OpCode.deleteTree:
+            return "deleteTree";
+        case OpCode.createTree:
+            return "createTree";
         case OpCode.exists:
             return "exists";
         case OpCode.getData:
             return "getDate";
         case OpCode.setData:
             return "setData";
+        case OpCode.increment:
+            return "increment";
         case OpCode.getACL:
             return "getACL";
         case OpCode.setACL:
@@ -55,6 +61,8 @@ public class TraceFormatter {
             return "createSession";
         case OpCode.closeSession:
             return "closeSession";
+        case OpCode.closeSessions:
+            return "closeSessions";
         case OpCode.error:
             return "error";
         default:
@@ -20,14 +20,18 @@ package org.apache.zookeeper.server;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.Watcher.Event.EventType;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
 import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.proto.WatcherEvent;
 
 /**
@@ -79,6 +83,27 @@ public class WatchManager {
         }
     }
 
+    /**
+     * @return whether the watcher was watching the path
+     */
+    public synchronized boolean removeWatch(String path, Watcher watcher) {
+        HashSet<Watcher> list = watchTable.get(path);
+        if (list == null || !list.remove(watcher)) {
+            return false;
+        }
+        if (list.size() == 0) {
+            watchTable.remove(path);
+        }
+        HashSet<String> paths = watch2Paths.get(watcher);
+        if (paths != null) {
+            paths.remove(path);
+            if (paths.size() == 0) {
+                watch2Paths.remove(watcher);
+            }
+        }
+        return true;
+    }
+
     public Set<Watcher> triggerWatch(String path, EventType type) {
         return triggerWatch(path, type, null);
     }
@@ -110,4 +135,64 @@ public class WatchManager {
         }
         return watchers;
     }
+
+    /**
+     * Deliver the event to the watchers of the path and of every node above
+     * it. The watches are not removed, they stay until removeWatch or
+     * removeWatcher. The table is looked up once for each level of the path
+     * whatever the number of watches, the watches are indexed by the root of
+     * the subtree they watch.
+     * <p>
+     * A watch may cover nodes its client can't read, so the event only goes
+     * to the connections allowed to read by the given ACL: that of the
+     * parent of a node created or deleted, or that of a node changed.
+     *
+     * @return the watchers of the path and its ancestors, including the
+     *         supressed ones, or null if there are none
+     */
+    public Set<Watcher> triggerRecursiveWatch(String path, EventType type,
+            Set<Watcher> supress, List<ACL> acl) {
+        HashSet<Watcher> watchers = null;
+        synchronized (this) {
+            if (watchTable.isEmpty()) {
+                return null;
+            }
+            String prefix = path;
+            while (true) {
+                HashSet<Watcher> list = watchTable.get(prefix);
+                if (list != null) {
+                    if (watchers == null) {
+                        watchers = new HashSet<Watcher>();
+                    }
+                    watchers.addAll(list);
+                }
+                if (prefix.equals("/")) {
+                    break;
+                }
+                int lastSlash = prefix.lastIndexOf('/');
+                prefix = lastSlash <= 0 ? "/" : prefix.substring(0, lastSlash);
+            }
+        }
+        if (watchers == null) {
+            return null;
+        }
+        WatchedEvent e = new WatchedEvent(type,
+                KeeperState.SyncConnected, path);
+        for (Watcher w : watchers) {
+            if (supress != null && supress.contains(w)) {
+                continue;
+            }
+            if (w instanceof ServerCnxn) {
+                try {
+                    PrepRequestProcessor.checkACL(null, acl,
+                            ZooDefs.Perms.READ, ((ServerCnxn) w)
+                                    .getAuthInfo());
+                } catch (KeeperException.NoAuthException ex) {
+                    continue;
+                }
+            }
+            w.process(e);
+        }
+        return watchers;
+    }
 }
@@ -36,11 +36,15 @@ import org.apache.jute.InputArchive;
 import org.apache.jute.OutputArchive;
 import org.apache.jute.Record;
 import org.apache.log4j.Logger;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooDefs.OpCode;
 import org.apache.zookeeper.data.ACL;
 import org.apache.zookeeper.data.Id;
 import org.apache.zookeeper.data.Stat;
 import org.apache.zookeeper.data.StatPersisted;
+import org.apache.zookeeper.proto.CreateRequest;
+import org.apache.zookeeper.proto.ReplyHeader;
 import org.apache.zookeeper.proto.RequestHeader;
 import org.apache.zookeeper.server.SessionTracker.SessionExpirer;
 import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
@@ -109,6 +113,17 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
     List<ChangeRecord> outstandingChanges = new ArrayList<ChangeRecord>();
     private NIOServerCnxn.Factory serverCnxnFactory;
     private int clientPort;
+    /**
+     * New sessions are created as local sessions, which are only known to
+     * this server until they create an ephemeral node.
+     */
+    protected boolean localSessionsEnabled = System.getProperty(
+            "zookeeper.localSessionsEnabled", "no").equals("yes");
+    /**
+     * Closes expired sessions in paced batches, null if they are closed one
+     * by one as they expire.
+     */
+    protected SessionExpiryBatcher expiryBatcher;
 
     void removeCnxn(ServerCnxn cnxn) {
         dataTree.removeCnxn(cnxn);
@@ -262,6 +277,23 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         SerializeUtils.deserializeSnapshot(dataTree,ia,sessionsWithTimeouts);
     }
 
+    /**
+     * Replace the database with the contents of a snapshot file, for example
+     * one received from the leader.
+     *
+     * @param snapshot the snapshot file
+     * @param zxid the zxid the snapshot was taken at
+     * @throws IOException
+     */
+    public void deserializeSnapshot(File snapshot, long zxid)
+            throws IOException {
+        sessionsWithTimeouts = new ConcurrentHashMap<Long, Integer>();
+        dataTree = treeBuilder.build();
+
+        txnLogFactory.restoreSnapshot(dataTree, sessionsWithTimeouts,
+                snapshot, zxid);
+    }
+
     /**
      * This should be called from a synchronized block on this!
      */
@@ -286,6 +318,22 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         submitRequest(null, sessionId, OpCode.closeSession, 0, null, null);
     }
 
+    /**
+     * Close several sessions with a single transaction.
+     *
+     * @param sessionIds the sessions to close
+     */
+    public void closeSessions(long sessionIds[]) {
+        if (sessionIds.length == 1) {
+            submitRequest(null, sessionIds[0], OpCode.closeSession, 0, null,
+                    null);
+            return;
+        }
+        ByteBuffer bb = ByteBuffer.allocate(sessionIds.length * 8);
+        bb.asLongBuffer().put(sessionIds);
+        submitRequest(null, sessionIds[0], OpCode.closeSessions, 0, bb, null);
+    }
+
     protected void killSession(long sessionId, long zxid) {
         dataTree.killSession(sessionId, zxid);
         ZooTrace.logTraceMessage(LOG, ZooTrace.SESSION_TRACE_MASK,
@@ -302,6 +350,11 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
                      ZooTrace.SESSION_TRACE_MASK,
                     "ZooKeeperServer --- Session to expire: 0x"
                      + Long.toHexString(sessionId));
+            SessionExpiryBatcher batcher = expiryBatcher;
+            if (batcher != null && !sessionTracker.isLocalSession(sessionId)) {
+                batcher.expire(sessionId);
+                return;
+            }
             closeSession(sessionId);
         } catch (Exception e) {
             LOG.error("FIXMSG",e);
@@ -319,12 +372,46 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         }
     }
 
+    /**
+     * Answer the ping of a client. A ping only touches the session so it
+     * doesn't go through the request processors.
+     *
+     * @param cnxn the connection of the client
+     * @throws IOException
+     */
+    public void processPing(ServerCnxn cnxn) throws IOException {
+        if (sessionTracker == null) {
+            return;
+        }
+        if (ZooTrace.isTraceEnabled(LOG, ZooTrace.CLIENT_PING_TRACE_MASK)) {
+            ZooTrace.logTraceMessage(LOG, ZooTrace.CLIENT_PING_TRACE_MASK,
+                    "Ping from session 0x"
+                    + Long.toHexString(cnxn.getSessionId()));
+        }
+        try {
+            touch(cnxn);
+        } catch (IOException e) {
+            LOG.warn("Dropping ping: " + e.getMessage());
+            return;
+        }
+        // the load rides along so that the client can tell whether another
+        // server would serve it better
+        cnxn.sendResponse(new ReplyHeader(-2, dataTree.lastProcessedZxid, 0),
+                cnxn.getServerLoad(), "load");
+    }
+
     public void startup() throws IOException, InterruptedException {
         if (dataTree == null) {
             loadData();
         }
         createSessionTracker();
         setupRequestProcessors();
+        int expiryBatchSize = getExpiryBatchSize();
+        int expiryRate = getExpiryRate();
+        if (expiryBatchSize > 1 || expiryRate > 0) {
+            expiryBatcher = new SessionExpiryBatcher(this, expiryBatchSize,
+                    expiryRate);
+        }
         synchronized (this) {
             running = true;
             // todo 哪里有wait？
@@ -357,6 +444,9 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         if (sessionTracker != null) {
             sessionTracker.shutdown();
         }
+        if (expiryBatcher != null) {
+            expiryBatcher.shutdown();
+        }
         if (firstProcessor != null) {
             firstProcessor.shutdown();
         }
@@ -401,14 +491,18 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
 
         List<ACL> acl; /* Make sure to create a new object when changing */
 
+        byte data[]; /* Never modified, only replaced */
+
         @SuppressWarnings("unchecked")
         ChangeRecord duplicate(long zxid) {
             StatPersisted stat = new StatPersisted();
             if (this.stat != null) {
                 DataTree.copyStatPersisted(this.stat, stat);
             }
-            return new ChangeRecord(zxid, path, stat, childCount,
+            ChangeRecord c = new ChangeRecord(zxid, path, stat, childCount,
                     acl == null ? new ArrayList<ACL>() : new ArrayList(acl));
+            c.data = data;
+            return c;
         }
     }
 
@@ -426,6 +520,15 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
 
     long createSession(ServerCnxn cnxn, byte passwd[], int timeout)
             throws InterruptedException {
+        if (localSessionsEnabled) {
+            long sessionId = sessionTracker.createLocalSession(timeout);
+            Random r = new Random(sessionId ^ superSecret);
+            r.nextBytes(passwd);
+            cnxn.setSessionId(sessionId);
+            // there is no transaction to wait for
+            cnxn.finishSessionInit(true);
+            return sessionId;
+        }
         long sessionId = sessionTracker.createSession(timeout);
         Random r = new Random(sessionId ^ superSecret);
         r.nextBytes(passwd);
@@ -494,6 +597,9 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
             touch(si.cnxn);
             boolean validpacket = Request.isValid(si.type);
             if (validpacket) {
+                if (localSessionsEnabled) {
+                    checkLocalSession(si);
+                }
                 firstProcessor.processRequest(si);
                 if (si.cnxn != null) {
                     incInProcess();
@@ -507,6 +613,57 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         }
     }
 
+    /**
+     * Marks the close of a local session so that it is not sent through the
+     * quorum. A local session is first upgraded to a global session when it
+     * writes what needs one, see needsGlobalSession.
+     *
+     * @param si the request about to be submitted
+     */
+    private void checkLocalSession(Request si) {
+        if (si.type == OpCode.closeSession) {
+            si.localSession = sessionTracker.isLocalSession(si.sessionId);
+            return;
+        }
+        if (si.cnxn == null || !Request.isQuorum(si.type)
+                || si.type == OpCode.createSession
+                || !sessionTracker.isLocalSession(si.sessionId)
+                || !needsGlobalSession(si)) {
+            return;
+        }
+        if (sessionTracker.upgradeSession(si.sessionId)) {
+            LOG.info("Upgrading local session 0x"
+                    + Long.toHexString(si.sessionId));
+            ByteBuffer to = ByteBuffer.allocate(4);
+            to.putInt(si.cnxn.getSessionTimeout());
+            firstProcessor.processRequest(new Request(null, si.sessionId, 0,
+                    OpCode.createSession, to, null));
+        }
+    }
+
+    /**
+     * Whether a write of a local session needs a global session. It does
+     * when it creates an ephemeral node, since its ephemeral nodes have to
+     * be removed by all the servers once it ends.
+     */
+    protected boolean needsGlobalSession(Request si) {
+        if (si.type != OpCode.create) {
+            return false;
+        }
+        CreateRequest createRequest = new CreateRequest();
+        ByteBuffer bb = si.request.duplicate();
+        bb.rewind();
+        try {
+            byteBuffer2Record(bb, createRequest);
+            return CreateMode.fromFlag(createRequest.getFlags()).isEphemeral();
+        } catch (IOException e) {
+            // leave it to the PrepRequestProcessor to report the error
+            return false;
+        } catch (KeeperException e) {
+            return false;
+        }
+    }
+
     static public void byteBuffer2Record(ByteBuffer bb, Record record)
             throws IOException {
         BinaryInputArchive ia;
@@ -514,6 +671,50 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         record.deserialize(ia, "request");
     }
 
+    /**
+     * How long, in milliseconds, an awaitZxid request waits at most for the
+     * data tree to reach its zxid, set with the "zookeeper.awaitZxidTimeout"
+     * system property. The later requests of its session wait as well.
+     */
+    public static int getAwaitZxidTimeout() {
+        String s = System.getProperty("zookeeper.awaitZxidTimeout", "5000");
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid zookeeper.awaitZxidTimeout " + s);
+            return 5000;
+        }
+    }
+
+    /**
+     * The queue of the first request processor, which holds back the
+     * awaitZxid requests.
+     */
+    private volatile AwaitZxidQueue awaitZxidQueue;
+
+    public void setAwaitZxidQueue(AwaitZxidQueue awaitZxidQueue) {
+        this.awaitZxidQueue = awaitZxidQueue;
+    }
+
+    /**
+     * Called by the FinalRequestProcessor once the data tree has applied the
+     * txn of the zxid.
+     */
+    void zxidApplied(long zxid) {
+        AwaitZxidQueue queue = awaitZxidQueue;
+        if (queue != null) {
+            queue.zxidApplied(zxid);
+        }
+    }
+
+    /**
+     * Whether the zxid may still be committed. A zxid above the last one
+     * proposed never is, so awaitZxid doesn't wait for it.
+     */
+    public boolean isCommittable(long zxid) {
+        return zxid <= getZxid();
+    }
+
     public static int getSnapCount() {
         String sc = System.getProperty("zookeeper.snapCount");
         try {
@@ -523,6 +724,32 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         }
     }
 
+    /**
+     * @return the maximum number of expired sessions closed by one
+     * transaction
+     */
+    public static int getExpiryBatchSize() {
+        String sc = System.getProperty("zookeeper.expiryBatchSize");
+        try {
+            return Integer.parseInt(sc);
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    /**
+     * @return the maximum number of expired sessions closed per second, 0 if
+     * there is no limit
+     */
+    public static int getExpiryRate() {
+        String sc = System.getProperty("zookeeper.expiryRate");
+        try {
+            return Integer.parseInt(sc);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
     public int getGlobalOutstandingLimit() {
         String sc = System.getProperty("zookeeper.globalOutstandingLimit");
         int limit;
@@ -559,6 +786,15 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         return getInProcess();
     }
 
+    /**
+     * return the number of expired sessions
+     * waiting to be closed
+     */
+    public long getExpiryQueueDepth() {
+        SessionExpiryBatcher batcher = expiryBatcher;
+        return batcher == null ? 0 : batcher.getQueueDepth();
+    }
+
     /**
      * trunccate the log to get in sync with others
      * if in a quorum
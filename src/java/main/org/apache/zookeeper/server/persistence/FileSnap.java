@@ -67,6 +67,23 @@ public class FileSnap implements SnapShot {
         if (snap == null) {
             return -1L;
         }
+        deserialize(dt, sessions, snap);
+        dt.lastProcessedZxid = Util.getZxidFromName(snap.getName(), "snapshot");
+        return dt.lastProcessedZxid;
+    }
+
+    /**
+     * deserialize a data tree from the given snapshot file. The file does
+     * not have to be in the snapshot directory or follow the snapshot
+     * naming, so the caller is responsible for setting the lastProcessedZxid
+     * of the datatree.
+     * @param dt the datatree to be deserialized into
+     * @param sessions the sessions to be filled up
+     * @param snap the snapshot file to read
+     * @throws IOException
+     */
+    public void deserialize(DataTree dt, Map<Long, Integer> sessions,
+            File snap) throws IOException {
         LOG.info("Reading snapshot " + snap);
         InputStream snapIS = new BufferedInputStream(new FileInputStream(snap));
         CheckedInputStream crcIn = new CheckedInputStream(snapIS, new Adler32());
@@ -79,8 +96,6 @@ public class FileSnap implements SnapShot {
         }
         snapIS.close();
         crcIn.close();
-        dt.lastProcessedZxid = Util.getZxidFromName(snap.getName(), "snapshot");
-        return dt.lastProcessedZxid;
     }
 
     /**
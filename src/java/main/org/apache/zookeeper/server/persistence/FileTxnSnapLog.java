@@ -20,6 +20,8 @@ package org.apache.zookeeper.server.persistence;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -31,6 +33,7 @@ import org.apache.zookeeper.server.DataTree;
 import org.apache.zookeeper.server.Request;
 import org.apache.zookeeper.server.ZooTrace;
 import org.apache.zookeeper.server.persistence.TxnLog.TxnIterator;
+import org.apache.zookeeper.txn.CloseSessionsTxn;
 import org.apache.zookeeper.txn.CreateSessionTxn;
 import org.apache.zookeeper.txn.TxnHeader;
 
@@ -152,6 +155,18 @@ public class FileTxnSnapLog {
                             + Long.toHexString(hdr.getClientId()));
             dt.processTxn(hdr, txn);
             break;
+        case OpCode.closeSessions:
+            LongBuffer closed = ByteBuffer.wrap(
+                    ((CloseSessionsTxn) txn).getSessions()).asLongBuffer();
+            while (closed.hasRemaining()) {
+                long session = closed.get();
+                sessions.remove(session);
+                ZooTrace.logTraceMessage(LOG,ZooTrace.SESSION_TRACE_MASK,
+                        "playLog --- close session in log: "
+                                + Long.toHexString(session));
+            }
+            dt.processTxn(hdr, txn);
+            break;
         default:
             dt.processTxn(hdr, txn);
         }        
@@ -208,6 +223,30 @@ public class FileTxnSnapLog {
         return snaplog.findMostRecentSnapshot();
     }
 
+    /**
+     * the directory the snapshots are stored in
+     * @return the snapshot directory
+     */
+    public File getSnapDir() {
+        return snapDir;
+    }
+
+    /**
+     * restore the datatree and sessions from the given snapshot
+     * file only, without playing back the transaction logs.
+     * @param dt the datatree to be restored
+     * @param sessions the sessions to be restored
+     * @param snapshot the snapshot file to read
+     * @param zxid the zxid the snapshot was taken at
+     * @throws IOException
+     */
+    public void restoreSnapshot(DataTree dt, Map<Long, Integer> sessions,
+            File snapshot, long zxid) throws IOException {
+        FileSnap snaplog = new FileSnap(snapDir);
+        snaplog.deserialize(dt, sessions, snapshot);
+        dt.lastProcessedZxid = zxid;
+    }
+
     /**
      * get the snapshot logs that are greater than
      * the given zxid 
@@ -124,11 +124,22 @@ public class CommitProcessor extends Thread implements RequestProcessor {
                         switch (request.type) {
                         case OpCode.create:
                         case OpCode.delete:
+                        case OpCode.deleteTree:
+                        case OpCode.createTree:
                         case OpCode.setData:
+                        case OpCode.increment:
                         case OpCode.setACL:
+                        case OpCode.closeSessions:
+                            nextPending = request;
+                            break;
                         case OpCode.createSession:
                         case OpCode.closeSession:
-                            nextPending = request;
+                            // local sessions are not committed by the quorum
+                            if (request.localSession) {
+                                toProcess.add(request);
+                            } else {
+                                nextPending = request;
+                            }
                             break;
                         case OpCode.sync:
                             if (matchSyncs) {
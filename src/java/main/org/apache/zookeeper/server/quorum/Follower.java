@@ -24,12 +24,17 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map.Entry;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jute.BinaryInputArchive;
@@ -41,6 +46,7 @@ import org.apache.log4j.Logger;
 import org.apache.zookeeper.server.Request;
 import org.apache.zookeeper.server.ServerCnxn;
 import org.apache.zookeeper.server.ZooTrace;
+import org.apache.zookeeper.server.persistence.Util;
 import org.apache.zookeeper.server.quorum.QuorumPeer.QuorumServer;
 import org.apache.zookeeper.server.util.SerializeUtils;
 import org.apache.zookeeper.txn.TxnHeader;
@@ -60,6 +66,8 @@ public class Follower {
         this.zk=zk;
     }
 
+    private BufferedInputStream bufferedInput;
+
     private InputArchive leaderIs;
 
     private OutputArchive leaderOs;
@@ -148,8 +156,8 @@ public class Follower {
                 }
                 Thread.sleep(1000);
             }
-            leaderIs = BinaryInputArchive.getArchive(new BufferedInputStream(
-                    sock.getInputStream()));
+            bufferedInput = new BufferedInputStream(sock.getInputStream());
+            leaderIs = BinaryInputArchive.getArchive(bufferedInput);
             bufferedOutput = new BufferedOutputStream(sock.getOutputStream());
             leaderOs = BinaryOutputArchive.getArchive(bufferedOutput);
             QuorumPacket qp = new QuorumPacket();
@@ -179,6 +187,10 @@ public class Follower {
                         LOG.error("Missing signature. Got " + signature);
                         throw new IOException("Missing signature");
                     }
+                } else if (qp.getType() == Leader.SNAPFILE) {
+                    LOG.info("Getting snapshot file 0x"
+                            + Long.toHexString(qp.getZxid()) + " from leader");
+                    receiveSnapshotFile(qp);
                 } else if (qp.getType() == Leader.TRUNC) {
                     //we need to truncate the log to the lastzxid of the leader
                     LOG.warn("Truncating log to get in sync with the leader 0x"
@@ -208,16 +220,12 @@ public class Follower {
                 readPacket(qp);
                 switch (qp.getType()) {
                 case Leader.PING:
-                    // Send back the ping with our session data
-                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                    DataOutputStream dos = new DataOutputStream(bos);
-                    HashMap<Long, Integer> touchTable = zk
-                            .getTouchSnapshot();
-                    for (Entry<Long, Integer> entry : touchTable.entrySet()) {
-                        dos.writeLong(entry.getKey());
-                        dos.writeInt(entry.getValue());
-                    }
-                    qp.setData(bos.toByteArray());
+                    // Send back the ping with the sessions touched since the
+                    // last one
+                    long touches[] = zk.getTouchSnapshot();
+                    ByteBuffer touchBuffer = ByteBuffer.allocate(touches.length * 8);
+                    touchBuffer.asLongBuffer().put(touches);
+                    qp.setData(touchBuffer.array());
                     writePacket(qp);
                     break;
                 case Leader.PROPOSAL:
@@ -284,6 +292,49 @@ public class Follower {
         }
     }
 
+    /**
+     * Receives the snapshot file announced by a SNAPFILE packet into a
+     * temporary file of the snapshot directory and loads the database from
+     * it. The transactions committed after the snapshot are sent by the
+     * leader as proposals. The file is deleted once loaded: like the
+     * database sent by a SNAP packet, nothing is kept before UPTODATE, which
+     * takes a snapshot of the synced database.
+     *
+     * @param qp the SNAPFILE packet
+     * @throws IOException
+     */
+    private void receiveSnapshotFile(QuorumPacket qp) throws IOException {
+        long zxid = qp.getZxid();
+        long size = ByteBuffer.wrap(qp.getData()).getLong();
+        File snapDir = zk.getLogWriter().getSnapDir();
+        // not a valid snapshot name, so that it is never loaded at startup
+        File received = new File(snapDir, Util.makeSnapshotName(zxid)
+                + ".transfer");
+        try {
+            FileOutputStream fos = new FileOutputStream(received);
+            try {
+                FileChannel fc = fos.getChannel();
+                ReadableByteChannel source = Channels
+                        .newChannel(bufferedInput);
+                long position = 0;
+                while (position < size) {
+                    long count = fc.transferFrom(source, position, size
+                            - position);
+                    if (count <= 0) {
+                        throw new EOFException("Snapshot file truncated at "
+                                + position + " of " + size + " bytes");
+                    }
+                    position += count;
+                }
+            } finally {
+                fos.close();
+            }
+            zk.deserializeSnapshot(received, zxid);
+        } finally {
+            received.delete();
+        }
+    }
+
     private long lastQueued;
 
     ConcurrentHashMap<Long, ServerCnxn> pendingRevalidations = new ConcurrentHashMap<Long, ServerCnxn>();
@@ -24,9 +24,15 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.jute.BinaryInputArchive;
@@ -35,6 +41,7 @@ import org.apache.jute.Record;
 import org.apache.log4j.Logger;
 import org.apache.zookeeper.ZooDefs.OpCode;
 import org.apache.zookeeper.server.ZooTrace;
+import org.apache.zookeeper.server.persistence.Util;
 import org.apache.zookeeper.server.quorum.Leader.Proposal;
 import org.apache.zookeeper.server.util.SerializeUtils;
 import org.apache.zookeeper.txn.TxnHeader;
@@ -171,6 +178,38 @@ public class FollowerHandler extends Thread {
         return entry;
     }
 
+    /**
+     * Sends a SNAPFILE packet carrying the size of the snapshot, followed by
+     * the contents of the snapshot file. The file is copied onto the socket
+     * by the channel rather than serialized again from the database.
+     *
+     * @param snapshot the snapshot file
+     * @param zxid the zxid the snapshot was taken at
+     * @throws IOException
+     */
+    private void sendSnapshotFile(File snapshot, long zxid) throws IOException {
+        FileInputStream fis = new FileInputStream(snapshot);
+        try {
+            FileChannel fc = fis.getChannel();
+            long size = fc.size();
+            ByteBuffer bb = ByteBuffer.allocate(8);
+            bb.putLong(size);
+            oa.writeRecord(new QuorumPacket(Leader.SNAPFILE, zxid, bb.array(),
+                    null), "packet");
+            bufferedOutput.flush();
+            WritableByteChannel target = sock.getChannel();
+            if (target == null) {
+                target = Channels.newChannel(sock.getOutputStream());
+            }
+            long position = 0;
+            while (position < size) {
+                position += fc.transferTo(position, size - position, target);
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
     /**
      * This thread will receive packets from the follower and process them and
      * also listen to new connections from new followers.
@@ -218,13 +257,38 @@ public class FollowerHandler extends Thread {
                 else {
                     logTxns = false;
                 }            }
-            long leaderLastZxid = leader.startForwarding(this, peerLastZxid);
+            File snapshot = null;
+            long snapshotZxid = peerLastZxid;
+            if (packetToSend == Leader.SNAP && leader.snapshotTransfer
+                    && !(logTxns && peerLastZxid > leader.zk.maxCommittedLog)) {
+                snapshot = leader.getSyncSnapshot();
+                if (snapshot != null) {
+                    snapshotZxid = Util.getZxidFromName(snapshot.getName(),
+                            "snapshot");
+                    // send the diff from the snapshot on
+                    synchronized(leader.zk.committedLog) {
+                        if (leader.isSyncSnapshotUsable(snapshot)) {
+                            for (Proposal propose: leader.zk.committedLog) {
+                                if (propose.packet.getZxid() > snapshotZxid) {
+                                    queuePacket(propose.packet);
+                                    queuePacket(new QuorumPacket(Leader.COMMIT,
+                                            propose.packet.getZxid(), null, null));
+                                }
+                            }
+                        } else {
+                            snapshot = null;
+                            snapshotZxid = peerLastZxid;
+                        }
+                    }
+                }
+            }
+            long leaderLastZxid = leader.startForwarding(this, snapshotZxid);
             QuorumPacket newLeaderQP = new QuorumPacket(Leader.NEWLEADER,
                     leaderLastZxid, null, null);
             oa.writeRecord(newLeaderQP, "packet");
             bufferedOutput.flush();
             // a special case when both the ids are the same
-            if (peerLastZxid == leaderLastZxid) {
+            if (snapshot == null && peerLastZxid == leaderLastZxid) {
                 packetToSend = Leader.DIFF;
                 zxidToSend = leaderLastZxid;
             }
@@ -241,10 +305,19 @@ public class FollowerHandler extends Thread {
                 zxidToSend = leader.zk.maxCommittedLog;
 
             }
-            oa.writeRecord(new QuorumPacket(packetToSend, zxidToSend, null, null), "packet");
+            if (snapshot != null) {
+                LOG.warn("Sending snapshot file " + snapshot
+                        + " last zxid of peer is 0x"
+                        + Long.toHexString(peerLastZxid) + " "
+                        + " zxid of leader is 0x"
+                        + Long.toHexString(leaderLastZxid));
+                sendSnapshotFile(snapshot, snapshotZxid);
+            } else {
+                oa.writeRecord(new QuorumPacket(packetToSend, zxidToSend, null, null), "packet");
+            }
             bufferedOutput.flush();
             // only if we are not truncating or fast sycning
-            if (packetToSend == Leader.SNAP) {
+            if (snapshot == null && packetToSend == Leader.SNAP) {
                 LOG.warn("Sending snapshot last zxid of peer is 0x"
                         + Long.toHexString(peerLastZxid) + " "
                         + " zxid of leader is 0x"
@@ -299,18 +372,16 @@ public class FollowerHandler extends Thread {
                     break;
                 case Leader.PING:
                     // Process the touches
-                    ByteArrayInputStream bis = new ByteArrayInputStream(qp
-                            .getData());
-                    DataInputStream dis = new DataInputStream(bis);
-                    while (dis.available() > 0) {
-                        long sess = dis.readLong();
-                        int to = dis.readInt();
-                        leader.zk.touch(sess, to);
+                    LongBuffer touches = ByteBuffer.wrap(qp.getData())
+                            .asLongBuffer();
+                    while (touches.hasRemaining()) {
+                        leader.zk.touch(touches.get());
                     }
                     break;
                 case Leader.REVALIDATE:
-                    bis = new ByteArrayInputStream(qp.getData());
-                    dis = new DataInputStream(bis);
+                    ByteArrayInputStream bis = new ByteArrayInputStream(qp
+                            .getData());
+                    DataInputStream dis = new DataInputStream(bis);
                     long id = dis.readLong();
                     int to = dis.readInt();
                     ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -23,6 +23,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import org.apache.log4j.Logger;
 
 import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.server.AwaitZxidQueue;
 import org.apache.zookeeper.server.RequestProcessor;
 import org.apache.zookeeper.server.Request;
 import org.apache.zookeeper.server.ZooTrace;
@@ -41,6 +42,8 @@ public class FollowerRequestProcessor extends Thread implements
 
     LinkedBlockingQueue<Request> queuedRequests = new LinkedBlockingQueue<Request>();
 
+    AwaitZxidQueue awaitZxids;
+
     boolean finished = false;
 
     public FollowerRequestProcessor(FollowerZooKeeperServer zks,
@@ -48,6 +51,8 @@ public class FollowerRequestProcessor extends Thread implements
         super("FollowerRequestProcessor:" + zks.getClientPort());
         this.zks = zks;
         this.nextProcessor = nextProcessor;
+        awaitZxids = new AwaitZxidQueue(zks, queuedRequests);
+        zks.setAwaitZxidQueue(awaitZxids);
         start();
     }
 
@@ -55,7 +60,7 @@ public class FollowerRequestProcessor extends Thread implements
     public void run() {
         try {
             while (!finished) {
-                Request request = queuedRequests.take();
+                Request request = awaitZxids.take();
                 ZooTrace.logRequest(LOG, ZooTrace.CLIENT_REQUEST_TRACE_MASK,
                         'F', request, "");
                 if (request == Request.requestOfDeath) {
@@ -66,22 +71,31 @@ public class FollowerRequestProcessor extends Thread implements
                 // the response
                 nextProcessor.processRequest(request);
                 
-                // We now ship the request to the leader. As with all
-                // other quorum operations, sync also follows this code
-                // path, but different from others, we need to keep track
-                // of the sync operations this follower has pending, so we
-                // add it to pendingSyncs.
+                // We now ship the request to the leader. Syncs are
+                // batched by the server, which sends the ones it holds
+                // ahead of any other request.
                 switch (request.type) {
                 case OpCode.sync:
-                    zks.pendingSyncs.add(request);
+                    zks.queueSync(request);
+                    break;
                 case OpCode.create:
                 case OpCode.delete:
+                case OpCode.deleteTree:
+                case OpCode.createTree:
                 case OpCode.setData:
+                case OpCode.increment:
                 case OpCode.setACL:
                 case OpCode.createSession:
-                case OpCode.closeSession:
+                    zks.flushSyncs();
                     zks.getFollower().request(request);
                     break;
+                case OpCode.closeSession:
+                    // local sessions are closed without the leader
+                    if (!request.localSession) {
+                        zks.flushSyncs();
+                        zks.getFollower().request(request);
+                    }
+                    break;
                 }
             }
         } catch (Exception e) {
@@ -18,7 +18,7 @@
 
 package org.apache.zookeeper.server.quorum;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.zookeeper.server.SessionTracker;
@@ -27,51 +27,119 @@ import org.apache.zookeeper.server.SessionTrackerImpl;
 /**
  * This is really just a shell of a SessionTracker that tracks session activity
  * to be forwarded to the Leader using a PING.
+ *
+ * Only the ids of the sessions touched since the last PING are kept, the
+ * Leader already knows the timeout of every session.
  */
 public class FollowerSessionTracker implements SessionTracker {
     SessionExpirer expirer;
 
-    HashMap<Long, Integer> touchTable = new HashMap<Long, Integer>();
+    /**
+     * The ids of the sessions touched since the last snapshot, in the first
+     * touchCount slots. An id may appear more than once until the table is
+     * compacted.
+     */
+    long touchTable[] = new long[INITIAL_TOUCH_CAPACITY];
+    int touchCount;
+
+    private static final int INITIAL_TOUCH_CAPACITY = 256;
+
     long serverId = 1;
     long nextSessionId=0;
+    int tickTime;
     
     private ConcurrentHashMap<Long, Integer> sessionsWithTimeouts;
 
-    
+    /**
+     * Local sessions are not known to the Leader, so they are tracked and
+     * expired here. It is only started once the first local session is
+     * created.
+     */
+    private volatile SessionTrackerImpl localSessionTracker;
+
     /**
      * 
      */
     public FollowerSessionTracker(SessionExpirer expirer,
-            ConcurrentHashMap<Long, Integer> sessionsWithTimeouts, long id) {
+            ConcurrentHashMap<Long, Integer> sessionsWithTimeouts, int tickTime,
+            long id) {
         this.expirer = expirer;
         this.sessionsWithTimeouts = sessionsWithTimeouts;
+        this.tickTime = tickTime;
         this.serverId = id;
         nextSessionId = SessionTrackerImpl.initializeNextSession(this.serverId);
         
     }
 
-    synchronized public void removeSession(long sessionId) {
+    public void removeSession(long sessionId) {
+        SessionTrackerImpl local = localSessionTracker;
+        if (local != null && local.isLocalSession(sessionId)) {
+            local.removeSession(sessionId);
+            return;
+        }
+        // a touch still in the table is ignored by the Leader if the session
+        // is gone
         sessionsWithTimeouts.remove(sessionId);
-        touchTable.remove(sessionId);
     }
 
     public void shutdown() {
+        SessionTrackerImpl local = localSessionTracker;
+        if (local != null) {
+            local.shutdown();
+        }
     }
 
     synchronized public void addSession(long sessionId, int sessionTimeout) {
         sessionsWithTimeouts.put(sessionId, sessionTimeout);
-        touchTable.put(sessionId, sessionTimeout);
+        addTouch(sessionId);
     }
 
-    synchronized public boolean touchSession(long sessionId, int sessionTimeout) {
-        touchTable.put(sessionId, sessionTimeout);
+    public boolean touchSession(long sessionId, int sessionTimeout) {
+        SessionTrackerImpl local = localSessionTracker;
+        if (local != null && local.isLocalSession(sessionId)) {
+            return local.touchSession(sessionId, sessionTimeout);
+        }
+        synchronized (this) {
+            addTouch(sessionId);
+        }
         return true;
     }
 
-    synchronized HashMap<Long, Integer> snapshot() {
-        HashMap<Long, Integer> oldTouchTable = touchTable;
-        touchTable = new HashMap<Long, Integer>();
-        return oldTouchTable;
+    private void addTouch(long sessionId) {
+        if (touchCount == touchTable.length) {
+            // most of the touches are usually repeated, only grow the table
+            // if removing them doesn't free enough room
+            compactTouches();
+            if (touchCount * 2 > touchTable.length) {
+                touchTable = Arrays.copyOf(touchTable, touchTable.length * 2);
+            }
+        }
+        touchTable[touchCount++] = sessionId;
+    }
+
+    private void compactTouches() {
+        Arrays.sort(touchTable, 0, touchCount);
+        int count = 0;
+        for (int i = 0; i < touchCount; i++) {
+            if (count == 0 || touchTable[count - 1] != touchTable[i]) {
+                touchTable[count++] = touchTable[i];
+            }
+        }
+        touchCount = count;
+    }
+
+    /**
+     * @return the distinct ids of the sessions touched since the last call
+     */
+    synchronized long[] snapshot() {
+        compactTouches();
+        long touches[] = Arrays.copyOf(touchTable, touchCount);
+        touchCount = 0;
+        if (touchTable.length > INITIAL_TOUCH_CAPACITY
+                && touches.length * 4 < touchTable.length) {
+            touchTable = new long[touchTable.length / 2];
+        }
+        return touches;
     }
 
 
@@ -79,6 +147,31 @@ public class FollowerSessionTracker implements SessionTracker {
         return (nextSessionId++);
     }
 
+    synchronized public long createLocalSession(int sessionTimeout) {
+        if (localSessionTracker == null) {
+            localSessionTracker = new SessionTrackerImpl(expirer,
+                    new ConcurrentHashMap<Long, Integer>(), tickTime, serverId);
+        }
+        long sessionId = nextSessionId++;
+        localSessionTracker.addLocalSession(sessionId, sessionTimeout);
+        return sessionId;
+    }
+
+    public boolean isLocalSession(long sessionId) {
+        SessionTrackerImpl local = localSessionTracker;
+        return local != null && local.isLocalSession(sessionId);
+    }
+
+    public boolean upgradeSession(long sessionId) {
+        SessionTrackerImpl local = localSessionTracker;
+        if (local == null || !local.upgradeSession(sessionId)) {
+            return false;
+        }
+        // from now on the session is tracked by the Leader
+        local.removeSession(sessionId);
+        return true;
+    }
+
     public void checkSession(long sessionId)  {
         // Nothing to do here. Sessions are checked at the Leader
     }
@@ -19,9 +19,10 @@
 package org.apache.zookeeper.server.quorum;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.jute.Record;
 import org.apache.log4j.Logger;
@@ -50,10 +51,28 @@ public class FollowerZooKeeperServer extends ZooKeeperServer {
 
     SyncRequestProcessor syncProcessor;
 
+    /**
+     * Syncs sent to the leader together as one sync.
+     */
+    private static class SyncBatch {
+        final List<Request> requests;
+
+        final long sent = System.currentTimeMillis();
+
+        SyncBatch(List<Request> requests) {
+            this.requests = requests;
+        }
+    }
+
+    /*
+     * Pending sync requests, in the batches they were sent to the leader in
+     */
+    private final LinkedList<SyncBatch> pendingSyncs = new LinkedList<SyncBatch>();
+
     /*
-     * Pending sync requests
+     * Sync requests not sent to the leader yet
      */
-    ConcurrentLinkedQueue<Request> pendingSyncs;
+    private List<Request> queuedSyncs = new ArrayList<Request>();
     
     /**
      * @param port
@@ -64,7 +83,6 @@ public class FollowerZooKeeperServer extends ZooKeeperServer {
             DataTreeBuilder treeBuilder) throws IOException {
         super(logFactory, self.tickTime,treeBuilder);
         this.self = self;
-        this.pendingSyncs = new ConcurrentLinkedQueue<Request>();
     }
 
     public Follower getFollower(){
@@ -74,7 +92,7 @@ public class FollowerZooKeeperServer extends ZooKeeperServer {
     @Override
     protected void createSessionTracker() {
         sessionTracker = new FollowerSessionTracker(this, sessionsWithTimeouts,
-                self.getId());
+                tickTime, self.getId());
     }
 
     @Override
@@ -90,14 +108,19 @@ public class FollowerZooKeeperServer extends ZooKeeperServer {
     @Override
     protected void revalidateSession(ServerCnxn cnxn, long sessionId,
             int sessionTimeout) throws IOException, InterruptedException {
+        if (sessionTracker.isLocalSession(sessionId)) {
+            // the Leader does not know about local sessions
+            super.revalidateSession(cnxn, sessionId, sessionTimeout);
+            return;
+        }
         getFollower().validateSession(cnxn, sessionId, sessionTimeout);
     }
 
-    public HashMap<Long, Integer> getTouchSnapshot() {
+    public long[] getTouchSnapshot() {
         if (sessionTracker != null) {
             return ((FollowerSessionTracker) sessionTracker).snapshot();
         }
-        return new HashMap<Long, Integer>();
+        return new long[0];
     }
 
     @Override
@@ -136,21 +159,82 @@ public class FollowerZooKeeperServer extends ZooKeeperServer {
         commitProcessor.commit(request);
     }
     
-    synchronized public void sync(){
-        if(pendingSyncs.size() ==0){
-            LOG.warn("Not expecting a sync.");
-            return;
+    /**
+     * Queue a sync for the leader. While a sync is out to the leader the
+     * syncs that arrive are held, and then sent together as a single sync,
+     * so a burst of syncs costs one round trip instead of one each.
+     */
+    void queueSync(Request request) throws IOException {
+        synchronized (pendingSyncs) {
+            queuedSyncs.add(request);
+            if (pendingSyncs.isEmpty()) {
+                flushSyncs();
+            }
+        }
+    }
+
+    /**
+     * Send the held syncs to the leader. This has to be done before any
+     * other request goes to the leader, so that the syncs are answered
+     * before that request is committed, in the order the CommitProcessor
+     * queued them.
+     */
+    void flushSyncs() throws IOException {
+        synchronized (pendingSyncs) {
+            if (queuedSyncs.isEmpty()) {
+                return;
+            }
+            SyncBatch batch = new SyncBatch(queuedSyncs);
+            queuedSyncs = new ArrayList<Request>();
+            pendingSyncs.add(batch);
+            // the leader only needs one of them to answer for all
+            getFollower().request(batch.requests.get(0));
+        }
+    }
+
+    public void sync() throws IOException {
+        synchronized (pendingSyncs) {
+            SyncBatch batch = pendingSyncs.poll();
+            if (batch == null) {
+                LOG.warn("Not expecting a sync.");
+                return;
+            }
+            for (Request r : batch.requests) {
+                commitProcessor.commit(r);
+            }
+            QuorumStats stats = QuorumStats.getInstance();
+            if (stats != null) {
+                stats.updateSyncLatency(batch.sent, batch.requests.size());
+            }
+            if (pendingSyncs.isEmpty()) {
+                flushSyncs();
+            }
         }
-                
-        Request r = pendingSyncs.remove();
-		commitProcessor.commit(r);
     }
-             
+
     @Override
     public int getGlobalOutstandingLimit() {
         return super.getGlobalOutstandingLimit() / (self.getQuorumSize() - 1);
     }
 
+    /**
+     * The leader only accepts the writes of the sessions it tracks, so a
+     * local session is upgraded before its first write.
+     */
+    @Override
+    protected boolean needsGlobalSession(Request si) {
+        return true;
+    }
+
+    /**
+     * A follower doesn't know the last zxid the leader proposed, but zxids
+     * of a later epoch than the one it follows are never committed.
+     */
+    @Override
+    public boolean isCommittable(long zxid) {
+        return (zxid >> 32) <= (dataTree.lastProcessedZxid >> 32);
+    }
+
     /**
      * Do not do anything in the follower.
      */
@@ -19,6 +19,7 @@
 package org.apache.zookeeper.server.quorum;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.BindException;
 import java.net.ServerSocket;
@@ -38,6 +39,7 @@ import org.apache.jute.BinaryOutputArchive;
 import org.apache.zookeeper.server.FinalRequestProcessor;
 import org.apache.zookeeper.server.Request;
 import org.apache.zookeeper.server.RequestProcessor;
+import org.apache.zookeeper.server.persistence.Util;
 
 /**
  * This class has the control logic for the Leader.
@@ -108,8 +110,21 @@ public class Leader {
 
     ServerSocket ss;
 
+    /**
+     * If set, followers that need a full snapshot are sent the most recent
+     * snapshot file instead of a fresh serialization of the database.
+     */
+    boolean snapshotTransfer;
+
+    // the snapshot file currently shared by followers being synced
+    private File syncSnapshot;
+
+    private final Object syncSnapshotLock = new Object();
+
     Leader(QuorumPeer self,LeaderZooKeeperServer zk) throws IOException {
         this.self = self;
+        snapshotTransfer = System.getProperty("zookeeper.snapshotTransfer",
+                "no").equals("yes");
         try {
             ss = new ServerSocket(self.getQuorumAddress().getPort());
         } catch (BindException e) {
@@ -135,6 +150,12 @@ public class Leader {
      */
     final static int SNAP = 15;
 
+    /**
+     * This is for follower to download the snapshot file of the leader. The
+     * transactions committed after the snapshot was taken follow as a diff.
+     */
+    final static int SNAPFILE = 16;
+
     /**
      * This message type is sent by the leader to indicate it's zxid and if
      * needed, its database.
@@ -595,6 +616,52 @@ public class Leader {
         r.fh.queuePacket(qp);
     }
 
+    /**
+     * Returns a snapshot file that can be sent to a follower followed by the
+     * transactions committed after it. Followers syncing at the same time
+     * share the same file; a new snapshot is only taken once the committed
+     * log no longer reaches back to it.
+     *
+     * @return the snapshot file or null if there is no usable snapshot
+     * @throws IOException
+     */
+    File getSyncSnapshot() throws IOException {
+        synchronized (syncSnapshotLock) {
+            if (!isSyncSnapshotUsable(syncSnapshot)) {
+                syncSnapshot = zk.getLogWriter().findMostRecentSnapshot();
+                if (!isSyncSnapshotUsable(syncSnapshot)) {
+                    LOG.info("Taking a snapshot to sync followers");
+                    zk.takeSnapshot();
+                    syncSnapshot = zk.getLogWriter().findMostRecentSnapshot();
+                    if (!isSyncSnapshotUsable(syncSnapshot)) {
+                        syncSnapshot = null;
+                    }
+                }
+            }
+            return syncSnapshot;
+        }
+    }
+
+    /**
+     * A snapshot is usable if every transaction after it is still in the
+     * committed log.
+     *
+     * @param snapshot the snapshot file
+     * @return true if the snapshot can be sent to a follower
+     */
+    boolean isSyncSnapshotUsable(File snapshot) {
+        if (snapshot == null || !snapshot.exists()) {
+            return false;
+        }
+        long zxid = Util.getZxidFromName(snapshot.getName(), "snapshot");
+        synchronized (zk.committedLog) {
+            if (zk.committedLog.size() == 0) {
+                return zxid == zk.dataTree.lastProcessedZxid;
+            }
+            return zxid >= zk.minCommittedLog;
+        }
+    }
+
     /**
      * lets the leader know that a follower is capable of following and is done
      * syncing
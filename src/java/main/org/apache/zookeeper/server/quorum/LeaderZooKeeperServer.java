@@ -82,6 +82,19 @@ public class LeaderZooKeeperServer extends ZooKeeperServer {
         return sessionTracker.touchSession(sess, to);
     }
 
+    /**
+     * Touch a session with the timeout it was created with.
+     *
+     * @return false if the session is not known
+     */
+    public boolean touch(long sess) {
+        Integer to = sessionsWithTimeouts.get(sess);
+        if (to == null) {
+            return false;
+        }
+        return sessionTracker.touchSession(sess, to);
+    }
+
     public void setZxid(long zxid) {
         hzxid = zxid;
     }
@@ -43,6 +43,56 @@ public class QuorumStats extends ServerStats {
         setInstance(new QuorumStats());
     }
     protected QuorumStats(){}
+
+    private long syncCount;
+    private long syncRoundTrips;
+    private long totalSyncLatency;
+    private long maxSyncLatency;
+
+    /**
+     * @return the number of syncs a follower sent to the leader
+     */
+    synchronized public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * @return the number of round trips to the leader the syncs took, fewer
+     * than the syncs when they were batched
+     */
+    synchronized public long getSyncRoundTrips() {
+        return syncRoundTrips;
+    }
+
+    synchronized public long getAvgSyncLatency() {
+        if (syncRoundTrips != 0)
+            return totalSyncLatency / syncRoundTrips;
+        return 0;
+    }
+
+    synchronized public long getMaxSyncLatency() {
+        return maxSyncLatency;
+    }
+
+    /**
+     * Record a sync round trip to the leader.
+     *
+     * @param sent when the sync was sent
+     * @param syncs the number of syncs it answered
+     */
+    synchronized public void updateSyncLatency(long sent, int syncs) {
+        long latency = System.currentTimeMillis() - sent;
+        syncCount += syncs;
+        syncRoundTrips++;
+        totalSyncLatency += latency;
+        if (latency > maxSyncLatency) {
+            maxSyncLatency = latency;
+        }
+    }
+
+    synchronized public void resetSyncLatency() {
+        syncCount = syncRoundTrips = totalSyncLatency = maxSyncLatency = 0;
+    }
     
     public void setStatsProvider(Provider newProvider){
         qprovider=newProvider;
@@ -75,6 +125,9 @@ public class QuorumStats extends ServerStats {
             else
                 sb.append("not connected");
             sb.append("\n");
+            sb.append("Syncs: " + getSyncCount() + " in "
+                    + getSyncRoundTrips() + " round trips, latency avg/max: "
+                    + getAvgSyncLatency() + "/" + getMaxSyncLatency() + "\n");
         }
         return sb.toString();
     }
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hash map keyed by primitive longs, so keys are never boxed. The map is
+ * split into segments that are locked independently; operations on keys in
+ * different segments do not contend. Each segment is an open addressing
+ * table with linear probing. Null values are not allowed.
+ */
+public class ConcurrentLongHashMap<V> {
+    private final Segment<V>[] segments;
+
+    public ConcurrentLongHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param concurrencyLevel the number of segments, rounded up to a power
+     * of two
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongHashMap(int concurrencyLevel) {
+        int n = 1;
+        while (n < concurrencyLevel) {
+            n <<= 1;
+        }
+        segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment<V>();
+        }
+    }
+
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        // the high bits pick the segment, the low bits the slot
+        return segments[(hash >>> 24) & (segments.length - 1)];
+    }
+
+    public V get(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value for the key, or null if there was none
+     */
+    public V put(long key, V value) {
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * @return the current value for the key, or null if the value was added
+     */
+    public V putIfAbsent(long key, V value) {
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * @return the removed value, or null if the key was not in the map
+     */
+    public V remove(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> s : segments) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return a copy of the values in the map
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<V>();
+        for (Segment<V> s : segments) {
+            s.addValues(values);
+        }
+        return values;
+    }
+
+    public void clear() {
+        for (Segment<V> s : segments) {
+            s.clear();
+        }
+    }
+
+    private static final class Segment<V> {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+
+        // a null value marks an empty slot
+        private Object[] values = new Object[INITIAL_CAPACITY];
+
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long key, int hash) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(long key, int hash, V value, boolean onlyIfAbsent) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V old = (V) values[i];
+                    if (!onlyIfAbsent) {
+                        values[i] = value;
+                    }
+                    return old;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 4 >= keys.length * 3) {
+                resize(keys.length * 2);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(long key, int hash) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    break;
+                }
+            }
+            if (values[i] == null) {
+                return null;
+            }
+            V old = (V) values[i];
+            // shift back the entries that follow so that no probe sequence
+            // is broken by the hole
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    break;
+                }
+                int k = hash(keys[j]) & mask;
+                if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                    continue;
+                }
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+            values[i] = null;
+            size--;
+            return old;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void addValues(List<V> list) {
+            for (Object v : values) {
+                if (v != null) {
+                    list.add((V) v);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            keys = new long[INITIAL_CAPACITY];
+            values = new Object[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            int mask = capacity - 1;
+            for (int n = 0; n < oldKeys.length; n++) {
+                if (oldValues[n] == null) {
+                    continue;
+                }
+                int i = hash(oldKeys[n]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[n];
+                values[i] = oldValues[n];
+            }
+        }
+    }
+}
@@ -31,8 +31,11 @@ import org.apache.jute.Record;
 import org.apache.zookeeper.ZooDefs.OpCode;
 import org.apache.zookeeper.server.DataTree;
 import org.apache.zookeeper.server.ZooTrace;
+import org.apache.zookeeper.txn.CloseSessionsTxn;
 import org.apache.zookeeper.txn.CreateSessionTxn;
+import org.apache.zookeeper.txn.CreateTreeTxn;
 import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.DeleteTreeTxn;
 import org.apache.zookeeper.txn.DeleteTxn;
 import org.apache.zookeeper.txn.ErrorTxn;
 import org.apache.zookeeper.txn.SetACLTxn;
@@ -54,12 +57,21 @@ public class SerializeUtils {
             break;
         case OpCode.closeSession:
             return null;
+        case OpCode.closeSessions:
+            txn = new CloseSessionsTxn();
+            break;
         case OpCode.create:
             txn = new CreateTxn();
             break;
         case OpCode.delete:
             txn = new DeleteTxn();
             break;
+        case OpCode.deleteTree:
+            txn = new DeleteTreeTxn();
+            break;
+        case OpCode.createTree:
+            txn = new CreateTreeTxn();
+            break;
         case OpCode.setData:
             txn = new SetDataTxn();
             break;
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class DataCompressionTest extends TestCase {
+    private static byte[] text(int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append("{\"key" + i + "\": \"value " + (i % 7) + "\"},\n");
+        }
+        return sb.substring(0, length).getBytes();
+    }
+
+    /**
+     * Reverses the data, to tell it from the deflated data.
+     */
+    private static class ReverseCodec implements DataCodec {
+        public int getId() {
+            return 200;
+        }
+
+        public byte[] encode(byte data[]) {
+            byte encoded[] = new byte[data.length / 2];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = data[data.length - 1 - 2 * i];
+            }
+            return encoded;
+        }
+
+        public byte[] decode(byte data[], int offset, int length,
+                int decodedLength) {
+            // only good for data made of pairs of the same byte
+            byte decoded[] = new byte[decodedLength];
+            for (int i = 0; i < length; i++) {
+                decoded[decodedLength - 1 - 2 * i] = data[offset + i];
+                decoded[decodedLength - 2 - 2 * i] = data[offset + i];
+            }
+            return decoded;
+        }
+    }
+
+    public void testRoundTrip() {
+        DataCompression compression = new DataCompression(100);
+        byte small[] = text(99);
+        assertSame(small, compression.compress(small));
+        byte large[] = text(10000);
+        byte stored[] = compression.compress(large);
+        assertTrue(stored.length < large.length / 4);
+        assertEquals((byte) 0xff, stored[0]);
+        assertTrue(Arrays.equals(large, compression.decompress(stored)));
+        assertNull(compression.compress(null));
+        assertNull(compression.decompress(null));
+        assertEquals(0, compression.decompress(new byte[0]).length);
+    }
+
+    public void testIncompressibleStoredAsIs() {
+        DataCompression compression = new DataCompression(100);
+        byte random[] = new byte[1000];
+        new Random(1).nextBytes(random);
+        random[0] = 0;
+        assertSame(random, compression.compress(random));
+        assertSame(random, compression.decompress(random));
+    }
+
+    public void testDataLookingEncoded() {
+        DataCompression compression = new DataCompression(100);
+        byte data[] = new byte[DataCompression.HEADER_SIZE + 2];
+        System.arraycopy(DataCompression.MAGIC, 0, data, 0,
+                DataCompression.MAGIC.length);
+        byte stored[] = compression.compress(data);
+        assertEquals(DataCompression.HEADER_SIZE + data.length, stored.length);
+        assertTrue(Arrays.equals(data, compression.decompress(stored)));
+    }
+
+    public void testCorruptOrUnknownReturnedAsIs() {
+        DataCompression compression = new DataCompression(100);
+        byte stored[] = compression.compress(text(1000));
+        byte corrupt[] = stored.clone();
+        // breaks the checksum at the end of the deflated data
+        corrupt[corrupt.length - 1] ^= 0x55;
+        assertSame(corrupt, compression.decompress(corrupt));
+        byte unknown[] = stored.clone();
+        unknown[DataCompression.MAGIC.length] = 99;
+        assertSame(unknown, compression.decompress(unknown));
+        byte tooLong[] = stored.clone();
+        tooLong[DataCompression.MAGIC.length + 1] = 0x7f;
+        assertSame(tooLong, compression.decompress(tooLong));
+    }
+
+    public void testPluggableCodecs() {
+        byte data[] = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i / 2);
+        }
+        DataCompression reverse = new DataCompression(new ReverseCodec(), 10);
+        byte stored[] = reverse.compress(data);
+        assertEquals(200, stored[DataCompression.MAGIC.length] & 0xff);
+        assertTrue(Arrays.equals(data, reverse.decompress(stored)));
+
+        // a client writing with deflate still reads the other codec once
+        // it is registered
+        DataCompression deflate = new DataCompression(10);
+        assertSame(stored, deflate.decompress(stored));
+        deflate.register(new ReverseCodec());
+        assertTrue(Arrays.equals(data, deflate.decompress(stored)));
+    }
+}
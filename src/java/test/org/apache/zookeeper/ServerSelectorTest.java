@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.zookeeper.ServerSelector.Server;
+import org.apache.zookeeper.proto.ServerLoad;
+
+public class ServerSelectorTest extends TestCase {
+    private static List<InetSocketAddress> addrs(int count) {
+        List<InetSocketAddress> addrs = new ArrayList<InetSocketAddress>();
+        for (int i = 0; i < count; i++) {
+            addrs.add(new InetSocketAddress("127.0.0.1", 2181 + i));
+        }
+        return addrs;
+    }
+
+    private static ServerSelector selector(int count, String local) {
+        return new ServerSelector(addrs(count), local, new Random(1));
+    }
+
+    public void testUnknownServersInTurn() {
+        ServerSelector selector = selector(3, null);
+        Set<Server> seen = new HashSet<Server>();
+        for (int i = 0; i < 3; i++) {
+            seen.add(selector.next(0));
+        }
+        assertEquals(3, seen.size());
+    }
+
+    public void testFailedServersAvoided() {
+        ServerSelector selector = selector(3, null);
+        List<Server> servers = selector.getServers();
+        selector.failed(servers.get(0), 1000);
+        selector.failed(servers.get(1), 1000);
+        for (int i = 0; i < 5; i++) {
+            assertSame(servers.get(2), selector.next(1000));
+        }
+        assertEquals(1000, selector.nextAvailable(1000));
+
+        selector.failed(servers.get(2), 1000);
+        long available = selector.nextAvailable(1000);
+        assertTrue(available > 1000);
+        assertTrue(available < 1000 + 2 * ServerSelector.FAILURE_DELAY);
+        // when all failed the one that is available first is tried
+        Server s = selector.next(1000);
+        assertEquals(available, s.failedUntil);
+    }
+
+    public void testPrefersLowRttAndLoad() {
+        ServerSelector selector = selector(3, null);
+        List<Server> servers = selector.getServers();
+        selector.rttMeasured(servers.get(0), 20, 1);
+        selector.rttMeasured(servers.get(1), 2, 1);
+        selector.rttMeasured(servers.get(2), 5, 1);
+        for (int i = 0; i < 5; i++) {
+            assertSame(servers.get(1), selector.next(1));
+        }
+        selector.loadReported(servers.get(0), new ServerLoad(0, 10), 1);
+        selector.loadReported(servers.get(1), new ServerLoad(50, 10), 1);
+        selector.loadReported(servers.get(2), new ServerLoad(0, 10), 1);
+        assertSame(servers.get(2), selector.next(1));
+    }
+
+    public void testRttAverage() {
+        ServerSelector selector = selector(1, null);
+        Server s = selector.getServers().get(0);
+        selector.rttMeasured(s, 10, 1);
+        assertEquals(10.0, s.rtt);
+        selector.rttMeasured(s, 50, 1);
+        assertEquals(10 + ServerSelector.RTT_ALPHA * 40, s.rtt);
+    }
+
+    public void testLocalServerPreferred() {
+        ServerSelector selector = selector(3, "127.0.0.1:2182");
+        List<Server> servers = selector.getServers();
+        assertTrue(servers.get(1).local);
+        assertFalse(servers.get(0).local);
+        for (int i = 0; i < 5; i++) {
+            assertSame(servers.get(1), selector.next(0));
+        }
+        // unless it is much slower
+        selector.rttMeasured(servers.get(0), 1, 1);
+        selector.rttMeasured(servers.get(1), 30, 1);
+        selector.rttMeasured(servers.get(2), 1, 1);
+        assertNotSame(servers.get(1), selector.next(1));
+
+        // without a port all the servers of the host are local
+        selector = selector(3, "127.0.0.1");
+        for (Server s : selector.getServers()) {
+            assertTrue(s.local);
+        }
+    }
+
+    public void testStaleStatsForgotten() {
+        ServerSelector selector = selector(2, null);
+        List<Server> servers = selector.getServers();
+        selector.rttMeasured(servers.get(0), 100, 1);
+        selector.rttMeasured(servers.get(1), 1, 1);
+        selector.next(2 + ServerSelector.STATS_MAX_AGE);
+        assertTrue(servers.get(0).rtt < 0);
+        assertTrue(servers.get(1).rtt < 0);
+    }
+
+    public void testRebalanceLeavesLoadedServer() {
+        ServerSelector selector = selector(3, null);
+        List<Server> servers = selector.getServers();
+        for (Server s : servers) {
+            selector.rttMeasured(s, 1, 1);
+        }
+        selector.loadReported(servers.get(0), new ServerLoad(0, 100), 1);
+        selector.loadReported(servers.get(1), new ServerLoad(0, 105), 1);
+        selector.loadReported(servers.get(2), new ServerLoad(0, 95), 1);
+        // balanced enough, nobody moves
+        for (int i = 0; i < 100; i++) {
+            assertNull(selector.rebalance(servers.get(0), 1));
+        }
+
+        selector.loadReported(servers.get(0), new ServerLoad(0, 700), 1);
+        int moved = 0;
+        for (int i = 0; i < 100; i++) {
+            Server to = selector.rebalance(servers.get(0), 1);
+            if (to != null) {
+                assertSame(servers.get(2), to);
+                moved++;
+            }
+        }
+        // only some of the clients move at a time
+        assertTrue(moved > 0);
+        assertTrue(moved < 100);
+
+        // not to servers that failed
+        selector.failed(servers.get(2), 1);
+        selector.failed(servers.get(1), 1);
+        for (int i = 0; i < 100; i++) {
+            assertNull(selector.rebalance(servers.get(0), 1));
+        }
+    }
+}
@@ -18,9 +18,16 @@
 
 package org.apache.zookeeper.server;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 
+import org.apache.jute.BinaryOutputArchive;
 import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.ChildData;
 import org.apache.zookeeper.data.Stat;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.server.DataTree;
@@ -53,4 +60,30 @@ public class DataTreeUnitTest extends TestCase {
         assertFalse("Root node watch not triggered",!watcher.fired);
     }
 
+    /**
+     * The pages of getChildrenData are bounded by the bytes of the names on
+     * the wire, not their number of chars.
+     */
+    public void testChildrenDataNonAsciiNames() throws Exception {
+        char chars[] = new char[100];
+        Arrays.fill(chars, '\u00e9');
+        String name = new String(chars);
+        for (int i = 0; i < 10; i++) {
+            dt.createNode("/" + name + i, new byte[0], null, 0, 1, 1);
+        }
+        List<ChildData> children = new ArrayList<ChildData>();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryOutputArchive boa = BinaryOutputArchive.getArchive(baos);
+        boa.writeRecord(new ChildData(name + 0, new Stat(), null), "child");
+        int maxBytes = 3 * baos.size();
+        assertNotNull(dt.getChildrenData("/", null, maxBytes, null, children,
+                null));
+        assertEquals(3, children.size());
+        baos.reset();
+        for (ChildData child : children) {
+            boa.writeRecord(child, "child");
+        }
+        assertTrue(baos.size() <= maxBytes);
+    }
+
 }
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.zookeeper.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import junit.framework.TestCase;
+
+import org.apache.zookeeper.server.SessionTracker.SessionExpirer;
+import org.apache.zookeeper.server.util.ConcurrentLongHashMap;
+
+public class SessionTrackerPerfTest extends TestCase {
+    private static class NullExpirer implements SessionExpirer {
+        public void expire(long sessionId) {
+            // do nothing - sessions don't expire during the test
+        }
+
+        public long getServerId() {
+            return 1;
+        }
+    }
+
+    private static void touchSessions(int sessionCount, int threadCount,
+            final int touches) throws InterruptedException {
+        final SessionTrackerImpl tracker = new SessionTrackerImpl(
+                new NullExpirer(), new ConcurrentHashMap<Long, Integer>(),
+                2000, 1);
+        final long ids[] = new long[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            ids[i] = tracker.createSession(30000);
+        }
+        Thread threads[] = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < touches; i++) {
+                        tracker.touchSession(
+                                ids[(i + offset * 7919) % ids.length], 30000);
+                    }
+                }
+            };
+        }
+        System.gc();
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long end = System.nanoTime();
+        tracker.shutdown();
+        long total = (long) touches * threadCount;
+        long durationms = (end - start)/1000000L;
+        long pertouchns = (end - start)/total;
+        System.out.println("Touched " + total + " times in "
+                + durationms + " ms (" + pertouchns + "ns/touch), sessions="
+                + sessionCount + " threads=" + threadCount);
+    }
+
+    public void testTouchFewSessions() throws InterruptedException {
+        touchSessions(1000, 1, 1000000);
+        touchSessions(1000, 4, 1000000);
+    }
+
+    public void testTouchManySessions() throws InterruptedException {
+        touchSessions(10000, 1, 1000000);
+        touchSessions(10000, 4, 1000000);
+    }
+
+    public void testTouchLotsOfSessions() throws InterruptedException {
+        touchSessions(50000, 1, 1000000);
+        touchSessions(50000, 4, 1000000);
+    }
+
+    public void testLongHashMap() {
+        ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>();
+        for (long i = 0; i < 10000; i++) {
+            assertNull(map.put(i << 40, i));
+        }
+        assertEquals(10000, map.size());
+        for (long i = 0; i < 10000; i += 2) {
+            assertEquals(Long.valueOf(i), map.remove(i << 40));
+        }
+        assertEquals(5000, map.size());
+        for (long i = 0; i < 10000; i++) {
+            assertEquals(i % 2 == 0 ? null : Long.valueOf(i), map.get(i << 40));
+        }
+        assertEquals(Long.valueOf(1), map.putIfAbsent(1L << 40, 7L));
+        assertEquals(5000, map.values().size());
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.zookeeper.AsyncZooKeeper;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooKeeperFuture;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+public class AsyncFutureTest extends ClientBase {
+    private static final String POOL_THREAD = "AsyncFutureTest-listener";
+
+    private ExecutorService newExecutor() {
+        return Executors.newFixedThreadPool(2, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, POOL_THREAD);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    @Test
+    public void testPipelinedCreates() throws Exception {
+        ZooKeeper zk = createClient();
+        ExecutorService executor = newExecutor();
+        AsyncZooKeeper async = new AsyncZooKeeper(zk, executor);
+
+        async.create("/futures", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT).get();
+        List<ZooKeeperFuture<String>> creates =
+            new ArrayList<ZooKeeperFuture<String>>();
+        for (int i = 0; i < 2000; i++) {
+            creates.add(async.create("/futures/n" + i, ("" + i).getBytes(),
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+        }
+        for (int i = 0; i < creates.size(); i++) {
+            assertEquals("/futures/n" + i, creates.get(i).get());
+        }
+
+        List<ZooKeeperFuture<byte[]>> reads =
+            new ArrayList<ZooKeeperFuture<byte[]>>();
+        for (int i = 0; i < 2000; i++) {
+            reads.add(async.getData("/futures/n" + i, false));
+        }
+        for (int i = 0; i < reads.size(); i++) {
+            assertEquals("" + i, new String(reads.get(i).get()));
+            assertEquals(0, reads.get(i).getStat().getVersion());
+        }
+        assertEquals(2000, async.getChildren("/futures", false).get().size());
+
+        Stat stat = async.setData("/futures/n0", "x".getBytes(), 0).get();
+        assertEquals(1, stat.getVersion());
+        async.delete("/futures/n0", 1).get();
+        assertNull(async.exists("/futures/n0", false).get());
+        async.sync("/futures").get(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        executor.shutdown();
+        zk.close();
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        ZooKeeper zk = createClient();
+        ExecutorService executor = newExecutor();
+        AsyncZooKeeper async = new AsyncZooKeeper(zk, executor);
+
+        ZooKeeperFuture<byte[]> f = async.getData("/missing", false);
+        try {
+            f.get();
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof KeeperException.NoNodeException);
+        }
+        assertEquals(KeeperException.Code.NoNode, f.getException().getCode());
+        assertTrue(f.isDone());
+        assertFalse(f.cancel(true));
+
+        async.create("/dup", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT).get();
+        try {
+            async.create("/dup", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT).get();
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof KeeperException.NodeExistsException);
+        }
+
+        executor.shutdown();
+        zk.close();
+    }
+
+    /**
+     * Listeners run on the executor, so a listener that blocks does not
+     * hold up the completion of later requests.
+     */
+    @Test
+    public void testListenersRunOnExecutor() throws Exception {
+        ZooKeeper zk = createClient();
+        ExecutorService executor = newExecutor();
+        AsyncZooKeeper async = new AsyncZooKeeper(zk, executor);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch ran = new CountDownLatch(2);
+        final AtomicReference<String> thread = new AtomicReference<String>();
+        ZooKeeperFuture<Stat> first = async.exists("/", false);
+        first.addListener(new Runnable() {
+            public void run() {
+                thread.set(Thread.currentThread().getName());
+                ran.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        ZooKeeperFuture<Stat> second = async.exists("/", false);
+        assertNotNull(second.get(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNotNull(first.get());
+
+        // a listener added after completion still runs on the executor
+        second.addListener(new Runnable() {
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(POOL_THREAD, thread.get());
+        release.countDown();
+
+        executor.shutdown();
+        zk.close();
+    }
+}
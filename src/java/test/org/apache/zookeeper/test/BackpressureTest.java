@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+public class BackpressureTest extends ClientBase {
+    private static class CountingCallback implements StatCallback {
+        final AtomicInteger ok = new AtomicInteger();
+        final AtomicInteger throttled = new AtomicInteger();
+        final CountDownLatch done;
+
+        CountingCallback(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        public void processResult(int rc, String path, Object ctx, Stat stat) {
+            if (rc == 0) {
+                ok.incrementAndGet();
+            } else if (rc == KeeperException.Code.Throttled) {
+                throttled.incrementAndGet();
+            }
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/bp", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.setMaxOutstandingRequests(10, false);
+
+        int count = 2000;
+        CountingCallback cb = new CountingCallback(count);
+        for (int i = 0; i < count; i++) {
+            zk.setData("/bp", new byte[100], -1, cb, null);
+            assertTrue(zk.getOutstandingRequests() <= 10);
+        }
+        assertTrue(cb.done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(count, cb.ok.get() + cb.throttled.get());
+        assertTrue(cb.throttled.get() > 0);
+        assertEquals(cb.throttled.get(), zk.getThrottledRequests());
+        assertEquals(0, zk.getOutstandingRequests());
+        assertEquals(cb.ok.get(), zk.exists("/bp", false).getVersion());
+
+        // without a limit nothing is throttled
+        zk.setMaxOutstandingRequests(0, false);
+        cb = new CountingCallback(count);
+        for (int i = 0; i < count; i++) {
+            zk.setData("/bp", new byte[100], -1, cb, null);
+        }
+        assertTrue(cb.done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(count, cb.ok.get());
+        zk.close();
+    }
+
+    @Test
+    public void testBlocking() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/bp", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.setMaxOutstandingRequests(5, true);
+
+        int count = 2000;
+        CountingCallback cb = new CountingCallback(count);
+        for (int i = 0; i < count; i++) {
+            zk.setData("/bp", new byte[100], -1, cb, null);
+            assertTrue(zk.getOutstandingRequests() <= 5);
+        }
+        assertTrue(cb.done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(count, cb.ok.get());
+        assertEquals(0, zk.getThrottledRequests());
+        assertEquals(0, zk.getOutstandingRequests());
+        assertTrue(zk.getMaxQueueDelay() >= zk.getAvgQueueDelay());
+
+        // synchronous calls take a slot too
+        assertEquals(count, zk.exists("/bp", false).getVersion());
+        assertEquals(0, zk.getOutstandingRequests());
+        zk.close();
+    }
+
+    /**
+     * Requests waiting for a slot fail with a connection loss when the
+     * connection is lost.
+     */
+    @Test
+    public void testBlockedRequestsReleasedOnDisconnect() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.setMaxOutstandingRequests(1, true);
+        stopServer();
+        int count = 3;
+        final AtomicInteger lost = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(count);
+        StatCallback cb = new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                if (rc == KeeperException.Code.ConnectionLoss) {
+                    lost.incrementAndGet();
+                }
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            zk.exists("/", false, cb, null);
+        }
+        assertTrue(done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(count, lost.get());
+        assertEquals(0, zk.getOutstandingRequests());
+        startServer();
+        zk.close();
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.ChildrenDataCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.ChildData;
+import org.junit.Test;
+
+public class ChildrenDataTest extends ClientBase {
+    private static final int CHILDREN = 500;
+
+    private ZooKeeper createMembers() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/members", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        for (int i = 0; i < CHILDREN; i++) {
+            zk.create("/members/m" + i, ("member " + i).getBytes(),
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        }
+        return zk;
+    }
+
+    private static List<String> names(List<ChildData> children) {
+        List<String> names = new ArrayList<String>();
+        for (ChildData child : children) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testChildrenWithData() throws Exception {
+        ZooKeeper zk = createMembers();
+        zk.setData("/members/m7", "updated".getBytes(), -1);
+
+        List<ChildData> children = zk.getChildrenData("/members", false, true);
+        assertEquals(CHILDREN, children.size());
+        List<String> expected = zk.getChildren("/members", false);
+        Collections.sort(expected);
+        assertEquals(expected, names(children));
+        for (ChildData child : children) {
+            String name = child.getName();
+            if (name.equals("m7")) {
+                assertEquals("updated", new String(child.getData()));
+                assertEquals(1, child.getStat().getVersion());
+            } else {
+                assertEquals("member " + name.substring(1), new String(child
+                        .getData()));
+                assertEquals(0, child.getStat().getVersion());
+            }
+            assertEquals(child.getData().length, child.getStat()
+                    .getDataLength());
+        }
+
+        children = zk.getChildrenData("/members", false, false);
+        assertEquals(CHILDREN, children.size());
+        for (ChildData child : children) {
+            assertNull(child.getData());
+            assertTrue(child.getStat().getDataLength() > 0);
+        }
+        zk.close();
+    }
+
+    @Test
+    public void testPages() throws Exception {
+        ZooKeeper zk = createMembers();
+        final List<ChildData> all = new ArrayList<ChildData>();
+        String startAfter = null;
+        int pages = 0;
+        do {
+            final CountDownLatch done = new CountDownLatch(1);
+            final String next[] = new String[1];
+            zk.getChildrenData("/members", false, true, startAfter, 1000,
+                    new ChildrenDataCallback() {
+                        public void processResult(int rc, String path,
+                                Object ctx, List<ChildData> children,
+                                String n) {
+                            assertEquals(0, rc);
+                            all.addAll(children);
+                            next[0] = n;
+                            done.countDown();
+                        }
+                    }, null);
+            assertTrue(done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+            startAfter = next[0];
+            pages++;
+        } while (startAfter != null);
+        assertTrue("only " + pages + " pages", pages > 10);
+        List<String> names = names(all);
+        assertEquals(CHILDREN, names.size());
+        List<String> sorted = new ArrayList<String>(names);
+        Collections.sort(sorted);
+        assertEquals(sorted, names);
+        zk.close();
+    }
+
+    @Test
+    public void testUnreadableChild() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/acl", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.create("/acl/open", "open".getBytes(), Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        List<ACL> writeOnly = new ArrayList<ACL>();
+        writeOnly.add(new ACL(ZooDefs.Perms.WRITE, Ids.ANYONE_ID_UNSAFE));
+        zk.create("/acl/secret", "secret".getBytes(), writeOnly,
+                CreateMode.PERSISTENT);
+
+        List<ChildData> children = zk.getChildrenData("/acl", false, true);
+        assertEquals(2, children.size());
+        assertEquals("open", new String(children.get(0).getData()));
+        assertEquals("secret", children.get(1).getName());
+        assertNull(children.get(1).getData());
+        assertEquals(6, children.get(1).getStat().getDataLength());
+        zk.close();
+    }
+
+    @Test
+    public void testWatchAndNoNode() throws Exception {
+        ZooKeeper zk = createMembers();
+        final CountDownLatch changed = new CountDownLatch(1);
+        zk.getChildrenData("/members", new Watcher() {
+            public void process(WatchedEvent event) {
+                if (event.getType() == Event.EventType.NodeChildrenChanged) {
+                    changed.countDown();
+                }
+            }
+        }, false);
+        zk.create("/members/new", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        assertTrue(changed.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+
+        try {
+            zk.getChildrenData("/missing", false, true);
+            fail("got the children of a missing node");
+        } catch (KeeperException.NoNodeException e) {
+            // expected
+        }
+        zk.close();
+    }
+}
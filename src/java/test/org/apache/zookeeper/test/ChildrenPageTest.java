@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.StringCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.junit.Test;
+
+public class ChildrenPageTest extends ClientBase {
+    private static final int CHILDREN = 2000;
+
+    private ZooKeeper createQueue() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/queue", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        final CountDownLatch created = new CountDownLatch(CHILDREN);
+        StringCallback cb = new StringCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    String name) {
+                assertEquals(0, rc);
+                created.countDown();
+            }
+        };
+        for (int i = 0; i < CHILDREN; i++) {
+            zk.create("/queue/item-", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT_SEQUENTIAL, cb, null);
+        }
+        assertTrue(created.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        return zk;
+    }
+
+    @Test
+    public void testPages() throws Exception {
+        ZooKeeper zk = createQueue();
+        List<String> all = new ArrayList<String>();
+        String startAfter = null;
+        List<String> page;
+        int pages = 0;
+        do {
+            page = zk.getChildren("/queue", false, startAfter, 300);
+            assertTrue(page.size() <= 300);
+            all.addAll(page);
+            if (page.size() > 0) {
+                startAfter = page.get(page.size() - 1);
+            }
+            pages++;
+        } while (page.size() == 300);
+        assertEquals(7, pages);
+        assertEquals(CHILDREN, all.size());
+        List<String> expected = zk.getChildren("/queue", false);
+        Collections.sort(expected);
+        assertEquals(expected, all);
+
+        // the start doesn't have to be a child
+        page = zk.getChildren("/queue", false, "item-0000000999x", 2);
+        assertEquals(2, page.size());
+        assertEquals("item-0000001000", page.get(0));
+        assertEquals("item-0000001001", page.get(1));
+        assertEquals(0, zk.getChildren("/queue", false, "zzz", 10).size());
+        zk.close();
+    }
+
+    @Test
+    public void testAsyncAndWatch() throws Exception {
+        ZooKeeper zk = createQueue();
+        final CountDownLatch changed = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> result = new ArrayList<String>();
+        zk.getChildren("/queue", new Watcher() {
+            public void process(WatchedEvent event) {
+                if (event.getType() == Event.EventType.NodeChildrenChanged) {
+                    changed.countDown();
+                }
+            }
+        }, "item-0000000010", 5, new ChildrenCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    List<String> children) {
+                assertEquals(0, rc);
+                result.addAll(children);
+                done.countDown();
+            }
+        }, null);
+        assertTrue(done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(5, result.size());
+        assertEquals("item-0000000011", result.get(0));
+
+        zk.delete("/queue/item-0000000000", -1);
+        assertTrue(changed.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        zk.close();
+    }
+
+    @Test
+    public void testBadArguments() throws Exception {
+        ZooKeeper zk = createClient();
+        try {
+            zk.getChildren("/", false, null, 0);
+            fail("a page of no children");
+        } catch (KeeperException.BadArgumentsException e) {
+            // expected
+        }
+        try {
+            zk.getChildren("/missing", false, null, 10);
+            fail("got the children of a missing node");
+        } catch (KeeperException.NoNodeException e) {
+            // expected
+        }
+        zk.close();
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.ClientCnxn;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+/**
+ * Reports the bytes allocated per request by the client, both by the thread
+ * issuing the requests and by the thread reading the responses.
+ */
+public class ClientAllocationPerfTest extends ClientBase {
+    private static final int WARMUP_OPS = 20000;
+    private static final int OPS = 100000;
+
+    private static class LatchCallback implements DataCallback {
+        final CountDownLatch latch;
+
+        LatchCallback(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        public void processResult(int rc, String path, Object ctx,
+                byte[] data, Stat stat) {
+            latch.countDown();
+        }
+    }
+
+    private static Thread findThread(String suffix) {
+        Thread threads[] = new Thread[Thread.activeCount() * 2];
+        int count = Thread.enumerate(threads);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].getName().endsWith(suffix)) {
+                return threads[i];
+            }
+        }
+        return null;
+    }
+
+    private static long allocatedBytes(ThreadMXBean bean, Thread t) {
+        return ((com.sun.management.ThreadMXBean) bean)
+                .getThreadAllocatedBytes(t.getId());
+    }
+
+    private void getData(ZooKeeper zk, int ops, int len) throws Exception {
+        LatchCallback cb = new LatchCallback(ops);
+        for (int i = 0; i < ops; i++) {
+            zk.getData("/alloc" + len, false, cb, null);
+        }
+        cb.latch.await();
+    }
+
+    private void measure(ZooKeeper zk, int len) throws Exception {
+        zk.create("/alloc" + len, new byte[len], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Thread sendThread = findThread("-SendThread");
+        getData(zk, WARMUP_OPS, len);
+
+        long callerStart = allocatedBytes(bean, Thread.currentThread());
+        long sendStart = allocatedBytes(bean, sendThread);
+        long start = System.nanoTime();
+        getData(zk, OPS, len);
+        long end = System.nanoTime();
+        long callerBytes = allocatedBytes(bean, Thread.currentThread())
+            - callerStart;
+        long sendBytes = allocatedBytes(bean, sendThread) - sendStart;
+        System.out.println("getData of " + len + " bytes: " + OPS
+                + " ops in " + (end - start) / 1000000L + " ms, "
+                + callerBytes / OPS + " bytes/op allocated by the caller, "
+                + sendBytes / OPS + " bytes/op by the send thread");
+    }
+
+    @Test
+    public void testGetDataAllocations() throws Exception {
+        if (!(ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean)) {
+            LOG.warn("Thread allocations are not available, skipping");
+            return;
+        }
+        // the debug messages of the client would be most of the garbage
+        Logger cnxnLog = Logger.getLogger(ClientCnxn.class);
+        Level level = cnxnLog.getLevel();
+        cnxnLog.setLevel(Level.INFO);
+        ZooKeeper zk = createClient();
+        try {
+            measure(zk, 10);
+            measure(zk, 1024);
+        } finally {
+            zk.close();
+            cnxnLog.setLevel(level);
+        }
+    }
+}
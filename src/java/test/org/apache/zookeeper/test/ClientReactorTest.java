@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.ClientReactor;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+public class ClientReactorTest extends ClientBase {
+    private static final Logger LOG = Logger.getLogger(ClientReactorTest.class);
+
+    private static final int HANDLES = 50;
+
+    private static int countThreads(String name) {
+        Thread threads[] = new Thread[Thread.activeCount() * 2];
+        int n = Thread.enumerate(threads);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (threads[i].getName().contains(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private ZooKeeper[] createClients(ClientReactor reactor,
+            CountdownWatcher watchers[]) throws Exception {
+        ZooKeeper zks[] = new ZooKeeper[watchers.length];
+        for (int i = 0; i < zks.length; i++) {
+            watchers[i] = new CountdownWatcher();
+            zks[i] = new ZooKeeper(hostPort, 9000, watchers[i], reactor);
+        }
+        for (int i = 0; i < zks.length; i++) {
+            assertTrue("handle " + i + " did not connect",
+                    watchers[i].clientConnected.await(CONNECTION_TIMEOUT,
+                            TimeUnit.MILLISECONDS));
+        }
+        return zks;
+    }
+
+    @Test
+    public void testManyHandles() throws Exception {
+        int sendThreads = countThreads("-SendThread");
+        int eventThreads = countThreads("-EventThread");
+        ClientReactor reactor = new ClientReactor(2, 2);
+        ZooKeeper zks[] = createClients(reactor,
+                new CountdownWatcher[HANDLES]);
+        assertEquals(HANDLES, reactor.getConnectionCount());
+        assertEquals(sendThreads, countThreads("-SendThread"));
+        assertEquals(eventThreads + 2, countThreads("-EventThread"));
+
+        zks[0].create("/reactor", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        final CountDownLatch watched = new CountDownLatch(HANDLES);
+        for (ZooKeeper zk : zks) {
+            zk.exists("/reactor", new Watcher() {
+                public void process(WatchedEvent event) {
+                    watched.countDown();
+                }
+            });
+        }
+
+        final CountDownLatch written = new CountDownLatch(HANDLES * 100);
+        StatCallback cb = new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                assertEquals(0, rc);
+                written.countDown();
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            for (ZooKeeper zk : zks) {
+                zk.setData("/reactor", new byte[10], -1, cb, null);
+            }
+        }
+        assertTrue(written.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(watched.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(HANDLES * 100,
+                zks[HANDLES - 1].exists("/reactor", false).getVersion());
+
+        for (ZooKeeper zk : zks) {
+            zk.close();
+        }
+        for (int i = 0; i < 50 && reactor.getConnectionCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, reactor.getConnectionCount());
+        reactor.shutdown();
+        assertEquals(eventThreads, countThreads("-EventThread"));
+    }
+
+    /**
+     * The handles of a reactor reconnect after the server restarts and
+     * still get the notifications for their watches.
+     */
+    @Test
+    public void testReconnect() throws Exception {
+        ClientReactor reactor = new ClientReactor(1, 1);
+        CountdownWatcher watchers[] = new CountdownWatcher[10];
+        ZooKeeper zks[] = createClients(reactor, watchers);
+        zks[0].create("/reconnect", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        final CountDownLatch watched = new CountDownLatch(zks.length);
+        for (ZooKeeper zk : zks) {
+            zk.getData("/reconnect", new Watcher() {
+                public void process(WatchedEvent event) {
+                    if (event.getType() == Event.EventType.NodeDataChanged) {
+                        watched.countDown();
+                    }
+                }
+            }, null);
+        }
+
+        LOG.info("Restarting the server");
+        stopServer();
+        for (CountdownWatcher watcher : watchers) {
+            watcher.waitForDisconnected(CONNECTION_TIMEOUT);
+        }
+        startServer();
+        for (CountdownWatcher watcher : watchers) {
+            watcher.waitForConnected(CONNECTION_TIMEOUT);
+        }
+
+        zks[0].setData("/reconnect", new byte[1], -1);
+        assertTrue(watched.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        for (ZooKeeper zk : zks) {
+            zk.close();
+        }
+        reactor.shutdown();
+    }
+
+    /**
+     * A watcher or callback of one handle that throws doesn't stop the
+     * delivery to the other handles sharing its event thread.
+     */
+    @Test
+    public void testThrowingWatcher() throws Exception {
+        ClientReactor reactor = new ClientReactor(1, 1);
+        ZooKeeper zks[] = createClients(reactor, new CountdownWatcher[2]);
+        zks[0].create("/throwing", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zks[0].exists("/throwing", new Watcher() {
+            public void process(WatchedEvent event) {
+                throw new RuntimeException("thrown by a watcher");
+            }
+        });
+        zks[0].exists("/throwing", false, new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                throw new RuntimeException("thrown by a callback");
+            }
+        }, null);
+        zks[0].setData("/throwing", new byte[1], -1);
+
+        final CountDownLatch delivered = new CountDownLatch(2);
+        zks[1].exists("/throwing", new Watcher() {
+            public void process(WatchedEvent event) {
+                delivered.countDown();
+            }
+        });
+        zks[1].exists("/throwing", false, new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                delivered.countDown();
+            }
+        }, null);
+        zks[1].setData("/throwing", new byte[2], -1);
+        assertTrue(delivered.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        for (ZooKeeper zk : zks) {
+            zk.close();
+        }
+        reactor.shutdown();
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jute.BinaryInputArchive;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.DataCompression;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.ChildData;
+import org.apache.zookeeper.data.NewNode;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+public class CompressionTest extends ClientBase {
+    /**
+     * A JSON config of the given length.
+     */
+    private static byte[] config(int length) {
+        StringBuilder sb = new StringBuilder("{\n");
+        for (int i = 0; sb.length() < length - 2; i++) {
+            sb.append("  \"service" + i + "\": { \"host\": \"10.0.0." + i % 250
+                    + "\", \"port\": " + (8000 + i % 100)
+                    + ", \"enabled\": true },\n");
+        }
+        sb.setLength(length - 2);
+        return sb.append("\n}").toString().getBytes();
+    }
+
+    private int storedLength(String path) throws Exception {
+        return serverFactory.getZooKeeperServer().dataTree.getData(path,
+                new Stat(), null).length;
+    }
+
+    @Test
+    public void testTransparentCompression() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.setDataCompression(new DataCompression(1024));
+        ZooKeeper plain = createClient();
+
+        // larger than the server accepts uncompressed
+        byte config[] = config(BinaryInputArchive.maxBuffer + 1000);
+        zk.create("/config", config, Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        int stored = storedLength("/config");
+        LOG.info("Stored " + config.length + " bytes of config in " + stored);
+        assertTrue(stored < config.length / 4);
+        assertTrue(Arrays.equals(config, zk.getData("/config", false, null)));
+        // clients without compression read what is stored
+        assertEquals(stored, plain.getData("/config", false, null).length);
+
+        byte small[] = "small".getBytes();
+        zk.setData("/config", small, -1);
+        assertEquals(small.length, storedLength("/config"));
+        assertTrue(Arrays.equals(small, plain.getData("/config", false, null)));
+
+        config = config(10000);
+        zk.setData("/config", config, -1);
+        final byte read[][] = new byte[1][];
+        final CountDownLatch latch = new CountDownLatch(1);
+        zk.getData("/config", false, new DataCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    byte[] data, Stat stat) {
+                read[0] = data;
+                latch.countDown();
+            }
+        }, null);
+        assertTrue(latch.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(Arrays.equals(config, read[0]));
+
+        List<ChildData> children = zk.getChildrenData("/", false, true);
+        boolean found = false;
+        for (ChildData child : children) {
+            if (child.getName().equals("config")) {
+                assertTrue(Arrays.equals(config, child.getData()));
+                found = true;
+            }
+        }
+        assertTrue(found);
+
+        // the data a plain client wrote is read as it is
+        plain.setData("/config", config, -1);
+        assertTrue(Arrays.equals(config, zk.getData("/config", false, null)));
+        plain.close();
+        zk.close();
+    }
+
+    @Test
+    public void testCreateTreeCompressed() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.setDataCompression(new DataCompression(1024));
+        byte config[] = config(50000);
+        List<NewNode> nodes = new ArrayList<NewNode>();
+        nodes.add(new NewNode("/configs", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT.toFlag()));
+        for (int i = 0; i < 10; i++) {
+            nodes.add(new NewNode("/configs/" + i, config,
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT.toFlag()));
+        }
+        zk.createTree(nodes, null);
+        // the nodes of the caller are left alone
+        assertSame(config, nodes.get(1).getData());
+        assertTrue(storedLength("/configs/9") < config.length / 4);
+        assertTrue(Arrays.equals(config, zk.getData("/configs/9", false,
+                null)));
+        zk.close();
+    }
+
+    /**
+     * The stat read along with the data gives the decompressed length, also
+     * when the data comes from the read cache or a notification.
+     */
+    @Test
+    public void testDecompressedStat() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.setDataCompression(new DataCompression(1024));
+        zk.enableReadCache(10);
+        zk.setNotificationData(10000);
+        byte config[] = config(20000);
+        zk.create("/stat", config, Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        int stored = storedLength("/stat");
+        assertTrue(stored < config.length);
+
+        final LinkedBlockingQueue<WatchedEvent> events =
+            new LinkedBlockingQueue<WatchedEvent>();
+        Watcher watcher = new Watcher() {
+            public void process(WatchedEvent event) {
+                events.add(event);
+            }
+        };
+        Stat stat = new Stat();
+        assertTrue(Arrays.equals(config, zk.getData("/stat", watcher, stat)));
+        assertEquals(config.length, stat.getDataLength());
+        // served by the read cache
+        stat = new Stat();
+        assertTrue(Arrays.equals(config, zk.getData("/stat", watcher, stat)));
+        assertEquals(config.length, stat.getDataLength());
+        assertEquals(1, zk.getReadCache().getHits());
+        // the stats of other calls give the stored length
+        assertEquals(stored, zk.exists("/stat", false).getDataLength());
+
+        config = config(30000);
+        zk.setData("/stat", config, -1);
+        WatchedEvent event = events.poll(CONNECTION_TIMEOUT,
+                TimeUnit.MILLISECONDS);
+        assertEquals(Watcher.Event.EventType.NodeDataChanged, event
+                .getType());
+        assertTrue(Arrays.equals(config, event.getData()));
+        assertEquals(config.length, event.getStat().getDataLength());
+        zk.close();
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+/**
+ * Compares a contended counter incremented on the server with one
+ * incremented by the clients with getData and a versioned setData.
+ */
+public class CounterPerfTest extends ClientBase {
+    private static final int THREADS = 8;
+    private static final int OPS = 250;
+
+    private abstract class Incrementer extends Thread {
+        final ZooKeeper zk;
+
+        Exception failure;
+
+        Incrementer() throws Exception {
+            zk = createClient();
+        }
+
+        abstract void increment() throws Exception;
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < OPS; i++) {
+                    increment();
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void measure(String name, Incrementer threads[],
+            AtomicInteger retries) throws Exception {
+        long start = System.nanoTime();
+        for (Incrementer t : threads) {
+            t.start();
+        }
+        for (Incrementer t : threads) {
+            t.join();
+            t.zk.close();
+            if (t.failure != null) {
+                throw t.failure;
+            }
+        }
+        long ms = (System.nanoTime() - start) / 1000000L;
+        System.out.println(name + ": " + THREADS * OPS + " increments by "
+                + THREADS + " clients in " + ms + " ms, "
+                + (THREADS * OPS * 1000L / Math.max(ms, 1)) + " ops/s, "
+                + retries.get() + " retries");
+    }
+
+    private long get(String path) throws Exception {
+        ZooKeeper zk = createClient();
+        try {
+            return ByteBuffer.wrap(zk.getData(path, false, null)).getLong();
+        } finally {
+            zk.close();
+        }
+    }
+
+    @Test
+    public void testContendedCounter() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/cas", new byte[8], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.create("/increment", new byte[8], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.close();
+
+        final AtomicInteger casRetries = new AtomicInteger();
+        Incrementer threads[] = new Incrementer[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Incrementer() {
+                void increment() throws Exception {
+                    Stat stat = new Stat();
+                    while (true) {
+                        long value = ByteBuffer.wrap(
+                                zk.getData("/cas", false, stat)).getLong();
+                        try {
+                            zk.setData("/cas", ByteBuffer.allocate(8)
+                                    .putLong(value + 1).array(), stat
+                                    .getVersion());
+                            return;
+                        } catch (KeeperException.BadVersionException e) {
+                            casRetries.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+        measure("getData/setData", threads, casRetries);
+        assertEquals(THREADS * OPS, get("/cas"));
+
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Incrementer() {
+                void increment() throws Exception {
+                    zk.increment("/increment", 1);
+                }
+            };
+        }
+        measure("increment", threads, new AtomicInteger());
+        assertEquals(THREADS * OPS, get("/increment"));
+    }
+}
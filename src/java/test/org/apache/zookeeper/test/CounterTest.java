@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.CounterCallback;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+public class CounterTest extends ClientBase {
+    private static class Counted implements CounterCallback {
+        final CountDownLatch latch;
+
+        long last = Long.MIN_VALUE;
+
+        int errors;
+
+        Counted(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        public void processResult(int rc, String path, Object ctx,
+                long value, Stat stat) {
+            if (rc != Code.Ok) {
+                errors++;
+            } else if (value <= last) {
+                // the replies of a session come back in order
+                errors++;
+            }
+            last = value;
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void testIncrement() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/counter", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        assertEquals(5, zk.increment("/counter", 5));
+        assertEquals(3, zk.increment("/counter", -2));
+        Stat stat = new Stat();
+        byte data[] = zk.getData("/counter", false, stat);
+        assertEquals(3, ByteBuffer.wrap(data).getLong());
+        assertEquals(2, stat.getVersion());
+
+        // a counter set by the client
+        zk.setData("/counter", ByteBuffer.allocate(8).putLong(
+                Long.MAX_VALUE - 1).array(), -1);
+        assertEquals(Long.MAX_VALUE, zk.increment("/counter", 1));
+
+        final CountDownLatch changed = new CountDownLatch(1);
+        zk.getData("/counter", new Watcher() {
+            public void process(WatchedEvent event) {
+                if (event.getType() == Event.EventType.NodeDataChanged) {
+                    changed.countDown();
+                }
+            }
+        }, null);
+        zk.increment("/counter", 0);
+        assertTrue(changed.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+
+        zk.create("/notcounter", "text".getBytes(), Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        try {
+            zk.increment("/notcounter", 1);
+            fail("incremented text");
+        } catch (KeeperException.BadArgumentsException e) {
+            // expected
+        }
+        try {
+            zk.increment("/missing", 1);
+            fail("incremented a missing node");
+        } catch (KeeperException.NoNodeException e) {
+            // expected
+        }
+        zk.close();
+    }
+
+    /**
+     * Increments pipelined by several clients, interleaved with changes to
+     * the counter node, are all applied.
+     */
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        final int clients = 4;
+        final int ops = 500;
+        ZooKeeper zks[] = new ZooKeeper[clients];
+        for (int i = 0; i < clients; i++) {
+            zks[i] = createClient();
+        }
+        zks[0].create("/concurrent", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        Counted counted[] = new Counted[clients];
+        for (int i = 0; i < clients; i++) {
+            counted[i] = new Counted(ops);
+        }
+        for (int j = 0; j < ops; j++) {
+            for (int i = 0; i < clients; i++) {
+                zks[i].increment("/concurrent", 1, counted[i], null);
+            }
+            if (j % 50 == 0) {
+                // changes the counter node under the pending increments
+                zks[0].create("/concurrent/child" + j, new byte[0],
+                        Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            }
+        }
+        for (int i = 0; i < clients; i++) {
+            assertTrue(counted[i].latch.await(CONNECTION_TIMEOUT,
+                    TimeUnit.MILLISECONDS));
+            assertEquals(0, counted[i].errors);
+        }
+        Stat stat = new Stat();
+        byte data[] = zks[0].getData("/concurrent", false, stat);
+        assertEquals(clients * ops, ByteBuffer.wrap(data).getLong());
+        assertEquals(clients * ops, stat.getVersion());
+        for (int i = 0; i < clients; i++) {
+            zks[i].close();
+        }
+    }
+
+    /**
+     * Increments are logged as plain setData txns.
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/recover", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        for (int i = 0; i < 10; i++) {
+            zk.increment("/recover", 2);
+        }
+        zk.close();
+
+        stopServer();
+        startServer();
+        zk = createClient();
+        assertEquals(21, zk.increment("/recover", 1));
+        zk.close();
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Delivery of events and callbacks by several event threads.
+ */
+public class EventDispatchTest extends ClientBase {
+    @Before
+    @Override
+    protected void setUp() throws Exception {
+        System.setProperty("zookeeper.eventThreads", "4");
+        super.setUp();
+    }
+
+    @After
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        System.clearProperty("zookeeper.eventThreads");
+    }
+
+    /**
+     * The callbacks for a path are delivered in the order the requests were
+     * issued, even when callbacks of many paths are interleaved.
+     */
+    @Test
+    public void testOrderedPerPath() throws Exception {
+        ZooKeeper zk = createClient();
+        final int paths = 10;
+        final int writes = 200;
+        for (int i = 0; i < paths; i++) {
+            zk.create("/order" + i, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT);
+        }
+        final Map<String, List<Integer>> versions =
+            new HashMap<String, List<Integer>>();
+        for (int i = 0; i < paths; i++) {
+            versions.put("/order" + i,
+                    Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch done = new CountDownLatch(paths * writes);
+        StatCallback cb = new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                versions.get(path).add(stat.getVersion());
+                done.countDown();
+            }
+        };
+        for (int w = 0; w < writes; w++) {
+            for (int i = 0; i < paths; i++) {
+                zk.setData("/order" + i, new byte[0], -1, cb, null);
+            }
+        }
+        assertTrue(done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        for (List<Integer> v : versions.values()) {
+            assertEquals(writes, v.size());
+            for (int w = 0; w < writes; w++) {
+                assertEquals(w + 1, v.get(w).intValue());
+            }
+        }
+        zk.close();
+    }
+
+    /**
+     * A watcher that blocks only holds up the events and callbacks of paths
+     * delivered by the same thread.
+     */
+    @Test
+    public void testSlowWatcherDoesNotBlockOtherPaths() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/slow", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        zk.exists("/slow", new Watcher() {
+            public void process(WatchedEvent event) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        zk.setData("/slow", new byte[0], -1);
+        assertTrue(blocked.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+
+        // some of the paths go to other threads than /slow
+        final AtomicInteger completed = new AtomicInteger();
+        StatCallback cb = new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                completed.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < 16; i++) {
+            zk.exists("/other" + i, false, cb, null);
+        }
+        for (int i = 0; i < 100 && completed.get() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(completed.get() > 0);
+        int queued = 16 - completed.get();
+        assertTrue(zk.getEventQueueDepth() <= queued);
+
+        Thread.sleep(100);
+        release.countDown();
+        for (int i = 0; i < 100 && completed.get() < 16; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(16, completed.get());
+        assertEquals(0, zk.getEventQueueDepth());
+        if (queued > 0) {
+            assertTrue(zk.getMaxEventDispatchLatency() >= 100);
+        }
+        zk.close();
+    }
+
+    /**
+     * A disconnect is delivered after the callbacks that were queued before
+     * it, whichever thread they were assigned to.
+     */
+    @Test
+    public void testStateChangeAfterCallbacks() throws Exception {
+        final List<String> seen =
+            Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        ZooKeeper zk = createClient(new CountdownWatcher() {
+            @Override
+            public synchronized void process(WatchedEvent event) {
+                super.process(event);
+                if (event.getState() == Event.KeeperState.Disconnected) {
+                    seen.add("disconnected");
+                    disconnected.countDown();
+                }
+            }
+        }, hostPort);
+        StatCallback cb = new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                }
+                seen.add(path);
+            }
+        };
+        for (int i = 0; i < 20; i++) {
+            zk.exists("/state" + i, false, cb, null);
+        }
+        zk.exists("/", false);
+        stopServer();
+        assertTrue(disconnected.await(CONNECTION_TIMEOUT,
+                TimeUnit.MILLISECONDS));
+        assertEquals(21, seen.size());
+        assertEquals("disconnected", seen.get(20));
+        startServer();
+        zk.close();
+    }
+
+    /**
+     * A default watcher that throws on a state change doesn't stop the event
+     * threads waiting for it to be delivered.
+     */
+    @Test
+    public void testThrowingWatcher() throws Exception {
+        CountdownWatcher watcher = new CountdownWatcher() {
+            @Override
+            public synchronized void process(WatchedEvent event) {
+                super.process(event);
+                throw new RuntimeException("thrown by a watcher");
+            }
+        };
+        ZooKeeper zk = createClient(watcher, hostPort);
+        stopServer();
+        watcher.waitForDisconnected(CONNECTION_TIMEOUT);
+        startServer();
+        watcher.waitForConnected(CONNECTION_TIMEOUT);
+
+        final CountDownLatch done = new CountDownLatch(16);
+        StatCallback cb = new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < 16; i++) {
+            zk.exists("/throwing" + i, false, cb, null);
+        }
+        assertTrue(done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        zk.close();
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+public class GetDataIfChangedTest extends ClientBase {
+    @Test
+    public void testUnchangedLeftOut() throws Exception {
+        ZooKeeper zk = createClient();
+        byte config[] = new byte[200 * 1024];
+        Arrays.fill(config, (byte) 'c');
+        zk.create("/config", config, Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        Stat stat = new Stat();
+        byte data[] = zk.getDataIfChanged("/config", false, -1, stat);
+        assertTrue(Arrays.equals(config, data));
+
+        Stat again = new Stat();
+        assertNull(zk.getDataIfChanged("/config", false, stat.getMzxid(),
+                again));
+        assertEquals(stat, again);
+
+        zk.setData("/config", "new".getBytes(), -1);
+        data = zk.getDataIfChanged("/config", false, stat.getMzxid(), again);
+        assertEquals("new", new String(data));
+        assertEquals(1, again.getVersion());
+
+        // created again, the version is the same but it is another node
+        zk.delete("/config", -1);
+        zk.create("/config", "new".getBytes(), Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        data = zk.getDataIfChanged("/config", false, again.getMzxid(), stat);
+        assertEquals("new", new String(data));
+        assertEquals(0, stat.getVersion());
+
+        try {
+            zk.getDataIfChanged("/missing", false, -1, stat);
+            fail("read a missing node");
+        } catch (KeeperException.NoNodeException e) {
+            // expected
+        }
+        zk.close();
+    }
+
+    @Test
+    public void testAsyncAndWatch() throws Exception {
+        ZooKeeper zk = createClient();
+        Stat stat = zk.setData("/", "root".getBytes(), -1);
+        final CountDownLatch changed = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final byte result[][] = new byte[1][];
+        final Stat resultStat[] = new Stat[1];
+        zk.getDataIfChanged("/", new Watcher() {
+            public void process(WatchedEvent event) {
+                if (event.getType() == Event.EventType.NodeDataChanged) {
+                    changed.countDown();
+                }
+            }
+        }, stat.getMzxid(), new DataCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    byte[] data, Stat stat) {
+                assertEquals(0, rc);
+                result[0] = data;
+                resultStat[0] = stat;
+                done.countDown();
+            }
+        }, null);
+        assertTrue(done.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(result[0]);
+        assertEquals(stat.getMzxid(), resultStat[0].getMzxid());
+
+        zk.setData("/", new byte[0], -1);
+        assertTrue(changed.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        zk.close();
+    }
+}
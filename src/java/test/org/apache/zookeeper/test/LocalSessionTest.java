@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.apache.jute.BinaryOutputArchive;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.proto.CreateRequest;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.apache.zookeeper.server.quorum.QuorumPeer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the quorum tests with local sessions enabled.
+ */
+public class LocalSessionTest extends QuorumTest {
+    @Before
+    @Override
+    protected void setUp() throws Exception {
+        System.setProperty("zookeeper.localSessionsEnabled", "yes");
+        super.setUp();
+    }
+
+    @After
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        System.clearProperty("zookeeper.localSessionsEnabled");
+    }
+
+    private long lastProcessedZxid() {
+        QuorumPeer qps[] = new QuorumPeer[] { s1, s2, s3, s4, s5 };
+        long zxid = 0;
+        for (QuorumPeer qp : qps) {
+            zxid = Math.max(zxid,
+                    qp.getActiveServer().dataTree.lastProcessedZxid);
+        }
+        return zxid;
+    }
+
+    /**
+     * Opening and closing sessions that only read should not generate any
+     * transaction.
+     */
+    @Test
+    public void testLocalSessionsNotReplicated() throws Exception {
+        long zxid = lastProcessedZxid();
+        for (String hp : hostPort.split(",")) {
+            ZooKeeper zk = createClient(hp);
+            assertNotNull(zk.exists("/", false));
+            zk.close();
+        }
+        assertEquals(zxid, lastProcessedZxid());
+    }
+
+    /**
+     * A local session is upgraded when it creates an ephemeral node, the
+     * node has to go away with the session on every server.
+     */
+    @Test
+    public void testEphemeralUpgradesSession() throws Exception {
+        ZooKeeper observer = createClient();
+        for (String hp : hostPort.split(",")) {
+            String path = "/ephemeral-" + hp.substring(hp.indexOf(':') + 1);
+            ZooKeeper zk = createClient(hp);
+            zk.create(path, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.EPHEMERAL);
+            assertNotNull(zk.exists(path, false));
+            zk.close();
+
+            for (int i = 0; i < 50 && observer.exists(path, false) != null; i++) {
+                Thread.sleep(100);
+            }
+            assertNull(observer.exists(path, false));
+        }
+        observer.close();
+    }
+
+    /**
+     * The leader refuses the writes of a session it doesn't track, like
+     * those a follower forwards for a session that already expired, so that
+     * no ephemeral node is left without an owner.
+     */
+    @Test
+    public void testExpiredSessionThroughFollower() throws Exception {
+        QuorumPeer qps[] = new QuorumPeer[] { s1, s2, s3, s4, s5 };
+        QuorumPeer follower = null;
+        String followerHostPort = null;
+        for (int i = 0; i < qps.length; i++) {
+            if (qps[i].getPeerState() == QuorumPeer.ServerState.FOLLOWING) {
+                follower = qps[i];
+                followerHostPort = "127.0.0.1:" + (2181 + i);
+            }
+        }
+        ZooKeeper zk = createClient(followerHostPort);
+        // upgraded to a global session, and closed on the leader
+        zk.create("/owned", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.EPHEMERAL);
+        long sessionId = zk.getSessionId();
+        zk.close();
+
+        CreateRequest createRequest = new CreateRequest("/orphan",
+                new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL
+                        .toFlag());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        createRequest.serialize(BinaryOutputArchive.getArchive(baos),
+                "request");
+        ZooKeeperServer zks = follower.getActiveServer();
+        zks.submitRequest(null, sessionId, OpCode.create, 1, ByteBuffer
+                .wrap(baos.toByteArray()), new ArrayList<Id>());
+
+        // committed after the create of the expired session
+        ZooKeeper observer = createClient(followerHostPort);
+        observer.create("/after", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        assertNull(observer.exists("/orphan", false));
+        assertTrue(zks.dataTree.getEphemerals(sessionId).isEmpty());
+        observer.close();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.junit.Test;
+
+public class NotificationDataTest extends ClientBase {
+    private static class QueueWatcher implements Watcher {
+        final BlockingQueue<WatchedEvent> events =
+            new LinkedBlockingQueue<WatchedEvent>();
+
+        public void process(WatchedEvent event) {
+            if (event.getType() != EventType.None) {
+                events.add(event);
+            }
+        }
+
+        WatchedEvent next(EventType type) throws InterruptedException {
+            WatchedEvent event = events.poll(CONNECTION_TIMEOUT,
+                    TimeUnit.MILLISECONDS);
+            assertNotNull("no " + type, event);
+            assertEquals(type, event.getType());
+            return event;
+        }
+    }
+
+    @Test
+    public void testDataCarried() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.setNotificationData(10);
+        QueueWatcher watcher = new QueueWatcher();
+
+        assertNull(zk.exists("/node", watcher));
+        zk.create("/node", "new".getBytes(), Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        WatchedEvent event = watcher.next(EventType.NodeCreated);
+        assertEquals("new", new String(event.getData()));
+        assertEquals(0, event.getStat().getVersion());
+
+        zk.getData("/node", watcher, null);
+        zk.setData("/node", "changed".getBytes(), -1);
+        event = watcher.next(EventType.NodeDataChanged);
+        assertEquals("changed", new String(event.getData()));
+        assertEquals(1, event.getStat().getVersion());
+        assertEquals(7, event.getStat().getDataLength());
+
+        // too large, only the stat
+        zk.getData("/node", watcher, null);
+        zk.setData("/node", new byte[11], -1);
+        event = watcher.next(EventType.NodeDataChanged);
+        assertNull(event.getData());
+        assertEquals(2, event.getStat().getVersion());
+
+        zk.getChildren("/node", watcher);
+        zk.create("/node/child", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        event = watcher.next(EventType.NodeChildrenChanged);
+        assertNull(event.getData());
+        assertEquals(1, event.getStat().getCversion());
+
+        zk.exists("/node/child", watcher);
+        zk.delete("/node/child", -1);
+        event = watcher.next(EventType.NodeDeleted);
+        assertNull(event.getStat());
+
+        // back to plain notifications
+        zk.setNotificationData(-1);
+        zk.getData("/node", watcher, null);
+        zk.setData("/node", new byte[1], -1);
+        event = watcher.next(EventType.NodeDataChanged);
+        assertNull(event.getStat());
+        assertNull(event.getData());
+        zk.close();
+    }
+
+    @Test
+    public void testNotReadable() throws Exception {
+        ZooKeeper owner = createClient();
+        owner.addAuthInfo("digest", "ben:passwd".getBytes());
+        owner.create("/secret", new byte[0], Ids.CREATOR_ALL_ACL,
+                CreateMode.PERSISTENT);
+        ZooKeeper zk = createClient();
+        zk.setNotificationData(100);
+        QueueWatcher watcher = new QueueWatcher();
+        zk.exists("/secret", watcher);
+        owner.setData("/secret", "hidden".getBytes(), -1);
+        WatchedEvent event = watcher.next(EventType.NodeDataChanged);
+        assertNull(event.getStat());
+        assertNull(event.getData());
+        zk.close();
+        owner.close();
+    }
+
+    @Test
+    public void testKeptOnReconnect() throws Exception {
+        CountdownWatcher connection = new CountdownWatcher();
+        ZooKeeper zk = createClient(connection, hostPort);
+        zk.setNotificationData(100);
+        zk.create("/reconnect", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        QueueWatcher watcher = new QueueWatcher();
+        zk.getData("/reconnect", watcher, null);
+
+        stopServer();
+        connection.waitForDisconnected(CONNECTION_TIMEOUT);
+        startServer();
+        connection.waitForConnected(CONNECTION_TIMEOUT);
+        zk.exists("/reconnect", false);
+
+        ZooKeeper other = createClient();
+        other.setData("/reconnect", "again".getBytes(), -1);
+        WatchedEvent event = watcher.next(EventType.NodeDataChanged);
+        assertTrue(Arrays.equals("again".getBytes(), event.getData()));
+        other.close();
+        zk.close();
+    }
+}
@@ -21,10 +21,23 @@ package org.apache.zookeeper.test;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
+import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.StatCallback;
+import org.apache.zookeeper.AsyncCallback.VoidCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.NewNode;
+import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.server.ZooKeeperServer;
 import org.apache.zookeeper.server.quorum.QuorumPeer;
 import org.apache.zookeeper.server.quorum.QuorumStats;
 import org.apache.zookeeper.server.quorum.QuorumPeer.QuorumServer;
@@ -181,5 +194,193 @@ public class QuorumTest extends ClientBase {
         ct.testMutipleWatcherObjs();
     }
 
+    /**
+     * A client sees the writes of a client of another server once it waited
+     * for their zxid.
+     */
+    @Test
+    public void testAwaitZxid() throws Exception {
+        QuorumPeer peers[] = { s1, s2, s3, s4, s5 };
+        String leaderHostPort = null;
+        String followerHostPort = null;
+        for (int i = 0; i < peers.length; i++) {
+            if (peers[i].getPeerState() == QuorumPeer.ServerState.LEADING) {
+                leaderHostPort = "127.0.0.1:" + (2181 + i);
+            } else {
+                followerHostPort = "127.0.0.1:" + (2181 + i);
+            }
+        }
+        ZooKeeper writer = createClient(leaderHostPort);
+        // a follower, which waits for zxids it has not seen yet
+        ZooKeeper reader = createClient(followerHostPort);
+        writer.create("/await", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        for (int i = 0; i < 50; i++) {
+            writer.setData("/await", Integer.toString(i).getBytes(), -1);
+            reader.awaitZxid(writer.getLastZxid(), null, null);
+            Stat stat = new Stat();
+            byte data[] = reader.getData("/await", false, stat);
+            assertEquals(Integer.toString(i), new String(data));
+            assertEquals(writer.getLastZxid(), stat.getMzxid());
+        }
+        assertTrue(reader.getLastZxid() >= writer.getLastZxid());
+
+        // a zxid that is never reached
+        long start = System.currentTimeMillis();
+        try {
+            reader.awaitZxid(writer.getLastZxid() + 1000000);
+            fail("waited for a zxid that was never committed");
+        } catch (KeeperException.OperationTimeoutException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < CONNECTION_TIMEOUT);
+        // the server goes on
+        reader.awaitZxid(writer.getLastZxid());
+
+        // the writes queued behind a waiting request go through as well
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        reader.awaitZxid(writer.getLastZxid() + 1000000, new VoidCallback() {
+            public void processResult(int rc, String path, Object ctx) {
+                if (rc == KeeperException.Code.OperationTimeout) {
+                    timedOut.countDown();
+                }
+            }
+        }, null);
+        reader.setData("/await", new byte[1], -1);
+        assertTrue(timedOut.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(1, reader.getData("/await", false, null).length);
+
+        // the requests of other sessions on the server go on meanwhile
+        ZooKeeper other = createClient(followerHostPort);
+        final CountDownLatch waited = new CountDownLatch(1);
+        reader.awaitZxid(writer.getLastZxid() + 1000000, new VoidCallback() {
+            public void processResult(int rc, String path, Object ctx) {
+                waited.countDown();
+            }
+        }, null);
+        for (int i = 0; i < 20; i++) {
+            other.setData("/await", new byte[i], -1);
+            writer.setData("/await", new byte[i], -1);
+        }
+        assertEquals(19, other.getData("/await", false, null).length);
+        assertEquals(1, waited.getCount());
+        assertTrue(waited.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        other.close();
+
+        // zxids that were never proposed are not waited for
+        start = System.currentTimeMillis();
+        try {
+            reader.awaitZxid(Long.MAX_VALUE);
+            fail("waited for a zxid of a later epoch");
+        } catch (KeeperException.BadArgumentsException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start
+                < ZooKeeperServer.getAwaitZxidTimeout());
+        // the leader knows which zxids it proposed
+        try {
+            writer.awaitZxid(writer.getLastZxid() + 1000);
+            fail("waited for a zxid the leader never proposed");
+        } catch (KeeperException.BadArgumentsException e) {
+            // expected
+        }
+        reader.close();
+        writer.close();
+    }
+
+    /**
+     * The syncs a follower gets while one is out to the leader are answered
+     * together, also when writes are queued in between.
+     */
+    @Test
+    public void testSyncBatching() throws Exception {
+        QuorumPeer peers[] = { s1, s2, s3, s4, s5 };
+        int port = 0;
+        for (int i = 0; i < peers.length; i++) {
+            if (peers[i].follower != null) {
+                port = 2181 + i;
+                break;
+            }
+        }
+        ZooKeeper zk = createClient("127.0.0.1:" + port);
+        zk.create("/sync", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        QuorumStats stats = QuorumStats.getInstance();
+        stats.resetSyncLatency();
+
+        final int count = 200;
+        final CountDownLatch synced = new CountDownLatch(count);
+        VoidCallback cb = new VoidCallback() {
+            public void processResult(int rc, String path, Object ctx) {
+                if (rc == KeeperException.Code.Ok) {
+                    synced.countDown();
+                }
+            }
+        };
+        final CountDownLatch written = new CountDownLatch(count / 20);
+        StatCallback scb = new StatCallback() {
+            public void processResult(int rc, String path, Object ctx,
+                    Stat stat) {
+                if (rc == KeeperException.Code.Ok) {
+                    written.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            zk.sync("/sync", cb, null);
+            if (i % 20 == 0) {
+                zk.setData("/sync", new byte[i / 20], -1, scb, null);
+            }
+        }
+        assertTrue(synced.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(written.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(count / 20 - 1, zk.getData("/sync", false, null).length);
+        assertEquals(count, stats.getSyncCount());
+        assertTrue(stats.getSyncRoundTrips() < count);
+        LOG.info(count + " syncs took " + stats.getSyncRoundTrips()
+                + " round trips");
+        zk.close();
+    }
+
+    @Test
+    public void testTreeOps() throws Exception {
+        ZooKeeper zk = createClient("127.0.0.1:2182");
+        ZooKeeper other = createClient("127.0.0.1:2184");
+        List<NewNode> nodes = new ArrayList<NewNode>();
+        nodes.add(new NewNode("/tree", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT.toFlag()));
+        for (int i = 0; i < 100; i++) {
+            nodes.add(new NewNode("/tree/" + i, new byte[1],
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT.toFlag()));
+        }
+        zk.createTree(nodes, null);
+        other.awaitZxid(zk.getLastZxid());
+        assertEquals(100, other.getChildren("/tree", false).size());
+        assertEquals(101, zk.deleteTree("/tree", null));
+        other.awaitZxid(zk.getLastZxid());
+        assertNull(other.exists("/tree", false));
+        other.close();
+        zk.close();
+    }
+
+    @Test
+    public void testIncrement() throws Exception {
+        ZooKeeper zk = createClient("127.0.0.1:2182");
+        ZooKeeper other = createClient("127.0.0.1:2184");
+        zk.create("/counter", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        other.awaitZxid(zk.getLastZxid());
+        for (int i = 0; i < 10; i++) {
+            zk.increment("/counter", 1);
+            other.increment("/counter", 1);
+        }
+        assertEquals(21, zk.increment("/counter", 1));
+        other.awaitZxid(zk.getLastZxid());
+        assertEquals(21, ByteBuffer.wrap(other.getData("/counter", false,
+                null)).getLong());
+        other.close();
+        zk.close();
+    }
+
     // skip superhammer and clientcleanup as they are too expensive for quorum
 }
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.ClientReadCache;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+public class ReadCacheTest extends ClientBase {
+    private static class EventQueue implements Watcher {
+        LinkedBlockingQueue<WatchedEvent> events =
+            new LinkedBlockingQueue<WatchedEvent>();
+
+        public void process(WatchedEvent event) {
+            events.add(event);
+        }
+
+        WatchedEvent take() throws InterruptedException {
+            WatchedEvent event = events.poll(CONNECTION_TIMEOUT,
+                    TimeUnit.MILLISECONDS);
+            assertNotNull("no event", event);
+            return event;
+        }
+    }
+
+    @Test
+    public void testDataCachedUntilChanged() throws Exception {
+        ZooKeeper zk = createClient();
+        ZooKeeper writer = createClient();
+        ClientReadCache cache = zk.enableReadCache(100);
+        writer.create("/cached", "v1".getBytes(), Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+
+        EventQueue watcher = new EventQueue();
+        Stat stat = new Stat();
+        assertEquals("v1", new String(zk.getData("/cached", watcher, stat)));
+        assertEquals(1, cache.getMisses());
+        Stat cachedStat = new Stat();
+        assertEquals("v1", new String(zk.getData("/cached", false,
+                cachedStat)));
+        assertEquals(stat, cachedStat);
+        // a read without a watch is served while the watch is active
+        assertEquals(1, cache.getHits());
+
+        EventQueue second = new EventQueue();
+        assertEquals("v1", new String(zk.getData("/cached", second, null)));
+        assertEquals(2, cache.getHits());
+
+        writer.setData("/cached", "v2".getBytes(), -1);
+        assertEquals(EventType.NodeDataChanged, watcher.take().getType());
+        assertEquals(EventType.NodeDataChanged, second.take().getType());
+        assertEquals(0, cache.getDataSize());
+        assertEquals("v2", new String(zk.getData("/cached", false, null)));
+        assertEquals(2, cache.getMisses());
+
+        zk.close();
+        writer.close();
+    }
+
+    @Test
+    public void testChildrenCachedUntilChanged() throws Exception {
+        ZooKeeper zk = createClient();
+        ZooKeeper writer = createClient();
+        ClientReadCache cache = zk.enableReadCache(100);
+        writer.create("/parent", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        writer.create("/parent/a", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+
+        EventQueue watcher = new EventQueue();
+        assertEquals(1, zk.getChildren("/parent", watcher).size());
+        List<String> children = zk.getChildren("/parent", false);
+        assertEquals(1, children.size());
+        // the caller gets its own copy
+        children.clear();
+        assertEquals(1, zk.getChildren("/parent", false).size());
+        assertEquals(2, cache.getHits());
+
+        writer.create("/parent/b", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        assertEquals(EventType.NodeChildrenChanged, watcher.take().getType());
+        assertEquals(2, zk.getChildren("/parent", false).size());
+        assertEquals(2, cache.getMisses());
+
+        zk.close();
+        writer.close();
+    }
+
+    @Test
+    public void testLRUEviction() throws Exception {
+        ZooKeeper zk = createClient();
+        ClientReadCache cache = zk.enableReadCache(2);
+        for (int i = 0; i < 3; i++) {
+            zk.create("/lru" + i, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT);
+        }
+        zk.getData("/lru0", true, null);
+        zk.getData("/lru1", true, null);
+        zk.getData("/lru0", false, null);
+        zk.getData("/lru2", true, null);
+        assertEquals(2, cache.getDataSize());
+        assertEquals(1, cache.getHits());
+        // lru1 was the least recently used
+        zk.getData("/lru0", false, null);
+        zk.getData("/lru2", false, null);
+        assertEquals(3, cache.getHits());
+        zk.getData("/lru1", false, null);
+        assertEquals(4, cache.getMisses());
+        zk.close();
+    }
+
+    @Test
+    public void testClearedOnDisconnect() throws Exception {
+        CountdownWatcher watcher = new CountdownWatcher();
+        ZooKeeper zk = createClient(watcher, hostPort);
+        ClientReadCache cache = zk.enableReadCache(100);
+        zk.create("/disconnect", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.getData("/disconnect", true, null);
+        zk.getChildren("/", true);
+        assertEquals(1, cache.getDataSize());
+        assertEquals(1, cache.getChildrenSize());
+
+        stopServer();
+        watcher.waitForDisconnected(CONNECTION_TIMEOUT);
+        assertEquals(0, cache.getDataSize());
+        assertEquals(0, cache.getChildrenSize());
+        startServer();
+        watcher.waitForConnected(CONNECTION_TIMEOUT);
+        zk.close();
+    }
+}
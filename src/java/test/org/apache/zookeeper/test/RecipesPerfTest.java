@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.StringCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.junit.Test;
+
+/**
+ * Compares how the waiters of a lock find the node they wait for: with
+ * getPredecessor, or with a getChildren of the lock directory sorted by
+ * the client. Each lock handoff costs one lookup by the next waiter.
+ */
+public class RecipesPerfTest extends ClientBase {
+    /**
+     * The most getChildren lookups timed, the rest is extrapolated.
+     */
+    private static final int LIST_SAMPLES = 200;
+
+    private static class Names implements StringCallback {
+        final List<String> names = new ArrayList<String>();
+
+        final CountDownLatch latch;
+
+        Names(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        public void processResult(int rc, String path, Object ctx,
+                String name) {
+            if (rc == 0) {
+                synchronized (names) {
+                    names.add(name.substring(name.lastIndexOf('/') + 1));
+                }
+            }
+            latch.countDown();
+        }
+    }
+
+    private void measure(ZooKeeper zk, int contenders) throws Exception {
+        String dir = "/contend" + contenders;
+        zk.create(dir, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        Names created = new Names(contenders);
+        for (int i = 0; i < contenders; i++) {
+            zk.create(dir + "/lock-", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT_SEQUENTIAL, created, null);
+        }
+        created.latch.await();
+        List<String> names = created.names;
+        assertEquals(contenders, names.size());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < contenders; i++) {
+            String predecessor = zk.getPredecessor(dir, names.get(i), false);
+            assertEquals(i == 0 ? null : names.get(i - 1), predecessor);
+        }
+        long predecessorNs = (System.nanoTime() - start) / contenders;
+
+        int samples = Math.min(contenders, LIST_SAMPLES);
+        int step = contenders / samples;
+        start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            String name = names.get(i * step);
+            List<String> children = zk.getChildren(dir, false);
+            Collections.sort(children);
+            int index = Collections.binarySearch(children, name);
+            String predecessor = index > 0 ? children.get(index - 1) : null;
+            assertEquals(i == 0 ? null : names.get(i * step - 1),
+                    predecessor);
+        }
+        long listNs = (System.nanoTime() - start) / samples;
+
+        System.out.println(contenders + " contenders: getPredecessor "
+                + predecessorNs / 1000 + " us/lookup, getChildren and sort "
+                + listNs / 1000 + " us/lookup; handing the lock through all"
+                + " of them takes " + predecessorNs * contenders / 1000000L
+                + " ms vs " + listNs * contenders / 1000000L + " ms");
+        zk.deleteTree(dir, null);
+    }
+
+    @Test
+    public void testPredecessorLookup() throws Exception {
+        ZooKeeper zk = createClient();
+        try {
+            measure(zk, 1000);
+            measure(zk, 10000);
+        } finally {
+            zk.close();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.recipes.DistributedLock;
+import org.apache.zookeeper.recipes.DistributedQueue;
+import org.apache.zookeeper.recipes.LeaderLatch;
+import org.junit.Test;
+
+public class RecipesTest extends ClientBase {
+    private static String name(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Test
+    public void testGetPredecessor() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/pred", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.create("/pred/other", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            names.add(name(zk.create("/pred/lock-", new byte[0],
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL_SEQUENTIAL)));
+        }
+        zk.create("/pred/z-", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.EPHEMERAL_SEQUENTIAL);
+        assertNull(zk.getPredecessor("/pred", names.get(0), false));
+        assertEquals(names.get(0), zk.getPredecessor("/pred", names.get(1),
+                false));
+        assertEquals(names.get(1), zk.getPredecessor("/pred", names.get(2),
+                false));
+        // the name doesn't have to exist
+        assertEquals(names.get(2), zk.getPredecessor("/pred", "lock-9999999999",
+                false));
+        // other prefixes are not predecessors
+        assertNull(zk.getPredecessor("/pred", "z-0000000000", false));
+
+        final CountDownLatch deleted = new CountDownLatch(1);
+        assertEquals(names.get(1), zk.getPredecessor("/pred", names.get(2),
+                new Watcher() {
+                    public void process(WatchedEvent event) {
+                        if (event.getType() == Event.EventType.NodeDeleted) {
+                            deleted.countDown();
+                        }
+                    }
+                }));
+        zk.delete("/pred/" + names.get(1), -1);
+        assertTrue(deleted.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(names.get(0), zk.getPredecessor("/pred", names.get(2),
+                false));
+
+        try {
+            zk.getPredecessor("/missing", names.get(0), false);
+            fail("found a predecessor under a missing node");
+        } catch (KeeperException.NoNodeException e) {
+            // expected
+        }
+        zk.close();
+    }
+
+    /**
+     * The nodes of a prefix extending another one are not predecessors of
+     * the nodes of the shorter prefix, even though they sort among them.
+     */
+    @Test
+    public void testGetPredecessorExtendedPrefix() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/prefixes", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        List<String> names = new ArrayList<String>();
+        List<String> extended = new ArrayList<String>();
+        for (int i = 0; i < 2; i++) {
+            names.add(name(zk.create("/prefixes/lock-", new byte[0],
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL_SEQUENTIAL)));
+        }
+        for (int i = 0; i < 2; i++) {
+            extended.add(name(zk.create("/prefixes/lock-.x-", new byte[0],
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL_SEQUENTIAL)));
+        }
+        // lock-.x- sorts before lock-0
+        assertNull(zk.getPredecessor("/prefixes", names.get(0), false));
+        assertEquals(names.get(0), zk.getPredecessor("/prefixes",
+                names.get(1), false));
+        assertNull(zk.getPredecessor("/prefixes", extended.get(0), false));
+        assertEquals(extended.get(0), zk.getPredecessor("/prefixes",
+                extended.get(1), false));
+        zk.close();
+    }
+
+    @Test
+    public void testLock() throws Exception {
+        final int clients = 5;
+        final int rounds = 20;
+        ZooKeeper zk = createClient();
+        zk.create("/lock", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final AtomicInteger acquired = new AtomicInteger();
+        final List<Exception> failures = new ArrayList<Exception>();
+        Thread threads[] = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            final ZooKeeper client = createClient();
+            threads[i] = new Thread() {
+                public void run() {
+                    DistributedLock lock = new DistributedLock(client,
+                            "/lock", Ids.OPEN_ACL_UNSAFE);
+                    try {
+                        for (int j = 0; j < rounds; j++) {
+                            lock.lock();
+                            if (holders.incrementAndGet() != 1
+                                    || !lock.isOwner()) {
+                                overlaps.incrementAndGet();
+                            }
+                            acquired.incrementAndGet();
+                            Thread.sleep(1);
+                            holders.decrementAndGet();
+                            lock.unlock();
+                        }
+                        client.close();
+                    } catch (Exception e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join(CONNECTION_TIMEOUT * 4);
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(0, overlaps.get());
+        assertEquals(clients * rounds, acquired.get());
+        assertEquals(0, zk.getChildren("/lock", false).size());
+        zk.close();
+    }
+
+    @Test
+    public void testTryLock() throws Exception {
+        ZooKeeper zk1 = createClient();
+        ZooKeeper zk2 = createClient();
+        zk1.create("/trylock", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        DistributedLock lock1 = new DistributedLock(zk1, "/trylock",
+                Ids.OPEN_ACL_UNSAFE);
+        DistributedLock lock2 = new DistributedLock(zk2, "/trylock",
+                Ids.OPEN_ACL_UNSAFE);
+        assertTrue(lock1.tryLock(1, TimeUnit.SECONDS));
+        assertFalse(lock2.tryLock(100, TimeUnit.MILLISECONDS));
+        assertFalse(lock2.isOwner());
+        // the waiter gave up its place
+        assertEquals(1, zk1.getChildren("/trylock", false).size());
+
+        // the lock goes with the session
+        zk1.close();
+        assertTrue(lock2.tryLock(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        lock2.unlock();
+        zk2.close();
+    }
+
+    @Test
+    public void testLeaderLatch() throws Exception {
+        ZooKeeper zks[] = new ZooKeeper[3];
+        LeaderLatch latches[] = new LeaderLatch[3];
+        for (int i = 0; i < 3; i++) {
+            zks[i] = createClient();
+        }
+        zks[0].create("/election", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        for (int i = 0; i < 3; i++) {
+            latches[i] = new LeaderLatch(zks[i], "/election",
+                    Ids.OPEN_ACL_UNSAFE);
+            latches[i].start();
+        }
+        latches[0].await();
+        assertTrue(latches[0].hasLeadership());
+        assertFalse(latches[1].await(100, TimeUnit.MILLISECONDS));
+        assertFalse(latches[2].hasLeadership());
+
+        latches[0].close();
+        assertTrue(latches[1].await(CONNECTION_TIMEOUT,
+                TimeUnit.MILLISECONDS));
+        assertFalse(latches[2].hasLeadership());
+
+        // the leader goes away with its session
+        zks[1].close();
+        assertTrue(latches[2].await(CONNECTION_TIMEOUT,
+                TimeUnit.MILLISECONDS));
+        latches[2].close();
+        zks[0].close();
+        zks[2].close();
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        ZooKeeper zk = createClient();
+        zk.create("/queue", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        final DistributedQueue queue = new DistributedQueue(zk, "/queue",
+                Ids.OPEN_ACL_UNSAFE);
+        assertNull(queue.poll());
+        for (int i = 0; i < 40; i++) {
+            queue.offer(("" + i).getBytes());
+        }
+        for (int i = 0; i < 40; i++) {
+            assertEquals("" + i, new String(queue.poll()));
+        }
+        assertNull(queue.poll());
+
+        ZooKeeper producer = createClient();
+        final DistributedQueue producerQueue = new DistributedQueue(producer,
+                "/queue", Ids.OPEN_ACL_UNSAFE);
+        final byte taken[][] = new byte[1][];
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    taken[0] = queue.take();
+                } catch (Exception e) {
+                    LOG.error("take failed", e);
+                }
+            }
+        };
+        consumer.start();
+        Thread.sleep(100);
+        producerQueue.offer("late".getBytes());
+        consumer.join(CONNECTION_TIMEOUT);
+        assertEquals("late", new String(taken[0]));
+        producer.close();
+        zk.close();
+    }
+}
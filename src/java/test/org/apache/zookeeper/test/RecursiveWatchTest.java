@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.VoidCallback;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.junit.Test;
+
+public class RecursiveWatchTest extends ClientBase {
+    private static class QueueWatcher implements Watcher {
+        final BlockingQueue<WatchedEvent> events =
+            new LinkedBlockingQueue<WatchedEvent>();
+
+        public void process(WatchedEvent event) {
+            if (event.getType() != EventType.None) {
+                events.add(event);
+            }
+        }
+
+        void expect(EventType type, String path) throws InterruptedException {
+            WatchedEvent event = events.poll(CONNECTION_TIMEOUT,
+                    TimeUnit.MILLISECONDS);
+            assertNotNull("no " + type + " for " + path, event);
+            assertEquals(type, event.getType());
+            assertEquals(path, event.getPath());
+        }
+    }
+
+    private void create(ZooKeeper zk, String path) throws Exception {
+        zk.create(path, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+    }
+
+    @Test
+    public void testSubtreeEvents() throws Exception {
+        ZooKeeper zk = createClient();
+        QueueWatcher watcher = new QueueWatcher();
+        // the node doesn't have to exist
+        zk.addRecursiveWatch("/tree", watcher);
+        create(zk, "/tree");
+        create(zk, "/tree/a");
+        create(zk, "/tree/a/b");
+        create(zk, "/treetop");
+        zk.setData("/tree/a/b", new byte[1], -1);
+        zk.delete("/tree/a/b", -1);
+        zk.setData("/tree", new byte[1], -1);
+
+        watcher.expect(EventType.NodeCreated, "/tree");
+        watcher.expect(EventType.NodeCreated, "/tree/a");
+        watcher.expect(EventType.NodeCreated, "/tree/a/b");
+        watcher.expect(EventType.NodeDataChanged, "/tree/a/b");
+        watcher.expect(EventType.NodeDeleted, "/tree/a/b");
+        watcher.expect(EventType.NodeDataChanged, "/tree");
+        assertTrue(watcher.events.isEmpty());
+
+        zk.removeRecursiveWatch("/tree", watcher);
+        assertEquals(0, serverFactory.getZooKeeperServer().dataTree
+                .getWatchCount());
+        zk.setData("/tree/a", new byte[1], -1);
+        create(zk, "/tree/c");
+        // the notifications would have been sent before the response
+        zk.exists("/tree", false);
+        assertNull(watcher.events.poll(100, TimeUnit.MILLISECONDS));
+        zk.close();
+    }
+
+    /**
+     * A watcher that watches a node several ways is notified once, the
+     * one time watches are removed and the recursive one stays.
+     */
+    @Test
+    public void testWithOneTimeWatches() throws Exception {
+        ZooKeeper zk = createClient();
+        create(zk, "/both");
+        create(zk, "/both/node");
+        QueueWatcher watcher = new QueueWatcher();
+        QueueWatcher other = new QueueWatcher();
+        zk.addRecursiveWatch("/", watcher);
+        zk.addRecursiveWatch("/both", watcher);
+        zk.addRecursiveWatch("/both", other);
+        zk.getData("/both/node", watcher, null);
+        zk.getChildren("/both/node", watcher);
+
+        zk.setData("/both/node", new byte[1], -1);
+        watcher.expect(EventType.NodeDataChanged, "/both/node");
+        other.expect(EventType.NodeDataChanged, "/both/node");
+        zk.delete("/both/node", -1);
+        watcher.expect(EventType.NodeDeleted, "/both/node");
+        other.expect(EventType.NodeDeleted, "/both/node");
+        zk.exists("/both", false);
+        assertNull(watcher.events.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(other.events.isEmpty());
+
+        // still watched by the other watcher
+        zk.removeRecursiveWatch("/both", watcher);
+        create(zk, "/both/node");
+        other.expect(EventType.NodeCreated, "/both/node");
+        watcher.expect(EventType.NodeCreated, "/both/node");
+        zk.close();
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        CountdownWatcher connection = new CountdownWatcher();
+        ZooKeeper zk = createClient(connection, hostPort);
+        create(zk, "/reconnect");
+        QueueWatcher watcher = new QueueWatcher();
+        final CountDownLatch added = new CountDownLatch(1);
+        zk.addRecursiveWatch("/reconnect", watcher, new VoidCallback() {
+            public void processResult(int rc, String path, Object ctx) {
+                assertEquals(0, rc);
+                added.countDown();
+            }
+        }, null);
+        assertTrue(added.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+
+        stopServer();
+        connection.waitForDisconnected(CONNECTION_TIMEOUT);
+        startServer();
+        connection.waitForConnected(CONNECTION_TIMEOUT);
+        // queued after the watches are registered again
+        zk.exists("/reconnect", false);
+        ZooKeeper other = createClient();
+        create(other, "/reconnect/child");
+        watcher.expect(EventType.NodeCreated, "/reconnect/child");
+        other.close();
+        zk.close();
+    }
+
+    @Test
+    public void testBadPath() throws Exception {
+        ZooKeeper zk = createClient();
+        try {
+            zk.addRecursiveWatch("/trailing/", new QueueWatcher());
+            fail("watched a path with a trailing slash");
+        } catch (KeeperException.BadArgumentsException e) {
+            // expected
+        }
+        assertEquals(0, serverFactory.getZooKeeperServer().dataTree
+                .getWatchCount());
+        zk.close();
+    }
+
+    /**
+     * A recursive watch only reports the nodes its client can read, also
+     * once it is set again after a reconnect.
+     */
+    @Test
+    public void testUnreadableNodes() throws Exception {
+        CountdownWatcher connection = new CountdownWatcher();
+        ZooKeeper zk = createClient(connection, hostPort);
+        QueueWatcher watcher = new QueueWatcher();
+        QueueWatcher secretWatcher = new QueueWatcher();
+        zk.addRecursiveWatch("/", watcher);
+        // allowed while the node doesn't exist
+        zk.addRecursiveWatch("/secret", secretWatcher);
+
+        ZooKeeper owner = createClient();
+        owner.addAuthInfo("digest", "owner:secret".getBytes());
+        owner.create("/secret", new byte[0], Ids.CREATOR_ALL_ACL,
+                CreateMode.PERSISTENT);
+        owner.create("/secret/child", new byte[0], Ids.CREATOR_ALL_ACL,
+                CreateMode.PERSISTENT);
+        owner.setData("/secret/child", new byte[1], -1);
+        owner.delete("/secret/child", -1);
+        create(owner, "/open");
+        watcher.expect(EventType.NodeCreated, "/secret");
+        watcher.expect(EventType.NodeCreated, "/open");
+        assertTrue(watcher.events.isEmpty());
+        secretWatcher.expect(EventType.NodeCreated, "/secret");
+        assertTrue(secretWatcher.events.isEmpty());
+        try {
+            zk.addRecursiveWatch("/secret", new QueueWatcher());
+            fail("watched a node that can't be read");
+        } catch (KeeperException.NoAuthException e) {
+            // expected
+        }
+        owner.close();
+
+        stopServer();
+        connection.waitForDisconnected(CONNECTION_TIMEOUT);
+        startServer();
+        connection.waitForConnected(CONNECTION_TIMEOUT);
+        // queued after the watches are registered again
+        zk.exists("/", false);
+        // only the watch on the root is set again
+        assertEquals(1, serverFactory.getZooKeeperServer().dataTree
+                .getWatchCount());
+        zk.close();
+    }
+}
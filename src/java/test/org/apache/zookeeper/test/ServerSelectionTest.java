@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.io.File;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.server.NIOServerCnxn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Two unrelated servers, the node /local only exists on the second one so
+ * a client can tell which one it is connected to.
+ */
+public class ServerSelectionTest extends ClientBase {
+    private String localHostPort = "127.0.0.1:33222";
+
+    private File localDir;
+
+    private NIOServerCnxn.Factory localFactory;
+
+    @Before
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        localDir = createTmpDir();
+        localFactory = createNewServerInstance(localDir, null, localHostPort);
+        ZooKeeper zk = createClient(localHostPort);
+        zk.create("/local", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.close();
+        System.setProperty("zookeeper.localServers", localHostPort);
+    }
+
+    @After
+    @Override
+    protected void tearDown() throws Exception {
+        System.clearProperty("zookeeper.localServers");
+        shutdownServerInstance(localFactory, localHostPort);
+        super.tearDown();
+    }
+
+    @Test
+    public void testLocalServerPreferred() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            ZooKeeper zk = createClient(hostPort + "," + localHostPort);
+            assertNotNull(zk.exists("/local", false));
+            zk.close();
+        }
+    }
+
+    @Test
+    public void testOtherServerWhenLocalIsDown() throws Exception {
+        shutdownServerInstance(localFactory, localHostPort);
+        localFactory = null;
+        ZooKeeper zk = createClient(localHostPort + "," + hostPort);
+        assertNull(zk.exists("/local", false));
+        zk.close();
+    }
+}
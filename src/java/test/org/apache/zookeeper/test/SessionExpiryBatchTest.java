@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import static org.apache.zookeeper.test.ClientBase.CONNECTION_TIMEOUT;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.server.NIOServerCnxn;
+import org.apache.zookeeper.server.ServerStats;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.Test;
+
+/**
+ * Checks that sessions expired in batches by a single closeSessions
+ * transaction are cleaned up, also after a restart of the server.
+ */
+public class SessionExpiryBatchTest extends TestCase {
+    protected static final Logger LOG =
+        Logger.getLogger(SessionExpiryBatchTest.class);
+
+    private static final String HOSTPORT = "127.0.0.1:33298";
+    private static final int SESSION_COUNT = 20;
+
+    private File tmpDir;
+    private NIOServerCnxn.Factory serverFactory;
+
+    @Override
+    protected void setUp() throws Exception {
+        LOG.info("STARTING " + getName());
+        System.setProperty("zookeeper.expiryBatchSize", "8");
+        System.setProperty("zookeeper.expiryRate", "40");
+        ServerStats.registerAsConcrete();
+        tmpDir = ClientBase.createTmpDir();
+        ClientBase.setupTestEnv();
+        startServer();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        stopServer();
+        ServerStats.unregister();
+        System.clearProperty("zookeeper.expiryBatchSize");
+        System.clearProperty("zookeeper.expiryRate");
+        LOG.info("FINISHED " + getName());
+    }
+
+    private void startServer() throws Exception {
+        ZooKeeperServer zs = new ZooKeeperServer(tmpDir, tmpDir, 500);
+        final int PORT = Integer.parseInt(HOSTPORT.split(":")[1]);
+        serverFactory = new NIOServerCnxn.Factory(PORT);
+        serverFactory.startup(zs);
+        assertTrue("waiting for server up",
+                   ClientBase.waitForServerUp(HOSTPORT, CONNECTION_TIMEOUT));
+    }
+
+    private void stopServer() throws Exception {
+        serverFactory.shutdown();
+        assertTrue("waiting for server down",
+                   ClientBase.waitForServerDown(HOSTPORT, CONNECTION_TIMEOUT));
+    }
+
+    private static class CountdownWatcher implements Watcher {
+        CountDownLatch clientConnected = new CountDownLatch(1);
+
+        public void process(WatchedEvent event) {
+            if (event.getState() == KeeperState.SyncConnected) {
+                clientConnected.countDown();
+            }
+        }
+    }
+
+    private DisconnectableZooKeeper createClient(int timeout)
+        throws IOException, InterruptedException
+    {
+        CountdownWatcher watcher = new CountdownWatcher();
+        DisconnectableZooKeeper zk =
+            new DisconnectableZooKeeper(HOSTPORT, timeout, watcher);
+        if (!watcher.clientConnected.await(CONNECTION_TIMEOUT,
+                TimeUnit.MILLISECONDS)) {
+            fail("Unable to connect to server");
+        }
+        return zk;
+    }
+
+    @Test
+    public void testBatchedExpiry() throws Exception {
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            DisconnectableZooKeeper zk = createClient(1000);
+            zk.create("/e" + i, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.EPHEMERAL);
+            // the session is left to expire
+            zk.disconnect();
+        }
+
+        ZooKeeper zk = createClient(CONNECTION_TIMEOUT);
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            for (int j = 0; j < 100 && zk.exists("/e" + i, false) != null; j++) {
+                Thread.sleep(100);
+            }
+            assertNull(zk.exists("/e" + i, false));
+        }
+        assertEquals(0, ServerStats.getInstance().getExpiryQueueDepth());
+        zk.close();
+
+        // the batches are replayed from the log
+        stopServer();
+        startServer();
+        zk = createClient(CONNECTION_TIMEOUT);
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            assertNull(zk.exists("/e" + i, false));
+        }
+        zk.close();
+    }
+}
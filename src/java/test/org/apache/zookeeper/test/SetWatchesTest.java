@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.common.PathPrefixCodec;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Re-registering many watches after a reconnect, in chunks and optionally
+ * prefix compressed.
+ */
+public class SetWatchesTest extends ClientBase {
+    private static final int NODES = 300;
+
+    @After
+    @Override
+    protected void tearDown() throws Exception {
+        System.clearProperty("zookeeper.setWatchesChunkSize");
+        System.clearProperty("zookeeper.compactSetWatches");
+        super.tearDown();
+    }
+
+    @Test
+    public void testCodec() throws IOException {
+        List<String> paths = new ArrayList<String>();
+        assertEquals(0, PathPrefixCodec.encode(paths).length);
+        assertEquals(paths, PathPrefixCodec.decode(new byte[0]));
+
+        paths = Arrays.asList("/", "/a", "/a", "/a/b", "/ab", "/",
+                "/\u00e9t\u00e9", "/\u00e9t\u00e9/x",
+                "/\ud834\udd1e", "/\ud834\udd1f",
+                "/" + new String(new char[300]).replace('\0', 'z'));
+        assertEquals(paths, PathPrefixCodec.decode(PathPrefixCodec
+                .encode(paths)));
+
+        List<String> siblings = new ArrayList<String>();
+        int plain = 0;
+        for (int i = 0; i < 1000; i++) {
+            String path = "/app/config/members/member-" + i;
+            siblings.add(path);
+            plain += 4 + path.length();
+        }
+        Collections.sort(siblings);
+        byte encoded[] = PathPrefixCodec.encode(siblings);
+        assertEquals(siblings, PathPrefixCodec.decode(encoded));
+        assertTrue(encoded.length * 4 < plain);
+
+        try {
+            PathPrefixCodec.decode(new byte[] { 5, 1, 'a' });
+            fail("decoded a prefix longer than the previous path");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            PathPrefixCodec.decode(new byte[] { 0, 10, 'a' });
+            fail("decoded a truncated path");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private void reconnectWithWatches() throws Exception {
+        CountdownWatcher watcher = new CountdownWatcher();
+        ZooKeeper zk = createClient(watcher, hostPort);
+        zk.create("/sw", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        for (int i = 0; i < NODES; i++) {
+            zk.create("/sw/node-" + i, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT);
+        }
+        final CountDownLatch changed = new CountDownLatch(NODES);
+        final CountDownLatch created = new CountDownLatch(NODES);
+        final CountDownLatch children = new CountDownLatch(1);
+        for (int i = 0; i < NODES; i++) {
+            zk.getData("/sw/node-" + i, new Watcher() {
+                public void process(WatchedEvent event) {
+                    if (event.getType() == Event.EventType.NodeDataChanged) {
+                        changed.countDown();
+                    }
+                }
+            }, null);
+            zk.exists("/sw/missing-" + i, new Watcher() {
+                public void process(WatchedEvent event) {
+                    if (event.getType() == Event.EventType.NodeCreated) {
+                        created.countDown();
+                    }
+                }
+            });
+        }
+        zk.getChildren("/sw", new Watcher() {
+            public void process(WatchedEvent event) {
+                if (event.getType() == Event.EventType.NodeChildrenChanged) {
+                    children.countDown();
+                }
+            }
+        });
+
+        stopServer();
+        watcher.waitForDisconnected(CONNECTION_TIMEOUT);
+        startServer();
+        watcher.waitForConnected(CONNECTION_TIMEOUT);
+
+        ZooKeeper other = createClient();
+        for (int i = 0; i < NODES; i++) {
+            other.setData("/sw/node-" + i, new byte[1], -1);
+            other.create("/sw/missing-" + i, new byte[0],
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        }
+        assertTrue(changed.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(created.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(children.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        other.close();
+        zk.close();
+    }
+
+    @Test
+    public void testChunked() throws Exception {
+        System.setProperty("zookeeper.setWatchesChunkSize", "256");
+        reconnectWithWatches();
+    }
+
+    @Test
+    public void testChunkedCompact() throws Exception {
+        System.setProperty("zookeeper.setWatchesChunkSize", "256");
+        System.setProperty("zookeeper.compactSetWatches", "true");
+        reconnectWithWatches();
+    }
+}
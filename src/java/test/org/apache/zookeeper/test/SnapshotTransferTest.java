@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import org.apache.zookeeper.server.quorum.FollowerHandler;
+import org.apache.zookeeper.server.quorum.QuorumPeer;
+import org.apache.zookeeper.server.quorum.QuorumPeer.QuorumServer;
+import org.apache.zookeeper.server.quorum.QuorumPeer.ServerState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the quorum tests with followers synced from the snapshot file of the
+ * leader.
+ */
+public class SnapshotTransferTest extends QuorumTest {
+    private static final Logger LOG =
+        Logger.getLogger(SnapshotTransferTest.class);
+
+    /**
+     * Collects the messages logged by a logger.
+     */
+    private static class MessageAppender extends AppenderSkeleton {
+        final List<String> messages =
+            Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        protected void append(LoggingEvent event) {
+            messages.add(event.getRenderedMessage());
+        }
+
+        public void close() {
+        }
+
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+
+    @Before
+    @Override
+    protected void setUp() throws Exception {
+        System.setProperty("zookeeper.snapshotTransfer", "yes");
+        super.setUp();
+    }
+
+    @After
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        System.clearProperty("zookeeper.snapshotTransfer");
+    }
+
+    /**
+     * Restart a follower with an empty data directory, it has to get all of
+     * its data from the leader's snapshot and the diff after it.
+     */
+    @Test
+    public void testEmptyFollowerResync() throws Exception {
+        ZooKeeper zk = createClient();
+        for (int i = 0; i < 100; i++) {
+            zk.create("/transfer" + i, ("data" + i).getBytes(),
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        }
+        zk.close();
+
+        QuorumPeer qps[] = new QuorumPeer[] { s1, s2, s3, s4, s5 };
+        int f = 0;
+        while (qps[f].getPeerState() != ServerState.FOLLOWING) {
+            f++;
+        }
+        QuorumPeer qp = qps[f];
+        int clientPort = 2181 + f;
+        String hp = "127.0.0.1:" + clientPort;
+        LOG.info("Restarting follower " + qp.getId() + " with no data");
+        qp.shutdown();
+        qp.join(30000);
+        assertTrue("waiting for server down",
+                ClientBase.waitForServerDown(hp, CONNECTION_TIMEOUT));
+
+        HashMap<Long,QuorumServer> peers = new HashMap<Long,QuorumServer>();
+        for (long i = 1; i <= 5; i++) {
+            peers.put(i, new QuorumServer(i,
+                    new InetSocketAddress("127.0.0.1", 3180 + (int) i)));
+        }
+        File dir = ClientBase.createTmpDir();
+        MessageAppender appender = new MessageAppender();
+        Logger handlerLog = Logger.getLogger(FollowerHandler.class);
+        handlerLog.addAppender(appender);
+        qp = new QuorumPeer(peers, dir, dir, clientPort, 0, qp.getId(),
+                2000, 3, 3);
+        switch (f) {
+        case 0: s1 = qp; break;
+        case 1: s2 = qp; break;
+        case 2: s3 = qp; break;
+        case 3: s4 = qp; break;
+        default: s5 = qp;
+        }
+        qp.start();
+        assertTrue("waiting for server up",
+                ClientBase.waitForServerUp(hp, CONNECTION_TIMEOUT));
+        handlerLog.removeAppender(appender);
+        // not synced by the leader serializing its database
+        boolean sentFile = false;
+        for (String message : appender.messages) {
+            sentFile |= message.startsWith("Sending snapshot file");
+        }
+        assertTrue("no snapshot file was sent", sentFile);
+
+        zk = createClient(hp);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("data" + i,
+                    new String(zk.getData("/transfer" + i, false, null)));
+        }
+        zk.close();
+        QuorumPeer leader = null;
+        for (QuorumPeer peer : new QuorumPeer[] { s1, s2, s3, s4, s5 }) {
+            if (peer.getPeerState() == ServerState.LEADING) {
+                leader = peer;
+            }
+        }
+        long leaderZxid = leader.getActiveServer().dataTree.lastProcessedZxid;
+        for (int i = 0; i < 50
+                && qp.getActiveServer().dataTree.lastProcessedZxid
+                        < leaderZxid; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(leaderZxid,
+                qp.getActiveServer().dataTree.lastProcessedZxid);
+
+        // only the snapshot taken once up to date is kept
+        File snapDir = new File(dir, FileTxnSnapLog.version
+                + FileTxnSnapLog.VERSION);
+        boolean snapshotTaken = false;
+        for (File file : snapDir.listFiles()) {
+            assertFalse(file.getName(), file.getName().endsWith(".transfer"));
+            snapshotTaken |= file.getName().startsWith("snapshot.");
+        }
+        assertTrue(snapshotTaken);
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.AsyncCallback.ProgressCallback;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.data.NewNode;
+import org.junit.Test;
+
+public class TreeOpsTest extends ClientBase {
+    private static final Logger LOG = Logger.getLogger(TreeOpsTest.class);
+
+    private static class Progress implements ProgressCallback {
+        int calls;
+
+        int done;
+
+        int remaining = -1;
+
+        /**
+         * The most nodes done and remaining reported by a call.
+         */
+        int total;
+
+        public void processProgress(String path, int done, int remaining) {
+            calls++;
+            this.done = done;
+            this.remaining = remaining;
+            total = Math.max(total, done + remaining);
+        }
+    }
+
+    private static String longName(String prefix, int i) {
+        char name[] = new char[100];
+        Arrays.fill(name, 'x');
+        return prefix + i + new String(name);
+    }
+
+    /**
+     * A tree whose nodes take several requests to create and to delete.
+     */
+    private List<NewNode> bigTree(String root, int dirs, int files) {
+        List<NewNode> nodes = new ArrayList<NewNode>();
+        nodes.add(new NewNode(root, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT.toFlag()));
+        for (int i = 0; i < dirs; i++) {
+            String dir = root + "/" + longName("dir", i);
+            nodes.add(new NewNode(dir, new byte[100], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT.toFlag()));
+            for (int j = 0; j < files; j++) {
+                nodes.add(new NewNode(dir + "/" + longName("file", j),
+                        new byte[100], Ids.OPEN_ACL_UNSAFE,
+                        CreateMode.PERSISTENT.toFlag()));
+            }
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testCreateAndDeleteTree() throws Exception {
+        ZooKeeper zk = createClient();
+        int nodeCount = serverFactory.getZooKeeperServer().dataTree
+                .getNodeCount();
+        List<NewNode> nodes = bigTree("/tree", 50, 60);
+        Progress progress = new Progress();
+        long start = System.currentTimeMillis();
+        List<String> paths = zk.createTree(nodes, progress);
+        LOG.info("Created " + nodes.size() + " nodes in "
+                + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(nodes.size(), paths.size());
+        assertTrue(progress.calls > 1);
+        assertEquals(nodes.size(), progress.done);
+        assertEquals(0, progress.remaining);
+        assertEquals(50, zk.getChildren("/tree", false).size());
+        assertEquals(60, zk.getChildren(nodes.get(1).getPath(), false)
+                .size());
+
+        final CountDownLatch deleted = new CountDownLatch(1);
+        zk.exists(nodes.get(2).getPath(), new Watcher() {
+            public void process(WatchedEvent event) {
+                if (event.getType() == Event.EventType.NodeDeleted) {
+                    deleted.countDown();
+                }
+            }
+        });
+        progress = new Progress();
+        start = System.currentTimeMillis();
+        assertEquals(nodes.size(), zk.deleteTree("/tree", progress));
+        LOG.info("Deleted " + nodes.size() + " nodes in "
+                + (System.currentTimeMillis() - start) + " ms");
+        assertTrue(progress.calls > 1);
+        assertEquals(0, progress.remaining);
+        // each call reports the nodes left in the tree
+        assertEquals(nodes.size(), progress.total);
+        assertNull(zk.exists("/tree", false));
+        assertTrue(deleted.await(CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(nodeCount, serverFactory.getZooKeeperServer().dataTree
+                .getNodeCount());
+        zk.close();
+    }
+
+    @Test
+    public void testCreateTreeIsAtomic() throws Exception {
+        ZooKeeper zk = createClient();
+        List<NewNode> nodes = new ArrayList<NewNode>();
+        nodes.add(new NewNode("/atomic", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT.toFlag()));
+        nodes.add(new NewNode("/atomic/seq-", new byte[0],
+                Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL
+                        .toFlag()));
+        nodes.add(new NewNode("/atomic/seq-", new byte[0],
+                Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL
+                        .toFlag()));
+        nodes.add(new NewNode("/missing/child", new byte[0],
+                Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT.toFlag()));
+        try {
+            zk.createTree(nodes, null);
+            fail("created a node without a parent");
+        } catch (KeeperException.NoNodeException e) {
+            // expected
+        }
+        assertNull(zk.exists("/atomic", false));
+
+        nodes.remove(3);
+        List<String> paths = zk.createTree(nodes, null);
+        assertEquals("/atomic/seq-0000000000", paths.get(1));
+        assertEquals("/atomic/seq-0000000001", paths.get(2));
+
+        nodes = new ArrayList<NewNode>();
+        nodes.add(new NewNode("/atomic/ephemeral", new byte[0],
+                Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL.toFlag()));
+        try {
+            zk.createTree(nodes, null);
+            fail("created an ephemeral node");
+        } catch (KeeperException.BadArgumentsException e) {
+            // expected
+        }
+        try {
+            zk.deleteTree("/missing", null);
+            fail("deleted a missing node");
+        } catch (KeeperException.NoNodeException e) {
+            // expected
+        }
+        zk.close();
+    }
+
+    /**
+     * The tree txns are replayed from the log.
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        ZooKeeper zk = createClient();
+        List<NewNode> nodes = bigTree("/recover", 10, 10);
+        zk.createTree(nodes, null);
+        zk.create("/keep", new byte[0], Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT);
+        zk.deleteTree(nodes.get(1).getPath(), null);
+        zk.close();
+
+        stopServer();
+        startServer();
+        zk = createClient();
+        assertEquals(9, zk.getChildren("/recover", false).size());
+        assertNull(zk.exists(nodes.get(1).getPath(), false));
+        assertNotNull(zk.exists(nodes.get(nodes.size() - 1).getPath(), false));
+        zk.deleteTree("/recover", null);
+        assertNull(zk.exists("/recover", false));
+        assertNotNull(zk.exists("/keep", false));
+        zk.close();
+    }
+}